@@ -24,8 +24,10 @@ public class Main
 			System.out.println("The following instance was read:");
 			System.out.println(instance);
 			
-			// Create a model instance based on the directed graph
-			Model model = new Model(instance, 9);
+			// Create a model instance based on the directed graph, and export it
+			// to model.lp so we can check the mathematical program generated by CPLEX
+			ModelExporter exporter = new ModelExporter(new File("."), "model", ModelExporter.Format.LP, false, 16);
+			Model model = new Model(instance, 9, exporter, "model");
 			// Solve the model
 			model.solve();
 			// Print the solution
@@ -44,6 +46,7 @@ public class Main
 			System.out.println(model.getSolution());
 			
 			model.cleanup();
+			exporter.shutdown(10000);
 		}
 		catch (IloException e)
 		{
@@ -53,6 +56,10 @@ public class Main
 		{
 			e.printStackTrace();
 		}
+		catch (InterruptedException e)
+		{
+			e.printStackTrace();
+		}
 	}
 	
 	/**
@@ -65,35 +72,47 @@ public class Main
 	{
 		try (Scanner scan = new Scanner(f))
 		{
-			DirectedGraph<Item,String> result = new DirectedGraph<>();
-			List<Item> items = new ArrayList<>();
-			
-			// Reading the items
-			int numItems = scan.nextInt();
-			for (int i=0; i < numItems; i++)
-			{
-				int profit = scan.nextInt();
-				int weight = scan.nextInt();
-				Item item = new Item(profit,weight);
-				items.add(item);
-				result.addNode(item);
-			}
-			
-			// Reading the arcs / precedence constraints
-			int numArcs = scan.nextInt();
-			for (int i=0; i < numArcs; i++)
-			{
-				int fromIndex = scan.nextInt();
-				int toIndex = scan.nextInt();
-				String reason = scan.next();
-				
-				Item from = items.get(fromIndex);
-				Item to = items.get(toIndex);
-				result.addArc(from, to, reason);
-			}
+			return read(scan);
+		}
+	}
+	
+	/**
+	 * Reads a Precedence Constrained Knapsack Problem as a directed graph from a scanner,
+	 * in the same format as the file read by read(File)
+	 * @param scan the scanner to read from
+	 * @return a directed graph containing the Precedence Constrained Knapsack Problem
+	 * @throws java.util.NoSuchElementException if the input ends early or contains something else than expected
+	 */
+	public static DirectedGraph<Item,String> read(Scanner scan)
+	{
+		DirectedGraph<Item,String> result = new DirectedGraph<>();
+		List<Item> items = new ArrayList<>();
+		
+		// Reading the items
+		int numItems = scan.nextInt();
+		for (int i=0; i < numItems; i++)
+		{
+			int profit = scan.nextInt();
+			int weight = scan.nextInt();
+			Item item = new Item(profit,weight);
+			items.add(item);
+			result.addNode(item);
+		}
+		
+		// Reading the arcs / precedence constraints
+		int numArcs = scan.nextInt();
+		for (int i=0; i < numArcs; i++)
+		{
+			int fromIndex = scan.nextInt();
+			int toIndex = scan.nextInt();
+			String reason = scan.next();
 			
-			return result;
+			Item from = items.get(fromIndex);
+			Item to = items.get(toIndex);
+			result.addArc(from, to, reason);
 		}
+		
+		return result;
 	}
 	
 }
@@ -3,16 +3,25 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import ilog.concert.IloException;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
+import ilog.cplex.IloCplex.DoubleParam;
+import ilog.cplex.IloCplex.IntParam;
+import ilog.cplex.IloCplex.MIPInfoCallback;
 
 /**
  * Model class that converts a directed graph representing a
  * precedence constrained knapsack problem into a mathematical programming
  * model managed by CPLEX.
+ * 
+ * The model can be solved within a wall-clock time budget, can report the progress of
+ * CPLEX to a listener, and can be cancelled from another thread. When CPLEX is stopped,
+ * the best solution found so far is kept together with its proven gap.
  * @author Paul Bouman
  */
 
@@ -24,6 +33,12 @@ public class Model
 	private IloCplex cplex;
 	
 	private Map<Item,IloNumVar> varMap;
+	private IloRange knapsack;
+	
+	// Used to stop CPLEX from another thread, and to report its progress
+	private final IloCplex.Aborter aborter = new IloCplex.Aborter();
+	private volatile boolean cancelled = false;
+	private volatile Consumer<Progress> progressListener;
 	
 	/**
 	 * Constructor that takes a directed graph with the items and precedence constraints
@@ -34,6 +49,24 @@ public class Model
 	
 	public Model(DirectedGraph<Item,String> instance, int capacity) throws IloException
 	{
+		this(instance, capacity, null, null);
+	}
+	
+	/**
+	 * Constructor that takes a directed graph with the items and precedence constraints,
+	 * and hands the model to an exporter after it is built. The exporter decides whether
+	 * the model is actually written to a file and does so on a background thread.
+	 * @param instance a directed graph with items
+	 * @param capacity the capacity of the knapsack
+	 * @param exporter the exporter to which the model is handed, or null to not export the model
+	 * @param name the file name without extension for the exported model, or null to let the
+	 *             exporter generate a unique name
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public Model(DirectedGraph<Item,String> instance, int capacity, ModelExporter exporter, String name) throws IloException
+	{
+		long start = System.nanoTime();
+		
 		// Initialize the instance variables
 		this.instance = instance;
 		this.capacity = capacity;
@@ -49,10 +82,16 @@ public class Model
 		addObjective();
 		
 		// Optionally: export the model to a file, so we can check the mathematical
-		// program generated by CPLEX
-		cplex.exportModel("model.lp");
+		// program generated by CPLEX. This does not wait for the file to be written.
+		if (exporter != null)
+		{
+			long buildMillis = (System.nanoTime() - start) / 1_000_000;
+			exporter.modelBuilt(instance, capacity, name, buildMillis);
+		}
 		// Optionally: suppress the output of CPLEX
 		cplex.setOut(null);
+		// Allow other threads to stop CPLEX using cancel()
+		cplex.use(aborter);
 	}
 	
 	/**
@@ -76,13 +115,150 @@ public class Model
 		}
 	}
 	
+	/**
+	 * Changes the capacity of the knapsack, so that the model can be solved again
+	 * without building it from scratch
+	 * @param capacity the new capacity of the knapsack
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public void setCapacity(int capacity) throws IloException
+	{
+		knapsack.setUB(capacity);
+		this.capacity = capacity;
+	}
+	
 	/**
 	 * Solve the Mathematical Programming Model
 	 * @throws IloException if something is wrong with CPLEX
 	 */
 	public void solve() throws IloException
 	{
-		cplex.solve();
+		long start = System.nanoTime();
+		// Only follow the progress of CPLEX if someone is interested in it. The listener is read
+		// once, so that it can be changed by another thread while CPLEX is running.
+		Consumer<Progress> listener = progressListener;
+		if (listener != null)
+		{
+			cplex.use(new ProgressCallback(start, listener));
+		}
+		try
+		{
+			cplex.solve();
+		}
+		finally
+		{
+			if (listener != null)
+			{
+				cplex.clearCallbacks();
+			}
+			clearCancellation();
+		}
+	}
+	
+	/**
+	 * Solve the Mathematical Programming Model within a wall-clock time budget. If the budget
+	 * runs out or the solve is cancelled, CPLEX stops and keeps the best solution found so far.
+	 * If isFeasible() is true, this solution is available through getSolution(), and getGap()
+	 * gives the gap that is proven for it.
+	 * @param seconds the time budget in seconds
+	 * @throws IllegalArgumentException if the time budget is not positive
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public void solve(double seconds) throws IloException
+	{
+		if (!(seconds > 0))
+		{
+			throw new IllegalArgumentException("The time budget must be positive");
+		}
+		// Remember the time limit, so we can restore it after the solve
+		double timeLimit = cplex.getParam(DoubleParam.TiLim);
+		cplex.setParam(DoubleParam.TiLim, seconds);
+		try
+		{
+			solve();
+		}
+		finally
+		{
+			cplex.setParam(DoubleParam.TiLim, timeLimit);
+		}
+	}
+	
+	/**
+	 * Sets the number of threads CPLEX may use to solve the model. By default,
+	 * CPLEX uses as many threads as there are cores.
+	 * @param threads the maximum number of threads
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public void setThreads(int threads) throws IloException
+	{
+		cplex.setParam(IntParam.Threads, threads);
+	}
+	
+	/**
+	 * Cancels a solve of this model that is running in another thread. CPLEX stops as soon as
+	 * possible and keeps the best solution found so far. If no solve is running, the next solve
+	 * is cancelled. This method can be called by any thread.
+	 */
+	public synchronized void cancel()
+	{
+		cancelled = true;
+		aborter.abort();
+	}
+	
+	/**
+	 * Resets a cancellation at the end of a solve, so that the next solve is not cancelled
+	 */
+	private synchronized void clearCancellation()
+	{
+		if (cancelled)
+		{
+			cancelled = false;
+			aborter.clear();
+		}
+	}
+	
+	/**
+	 * Sets a listener that receives the progress of CPLEX while the model is solved, or removes
+	 * the listener if null is provided. The listener is called by a thread of CPLEX every time the
+	 * best solution or the bound improves, so it should return quickly. By default, there is no listener.
+	 * A listener that is set while the model is solved is used from the next solve on.
+	 * @param progressListener the listener for progress events
+	 */
+	public void setProgressListener(Consumer<Progress> progressListener)
+	{
+		this.progressListener = progressListener;
+	}
+	
+	/**
+	 * Checks whether the current solution is proven to be optimal. This is not the case
+	 * if CPLEX was stopped by the time budget or by a cancellation.
+	 * @return whether the last solve found an optimal solution
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public boolean isOptimal() throws IloException
+	{
+		return cplex.getStatus() == IloCplex.Status.Optimal;
+	}
+	
+	/**
+	 * Gives the best upper bound on the profit of any solution proven during the last solve
+	 * @return the upper bound
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public double getBound() throws IloException
+	{
+		return cplex.getBestObjValue();
+	}
+	
+	/**
+	 * Gives the relative gap between the upper bound and the profit of the current solution,
+	 * which is 0 if the solution is optimal
+	 * @return the relative gap proven for the current solution
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public double getGap() throws IloException
+	{
+		return cplex.getMIPRelativeGap();
 	}
 	
 	/**
@@ -116,6 +292,26 @@ public class Model
 		return result;
 	}
 	
+	/**
+	 * The directed graph with the items and precedence constraints of this model
+	 * @return the instance of the model
+	 */
+	public DirectedGraph<Item,String> getInstance()
+	{
+		return instance;
+	}
+	
+	/**
+	 * Writes the model to a file. The format of the file is derived by CPLEX from
+	 * the extension of the file name.
+	 * @param fileName the name of the file to write
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	void exportModel(String fileName) throws IloException
+	{
+		cplex.exportModel(fileName);
+	}
+	
 	/**
 	 * Cleans up the CPLEX model in order to free up some memory.
 	 * This is important if you create many models, as memory used
@@ -167,7 +363,7 @@ public class Model
 			lhs = cplex.sum(lhs, term);
 		}
 		// Add the constraint lhs <= capacity to the model
-		cplex.addLe(lhs, capacity);
+		knapsack = cplex.addLe(lhs, capacity);
 	}
 
 	private void addVariables() throws IloException
@@ -179,5 +375,37 @@ public class Model
 		}
 	}
 	
+	/**
+	 * Callback that is called by CPLEX regularly while the model is solved,
+	 * and reports a progress event when the incumbent or the bound improves
+	 */
+	private class ProgressCallback extends MIPInfoCallback
+	{
+		private final long start;
+		private final Consumer<Progress> listener;
+		private double bound = Double.POSITIVE_INFINITY;
+		private double incumbent = Double.NEGATIVE_INFINITY;
+		
+		public ProgressCallback(long start, Consumer<Progress> listener)
+		{
+			this.start = start;
+			this.listener = listener;
+		}
+		
+		@Override
+		protected synchronized void main() throws IloException
+		{
+			double newBound = getBestObjValue();
+			double newIncumbent = hasIncumbent() ? getIncumbentObjValue() : Double.NEGATIVE_INFINITY;
+			if (newBound < bound || newIncumbent > incumbent)
+			{
+				bound = newBound;
+				incumbent = newIncumbent;
+				double seconds = (System.nanoTime() - start) / 1e9;
+				listener.accept(new Progress(seconds, bound, incumbent));
+			}
+		}
+	}
+	
 	
 }
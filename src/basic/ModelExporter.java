@@ -0,0 +1,216 @@
+package basic;
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ilog.concert.IloException;
+
+/**
+ * Class that exports models to files on a background thread. Exporting a model
+ * is useful to check the mathematical program generated by CPLEX, but writing
+ * files on every model build is expensive when many models are built, and
+ * models that are exported under the same name overwrite each other.
+ *
+ * An exporter writes to a directory with a fixed file format, and decides for
+ * each model that is built whether it is exported: only one in every N models
+ * is considered, and of those only the models that took at least a minimum
+ * amount of time to build. Models that are selected are queued for a single
+ * background thread. If the queue is full, the export is dropped, so that
+ * building a model never has to wait for the disk.
+ *
+ * Because a CPLEX environment can not safely be used by two threads at the same
+ * time, the background thread builds its own copy of the model from the same
+ * instance and exports that copy.
+ */
+public class ModelExporter
+{
+	/**
+	 * The file formats supported by CPLEX for exporting models.
+	 */
+	public enum Format
+	{
+		/** The human readable LP format */
+		LP("lp"),
+		/** The fixed column MPS format */
+		MPS("mps"),
+		/** The binary SAV format of CPLEX */
+		SAV("sav");
+
+		private final String extension;
+
+		private Format(String extension)
+		{
+			this.extension = extension;
+		}
+
+		/**
+		 * The file extension CPLEX uses to recognize this format
+		 * @return the file extension without a leading dot
+		 */
+		public String getExtension()
+		{
+			return extension;
+		}
+	}
+
+	private final File directory;
+	private final String prefix;
+	private final Format format;
+	private final boolean gzip;
+
+	private volatile int sampleEvery = 1;
+	private volatile long minimumBuildMillis = 0;
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong builds = new AtomicLong();
+	private final AtomicLong exported = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Creates an exporter that writes models to a directory
+	 * @param directory the directory in which the model files are written
+	 * @param prefix the prefix of the generated file names of models that are not given a name
+	 * @param format the file format to write
+	 * @param gzip whether the files should be compressed with gzip
+	 * @param queueCapacity the maximum number of models that can wait to be exported
+	 */
+	public ModelExporter(File directory, String prefix, Format format, boolean gzip, int queueCapacity)
+	{
+		if (queueCapacity < 1)
+		{
+			throw new IllegalArgumentException("The queue capacity must be at least one");
+		}
+		this.directory = directory;
+		this.prefix = prefix;
+		this.format = format;
+		this.gzip = gzip;
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				r -> {
+					Thread t = new Thread(r, "model-exporter");
+					t.setDaemon(true);
+					return t;
+				},
+				(r, exec) -> dropped.incrementAndGet());
+	}
+
+	/**
+	 * Only export one in every n models that are built. By default every model is exported.
+	 * @param n the sampling rate
+	 */
+	public void setSampleEvery(int n)
+	{
+		if (n < 1)
+		{
+			throw new IllegalArgumentException("The sampling rate must be at least one");
+		}
+		this.sampleEvery = n;
+	}
+
+	/**
+	 * Only export models of which the build took at least the given number of milliseconds.
+	 * By default models are exported regardless of their build time.
+	 * @param millis the minimum build time of exported models
+	 */
+	public void setMinimumBuildTime(long millis)
+	{
+		this.minimumBuildMillis = millis;
+	}
+
+	/**
+	 * Called by a model after it is built. Decides whether the model is sampled and
+	 * if so queues it to be exported. This method never blocks.
+	 * @param instance the instance of the model that was built
+	 * @param capacity the capacity of the model that was built
+	 * @param name the name of the exported file without extension, or null to generate a name
+	 * @param buildMillis the time it took to build the model
+	 */
+	void modelBuilt(DirectedGraph<Item,String> instance, int capacity, String name, long buildMillis)
+	{
+		long count = builds.incrementAndGet();
+		if ((count - 1) % sampleEvery != 0 || buildMillis < minimumBuildMillis)
+		{
+			skipped.incrementAndGet();
+			return;
+		}
+		String base = name != null ? name : prefix + "-" + count;
+		File file = new File(directory, base + "." + format.getExtension() + (gzip ? ".gz" : ""));
+		executor.execute(() -> export(instance, capacity, file));
+	}
+
+	private void export(DirectedGraph<Item,String> instance, int capacity, File file)
+	{
+		try
+		{
+			Model copy = new Model(instance, capacity);
+			try
+			{
+				// CPLEX derives the format and the compression from the file name
+				copy.exportModel(file.getPath());
+				exported.incrementAndGet();
+			}
+			finally
+			{
+				copy.cleanup();
+			}
+		}
+		catch (IloException e)
+		{
+			failed.incrementAndGet();
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Waits until all queued models are exported and stops the background thread.
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all queued models were exported before the timeout
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean shutdown(long timeoutMillis) throws InterruptedException
+	{
+		executor.shutdown();
+		return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * The number of models that were written to a file
+	 * @return the number of exported models
+	 */
+	public long getExported()
+	{
+		return exported.get();
+	}
+
+	/**
+	 * The number of models that were not selected by the sampling rules
+	 * @return the number of skipped models
+	 */
+	public long getSkipped()
+	{
+		return skipped.get();
+	}
+
+	/**
+	 * The number of models that were selected, but not exported because the queue was full
+	 * @return the number of dropped models
+	 */
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * The number of models for which CPLEX failed to write the file
+	 * @return the number of failed exports
+	 */
+	public long getFailed()
+	{
+		return failed.get();
+	}
+}
@@ -0,0 +1,82 @@
+package basic;
+
+/**
+ * An event that reports the progress of CPLEX while a Model is solved. The knapsack
+ * problem is a maximization problem, so the bound is an upper bound on the profit of
+ * any solution, and the incumbent is the profit of the best solution found so far.
+ */
+public class Progress
+{
+	private final double seconds;
+	private final double bound;
+	private final double incumbent;
+	
+	/**
+	 * Creates a progress event
+	 * @param seconds the wall-clock time since the solve started
+	 * @param bound the upper bound proven so far
+	 * @param incumbent the profit of the best solution found so far, or minus infinity if there is none
+	 */
+	Progress(double seconds, double bound, double incumbent)
+	{
+		this.seconds = seconds;
+		this.bound = bound;
+		this.incumbent = incumbent;
+	}
+	
+	/**
+	 * The wall-clock time since the solve started
+	 * @return the time in seconds
+	 */
+	public double getSeconds()
+	{
+		return seconds;
+	}
+	
+	/**
+	 * The upper bound on the profit of any solution proven so far
+	 * @return the upper bound
+	 */
+	public double getBound()
+	{
+		return bound;
+	}
+	
+	/**
+	 * Whether a solution was found so far
+	 * @return true if there is an incumbent
+	 */
+	public boolean hasIncumbent()
+	{
+		return incumbent > Double.NEGATIVE_INFINITY;
+	}
+	
+	/**
+	 * The profit of the best solution found so far
+	 * @return the profit of the incumbent, or minus infinity if no solution was found
+	 */
+	public double getIncumbent()
+	{
+		return incumbent;
+	}
+	
+	/**
+	 * The relative gap between the bound and the incumbent, computed in the same way as CPLEX does
+	 * @return the gap relative to the incumbent, or infinity if there is no incumbent
+	 */
+	public double getGap()
+	{
+		if (!hasIncumbent())
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.abs(bound - incumbent) / (1e-10 + Math.abs(incumbent));
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "Progress [seconds=" + String.format("%.3f", seconds) + ", bound=" + bound + ", incumbent=" + incumbent
+				+ ", gap=" + String.format("%.4f", getGap()) + "]";
+	}
+}
@@ -0,0 +1,240 @@
+package basic;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import concurrent.BoundedSolverPool;
+import concurrent.CoreScheduler;
+import ilog.concert.IloException;
+
+/**
+ * A bounded pool of solver threads that solves knapsack problems asynchronously, so that callers
+ * do not block while Model.solve() runs. The threads, the admission of solves and their cancellation
+ * are handled by a BoundedSolverPool, so a CPLEX environment is never used by more than one thread.
+ * Every solver thread keeps its last model, and reuses it by changing the capacity when the next
+ * problem it solves has the same graph object.
+ *
+ * When all solver slots are busy and the queue is full, a solve is rejected: the returned future
+ * fails immediately with a RejectedExecutionException. Cancelling a returned future cancels the
+ * solve. The future is completed with the list of selected items, which contains the items of the
+ * instance itself rather than copies.
+ */
+public class SolverPool
+{
+	private final BoundedSolverPool<Problem,Model,List<Item>> pool;
+	
+	/**
+	 * Creates a pool of solver threads
+	 * @param slots the number of models that are solved at the same time
+	 * @param queueCapacity the number of models that may wait for a free slot, where 0
+	 *                      means that a solve is rejected whenever all slots are busy
+	 * @param cplexThreads the number of threads CPLEX may use for every model
+	 * @throws IllegalArgumentException if the number of slots or CPLEX threads is not positive,
+	 *                                  or the queue capacity is negative
+	 */
+	public SolverPool(int slots, int queueCapacity, int cplexThreads)
+	{
+		this.pool = new BoundedSolverPool<>(new KnapsackSolver(), slots, queueCapacity, cplexThreads);
+	}
+	
+	/**
+	 * Creates a pool of solver threads of which the solves ask a scheduler for the number of threads
+	 * CPLEX may use, under the kind "knapsack"
+	 * @param slots the number of models that are solved or wait for a grant at the same time
+	 * @param queueCapacity the number of models that may wait for a free slot, where 0
+	 *                      means that a solve is rejected whenever all slots are busy
+	 * @param scheduler the scheduler that divides the cores between this pool and other solves
+	 * @throws IllegalArgumentException if the number of slots is not positive or the queue capacity is negative
+	 */
+	public SolverPool(int slots, int queueCapacity, CoreScheduler scheduler)
+	{
+		this.pool = new BoundedSolverPool<>(new KnapsackSolver(), slots, queueCapacity, scheduler, "knapsack");
+	}
+	
+	/**
+	 * Solves a knapsack problem to optimality on a solver thread
+	 * @param instance a directed graph with items
+	 * @param capacity the capacity of the knapsack
+	 * @return a future that is completed with the selected items, or that has already failed
+	 *         with a RejectedExecutionException if the pool is full or shut down
+	 */
+	public CompletableFuture<List<Item>> solveAsync(DirectedGraph<Item,String> instance, int capacity)
+	{
+		return pool.solveAsync(new Problem(instance, capacity, 0));
+	}
+	
+	/**
+	 * Solves a knapsack problem on a solver thread within a wall-clock time budget, which starts
+	 * when a slot picks up the solve. If CPLEX finds no solution within the budget, the future is
+	 * completed with an empty list, since selecting no items is always feasible.
+	 * @param instance a directed graph with items
+	 * @param capacity the capacity of the knapsack
+	 * @param seconds the time budget in seconds
+	 * @return a future that is completed with the best selection found within the budget, or
+	 *         that has already failed with a RejectedExecutionException if the pool is full or shut down
+	 * @throws IllegalArgumentException if the time budget is not positive
+	 */
+	public CompletableFuture<List<Item>> solveAsync(DirectedGraph<Item,String> instance, int capacity, double seconds)
+	{
+		if (!(seconds > 0))
+		{
+			throw new IllegalArgumentException("The time budget must be positive");
+		}
+		return pool.solveAsync(new Problem(instance, capacity, seconds));
+	}
+	
+	/**
+	 * Stops accepting new solves, waits until the solves that are running or waiting are finished,
+	 * and cleans up the models kept by the solver threads
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all solves were finished before the timeout
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws IloException if a kept model could not be cleaned up
+	 */
+	public boolean shutdown(long timeoutMillis) throws InterruptedException, IloException
+	{
+		return pool.shutdown(timeoutMillis);
+	}
+	
+	/**
+	 * The number of models that are currently being solved
+	 * @return the number of busy slots
+	 */
+	public int getActive()
+	{
+		return pool.getActive();
+	}
+	
+	/**
+	 * The number of models that are waiting for a free slot
+	 * @return the number of queued solves
+	 */
+	public int getQueued()
+	{
+		return pool.getQueued();
+	}
+	
+	/**
+	 * The number of solves that completed with a selection
+	 * @return the number of completed solves
+	 */
+	public long getCompleted()
+	{
+		return pool.getCompleted();
+	}
+	
+	/**
+	 * The number of solves that failed with an exception
+	 * @return the number of failed solves
+	 */
+	public long getFailed()
+	{
+		return pool.getFailed();
+	}
+	
+	/**
+	 * The number of solves that were cancelled by the caller, either while waiting or while running
+	 * @return the number of cancelled solves
+	 */
+	public long getCancelled()
+	{
+		return pool.getCancelled();
+	}
+	
+	/**
+	 * The number of solves that were rejected because all slots were busy and the queue was full
+	 * @return the number of rejected solves
+	 */
+	public long getRejected()
+	{
+		return pool.getRejected();
+	}
+	
+	/**
+	 * The number of solves that changed the capacity of the model kept by their solver thread
+	 * @return the number of solves with a reused model
+	 */
+	public long getReused()
+	{
+		return pool.getReused();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return pool.toString();
+	}
+	
+	/**
+	 * A knapsack problem with an optional time budget, where 0 means no budget
+	 */
+	private static class Problem
+	{
+		private final DirectedGraph<Item,String> instance;
+		private final int capacity;
+		private final double seconds;
+		
+		public Problem(DirectedGraph<Item,String> instance, int capacity, double seconds)
+		{
+			this.instance = instance;
+			this.capacity = capacity;
+			this.seconds = seconds;
+		}
+	}
+	
+	/**
+	 * Builds and solves the knapsack models. A model can be reused for a problem with the same
+	 * graph object, so that the selected items are still the items of the problem.
+	 */
+	private static class KnapsackSolver implements BoundedSolverPool.Solver<Problem,Model,List<Item>>
+	{
+		@Override
+		public Model build(Problem problem) throws IloException
+		{
+			return new Model(problem.instance, problem.capacity);
+		}
+		
+		@Override
+		public boolean reuse(Model model, Problem problem) throws IloException
+		{
+			if (model.getInstance() != problem.instance)
+			{
+				return false;
+			}
+			model.setCapacity(problem.capacity);
+			return true;
+		}
+		
+		@Override
+		public void setThreads(Model model, int threads) throws IloException
+		{
+			model.setThreads(threads);
+		}
+		
+		@Override
+		public List<Item> solve(Model model, Problem problem) throws IloException
+		{
+			if (problem.seconds > 0)
+			{
+				model.solve(problem.seconds);
+			}
+			else
+			{
+				model.solve();
+			}
+			return model.isFeasible() ? model.getSolution() : new ArrayList<>();
+		}
+		
+		@Override
+		public void cancel(Model model)
+		{
+			model.cancel();
+		}
+		
+		@Override
+		public void cleanUp(Model model) throws IloException
+		{
+			model.cleanup();
+		}
+	}
+}
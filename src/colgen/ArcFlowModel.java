@@ -0,0 +1,510 @@
+package colgen;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ilog.concert.IloConversion;
+import ilog.concert.IloException;
+import ilog.concert.IloLPMatrix;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.cplex.IloCplex;
+import ilog.cplex.IloCplex.IntParam;
+
+/**
+ * Implements the arc-flow formulation of the Cutting Stock problem by Valerio de Carvalho,
+ * which solves an instance with a single integer problem instead of column generation.
+ * The nodes of the graph are positions between 0 and the capacity of the base stock. An
+ * item arc from position d to position d+w cuts an item of size w, and a loss arc from a
+ * position to the next position represents waste. Every path from 0 to the capacity is a
+ * cutting pattern, and the objective is to minimize the flow that leaves the source, such
+ * that every size is cut as often as its demand.
+ *
+ * The graph is reduced in two ways before it is given to CPLEX:
+ * <ul>
+ *   <li>Symmetry reduction: the items on a path are cut in order of decreasing size, and
+ *       an item is cut at most as often in a row as its demand. Item arcs only start in
+ *       positions that can be reached this way.</li>
+ *   <li>Compression: every position is moved to the highest position from which all items
+ *       on its outgoing paths still fit, and positions that end up at the same position are
+ *       merged. This removes the nodes that are dominated by a later node.</li>
+ * </ul>
+ * The graph is built in primitive arrays, and the model is loaded into CPLEX in one go with
+ * an LP matrix. The flow of an integer solution is decomposed into paths, which gives the
+ * patterns of a regular Solution.
+ */
+public class ArcFlowModel
+{
+	private static final double EPSILON = 1e-6;
+	// The limits of the encoding of an arc in arcKey(): 23 bits for the tail, so that the key is
+	// never negative, 24 bits for the head and 16 bits for the index of the size plus one
+	private static final int MAX_CAPACITY = (1 << 23) - 1;
+	private static final int MAX_SIZES = (1 << 16) - 1;
+	
+	private final Instance instance;
+	private final IloCplex model;
+	
+	// The positions of the nodes in increasing order. Node 0 is the source,
+	// and the last node is the sink at the capacity of the base stock.
+	private int [] nodes;
+	// The tail and head node of every arc, and the index of the size cut by the arc,
+	// which is -1 for loss arcs. The arcs are sorted by their tail.
+	private int [] tails;
+	private int [] heads;
+	private int [] items;
+	private int arcs;
+	// The index of the first arc of every node, with an extra entry for the end
+	private int [] firstArc;
+	
+	// One variable per arc, and a last variable for the flow from the sink back to the source
+	private IloNumVar [] flows;
+	
+	private double lowerbound = 0;
+	private Solution solution;
+	
+	/**
+	 * Builds the arc-flow graph for an instance and loads the model into CPLEX
+	 * @param instance the instance to solve
+	 * @throws IllegalArgumentException if an item does not fit in a unit of base stock, if the
+	 *                                  instance has several stock lengths or a stock cost other than 1,
+	 *                                  or if the capacity or the number of sizes is too large for the graph
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public ArcFlowModel(Instance instance) throws IllegalArgumentException, IloException
+	{
+		if (!instance.hasUnitStock())
+		{
+			throw new IllegalArgumentException("The arc-flow model only supports a single stock length with a cost of 1");
+		}
+		int n = instance.getNumberOfSizes();
+		if (n > 0 && instance.getSize(n-1) > instance.getCapacity())
+		{
+			throw new IllegalArgumentException("Size "+instance.getSize(n-1)+" does not fit in the base stock");
+		}
+		if (instance.getCapacity() > MAX_CAPACITY)
+		{
+			throw new IllegalArgumentException("The arc-flow model supports a capacity of at most "+MAX_CAPACITY+", not "+instance.getCapacity());
+		}
+		if (n > MAX_SIZES)
+		{
+			throw new IllegalArgumentException("The arc-flow model supports at most "+MAX_SIZES+" sizes, not "+n);
+		}
+		this.instance = instance;
+		buildGraph();
+		this.model = new IloCplex();
+		buildModel();
+		model.setOut(null);
+	}
+	
+	/**
+	 * Builds the reduced graph. First the item arcs are generated position by position
+	 * with symmetry reduction, then the positions are compressed and the loss arcs are added.
+	 */
+	private void buildGraph()
+	{
+		int capacity = instance.getCapacity();
+		int n = instance.getNumberOfSizes();
+		
+		// The item arcs of the uncompressed graph, stored as tail positions per size
+		int [][] arcTails = new int[n][];
+		int [] arcCounts = new int[n];
+		// For every position the number of copies of the current size needed to reach it,
+		// or -1 if the position can not be reached
+		int [] copies = new int[capacity+1];
+		boolean [] reachable = new boolean[capacity+1];
+		reachable[0] = true;
+		for (int i=n-1; i >= 0; i--)
+		{
+			int size = instance.getSize(i);
+			int demand = instance.getDemand(i);
+			int [] tailsOfSize = new int[16];
+			int count = 0;
+			for (int d=0; d <= capacity; d++)
+			{
+				copies[d] = reachable[d] ? 0 : -1;
+			}
+			for (int d=0; d + size <= capacity; d++)
+			{
+				if (copies[d] >= 0 && copies[d] < demand)
+				{
+					if (count == tailsOfSize.length)
+					{
+						tailsOfSize = Arrays.copyOf(tailsOfSize, 2*count);
+					}
+					tailsOfSize[count++] = d;
+					int head = d + size;
+					if (copies[head] < 0 || copies[head] > copies[d] + 1)
+					{
+						copies[head] = copies[d] + 1;
+					}
+				}
+			}
+			for (int d=0; d <= capacity; d++)
+			{
+				reachable[d] |= copies[d] >= 0;
+			}
+			arcTails[i] = tailsOfSize;
+			arcCounts[i] = count;
+		}
+		
+		// Group the item arcs by their tail position
+		int [] arcsPerTail = new int[capacity+2];
+		for (int i=0; i < n; i++)
+		{
+			for (int a=0; a < arcCounts[i]; a++)
+			{
+				arcsPerTail[arcTails[i][a]+1]++;
+			}
+		}
+		for (int d=0; d <= capacity; d++)
+		{
+			arcsPerTail[d+1] += arcsPerTail[d];
+		}
+		int total = arcsPerTail[capacity+1];
+		int [] arcSize = new int[total];
+		int [] arcItem = new int[total];
+		int [] fill = Arrays.copyOf(arcsPerTail, capacity+1);
+		for (int i=0; i < n; i++)
+		{
+			for (int a=0; a < arcCounts[i]; a++)
+			{
+				int d = arcTails[i][a];
+				arcSize[fill[d]] = instance.getSize(i);
+				arcItem[fill[d]] = i;
+				fill[d]++;
+			}
+		}
+		
+		// Compression: a position moves up as far as all its outgoing item arcs allow.
+		// The heads of the arcs of a position are higher, so they are labeled first.
+		// Positions without item arcs only lead to the sink, so they merge with it.
+		int [] label = new int[capacity+1];
+		for (int d=capacity; d >= 0; d--)
+		{
+			int result = capacity;
+			for (int a=arcsPerTail[d]; a < arcsPerTail[d+1]; a++)
+			{
+				result = Math.min(result, label[d + arcSize[a]] - arcSize[a]);
+			}
+			label[d] = result;
+		}
+		
+		// The distinct labels are the nodes of the compressed graph
+		boolean [] used = new boolean[capacity+1];
+		used[label[0]] = true;
+		used[capacity] = true;
+		for (int d=0; d <= capacity; d++)
+		{
+			for (int a=arcsPerTail[d]; a < arcsPerTail[d+1]; a++)
+			{
+				used[label[d]] = true;
+				used[label[d + arcSize[a]]] = true;
+			}
+		}
+		int [] nodeOf = new int[capacity+1];
+		nodes = new int[capacity+1];
+		int nodeCount = 0;
+		for (int d=label[0]; d <= capacity; d++)
+		{
+			if (used[d])
+			{
+				nodeOf[d] = nodeCount;
+				nodes[nodeCount++] = d;
+			}
+		}
+		nodes = Arrays.copyOf(nodes, nodeCount);
+		
+		// Merged item arcs are removed by sorting a key that identifies the arc
+		long [] keys = new long[total + nodeCount];
+		int k = 0;
+		for (int d=0; d <= capacity; d++)
+		{
+			for (int a=arcsPerTail[d]; a < arcsPerTail[d+1]; a++)
+			{
+				int tail = nodeOf[label[d]];
+				int head = nodeOf[label[d + arcSize[a]]];
+				keys[k++] = arcKey(tail, head, arcItem[a]);
+			}
+		}
+		for (int v=0; v+1 < nodeCount; v++)
+		{
+			keys[k++] = arcKey(v, v+1, -1);
+		}
+		keys = Arrays.copyOf(keys, k);
+		Arrays.sort(keys);
+		tails = new int[k];
+		heads = new int[k];
+		items = new int[k];
+		firstArc = new int[nodeCount+1];
+		arcs = 0;
+		for (int j=0; j < k; j++)
+		{
+			if (j > 0 && keys[j] == keys[j-1])
+			{
+				continue;
+			}
+			tails[arcs] = (int) (keys[j] >>> 40);
+			heads[arcs] = (int) (keys[j] >>> 16) & 0xFFFFFF;
+			items[arcs] = (int) (keys[j] & 0xFFFF) - 1;
+			firstArc[tails[arcs]+1]++;
+			arcs++;
+		}
+		for (int v=0; v < nodeCount; v++)
+		{
+			firstArc[v+1] += firstArc[v];
+		}
+	}
+	
+	/**
+	 * Encodes an arc in a single number, such that sorting the numbers sorts the arcs by tail.
+	 * The constructor checks that the nodes and sizes fit in the bits of the encoding.
+	 */
+	private static long arcKey(int tail, int head, int item)
+	{
+		return ((long) tail << 40) | ((long) head << 16) | (item + 1);
+	}
+	
+	/**
+	 * Loads the model into CPLEX. The flow conservation constraints and the demand
+	 * constraints are built as sparse rows and added to an LP matrix at once.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private void buildModel() throws IloException
+	{
+		int n = instance.getNumberOfSizes();
+		int nodeCount = nodes.length;
+		int feedback = arcs;
+		flows = model.numVarArray(arcs+1, 0, Double.POSITIVE_INFINITY);
+		
+		// Count the nonzeros of every row: one row per node, followed by one row per size
+		int rows = nodeCount + n;
+		int [] length = new int[rows];
+		for (int a=0; a < arcs; a++)
+		{
+			length[tails[a]]++;
+			length[heads[a]]++;
+			if (items[a] >= 0)
+			{
+				length[nodeCount + items[a]]++;
+			}
+		}
+		length[0]++;
+		length[nodeCount-1]++;
+		
+		int [][] ind = new int[rows][];
+		double [][] val = new double[rows][];
+		double [] lb = new double[rows];
+		double [] ub = new double[rows];
+		for (int r=0; r < rows; r++)
+		{
+			ind[r] = new int[length[r]];
+			val[r] = new double[length[r]];
+			length[r] = 0;
+		}
+		for (int a=0; a <= arcs; a++)
+		{
+			// The feedback arc goes from the sink back to the source
+			int tail = a == feedback ? nodeCount-1 : tails[a];
+			int head = a == feedback ? 0 : heads[a];
+			addEntry(ind, val, length, tail, a, -1);
+			addEntry(ind, val, length, head, a, 1);
+			if (a != feedback && items[a] >= 0)
+			{
+				addEntry(ind, val, length, nodeCount + items[a], a, 1);
+			}
+		}
+		for (int i=0; i < n; i++)
+		{
+			lb[nodeCount + i] = instance.getDemand(i);
+			ub[nodeCount + i] = Double.POSITIVE_INFINITY;
+		}
+		
+		IloLPMatrix matrix = model.addLPMatrix();
+		matrix.addCols(flows);
+		matrix.addRows(lb, ub, ind, val);
+		
+		IloLinearNumExpr objective = model.linearNumExpr();
+		objective.addTerm(1, flows[feedback]);
+		model.addMinimize(objective);
+	}
+	
+	private static void addEntry(int [][] ind, double [][] val, int [] length, int row, int column, double value)
+	{
+		ind[row][length[row]] = column;
+		val[row][length[row]] = value;
+		length[row]++;
+	}
+	
+	/**
+	 * Solves the LP-relaxation of the arc-flow model, which gives the same bound as the
+	 * LP-relaxation of the master problem, and stores it rounded up as a lower bound.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void solveRelaxation() throws IloException
+	{
+		model.solve();
+		lowerbound = Math.max(lowerbound, Math.ceil(model.getObjValue() - EPSILON));
+	}
+	
+	/**
+	 * Solves the arc-flow model as an integer problem, after solving the LP-relaxation to
+	 * obtain a lower bound, and decomposes the flow into a solution. The combinatorial lower
+	 * bounds are used as well, and if a packing heuristic reaches them, no model is solved.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void solveInteger() throws IloException
+	{
+		lowerbound = Math.max(lowerbound, LowerBounds.best(instance));
+		Solution start = PackingHeuristics.best(instance);
+		if (start.getStockNeeded() <= lowerbound)
+		{
+			solution = start;
+			return;
+		}
+		solveRelaxation();
+		if (start.getStockNeeded() <= lowerbound)
+		{
+			solution = start;
+			return;
+		}
+		
+		IloConversion conversion = model.conversion(flows, IloNumVarType.Int);
+		model.add(conversion);
+		if (model.solve())
+		{
+			solution = decompose(model.getValues(flows));
+			if (start.getStockNeeded() < solution.getStockNeeded())
+			{
+				solution = start;
+			}
+		}
+		else
+		{
+			solution = start;
+		}
+		model.remove(conversion);
+	}
+	
+	/**
+	 * Decomposes an integer flow into paths from the source to the sink. Every path is a
+	 * pattern, and it is used as often as the smallest flow on its arcs. Since the graph
+	 * is acyclic, following any arc with remaining flow always reaches the sink.
+	 * @param values the flow on every arc
+	 * @return the solution given by the paths
+	 */
+	private Solution decompose(double [] values)
+	{
+		int n = instance.getNumberOfSizes();
+		int [] flow = new int[arcs];
+		for (int a=0; a < arcs; a++)
+		{
+			flow[a] = (int) Math.round(values[a]);
+		}
+		int sink = nodes.length - 1;
+		int [] path = new int[nodes.length];
+		int [] counts = new int[n];
+		Map<Pattern,Integer> result = new LinkedHashMap<>();
+		while (true)
+		{
+			int length = 0;
+			int copies = Integer.MAX_VALUE;
+			int v = 0;
+			while (v != sink)
+			{
+				int next = -1;
+				for (int a=firstArc[v]; a < firstArc[v+1]; a++)
+				{
+					if (flow[a] > 0)
+					{
+						next = a;
+						break;
+					}
+				}
+				if (next < 0)
+				{
+					break;
+				}
+				path[length++] = next;
+				copies = Math.min(copies, flow[next]);
+				v = heads[next];
+			}
+			if (v != sink || length == 0)
+			{
+				break;
+			}
+			Arrays.fill(counts, 0);
+			for (int j=0; j < length; j++)
+			{
+				flow[path[j]] -= copies;
+				if (items[path[j]] >= 0)
+				{
+					counts[items[path[j]]]++;
+				}
+			}
+			Pattern pattern = new Pattern(instance, counts);
+			if (pattern.getNumberOfSizes() > 0)
+			{
+				result.merge(pattern, copies, Integer::sum);
+			}
+		}
+		return new Solution(instance, result);
+	}
+	
+	/**
+	 * Sets the number of threads CPLEX may use to solve the model
+	 * @param threads the maximum number of threads, where 0 lets CPLEX decide
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void setThreads(int threads) throws IloException
+	{
+		model.setParam(IntParam.Threads, threads);
+	}
+	
+	/**
+	 * The number of nodes of the reduced graph
+	 * @return the number of nodes
+	 */
+	public int getNumberOfNodes()
+	{
+		return nodes.length;
+	}
+	
+	/**
+	 * The number of arcs of the reduced graph, including loss arcs
+	 * @return the number of arcs
+	 */
+	public int getNumberOfArcs()
+	{
+		return arcs;
+	}
+	
+	/**
+	 * Clears the CPLEX model from memory
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void cleanUp() throws IloException
+	{
+		model.clearModel();
+		model.end();
+	}
+	
+	/**
+	 * Retrieve the solution found by the most recent call to solveInteger()
+	 * @return the best solution found
+	 */
+	public Solution getSolution()
+	{
+		return solution;
+	}
+	
+	/**
+	 * Gives the best lower bound found, which is the LP-relaxation rounded up or a
+	 * combinatorial lower bound
+	 * @return a lower bound on the best possible solution to the problem
+	 */
+	public double getLowerBound()
+	{
+		return lowerbound;
+	}
+}
@@ -0,0 +1,102 @@
+package colgen;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import ilog.concert.IloException;
+
+/**
+ * The measurements that are shared by the benchmarks of the column generation model. Every
+ * feature has its own main class with a few related benchmarks: PricingBenchmark,
+ * ConvergenceBenchmark, WarmStartBenchmark, IntegerBenchmark and MemoryBenchmark.
+ */
+class Benchmark
+{
+	private static long sink;
+	
+	private Benchmark()
+	{
+	}
+	
+	/**
+	 * Runs a task and measures its running time and the number of bytes allocated
+	 * by the current thread, if the JVM supports measuring this
+	 * @return an array with the time in nanoseconds and the number of bytes
+	 */
+	static long [] measure(LongSupplier task)
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = null;
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			allocations = (com.sun.management.ThreadMXBean) bean;
+		}
+		long thread = Thread.currentThread().getId();
+		long bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) : 0;
+		long start = System.nanoTime();
+		// Store the checksum, so the JIT compiler can not remove the work
+		sink += task.getAsLong();
+		long time = System.nanoTime() - start;
+		bytes = allocations != null ? allocations.getThreadAllocatedBytes(thread) - bytes : -1;
+		return new long [] {time, bytes};
+	}
+	
+	static MasterModel dpModel(Instance instance, int k, boolean adaptive) throws IloException
+	{
+		MasterModel mm = new MasterModel(instance, new DynamicProgrammingPricing(instance));
+		mm.setColumnsPerIteration(k, adaptive);
+		return mm;
+	}
+	
+	static String relative(Result result, Result baseline)
+	{
+		return String.format(" (%.2fx time, %.2fx iterations)",
+				result.nanos / (double) baseline.nanos,
+				result.iterations / (double) baseline.iterations);
+	}
+	
+	/**
+	 * Solves the LP-relaxation of every instance, and measures the total time spent
+	 * in solveRelaxation(). Building and cleaning up the models is not measured.
+	 * @param instances the instances to solve
+	 * @param factory creates the master model for an instance
+	 * @return the total time, the total number of iterations and the sum of the LP-relaxation values
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	static Result run(List<Instance> instances, ModelFactory factory) throws IloException
+	{
+		Result result = new Result();
+		for (Instance instance : instances)
+		{
+			MasterModel mm = factory.create(instance);
+			long start = System.nanoTime();
+			mm.solveRelaxation();
+			result.nanos += System.nanoTime() - start;
+			result.objective += mm.getObjective();
+			result.iterations += mm.getIterations();
+			result.lowerBounds += mm.getLowerBound();
+			mm.cleanUp();
+		}
+		return result;
+	}
+	
+	interface ModelFactory
+	{
+		public MasterModel create(Instance instance) throws IloException;
+	}
+	
+	static class Result
+	{
+		long nanos;
+		double objective;
+		long iterations;
+		double lowerBounds;
+		
+		@Override
+		public String toString()
+		{
+			return "time "+(nanos / 1_000_000)+"ms, "+iterations+" iterations, sum of LP values "+String.format("%.4f", objective);
+		}
+	}
+}
@@ -0,0 +1,692 @@
+package colgen;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ilog.concert.IloException;
+
+/**
+ * A parallel branch-and-price engine that solves the Cutting Stock problem to optimality,
+ * or until a time budget runs out, in which case it provides the best solution found and
+ * a lower bound. It is built on top of the MasterModel and the DynamicProgrammingPricing.
+ *
+ * Every node of the search tree imposes lower and upper bounds on the number of times some
+ * patterns are used. The LP-relaxation of a node is solved with column generation, and a
+ * pattern with a fractional value v is used for branching: one child allows at most floor(v)
+ * copies of the pattern, and the other child requires at least ceil(v) copies. The pricing
+ * problem can handle these branching rules without changes, as it only has to skip the
+ * patterns with an upper bound, which is done by requesting the k best patterns instead of
+ * only the best one. Columns generated in one node remain part of the LP of the worker, and
+ * are shared with the other workers, so they are reused in all later nodes.
+ *
+ * The nodes are processed by a number of workers in parallel, where each worker owns its
+ * own LP. Open nodes are stored in a shared queue that is ordered by the lower bound of the
+ * nodes (best-bound node selection). The capacity of this queue is bounded: if it is full,
+ * a worker keeps the new nodes in its own deque, and processes them depth-first when the
+ * shared queue is empty. Workers that run out of work steal the oldest node from the deque
+ * of another worker.
+ *
+ * The total number of open nodes in the queue and the deques is bounded as well. When this
+ * limit is reached, a worker dives: it processes a new child itself, without storing it. If
+ * a further child does not fit, the open node with the worst bound is dropped, which may be
+ * the child itself. The bounds of dropped nodes are kept, so the lower bound stays valid,
+ * but the search can then only prove optimality if these bounds are not better than the
+ * best solution found.
+ *
+ * The initial solution is found by the packing heuristics, and in every node the LP-relaxation
+ * is rounded down and completed by the packing heuristics to find better solutions.
+ */
+public class BranchAndPrice
+{
+	private static final double EPSILON = 1e-6;
+	
+	private final Instance instance;
+	private final int workers;
+	private final int maxOpenNodes;
+	private final int maxNodes;
+	private final double artificialCost;
+	
+	// The open nodes and the state of the search, guarded by the monitor
+	private final Object monitor = new Object();
+	private final PriorityQueue<Node> open;
+	private final List<Deque<Node>> deques;
+	// The node every worker dives into next, which is not stored in the queue or a deque
+	private final Node [] dives;
+	private int pending;
+	private long deadline;
+	private boolean failed;
+	private Solution incumbent;
+	private volatile int upperBound;
+	private int unresolvedBound = Integer.MAX_VALUE;
+	
+	// The columns found by all workers, guarded by the list itself
+	private final List<Pattern> columns = new ArrayList<>();
+	private final Set<Pattern> known = new HashSet<>();
+	
+	private int nodes;
+	private int pruned;
+	private int steals;
+	private int dived;
+	private int dropped;
+	private double lowerBound;
+	private boolean optimal;
+	
+	/**
+	 * Creates a branch-and-price engine for an instance, that stores at most 16 times
+	 * the capacity of the shared queue in open nodes
+	 * @param instance the instance to solve
+	 * @param workers the number of workers that process nodes in parallel
+	 * @param maxOpenNodes the capacity of the shared queue with open nodes
+	 * @throws IllegalArgumentException if the instance has several stock lengths or a stock cost other than 1
+	 */
+	public BranchAndPrice(Instance instance, int workers, int maxOpenNodes)
+	{
+		this(instance, workers, maxOpenNodes, 16 * maxOpenNodes);
+	}
+	
+	/**
+	 * Creates a branch-and-price engine for an instance
+	 * @param instance the instance to solve
+	 * @param workers the number of workers that process nodes in parallel
+	 * @param maxOpenNodes the capacity of the shared queue with open nodes
+	 * @param maxNodes the maximum number of open nodes in the shared queue and the deques together
+	 * @throws IllegalArgumentException if the instance has several stock lengths or a stock cost other than 1,
+	 *                                  or if maxNodes is smaller than maxOpenNodes
+	 */
+	public BranchAndPrice(Instance instance, int workers, int maxOpenNodes, int maxNodes)
+	{
+		if (workers < 1 || maxOpenNodes < 1)
+		{
+			throw new IllegalArgumentException("At least one worker and one open node are required");
+		}
+		if (maxNodes < maxOpenNodes)
+		{
+			throw new IllegalArgumentException("The limit on all open nodes can not be smaller than the capacity of the shared queue");
+		}
+		if (!instance.hasUnitStock())
+		{
+			throw new IllegalArgumentException("Branch-and-price only supports a single stock length with a cost of 1");
+		}
+		this.instance = instance;
+		this.workers = workers;
+		this.maxOpenNodes = maxOpenNodes;
+		this.maxNodes = maxNodes;
+		this.open = new PriorityQueue<>(Comparator.comparingInt((Node n) -> n.bound)
+		                                          .thenComparing(n -> -n.depth));
+		this.deques = new ArrayList<>();
+		for (int i=0; i < workers; i++)
+		{
+			deques.add(new ArrayDeque<>());
+		}
+		this.dives = new Node[workers];
+		// An artificial column is more expensive than cutting every item from its own unit of stock
+		int total = 0;
+		for (int i=0; i < instance.getNumberOfSizes(); i++)
+		{
+			total += instance.getDemand(i);
+		}
+		this.artificialCost = total + 1;
+	}
+	
+	/**
+	 * Solves the instance with branch-and-price. This method should only be called once.
+	 * The time budget is checked before a node is processed, so the search may take
+	 * slightly longer than the budget.
+	 * @param timeBudget the maximum time in milliseconds
+	 * @return the best solution found
+	 * @throws IloException if something goes wrong with CPLEX
+	 * @throws InterruptedException if the thread is interrupted while waiting for the workers
+	 */
+	public Solution solve(long timeBudget) throws IloException, InterruptedException
+	{
+		deadline = System.currentTimeMillis() + timeBudget;
+		incumbent = PackingHeuristics.best(instance);
+		upperBound = incumbent.getStockNeeded();
+		open.add(new Node(Collections.emptyMap(), LowerBounds.best(instance), 0));
+		pending = 1;
+		
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		List<Future<Void>> futures = new ArrayList<>();
+		for (int i=0; i < workers; i++)
+		{
+			int id = i;
+			futures.add(executor.submit(() -> {
+				work(id);
+				return null;
+			}));
+		}
+		executor.shutdown();
+		for (Future<Void> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IloException)
+				{
+					throw (IloException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		
+		// The lower bound is the smallest bound of the nodes that were not processed
+		int bound = Math.min(upperBound, unresolvedBound);
+		for (Node node : open)
+		{
+			bound = Math.min(bound, node.bound);
+		}
+		for (Deque<Node> deque : deques)
+		{
+			for (Node node : deque)
+			{
+				bound = Math.min(bound, node.bound);
+			}
+		}
+		for (Node node : dives)
+		{
+			if (node != null)
+			{
+				bound = Math.min(bound, node.bound);
+			}
+		}
+		lowerBound = bound;
+		optimal = bound >= upperBound;
+		return incumbent;
+	}
+	
+	/**
+	 * The main loop of a worker, which processes nodes with its own LP until no nodes
+	 * remain or the time budget runs out
+	 * @param id the index of the worker
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private void work(int id) throws IloException
+	{
+		MasterModel mm = null;
+		boolean success = false;
+		try
+		{
+			mm = new MasterModel(instance, new DynamicProgrammingPricing(instance));
+			mm.setThreads(1);
+			mm.addArtificialColumns(artificialCost);
+			// Without diving, the heuristic only rounds down and completes with packing heuristics
+			PrimalHeuristic rounding = new PrimalHeuristic(0, 1);
+			int synced = 0;
+			Node node;
+			while ((node = nextNode(id)) != null)
+			{
+				boolean processed = false;
+				try
+				{
+					synced = syncColumns(mm, synced);
+					processed = process(id, mm, rounding, node);
+				}
+				finally
+				{
+					finished(processed);
+				}
+			}
+			success = true;
+		}
+		finally
+		{
+			if (!success)
+			{
+				synchronized (monitor)
+				{
+					failed = true;
+					monitor.notifyAll();
+				}
+			}
+			if (mm != null)
+			{
+				mm.cleanUp();
+			}
+		}
+	}
+	
+	/**
+	 * Takes the next node for a worker. A node the worker dives into is taken first. Otherwise,
+	 * nodes in the deque of the worker are moved to the shared queue while it has room. The node
+	 * with the best bound in the shared queue is taken first, then the most recent node of the
+	 * deque of the worker, and finally the oldest node of the deque of another worker. Nodes
+	 * that can not improve the best solution found are pruned.
+	 * @param id the index of the worker
+	 * @return the next node, or null if the search is done or the time budget ran out
+	 */
+	private Node nextNode(int id)
+	{
+		synchronized (monitor)
+		{
+			Deque<Node> own = deques.get(id);
+			while (true)
+			{
+				long remaining = deadline - System.currentTimeMillis();
+				if (pending == 0 || failed || remaining <= 0)
+				{
+					monitor.notifyAll();
+					return null;
+				}
+				Node node = dives[id];
+				dives[id] = null;
+				while (open.size() < maxOpenNodes && !own.isEmpty())
+				{
+					open.add(own.pollFirst());
+				}
+				if (node == null)
+				{
+					node = open.poll();
+				}
+				if (node == null)
+				{
+					node = own.pollLast();
+				}
+				if (node == null)
+				{
+					node = steal(id);
+				}
+				if (node == null)
+				{
+					try
+					{
+						monitor.wait(Math.min(remaining, 100));
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						return null;
+					}
+				}
+				else if (node.bound >= upperBound)
+				{
+					pending--;
+					pruned++;
+				}
+				else
+				{
+					return node;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Takes the oldest node from the worker with the most nodes in its deque. Should
+	 * only be called while holding the monitor.
+	 */
+	private Node steal(int id)
+	{
+		Deque<Node> victim = null;
+		for (int i=0; i < deques.size(); i++)
+		{
+			if (i != id && !deques.get(i).isEmpty() && (victim == null || deques.get(i).size() > victim.size()))
+			{
+				victim = deques.get(i);
+			}
+		}
+		if (victim == null)
+		{
+			return null;
+		}
+		steals++;
+		return victim.pollFirst();
+	}
+	
+	/**
+	 * Reports that a worker is done with a node, after its children were added
+	 * @param processed whether the LP-relaxation of the node was solved
+	 */
+	private void finished(boolean processed)
+	{
+		synchronized (monitor)
+		{
+			pending--;
+			if (processed)
+			{
+				nodes++;
+			}
+			else
+			{
+				pruned++;
+			}
+			monitor.notifyAll();
+		}
+	}
+	
+	/**
+	 * Solves the LP-relaxation of a node, tries to find a better solution, and
+	 * branches if the node can still contain a better solution
+	 * @return true if the LP-relaxation was solved, false if the node was pruned before
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private boolean process(int id, MasterModel mm, PrimalHeuristic rounding, Node node) throws IloException
+	{
+		if (node.bound >= upperBound)
+		{
+			return false;
+		}
+		mm.setBranchingBounds(node.bounds);
+		mm.solveRelaxation();
+		publishColumns(mm);
+		int bound = Math.max(node.bound, (int) Math.ceil(mm.getObjective() - EPSILON));
+		if (bound >= upperBound)
+		{
+			return true;
+		}
+		
+		// If the LP-relaxation is integer, rounding finds the corresponding solution
+		Map<Pattern,Double> values = mm.getRelaxationValues();
+		improve(rounding.solve(instance, values, bound, 1, () -> false));
+		if (bound >= upperBound)
+		{
+			return true;
+		}
+		
+		// Branch on the pattern with the value closest to one half
+		Pattern branch = null;
+		double distance = 0.5 - EPSILON;
+		for (Entry<Pattern,Double> e : values.entrySet())
+		{
+			double value = e.getValue();
+			double d = Math.abs(value - Math.floor(value) - 0.5);
+			if (d < distance)
+			{
+				branch = e.getKey();
+				distance = d;
+			}
+		}
+		if (branch == null)
+		{
+			// The patterns are integer but the artificial columns are used, which
+			// can not be resolved by branching on patterns
+			synchronized (monitor)
+			{
+				unresolvedBound = Math.min(unresolvedBound, bound);
+			}
+			return true;
+		}
+		double value = values.get(branch);
+		int [] current = node.bounds.getOrDefault(branch, new int [] {0, Integer.MAX_VALUE});
+		Map<Pattern,int []> down = new HashMap<>(node.bounds);
+		down.put(branch, new int [] {current[0], (int) Math.floor(value)});
+		Map<Pattern,int []> up = new HashMap<>(node.bounds);
+		up.put(branch, new int [] {(int) Math.ceil(value), current[1]});
+		push(id, new Node(down, bound, node.depth+1), new Node(up, bound, node.depth+1));
+		return true;
+	}
+	
+	/**
+	 * Adds new nodes to the shared queue, or to the deque of the worker if the queue is full.
+	 * If the limit on all open nodes is reached, the worker dives into a child, and a child
+	 * that does not fit either replaces the open node with the worst bound or is dropped.
+	 */
+	private void push(int id, Node... children)
+	{
+		synchronized (monitor)
+		{
+			for (Node child : children)
+			{
+				pending++;
+				if (open.size() < maxOpenNodes)
+				{
+					open.add(child);
+				}
+				else if (storedNodes() < maxNodes)
+				{
+					deques.get(id).addLast(child);
+				}
+				else if (dives[id] == null)
+				{
+					dives[id] = child;
+					dived++;
+				}
+				else
+				{
+					// Dive into the better child, and store or drop the other one
+					Node other = child;
+					if (child.bound < dives[id].bound)
+					{
+						other = dives[id];
+						dives[id] = child;
+					}
+					drop(replaceWorst(id, other));
+				}
+			}
+			monitor.notifyAll();
+		}
+	}
+	
+	/**
+	 * The number of open nodes in the shared queue and the deques. Should only be
+	 * called while holding the monitor.
+	 */
+	private int storedNodes()
+	{
+		int stored = open.size();
+		for (Deque<Node> deque : deques)
+		{
+			stored += deque.size();
+		}
+		return stored;
+	}
+	
+	/**
+	 * Stores a node in the deque of the worker in place of the stored node with the worst bound,
+	 * if that bound is worse than the bound of the node. Should only be called while holding the monitor.
+	 * @return the node that is no longer stored, which is the given node if it was not stored
+	 */
+	private Node replaceWorst(int id, Node node)
+	{
+		Node worst = node;
+		Deque<Node> container = null;
+		for (Node n : open)
+		{
+			if (n.bound > worst.bound)
+			{
+				worst = n;
+				container = null;
+			}
+		}
+		for (Deque<Node> deque : deques)
+		{
+			for (Node n : deque)
+			{
+				if (n.bound > worst.bound)
+				{
+					worst = n;
+					container = deque;
+				}
+			}
+		}
+		if (worst != node)
+		{
+			if (container == null)
+			{
+				open.remove(worst);
+			}
+			else
+			{
+				container.remove(worst);
+			}
+			deques.get(id).addLast(node);
+		}
+		return worst;
+	}
+	
+	/**
+	 * Removes a node from the search, where its bound is kept as a bound of the unresolved part
+	 * of the search if it could still contain a better solution. Should only be called while
+	 * holding the monitor.
+	 */
+	private void drop(Node node)
+	{
+		pending--;
+		if (node.bound >= upperBound)
+		{
+			pruned++;
+		}
+		else
+		{
+			dropped++;
+			unresolvedBound = Math.min(unresolvedBound, node.bound);
+		}
+	}
+	
+	/**
+	 * Replaces the best solution if the given solution needs fewer units of stock
+	 */
+	private void improve(Solution solution)
+	{
+		synchronized (monitor)
+		{
+			if (solution.getStockNeeded() < upperBound)
+			{
+				incumbent = solution;
+				upperBound = solution.getStockNeeded();
+			}
+		}
+	}
+	
+	/**
+	 * Adds the columns found by other workers to the LP of a worker
+	 * @param mm the LP of the worker
+	 * @param synced the number of shared columns that were added before
+	 * @return the number of shared columns that are added now
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private int syncColumns(MasterModel mm, int synced) throws IloException
+	{
+		List<Pattern> added;
+		synchronized (columns)
+		{
+			added = new ArrayList<>(columns.subList(synced, columns.size()));
+		}
+		mm.addColumns(added);
+		return synced + added.size();
+	}
+	
+	/**
+	 * Shares the columns of the LP of a worker that are not known to the other workers yet
+	 */
+	private void publishColumns(MasterModel mm)
+	{
+		synchronized (columns)
+		{
+			for (Pattern pattern : mm.getPatterns())
+			{
+				if (known.add(pattern))
+				{
+					columns.add(pattern);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The best solution found by the most recent call to solve()
+	 * @return the best solution found
+	 */
+	public Solution getSolution()
+	{
+		return incumbent;
+	}
+	
+	/**
+	 * The lower bound proven by the search. If the search was not completed within the
+	 * time budget, this is the smallest bound of the nodes that were not processed.
+	 * @return a lower bound on the number of units of stock needed
+	 */
+	public double getLowerBound()
+	{
+		return lowerBound;
+	}
+	
+	/**
+	 * Whether the best solution found is proven to be optimal
+	 * @return true if the lower bound is equal to the number of units of stock of the best solution
+	 */
+	public boolean isOptimal()
+	{
+		return optimal;
+	}
+	
+	/**
+	 * The number of nodes for which the LP-relaxation was solved
+	 * @return the number of processed nodes
+	 */
+	public int getNodes()
+	{
+		return nodes;
+	}
+	
+	/**
+	 * The number of nodes that were pruned because their bound was not better than the best solution
+	 * @return the number of pruned nodes
+	 */
+	public int getPruned()
+	{
+		return pruned;
+	}
+	
+	/**
+	 * The number of nodes that were taken from the deque of another worker
+	 * @return the number of stolen nodes
+	 */
+	public int getSteals()
+	{
+		return steals;
+	}
+	
+	/**
+	 * The number of nodes a worker processed without storing them, because the limit on
+	 * all open nodes was reached
+	 * @return the number of dives
+	 */
+	public int getDives()
+	{
+		return dived;
+	}
+	
+	/**
+	 * The number of nodes that were dropped while they could still contain a better solution,
+	 * because the limit on all open nodes was reached. If this is positive, optimality can only
+	 * be proven when the best solution found reaches the bounds of these nodes.
+	 * @return the number of dropped nodes
+	 */
+	public int getDropped()
+	{
+		return dropped;
+	}
+	
+	private static class Node
+	{
+		// For each bounded pattern, the lower bound and the upper bound on the number of copies
+		private final Map<Pattern,int []> bounds;
+		// A lower bound on the number of units of stock of any solution in this node
+		private final int bound;
+		private final int depth;
+		
+		public Node(Map<Pattern,int []> bounds, int bound, int depth)
+		{
+			this.bounds = bounds;
+			this.bound = bound;
+			this.depth = depth;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A pool of columns that were removed from the master problem during column generation.
+ * Without a pool, the master problem only grows: every generated column stays in the
+ * LP, even if it has not been used for hundreds of iterations, and every solve of the
+ * master problem becomes slower.
+ *
+ * The pool keeps track of the age of every column in the master problem, which is the
+ * number of consecutive iterations in which the column was non-basic and unattractive,
+ * i.e. had reduced costs of at least minReducedCost in the master problem. Columns that
+ * become older than maxAge are removed from the CPLEX model and stored in the pool.
+ * Before the pricing engine is called, the columns in the pool are priced for the duals
+ * of the master problem, which is cheap compared to solving the pricing problem, and
+ * the columns with positive reduced costs are added back to the master problem.
+ *
+ * Columns are identified by their handle in the column store of the master problem, so
+ * the pool only keeps an age and a bit for every column and no Pattern objects.
+ *
+ * A column pool belongs to a single MasterModel, so it should not be shared between models.
+ */
+public class ColumnPool
+{
+	private final int maxAge;
+	private final double minReducedCost;
+	
+	// The age and whether the column is in the pool, by the handle of the column
+	private int [] ages;
+	private final BitSet inactive;
+	
+	// A min-heap of the best columns found while the pool is priced, with the worst column at
+	// the root, and the patterns that are returned. Both are reused every time the pool is priced.
+	private int [] heapHandles = new int[0];
+	private double [] heapCosts = new double[0];
+	private final List<Pattern> patterns = new ArrayList<>();
+	
+	private int purged;
+	private int reactivated;
+	
+	/**
+	 * Creates a column pool
+	 * @param maxAge the number of consecutive iterations a column may be non-basic and
+	 *               unattractive before it is removed from the master problem
+	 * @param minReducedCost the reduced costs in the master problem from which a
+	 *                       non-basic column is considered unattractive
+	 */
+	public ColumnPool(int maxAge, double minReducedCost)
+	{
+		if (maxAge < 1)
+		{
+			throw new IllegalArgumentException("The maximum age must be at least 1");
+		}
+		this.maxAge = maxAge;
+		this.minReducedCost = minReducedCost;
+		this.ages = new int[1024];
+		this.inactive = new BitSet();
+	}
+	
+	/**
+	 * Creates a column pool that removes columns that were non-basic with
+	 * positive reduced costs for more than 20 iterations
+	 */
+	public ColumnPool()
+	{
+		this(20, 1e-6);
+	}
+	
+	/**
+	 * Updates the age of a column in the master problem after it was solved
+	 * @param handle the handle of the column in the column store
+	 * @param basic whether the column is basic
+	 * @param reducedCost the reduced costs of the column in the master problem
+	 * @return true if the column is too old and should be removed from the master problem
+	 */
+	boolean age(int handle, boolean basic, double reducedCost)
+	{
+		if (handle >= ages.length)
+		{
+			ages = Arrays.copyOf(ages, Math.max(2*ages.length, handle+1));
+		}
+		if (basic || reducedCost < minReducedCost)
+		{
+			ages[handle] = 0;
+			return false;
+		}
+		return ++ages[handle] > maxAge;
+	}
+	
+	/**
+	 * Stores a column that was removed from the master problem
+	 * @param handle the handle of the column in the column store
+	 */
+	void deactivate(int handle)
+	{
+		if (handle < ages.length)
+		{
+			ages[handle] = 0;
+		}
+		if (!inactive.get(handle))
+		{
+			inactive.set(handle);
+			purged++;
+		}
+	}
+	
+	/**
+	 * Removes a column from the pool because it is added to the master problem again,
+	 * which makes sure a pattern is never in the master problem and the pool at once
+	 * @param handle the handle of the column in the column store
+	 */
+	void reactivate(int handle)
+	{
+		if (inactive.get(handle))
+		{
+			inactive.clear(handle);
+			reactivated++;
+		}
+	}
+	
+	/**
+	 * Finds the columns in the pool with the highest reduced costs for the duals of the
+	 * master problem, and removes them from the pool. The reduced costs are the total dual
+	 * of a column minus its cost, the cost of the cheapest stock length the column fits in.
+	 * @param store the column store of the master problem
+	 * @param instance the instance of the master problem
+	 * @param duals the duals of the master problem
+	 * @param threshold the reduced costs a column must exceed
+	 * @param max the maximum number of columns to return
+	 * @return the columns with reduced costs above the threshold, best first, in a list that
+	 *         is reused by the next call
+	 */
+	List<Pattern> price(ColumnStore store, Instance instance, double [] duals, double threshold, int max)
+	{
+		if (heapHandles.length < max)
+		{
+			heapHandles = new int[max];
+			heapCosts = new double[max];
+		}
+		int size = 0;
+		for (int handle = inactive.nextSetBit(0); handle >= 0; handle = inactive.nextSetBit(handle+1))
+		{
+			double rc = store.getValue(handle, instance, duals) - instance.getCost(store.getSize(handle));
+			if (rc > threshold)
+			{
+				// The handles increase, so a column with the same reduced costs as the worst column is worse
+				if (size < max)
+				{
+					heapHandles[size] = handle;
+					heapCosts[size] = rc;
+					siftUp(size++);
+				}
+				else if (max > 0 && rc > heapCosts[0])
+				{
+					heapHandles[0] = handle;
+					heapCosts[0] = rc;
+					siftDown(0, size);
+				}
+			}
+		}
+		// Move the worst column to the end until the heap is sorted from best to worst
+		for (int end = size-1; end > 0; end--)
+		{
+			swap(0, end);
+			siftDown(0, end);
+		}
+		// Only the columns that are added back are converted to patterns
+		patterns.clear();
+		for (int i=0; i < size; i++)
+		{
+			reactivate(heapHandles[i]);
+			patterns.add(store.getPattern(heapHandles[i]));
+		}
+		return patterns;
+	}
+	
+	/**
+	 * Whether the column at position i of the heap is worse than the column at position j,
+	 * where columns with the same reduced costs are ordered by their handle
+	 */
+	private boolean worse(int i, int j)
+	{
+		return heapCosts[i] < heapCosts[j] || (heapCosts[i] == heapCosts[j] && heapHandles[i] > heapHandles[j]);
+	}
+	
+	private void siftUp(int i)
+	{
+		while (i > 0 && worse(i, (i-1)/2))
+		{
+			swap(i, (i-1)/2);
+			i = (i-1)/2;
+		}
+	}
+	
+	private void siftDown(int i, int size)
+	{
+		while (true)
+		{
+			int worst = i;
+			int left = 2*i + 1;
+			if (left < size && worse(left, worst))
+			{
+				worst = left;
+			}
+			if (left + 1 < size && worse(left + 1, worst))
+			{
+				worst = left + 1;
+			}
+			if (worst == i)
+			{
+				return;
+			}
+			swap(i, worst);
+			i = worst;
+		}
+	}
+	
+	private void swap(int i, int j)
+	{
+		int handle = heapHandles[i];
+		heapHandles[i] = heapHandles[j];
+		heapHandles[j] = handle;
+		double cost = heapCosts[i];
+		heapCosts[i] = heapCosts[j];
+		heapCosts[j] = cost;
+	}
+	
+	/**
+	 * The number of columns that are currently stored in the pool
+	 * @return the number of inactive columns
+	 */
+	public int size()
+	{
+		return inactive.cardinality();
+	}
+	
+	/**
+	 * The total number of times a column was removed from the master problem
+	 * @return the number of purged columns
+	 */
+	public int getPurged()
+	{
+		return purged;
+	}
+	
+	/**
+	 * The total number of times a column from the pool was added back to the master problem
+	 * @return the number of reactivated columns
+	 */
+	public int getReactivated()
+	{
+		return reactivated;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "ColumnPool [maxAge=" + maxAge + ", size=" + inactive.cardinality() + ", purged=" + purged
+				+ ", reactivated=" + reactivated + "]";
+	}
+}
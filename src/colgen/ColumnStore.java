@@ -0,0 +1,357 @@
+package colgen;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An append-only store of cutting patterns outside of the Java heap. A master problem
+ * with millions of columns would otherwise keep millions of Pattern objects alive for the
+ * whole run, which fills the heap and makes every full garbage collection slower. Here,
+ * every distinct pattern is stored once as a sparse vector in a direct buffer, and is
+ * identified by a handle: the index of the pattern in the order in which it was added.
+ *
+ * Three direct buffers are used:
+ * <ul>
+ *   <li>the data buffer stores for every pattern the number of sizes n, followed by the
+ *       n sizes in increasing order and the n amounts, all as ints</li>
+ *   <li>the entry buffer stores for every handle the position of its pattern in the data
+ *       buffer and the hash code of the pattern</li>
+ *   <li>the index buffer is an open addressing hash table with linear probing, which stores
+ *       handle+1 in the slot of every pattern and 0 in empty slots. At most half of the slots
+ *       are used, so that a lookup usually inspects one or two slots.</li>
+ * </ul>
+ * The buffers are doubled when they are full. Patterns can be read without creating Pattern
+ * objects, and a Pattern object is only created when getPattern() is called.
+ *
+ * Patterns may only be added by one thread at a time, but the patterns of existing handles
+ * can be read by other threads while patterns are added.
+ */
+public class ColumnStore
+{
+	private static final int ENTRY_BYTES = 8;
+	
+	// Replaced when they grow, volatile so that other threads can read the patterns of handles
+	// they obtained before, such as the patterns of a solution, while patterns are added
+	private volatile ByteBuffer data;
+	private volatile ByteBuffer entries;
+	private ByteBuffer index;
+	private int mask;
+	private int size;
+	
+	/**
+	 * Creates an empty store with room for 1024 patterns, which grows when needed
+	 */
+	public ColumnStore()
+	{
+		this(1024);
+	}
+	
+	/**
+	 * Creates an empty store that grows when needed
+	 * @param expectedPatterns the number of patterns for which memory is allocated initially
+	 */
+	public ColumnStore(int expectedPatterns)
+	{
+		if (expectedPatterns < 1 || expectedPatterns > (1 << 24))
+		{
+			throw new IllegalArgumentException("The expected number of patterns must be between 1 and 2^24");
+		}
+		int slots = Integer.highestOneBit(expectedPatterns) * 4;
+		this.data = allocate(expectedPatterns * 32);
+		this.entries = allocate(expectedPatterns * ENTRY_BYTES);
+		this.index = allocate(slots * 4);
+		this.mask = slots - 1;
+	}
+	
+	private static ByteBuffer allocate(int bytes)
+	{
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+	
+	/**
+	 * Adds a pattern to the store, unless an equal pattern was added before
+	 * @param pattern the pattern to add
+	 * @return the handle of the pattern
+	 */
+	public int add(Pattern pattern)
+	{
+		int slot = findSlot(pattern);
+		int handle = index.getInt(slot << 2) - 1;
+		if (handle >= 0)
+		{
+			return handle;
+		}
+		handle = size;
+		int n = pattern.getNumberOfSizes();
+		int position = size == 0 ? 0 : end(size-1);
+		int bytes = 4 + 8*n;
+		if (entries.capacity() < (size+1) * ENTRY_BYTES)
+		{
+			entries = grow(entries, (size+1) * ENTRY_BYTES);
+		}
+		if (data.capacity() - position < bytes)
+		{
+			data = grow(data, (long) position + bytes);
+		}
+		data.putInt(position, n);
+		for (int j=0; j < n; j++)
+		{
+			data.putInt(position + 4 + 4*j, pattern.getSizeAt(j));
+			data.putInt(position + 4 + 4*(n+j), pattern.getAmountAt(j));
+		}
+		entries.putInt(handle * ENTRY_BYTES, position);
+		entries.putInt(handle * ENTRY_BYTES + 4, pattern.hashCode());
+		index.putInt(slot << 2, handle + 1);
+		size++;
+		if (2 * size > mask + 1)
+		{
+			rehash();
+		}
+		return handle;
+	}
+	
+	/**
+	 * Finds the handle of a pattern
+	 * @param pattern the pattern to look for
+	 * @return the handle of the pattern, or -1 if the pattern was never added
+	 */
+	public int find(Pattern pattern)
+	{
+		return index.getInt(findSlot(pattern) << 2) - 1;
+	}
+	
+	/**
+	 * Finds the slot of the index that contains the handle of a pattern, or the empty
+	 * slot where the handle should be stored if the pattern is not in the store
+	 */
+	private int findSlot(Pattern pattern)
+	{
+		int hash = pattern.hashCode();
+		int slot = mix(hash) & mask;
+		while (true)
+		{
+			int handle = index.getInt(slot << 2) - 1;
+			if (handle < 0 || (entries.getInt(handle * ENTRY_BYTES + 4) == hash && matches(handle, pattern)))
+			{
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+	
+	private boolean matches(int handle, Pattern pattern)
+	{
+		int n = getNumberOfSizes(handle);
+		if (n != pattern.getNumberOfSizes())
+		{
+			return false;
+		}
+		for (int j=0; j < n; j++)
+		{
+			if (getSizeAt(handle, j) != pattern.getSizeAt(j) || getAmountAt(handle, j) != pattern.getAmountAt(j))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int mix(int hash)
+	{
+		// The hash codes of patterns are polynomials, so the low bits are spread first
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * Doubles the number of slots of the index and inserts all handles again
+	 */
+	private void rehash()
+	{
+		int slots = 2 * (mask + 1);
+		if (slots > (1 << 28))
+		{
+			throw new IllegalStateException("The column store can not hold more than 2^27 patterns");
+		}
+		index = allocate(slots * 4);
+		mask = slots - 1;
+		for (int handle=0; handle < size; handle++)
+		{
+			int slot = mix(entries.getInt(handle * ENTRY_BYTES + 4)) & mask;
+			while (index.getInt(slot << 2) != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+			index.putInt(slot << 2, handle + 1);
+		}
+	}
+	
+	/**
+	 * Copies a buffer to a new buffer that is at least twice as large
+	 */
+	private static ByteBuffer grow(ByteBuffer buffer, long required)
+	{
+		long capacity = Math.max(2L * buffer.capacity(), required);
+		if (capacity > Integer.MAX_VALUE)
+		{
+			if (required > Integer.MAX_VALUE)
+			{
+				throw new IllegalStateException("The column store can not hold more than 2GB of patterns");
+			}
+			capacity = Integer.MAX_VALUE;
+		}
+		ByteBuffer result = allocate((int) capacity);
+		ByteBuffer source = buffer.duplicate();
+		source.clear();
+		result.put(source);
+		result.clear();
+		return result;
+	}
+	
+	private int offset(int handle)
+	{
+		return entries.getInt(handle * ENTRY_BYTES);
+	}
+	
+	private int end(int handle)
+	{
+		int position = offset(handle);
+		return position + 4 + 8*data.getInt(position);
+	}
+	
+	/**
+	 * The number of different sizes that are cut in a pattern
+	 * @param handle the handle of the pattern
+	 * @return the number of different sizes
+	 */
+	public int getNumberOfSizes(int handle)
+	{
+		return data.getInt(offset(handle));
+	}
+	
+	/**
+	 * The size at a position in a pattern, where the sizes are sorted in increasing order
+	 * @param handle the handle of the pattern
+	 * @param position the position, between 0 and getNumberOfSizes(handle)
+	 * @return the size of the item at that position
+	 */
+	public int getSizeAt(int handle, int position)
+	{
+		return data.getInt(offset(handle) + 4 + 4*position);
+	}
+	
+	/**
+	 * The number of copies of the size at a position in a pattern
+	 * @param handle the handle of the pattern
+	 * @param position the position, between 0 and getNumberOfSizes(handle)
+	 * @return the number of copies of the item at that position
+	 */
+	public int getAmountAt(int handle, int position)
+	{
+		int start = offset(handle);
+		return data.getInt(start + 4 + 4*(data.getInt(start) + position));
+	}
+	
+	/**
+	 * The number of copies of an item of a particular size cut by a pattern
+	 * @param handle the handle of the pattern
+	 * @param size the size of the item
+	 * @return the number of copies, which is 0 if the size is not cut by the pattern
+	 */
+	public int getAmount(int handle, int size)
+	{
+		int start = offset(handle);
+		int n = data.getInt(start);
+		for (int j=0; j < n; j++)
+		{
+			int s = data.getInt(start + 4 + 4*j);
+			if (s >= size)
+			{
+				return s == size ? data.getInt(start + 4 + 4*(n+j)) : 0;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * The total size of a pattern, where every size is multiplied by its number of copies
+	 * @param handle the handle of the pattern
+	 * @return the total size of the pattern
+	 */
+	public int getSize(int handle)
+	{
+		int start = offset(handle);
+		int n = data.getInt(start);
+		int result = 0;
+		for (int j=0; j < n; j++)
+		{
+			result += data.getInt(start + 4 + 4*j) * data.getInt(start + 4 + 4*(n+j));
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the total value of the items cut by a pattern in the same way as
+	 * Pattern.getValue(), where sizes that do not occur in the instance have no value
+	 * @param handle the handle of the pattern
+	 * @param instance the instance that defines the index of each size
+	 * @param values the value of a single item of the size with the same index in the instance
+	 * @return the sum of the values of all items cut by the pattern
+	 */
+	public double getValue(int handle, Instance instance, double [] values)
+	{
+		int start = offset(handle);
+		int n = data.getInt(start);
+		double result = 0;
+		for (int j=0; j < n; j++)
+		{
+			int index = instance.indexOf(data.getInt(start + 4 + 4*j));
+			if (index >= 0)
+			{
+				result += data.getInt(start + 4 + 4*(n+j)) * values[index];
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Creates a Pattern object for a pattern in the store
+	 * @param handle the handle of the pattern
+	 * @return a pattern equal to the pattern that was added with this handle
+	 */
+	public Pattern getPattern(int handle)
+	{
+		int n = getNumberOfSizes(handle);
+		int [] sizes = new int[n];
+		int [] amounts = new int[n];
+		for (int j=0; j < n; j++)
+		{
+			sizes[j] = getSizeAt(handle, j);
+			amounts[j] = getAmountAt(handle, j);
+		}
+		return new Pattern(sizes, amounts);
+	}
+	
+	/**
+	 * The number of distinct patterns in the store, which is also the next handle
+	 * @return the number of patterns
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * The amount of memory allocated outside of the heap by this store
+	 * @return the total capacity of the buffers in bytes
+	 */
+	public long getBytes()
+	{
+		return (long) data.capacity() + entries.capacity() + index.capacity();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "ColumnStore [patterns=" + size + ", bytes=" + getBytes() + "]";
+	}
+}
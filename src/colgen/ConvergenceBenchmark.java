@@ -0,0 +1,161 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import ilog.concert.IloException;
+
+/**
+ * Main class that compares the techniques that reduce the number of iterations or the size of
+ * the LP of column generation, on the random instances that are solved by the Main class.
+ * The first argument selects the benchmark that is run, by default <code>stabilization</code>:
+ * <ul>
+ *   <li><code>stabilization</code> compares the different methods of dual stabilization</li>
+ *   <li><code>farley</code> compares column generation with and without early termination based on the Farley bound</li>
+ *   <li><code>pool</code> compares column generation with and without a column pool that removes old columns</li>
+ * </ul>
+ */
+public class ConvergenceBenchmark
+{
+	public static void main(String [] args) throws IloException
+	{
+		String benchmark = args.length > 0 ? args[0] : "stabilization";
+		switch (benchmark)
+		{
+			case "stabilization":
+				benchmarkStabilization();
+				break;
+			case "farley":
+				benchmarkEarlyTermination();
+				break;
+			case "pool":
+				benchmarkColumnPool();
+				break;
+			default:
+				System.out.println("Unknown benchmark: "+benchmark);
+		}
+	}
+	
+	/**
+	 * Compares the number of iterations and the total time spent in solveRelaxation()
+	 * without dual stabilization with the same numbers for the different methods of
+	 * dual stabilization, and reports how many iterations are saved.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkStabilization() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Benchmark.run(instances.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+		
+		Benchmark.Result none = Benchmark.run(instances, i -> Benchmark.dpModel(i, 1, false));
+		System.out.println("No stabilization:\t"+none);
+		
+		benchmarkStabilization(instances, none, "Wentges, alpha=0.8", () -> new DualStabilization(DualStabilization.Method.WENTGES, 0.8));
+		benchmarkStabilization(instances, none, "Automatic Wentges", () -> new DualStabilization());
+		benchmarkStabilization(instances, none, "Neame, alpha=0.5", () -> new DualStabilization(DualStabilization.Method.NEAME, 0.5));
+	}
+	
+	/**
+	 * Compares the number of iterations and the total time spent in solveRelaxation()
+	 * with and without early termination based on the Farley bound, and checks that
+	 * the lower bounds found are the same.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkEarlyTermination() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Benchmark.ModelFactory early = i -> {
+			MasterModel mm = Benchmark.dpModel(i, 1, false);
+			mm.setEarlyTermination(true);
+			return mm;
+		};
+		Benchmark.run(instances.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+		Benchmark.run(instances.subList(0, 10), early);
+		
+		Benchmark.Result full = Benchmark.run(instances, i -> Benchmark.dpModel(i, 1, false));
+		Benchmark.Result stopped = Benchmark.run(instances, early);
+		System.out.println("Full column generation:\t"+full+", sum of lower bounds "+full.lowerBounds);
+		System.out.println("Early termination:\t"+stopped+", sum of lower bounds "+stopped.lowerBounds
+				+Benchmark.relative(stopped, full));
+	}
+	
+	/**
+	 * Compares the number of iterations and the total time spent in solveRelaxation()
+	 * without a column pool with the same numbers for column pools with different
+	 * maximum ages, and reports the average and maximum number of columns in the LP
+	 * over all iterations, as well as how often columns were removed and added back.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkColumnPool() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Benchmark.run(instances.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+		
+		List<MasterModel> models = new ArrayList<>();
+		Benchmark.Result none = Benchmark.run(instances, i -> {
+			MasterModel mm = Benchmark.dpModel(i, 1, false);
+			models.add(mm);
+			return mm;
+		});
+		System.out.println("No column pool:\t"+none);
+		System.out.println("\t"+columnStatistics(models));
+		
+		for (int maxAge : new int [] {5, 20, 50})
+		{
+			models.clear();
+			List<ColumnPool> pools = new ArrayList<>();
+			Benchmark.Result result = Benchmark.run(instances, i -> {
+				MasterModel mm = Benchmark.dpModel(i, 1, false);
+				ColumnPool pool = new ColumnPool(maxAge, 1e-6);
+				models.add(mm);
+				pools.add(pool);
+				mm.setColumnPool(pool);
+				return mm;
+			});
+			int purged = pools.stream()
+			                  .mapToInt(ColumnPool::getPurged)
+			                  .sum();
+			int reactivated = pools.stream()
+			                       .mapToInt(ColumnPool::getReactivated)
+			                       .sum();
+			System.out.println("Column pool, maxAge="+maxAge+":\t"+result+Benchmark.relative(result, none));
+			System.out.println("\t"+columnStatistics(models)+", purged: "+purged+", reactivated: "+reactivated);
+		}
+	}
+	
+	private static void benchmarkStabilization(List<Instance> instances, Benchmark.Result none, String label,
+			Supplier<DualStabilization> supplier) throws IloException
+	{
+		List<DualStabilization> used = new ArrayList<>();
+		Benchmark.Result result = Benchmark.run(instances, i -> {
+			MasterModel mm = Benchmark.dpModel(i, 1, false);
+			DualStabilization stabilization = supplier.get();
+			used.add(stabilization);
+			mm.setStabilization(stabilization);
+			return mm;
+		});
+		int mispricings = used.stream()
+		                      .mapToInt(DualStabilization::getMispricings)
+		                      .sum();
+		System.out.println(label+":\t"+result+Benchmark.relative(result, none));
+		System.out.println("\titerations saved: "+(none.iterations - result.iterations)
+				+", mispricings: "+mispricings);
+	}
+	
+	private static String columnStatistics(List<MasterModel> models)
+	{
+		long total = 0;
+		long iterations = 0;
+		int max = 0;
+		for (MasterModel mm : models)
+		{
+			for (int columns : mm.getColumnHistory())
+			{
+				total += columns;
+				iterations++;
+				max = Math.max(max, columns);
+			}
+		}
+		return "average LP size: "+String.format("%.1f", total / (double) iterations)+" columns, maximum: "+max;
+	}
+}
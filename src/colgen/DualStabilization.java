@@ -0,0 +1,231 @@
+package colgen;
+
+/**
+ * Dual stabilization for the column generation procedure of the MasterModel.
+ * Without stabilization, the duals of the master problem tend to oscillate
+ * heavily between iterations, and many iterations are needed at the end of
+ * the procedure that barely improve the bound.
+ *
+ * With stabilization, the pricing problem is not solved for the duals of the
+ * master problem directly, but for a separation point that is a convex
+ * combination of the duals of the master problem and a stability center:
+ * separation = alpha * center + (1 - alpha) * duals.
+ * A column found at the separation point is only useful if it also has positive
+ * reduced costs for the duals of the master problem. If it does not, this is
+ * called a mispricing, and alpha is decreased step by step until the pricing
+ * problem is solved for the duals of the master problem themselves. This makes
+ * sure that column generation only stops when the LP-relaxation is optimal.
+ *
+ * The following methods to choose the stability center are supported:
+ * <ul>
+ *   <li>WENTGES: the center is the point with the best Lagrangian (Farley) bound found so far, and alpha is fixed</li>
+ *   <li>AUTOMATIC_WENTGES: as WENTGES, but alpha is adapted every iteration based on the subgradient at the separation point</li>
+ *   <li>NEAME: the center is the previous separation point, such that the duals are exponentially smoothed</li>
+ * </ul>
+ * A DualStabilization object keeps track of the stability center of a single
+ * MasterModel, so it should not be shared between models.
+ */
+public class DualStabilization
+{
+	/**
+	 * The method used to choose the stability center and alpha
+	 */
+	public enum Method
+	{
+		WENTGES,
+		AUTOMATIC_WENTGES,
+		NEAME
+	}
+
+	private final Method method;
+	private double alpha;
+
+	private double [] center;
+	private double centerBound = Double.NEGATIVE_INFINITY;
+	private double [] separation;
+	private int misprice;
+
+	private int iterations;
+	private int mispricings;
+
+	/**
+	 * Creates stabilization with an initial smoothing factor
+	 * @param method the method used to choose the stability center
+	 * @param alpha the smoothing factor, between 0 (no smoothing) and 1 (exclusive)
+	 */
+	public DualStabilization(Method method, double alpha)
+	{
+		if (alpha < 0 || alpha >= 1)
+		{
+			throw new IllegalArgumentException("The smoothing factor must be at least 0 and smaller than 1");
+		}
+		this.method = method;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Creates stabilization with automatically adapted smoothing factor,
+	 * starting at 0.5
+	 */
+	public DualStabilization()
+	{
+		this(Method.AUTOMATIC_WENTGES, 0.5);
+	}
+
+	/**
+	 * Starts a new iteration of column generation
+	 * @param duals the duals of the master problem in this iteration
+	 */
+	void startIteration(double [] duals)
+	{
+		if (center == null)
+		{
+			center = duals.clone();
+			separation = new double[duals.length];
+		}
+		misprice = 0;
+		iterations++;
+	}
+	
+	/**
+	 * Forgets the stability center, for example because the constraints of the
+	 * master problem changed. The next iteration starts with a new center.
+	 */
+	void reset()
+	{
+		center = null;
+		centerBound = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * The smoothing factor for the current attempt. After k mispricings
+	 * the smoothing factor is max(0, 1 - (k+1) * (1 - alpha)).
+	 * @return the current smoothing factor
+	 */
+	private double currentAlpha()
+	{
+		double a = 1 - (misprice + 1) * (1 - alpha);
+		// Avoid an extra attempt with a tiny positive alpha due to rounding errors
+		return a < 1e-9 ? 0 : a;
+	}
+
+	/**
+	 * Whether the separation point of the current attempt is equal to the duals
+	 * of the master problem, so that pricing is exact.
+	 * @return true if no smoothing is applied in the current attempt
+	 */
+	boolean isExact()
+	{
+		return currentAlpha() == 0;
+	}
+
+	/**
+	 * Computes the separation point for the current attempt
+	 * @param duals the duals of the master problem
+	 * @return the point at which the pricing problem should be solved
+	 */
+	double [] getSeparationPoint(double [] duals)
+	{
+		double a = currentAlpha();
+		for (int i=0; i < duals.length; i++)
+		{
+			separation[i] = a * center[i] + (1 - a) * duals[i];
+		}
+		return separation;
+	}
+
+	/**
+	 * Reports the bound found when pricing at the separation point, which
+	 * can be used to update the stability center
+	 * @param bound the Lagrangian (Farley) bound at the separation point
+	 */
+	void priced(double bound)
+	{
+		if (method == Method.NEAME || bound > centerBound)
+		{
+			System.arraycopy(separation, 0, center, 0, center.length);
+			centerBound = bound;
+		}
+	}
+
+	/**
+	 * Reports that no column with positive reduced costs for the duals of the master
+	 * problem was found at the separation point
+	 */
+	void mispriced()
+	{
+		misprice++;
+		mispricings++;
+	}
+
+	/**
+	 * Reports a subgradient of the Lagrangian function at the separation point,
+	 * after a column was found. If the subgradient points towards the duals of the
+	 * master problem, or if mispricing occurred in this iteration, smoothing is too
+	 * strong and alpha is decreased. Otherwise alpha is increased. This only has
+	 * effect for the AUTOMATIC_WENTGES method.
+	 * @param subgradient the subgradient at the separation point
+	 * @param duals the duals of the master problem
+	 */
+	void subgradient(double [] subgradient, double [] duals)
+	{
+		if (method != Method.AUTOMATIC_WENTGES)
+		{
+			return;
+		}
+		if (misprice > 0)
+		{
+			alpha = Math.max(0, alpha - 0.1);
+			return;
+		}
+		double product = 0;
+		for (int i=0; i < duals.length; i++)
+		{
+			product += subgradient[i] * (duals[i] - separation[i]);
+		}
+		if (product > 0)
+		{
+			alpha = Math.max(0, alpha - 0.1);
+		}
+		else
+		{
+			alpha = Math.min(0.99, alpha + 0.1 * (1 - alpha));
+		}
+	}
+
+	/**
+	 * The number of iterations in which stabilization was applied
+	 * @return the number of iterations
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+
+	/**
+	 * The total number of mispricings, i.e. the number of times the pricing
+	 * problem had to be solved again with less smoothing
+	 * @return the number of mispricings
+	 */
+	public int getMispricings()
+	{
+		return mispricings;
+	}
+
+	/**
+	 * The current smoothing factor. For the AUTOMATIC_WENTGES method, this
+	 * changes during column generation.
+	 * @return the current smoothing factor
+	 */
+	public double getAlpha()
+	{
+		return alpha;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DualStabilization [method=" + method + ", alpha=" + alpha + ", iterations=" + iterations
+				+ ", mispricings=" + mispricings + "]";
+	}
+}
@@ -0,0 +1,355 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pure Java engine for the Pricing Problem of the Cutting Stock problem.
+ * The pricing problem is an unbounded knapsack problem, and since the sizes
+ * of the items and the capacity of the base stock are integers, it can be
+ * solved exactly with a dynamic program over the capacities 0, 1, ..., C
+ * in O(n*C) time, where n is the number of item sizes.
+ *
+ * All arrays used by the dynamic program are allocated once when the engine
+ * is created and are reused every time the pricing problem is solved.
+ *
+ * The objective value has the same meaning as the objective of the PricingModel:
+ * the sum of the duals of the items in the best pattern, minus one. The master
+ * problem compares this value with its threshold in exactly the same way for both
+ * engines. Items with a dual that is not positive can never increase the reduced
+ * costs of a pattern, so they are left out of the dynamic program.
+ */
+public class DynamicProgrammingPricing implements PricingEngine
+{
+	private Instance instance;
+	private final int capacity;
+	private int [] sizes;
+	private double [] duals;
+
+	// The items with a positive dual, as indices into sizes
+	private int [] active;
+	private int activeCount;
+
+	// best[c] is the highest total dual of a pattern with a size of at most c.
+	// choice[c] is the index of the item that was added last to obtain best[c],
+	// or -1 if best[c] is the same as best[c-1].
+	private final double [] best;
+	private final int [] choice;
+	private int [] counts;
+	
+	// Arrays of the dynamic program that finds the k best patterns. They are
+	// allocated the first time k patterns are requested and reused afterwards.
+	// kValues[c*k+r] is the total dual of the r-th best pattern with a size of at
+	// most c, and kLengths[c] is the number of such patterns found so far.
+	// kBack stores for every layer (item) how each of these patterns was obtained.
+	private int k;
+	private double [] kValues;
+	private int [] kLengths;
+	private int [] kBack;
+	private double [] mergeValues;
+	private int [] mergeBack;
+	// The k for which the k best patterns were found for the current duals, or 0 if
+	// only the best pattern was found by solve()
+	private int solvedK;
+
+	/**
+	 * Initializes the dynamic program for the pricing problem of an instance
+	 * @param instance the instance for which to initialize the pricing problem
+	 */
+	public DynamicProgrammingPricing(Instance instance)
+	{
+		this.capacity = instance.getCapacity();
+		this.best = new double[capacity+1];
+		this.choice = new int[capacity+1];
+		initSizes(instance);
+	}
+	
+	/**
+	 * Allocates the arrays that have an entry for every size of an instance
+	 * @param instance the instance for which to allocate the arrays
+	 */
+	private void initSizes(Instance instance)
+	{
+		this.instance = instance;
+		this.sizes = instance.getSizeArray();
+		this.duals = new double[sizes.length];
+		this.active = new int[sizes.length];
+		this.counts = new int[sizes.length];
+		this.activeCount = 0;
+		// The arrays of the k best patterns depend on the number of sizes
+		this.k = 0;
+		this.solvedK = 0;
+	}
+	
+	/**
+	 * Replaces the instance of the pricing problem. The arrays over the capacities
+	 * are reused, only the arrays over the sizes are allocated again.
+	 */
+	@Override
+	public void setInstance(Instance instance)
+	{
+		if (instance.getCapacity() != capacity)
+		{
+			throw new IllegalArgumentException("The capacity of the instance can not be changed");
+		}
+		initSizes(instance);
+	}
+
+	/**
+	 * Creates an engine for the pricing problem of every stock length of an instance
+	 * @param instance the instance for which to initialize the pricing problems
+	 * @return an array with an engine for each stock length, in the order of the stock lengths
+	 */
+	public static PricingEngine [] forStockLengths(Instance instance)
+	{
+		PricingEngine [] engines = new PricingEngine[instance.getNumberOfStockLengths()];
+		for (int k=0; k < engines.length; k++)
+		{
+			engines[k] = new DynamicProgrammingPricing(instance.getStockInstance(k));
+		}
+		return engines;
+	}
+
+	@Override
+	public void setDuals(double [] duals)
+	{
+		solvedK = 0;
+		activeCount = 0;
+		for (int i=0; i < sizes.length; i++)
+		{
+			double dual = duals[i];
+			this.duals[i] = dual;
+			if (dual > 0 && sizes[i] <= capacity)
+			{
+				active[activeCount++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Solves the pricing problem with the dynamic program for the k best patterns if k is greater
+	 * than 1. Its best pattern is the best pattern of the normal dynamic program, so the objective
+	 * and the patterns are then read from its table, and the normal dynamic program is skipped.
+	 */
+	@Override
+	public void solve(int k)
+	{
+		if (k > 1)
+		{
+			solveKBest(k);
+		}
+		else
+		{
+			solve();
+		}
+	}
+
+	@Override
+	public void solve()
+	{
+		solvedK = 0;
+		best[0] = 0;
+		choice[0] = -1;
+		for (int c=1; c <= capacity; c++)
+		{
+			// Leaving one unit of capacity unused is always possible
+			double value = best[c-1];
+			int item = -1;
+			for (int k=0; k < activeCount; k++)
+			{
+				int i = active[k];
+				int size = sizes[i];
+				if (size <= c)
+				{
+					double candidate = best[c-size] + duals[i];
+					if (candidate > value)
+					{
+						value = candidate;
+						item = i;
+					}
+				}
+			}
+			best[c] = value;
+			choice[c] = item;
+		}
+	}
+
+	@Override
+	public double getObjective()
+	{
+		if (solvedK > 0)
+		{
+			return kValues[capacity*solvedK] - 1;
+		}
+		return best[capacity] - 1;
+	}
+
+	@Override
+	public double getObjectiveBound()
+	{
+		// The dynamic program is exact
+		return getObjective();
+	}
+
+	@Override
+	public Pattern getPattern()
+	{
+		if (solvedK > 0)
+		{
+			return getKBestPattern(0);
+		}
+		// Walk back through the choices made by the dynamic program
+		for (int i=0; i < counts.length; i++)
+		{
+			counts[i] = 0;
+		}
+		int c = capacity;
+		while (c > 0)
+		{
+			int item = choice[c];
+			if (item < 0)
+			{
+				c--;
+			}
+			else
+			{
+				counts[item]++;
+				c -= sizes[item];
+			}
+		}
+		return toPattern();
+	}
+
+	/**
+	 * Finds the k best patterns using a dynamic program that keeps the k best
+	 * patterns for every capacity instead of only the best. The items are added
+	 * one by one as layers of the dynamic program, so that every multiset of
+	 * items is obtained in exactly one way, which guarantees that the k
+	 * patterns are distinct. This takes O(n*C*k) time and memory.
+	 */
+	@Override
+	public List<Pattern> getPatterns(int k, double threshold)
+	{
+		if (solvedK != k)
+		{
+			solveKBest(k);
+		}
+		List<Pattern> result = new ArrayList<>();
+		int base = capacity*k;
+		for (int r=0; r < kLengths[capacity]; r++)
+		{
+			// The patterns are sorted, so we can stop at the first one that is not good enough
+			if (kValues[base+r] - 1 <= threshold)
+			{
+				break;
+			}
+			result.add(getKBestPattern(r));
+		}
+		return result;
+	}
+	
+	private void allocateKBest(int k)
+	{
+		if (this.k != k)
+		{
+			this.k = k;
+			this.kValues = new double[(capacity+1)*k];
+			this.kLengths = new int[capacity+1];
+			this.kBack = new int[sizes.length*(capacity+1)*k];
+			this.mergeValues = new double[k];
+			this.mergeBack = new int[k];
+		}
+	}
+	
+	private void solveKBest(int k)
+	{
+		allocateKBest(k);
+		int stride = (capacity+1)*k;
+		// Before any item is considered, the only pattern is the empty pattern
+		for (int c=0; c <= capacity; c++)
+		{
+			kLengths[c] = 1;
+			kValues[c*k] = 0;
+		}
+		for (int l=0; l < activeCount; l++)
+		{
+			int i = active[l];
+			int size = sizes[i];
+			double dual = duals[i];
+			int layer = l*stride;
+			for (int c=0; c <= capacity; c++)
+			{
+				int base = c*k;
+				int lengthA = kLengths[c];
+				// The patterns without item i are those of the previous layer at capacity c,
+				// and their back pointers are encoded as negative numbers -r-1.
+				// The patterns with item i are those of this layer at capacity c-size plus
+				// one copy of item i, and their back pointers are encoded as ranks r >= 0.
+				int lengthB = c >= size ? kLengths[c-size] : 0;
+				int baseB = (c-size)*k;
+				int a = 0;
+				int b = 0;
+				int n = 0;
+				while (n < k && (a < lengthA || b < lengthB))
+				{
+					if (b >= lengthB || (a < lengthA && kValues[base+a] >= kValues[baseB+b] + dual))
+					{
+						mergeValues[n] = kValues[base+a];
+						mergeBack[n] = -a-1;
+						a++;
+					}
+					else
+					{
+						mergeValues[n] = kValues[baseB+b] + dual;
+						mergeBack[n] = b;
+						b++;
+					}
+					n++;
+				}
+				System.arraycopy(mergeValues, 0, kValues, base, n);
+				System.arraycopy(mergeBack, 0, kBack, layer+base, n);
+				kLengths[c] = n;
+			}
+		}
+		solvedK = k;
+	}
+	
+	private Pattern getKBestPattern(int rank)
+	{
+		for (int i=0; i < counts.length; i++)
+		{
+			counts[i] = 0;
+		}
+		int stride = (capacity+1)*k;
+		int l = activeCount - 1;
+		int c = capacity;
+		int r = rank;
+		while (l >= 0)
+		{
+			int back = kBack[l*stride + c*k + r];
+			if (back >= 0)
+			{
+				int i = active[l];
+				counts[i]++;
+				c -= sizes[i];
+				r = back;
+			}
+			else
+			{
+				r = -back-1;
+				l--;
+			}
+		}
+		return toPattern();
+	}
+	
+	private Pattern toPattern()
+	{
+		return new Pattern(instance, counts);
+	}
+
+	@Override
+	public void cleanUp()
+	{
+		// Nothing to clean up, the arrays are garbage collected
+	}
+}
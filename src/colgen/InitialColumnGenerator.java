@@ -0,0 +1,21 @@
+package colgen;
+import java.util.List;
+
+/**
+ * Interface for the different ways in which initial columns can be generated for
+ * the master problem of the Cutting Stock problem. Good initial columns give better
+ * duals in the first iterations of column generation, so that fewer iterations are
+ * needed to solve the LP-relaxation.
+ *
+ * The generator that uses packing heuristics is PackingHeuristics.
+ */
+public interface InitialColumnGenerator
+{
+	/**
+	 * Generates cutting patterns for an instance. Every pattern must fit in
+	 * a single unit of base stock of the instance.
+	 * @param instance the instance for which to generate patterns
+	 * @return a list of distinct patterns
+	 */
+	public List<Pattern> generate(Instance instance);
+}
@@ -1,6 +1,8 @@
 package colgen;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -17,13 +19,34 @@ import java.util.Set;
  * indicates how long a bar is that we can cut up into smallers bars
  * required for the order. The goal is to cut up as few large bars
  * as possible.
+ *
+ * An instance can also have several stock lengths, each with its own cost
+ * per unit of stock, in which case the goal is to minimize the total cost
+ * of the stock that is cut up (the variable-sized cutting stock problem).
+ * A pattern is always cut from the cheapest stock length it fits in, so the
+ * cost of a pattern only depends on its total size. An instance with a single
+ * capacity has a single stock length with a cost of 1.
+ *
+ * The orders are stored as two arrays that are sorted by size, so that
+ * each size has an index between 0 and getNumberOfSizes(). The models
+ * for this problem use these indices to number their constraints and
+ * variables.
  * @author Paul Bouman
  *
  */
 public class Instance
 {
 	private int capacity;
-	private Map<Integer,Integer> orders;
+	// The lengths of the types of base stock in increasing order, and their costs
+	private int [] stockLengths;
+	private double [] stockCosts;
+	// The lowest cost of a stock length that is at least as long as the stock length at the same index
+	private double [] cheapest;
+	// The sizes of the items in increasing order
+	private int [] sizes;
+	// The demand of the item with the size at the same index
+	private int [] demands;
+	private Set<Integer> sizeSet;
 	
 	/**
 	 * Creates a cutting stock instance based on the provided orders and a capacity
@@ -32,19 +55,129 @@ public class Instance
 	 */
 	public Instance(Map<Integer,Integer> orders, int capacity)
 	{
-		this.orders = new LinkedHashMap<>(orders);
-		this.capacity = capacity;
+		this(orders, new int [] {capacity}, new double [] {1});
+	}
+	
+	/**
+	 * Creates a cutting stock instance based on the provided orders and several stock lengths
+	 * @param orders the orders that need to be produced
+	 * @param stockLengths the different lengths of the base stock we can cut up
+	 * @param stockCosts the cost of a unit of stock of the length at the same index
+	 */
+	public Instance(Map<Integer,Integer> orders, int [] stockLengths, double [] stockCosts)
+	{
+		this(orders.keySet().stream().mapToInt(i -> i).toArray(),
+		     orders.values().stream().mapToInt(i -> i).toArray(),
+		     stockLengths, stockCosts);
+	}
+	
+	/**
+	 * Creates a cutting stock instance based on arrays with the sizes and demands
+	 * of the orders, and a capacity
+	 * @param sizes the unique sizes of the items that need to be produced
+	 * @param demands the number of items of the size at the same index that need to be produced
+	 * @param capacity the length or capacity of the base stock we must cut up
+	 * @throws IllegalArgumentException if the arrays have different lengths or a size occurs twice
+	 */
+	public Instance(int [] sizes, int [] demands, int capacity) throws IllegalArgumentException
+	{
+		this(sizes, demands, new int [] {capacity}, new double [] {1});
+	}
+	
+	/**
+	 * Creates a cutting stock instance based on arrays with the sizes and demands
+	 * of the orders, and several stock lengths with their costs
+	 * @param sizes the unique sizes of the items that need to be produced
+	 * @param demands the number of items of the size at the same index that need to be produced
+	 * @param stockLengths the different lengths of the base stock we can cut up
+	 * @param stockCosts the cost of a unit of stock of the length at the same index
+	 * @throws IllegalArgumentException if the arrays have different lengths, a size or stock length
+	 *                                  occurs twice, or a stock length or cost is not positive
+	 */
+	public Instance(int [] sizes, int [] demands, int [] stockLengths, double [] stockCosts)
+			throws IllegalArgumentException
+	{
+		if (sizes.length != demands.length)
+		{
+			throw new IllegalArgumentException("There must be exactly one demand for every size");
+		}
+		// Sort the sizes, and the demands in the same order
+		long [] pairs = new long[sizes.length];
+		for (int i=0; i < sizes.length; i++)
+		{
+			pairs[i] = ((long) sizes[i] << 32) | (demands[i] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(pairs);
+		this.sizes = new int[sizes.length];
+		this.demands = new int[sizes.length];
+		for (int i=0; i < pairs.length; i++)
+		{
+			this.sizes[i] = (int) (pairs[i] >> 32);
+			this.demands[i] = (int) pairs[i];
+			if (i > 0 && this.sizes[i] == this.sizes[i-1])
+			{
+				throw new IllegalArgumentException("Size "+this.sizes[i]+" occurs more than once");
+			}
+		}
+		initStock(stockLengths, stockCosts);
+		
+		Set<Integer> set = new LinkedHashSet<>();
+		for (int size : this.sizes)
+		{
+			set.add(size);
+		}
+		this.sizeSet = Collections.unmodifiableSet(set);
+	}
+	
+	/**
+	 * Sorts the stock lengths and their costs, and computes the cheapest stock for every length
+	 */
+	private void initStock(int [] stockLengths, double [] stockCosts)
+	{
+		if (stockLengths.length == 0 || stockLengths.length != stockCosts.length)
+		{
+			throw new IllegalArgumentException("There must be at least one stock length, with exactly one cost for every length");
+		}
+		Integer [] order = new Integer[stockLengths.length];
+		for (int k=0; k < order.length; k++)
+		{
+			order[k] = k;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(stockLengths[a], stockLengths[b]));
+		int n = order.length;
+		this.stockLengths = new int[n];
+		this.stockCosts = new double[n];
+		for (int k=0; k < n; k++)
+		{
+			this.stockLengths[k] = stockLengths[order[k]];
+			this.stockCosts[k] = stockCosts[order[k]];
+			if (this.stockLengths[k] <= 0 || !(this.stockCosts[k] > 0))
+			{
+				throw new IllegalArgumentException("Stock lengths and their costs must be positive");
+			}
+			if (k > 0 && this.stockLengths[k] == this.stockLengths[k-1])
+			{
+				throw new IllegalArgumentException("Stock length "+this.stockLengths[k]+" occurs more than once");
+			}
+		}
+		this.cheapest = new double[n];
+		cheapest[n-1] = this.stockCosts[n-1];
+		for (int k=n-2; k >= 0; k--)
+		{
+			cheapest[k] = Math.min(this.stockCosts[k], cheapest[k+1]);
+		}
+		this.capacity = this.stockLengths[n-1];
 	}
 	
 	/**
 	 * Provides a list of sizes that occur in the orders in this instance.
 	 * The size of the order is the amount of stock required to produce a
 	 * single item of a particular size.
-	 * @return a list with the sizes of the order.
+	 * @return a list with the sizes of the order, in increasing order.
 	 */
 	public Set<Integer> getSizes()
 	{
-		return Collections.unmodifiableSet(orders.keySet());
+		return sizeSet;
 	}
 	
 	/**
@@ -55,12 +188,72 @@ public class Instance
 	 */
 	public int getAmount(int size)
 	{
-		return orders.getOrDefault(size, 0);
+		int index = indexOf(size);
+		return index >= 0 ? demands[index] : 0;
+	}
+	
+	/**
+	 * Provides the number of unique sizes that occur in the orders
+	 * @return the number of sizes
+	 */
+	public int getNumberOfSizes()
+	{
+		return sizes.length;
+	}
+	
+	/**
+	 * Provides the size with a particular index, where sizes are numbered in increasing order
+	 * @param index the index of the size, between 0 and getNumberOfSizes()
+	 * @return the size at that index
+	 */
+	public int getSize(int index)
+	{
+		return sizes[index];
+	}
+	
+	/**
+	 * Provides how many copies of the item with the size at a particular index
+	 * need to be produced
+	 * @param index the index of the size, between 0 and getNumberOfSizes()
+	 * @return how many copies of the item must be produced
+	 */
+	public int getDemand(int index)
+	{
+		return demands[index];
+	}
+	
+	/**
+	 * Looks up the index of a size
+	 * @param size the size of an item
+	 * @return the index of the size, or a negative number if the size does not occur in the orders
+	 */
+	public int indexOf(int size)
+	{
+		return Arrays.binarySearch(sizes, size);
+	}
+	
+	/**
+	 * Provides the sizes of the orders in increasing order
+	 * @return a copy of the array with the sizes
+	 */
+	public int [] getSizeArray()
+	{
+		return sizes.clone();
+	}
+	
+	/**
+	 * Provides the demands of the orders, in the order of the sizes
+	 * @return a copy of the array with the demands
+	 */
+	public int [] getDemandArray()
+	{
+		return demands.clone();
 	}
 	
 	/**
 	 * Provides the capacity of a unit of base stock that will be cut up
-	 * in order to produce the items in the orders.
+	 * in order to produce the items in the orders. If there are several
+	 * stock lengths, this is the longest one.
 	 * @return the capacity of a unit of base stock
 	 */
 	public int getCapacity()
@@ -68,6 +261,109 @@ public class Instance
 		return capacity;
 	}
 	
+	/**
+	 * Provides the number of different stock lengths
+	 * @return the number of stock lengths
+	 */
+	public int getNumberOfStockLengths()
+	{
+		return stockLengths.length;
+	}
+	
+	/**
+	 * Provides the stock length with a particular index, where stock lengths are numbered in increasing order
+	 * @param index the index of the stock length, between 0 and getNumberOfStockLengths()
+	 * @return the stock length at that index
+	 */
+	public int getStockLength(int index)
+	{
+		return stockLengths[index];
+	}
+	
+	/**
+	 * Provides the cost of a unit of stock of the stock length with a particular index
+	 * @param index the index of the stock length, between 0 and getNumberOfStockLengths()
+	 * @return the cost of a unit of stock of that length
+	 */
+	public double getStockCost(int index)
+	{
+		return stockCosts[index];
+	}
+	
+	/**
+	 * Provides the cost of cutting a pattern with a total size from the cheapest stock length it fits in
+	 * @param size the total size of a pattern
+	 * @return the lowest cost of a stock length of at least the size, or infinity if the size does not fit
+	 */
+	public double getCost(int size)
+	{
+		int index = Arrays.binarySearch(stockLengths, size);
+		if (index < 0)
+		{
+			index = -index-1;
+		}
+		return index < stockLengths.length ? cheapest[index] : Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Whether this instance has a single stock length with a cost of 1, so that the cost
+	 * of a solution is the number of units of stock needed
+	 * @return true if the instance is a classic cutting stock instance
+	 */
+	public boolean hasUnitStock()
+	{
+		return stockLengths.length == 1 && stockCosts[0] == 1;
+	}
+	
+	/**
+	 * Whether all stock costs are integers, so that the cost of every solution is an integer
+	 * @return true if all stock costs are integers
+	 */
+	public boolean hasIntegerCosts()
+	{
+		for (double cost : stockCosts)
+		{
+			if (cost != Math.rint(cost))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Whether another instance has the same stock lengths with the same costs
+	 * @param other the other instance
+	 * @return true if the stock of both instances is the same
+	 */
+	public boolean hasSameStock(Instance other)
+	{
+		return Arrays.equals(stockLengths, other.stockLengths) && Arrays.equals(stockCosts, other.stockCosts);
+	}
+	
+	/**
+	 * Creates an instance with the same orders that only has the stock length with a
+	 * particular index. The sizes have the same indices in both instances, which makes
+	 * it suitable for the pricing problem of that stock length.
+	 * @param index the index of the stock length, between 0 and getNumberOfStockLengths()
+	 * @return an instance with a single stock length
+	 */
+	public Instance getStockInstance(int index)
+	{
+		return new Instance(sizes, demands, new int [] {stockLengths[index]}, new double [] {stockCosts[index]});
+	}
+	
+	/**
+	 * Creates an instance with other orders and the same stock as this instance
+	 * @param sizes the unique sizes of the items that need to be produced
+	 * @param demands the number of items of the size at the same index that need to be produced
+	 * @return an instance with the same stock lengths and costs as this instance
+	 */
+	public Instance withOrders(int [] sizes, int [] demands)
+	{
+		return new Instance(sizes, demands, stockLengths, stockCosts);
+	}
+	
 	/**
 	 * Method that can be used to generate a random cutting-stock instance
 	 * @param seed a random seed
@@ -93,6 +389,20 @@ public class Instance
 
 	@Override
 	public String toString() {
-		return "Instance [capacity=" + capacity + ", orders=" + orders + "]";
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < sizes.length; i++)
+		{
+			sb.append(i == 0 ? "" : ", ").append(sizes[i]).append('=').append(demands[i]);
+		}
+		if (hasUnitStock())
+		{
+			return "Instance [capacity=" + capacity + ", orders={" + sb + "}]";
+		}
+		StringBuilder stock = new StringBuilder();
+		for (int k=0; k < stockLengths.length; k++)
+		{
+			stock.append(k == 0 ? "" : ", ").append(stockLengths[k]).append('=').append(stockCosts[k]);
+		}
+		return "Instance [stock={" + stock + "}, orders={" + sb + "}]";
 	}
 }
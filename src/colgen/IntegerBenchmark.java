@@ -0,0 +1,210 @@
+package colgen;
+import java.util.List;
+
+import ilog.concert.IloException;
+
+/**
+ * Main class that compares the ways to find integer solutions for the random instances that
+ * are solved by the Main class.
+ * The first argument selects the benchmark that is run, by default <code>heuristic</code>:
+ * <ul>
+ *   <li><code>heuristic</code> compares solving the integer problem with the primal heuristic that replaces it</li>
+ *   <li><code>bounds</code> compares solving the integer problem with and without combinatorial lower bounds</li>
+ *   <li><code>branch</code> solves the instances to optimality with parallel branch-and-price, for different numbers of workers</li>
+ *   <li><code>arcflow</code> compares column generation with the arc-flow formulation</li>
+ * </ul>
+ */
+public class IntegerBenchmark
+{
+	public static void main(String [] args) throws IloException, InterruptedException
+	{
+		String benchmark = args.length > 0 ? args[0] : "heuristic";
+		switch (benchmark)
+		{
+			case "heuristic":
+				benchmarkPrimalHeuristic();
+				break;
+			case "bounds":
+				benchmarkLowerBounds();
+				break;
+			case "branch":
+				benchmarkBranchAndPrice();
+				break;
+			case "arcflow":
+				benchmarkArcFlow();
+				break;
+			default:
+				System.out.println("Unknown benchmark: "+benchmark);
+		}
+	}
+	
+	/**
+	 * Compares the total time spent in solveInteger() and the total number of units of stock
+	 * needed when the integer problem with all generated columns is solved, with the same
+	 * numbers when the primal heuristic is used, and reports how often the integer problem
+	 * could be skipped because the heuristic solution reached the lower bound.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkPrimalHeuristic() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		for (int round=0; round < 2; round++)
+		{
+			PrimalHeuristic heuristic = round == 0 ? null : new PrimalHeuristic();
+			long nanos = 0;
+			long stock = 0;
+			long lowerBounds = 0;
+			for (Instance instance : instances)
+			{
+				MasterModel mm = Benchmark.dpModel(instance, 1, false);
+				mm.setPrimalHeuristic(heuristic);
+				long start = System.nanoTime();
+				mm.solveInteger();
+				nanos += System.nanoTime() - start;
+				stock += mm.getSolution().getStockNeeded();
+				lowerBounds += (long) mm.getLowerBound();
+				mm.cleanUp();
+			}
+			System.out.println((round == 0 ? "Integer problem:\t" : "Primal heuristic:\t")+"time "+(nanos / 1_000_000)+"ms, "
+					+"stock needed "+stock+", sum of lower bounds "+lowerBounds);
+			if (heuristic != null)
+			{
+				System.out.println("\tinteger problem skipped for "+heuristic.getSkipped()+" of "+heuristic.getRuns()
+						+" instances, "+heuristic.getDiveSteps()+" dive steps");
+			}
+		}
+	}
+	
+	/**
+	 * Compares the total time spent in solveInteger() and the lower bounds found with and
+	 * without combinatorial lower bounds, and reports for how many instances column generation
+	 * could be skipped and how long it takes to compute the combinatorial bounds.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkLowerBounds() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		long [] bounds = Benchmark.measure(() -> {
+			long sum = 0;
+			for (Instance instance : instances)
+			{
+				sum += LowerBounds.best(instance);
+			}
+			return sum;
+		});
+		System.out.println("Combinatorial bounds: "+(bounds[0] / 1_000 / instances.size())+"us per instance");
+		for (int round=0; round < 2; round++)
+		{
+			long nanos = 0;
+			long stock = 0;
+			long lowerBounds = 0;
+			int skipped = 0;
+			for (Instance instance : instances)
+			{
+				MasterModel mm = Benchmark.dpModel(instance, 1, false);
+				mm.setCombinatorialBounds(round == 1);
+				long start = System.nanoTime();
+				mm.solveInteger();
+				nanos += System.nanoTime() - start;
+				stock += mm.getSolution().getStockNeeded();
+				lowerBounds += (long) mm.getLowerBound();
+				skipped += mm.isColumnGenerationSkipped() ? 1 : 0;
+				mm.cleanUp();
+			}
+			System.out.println((round == 0 ? "Without bounds:\t" : "With bounds:\t")+"time "+(nanos / 1_000_000)+"ms, "
+					+"stock needed "+stock+", sum of lower bounds "+lowerBounds
+					+", column generation skipped for "+skipped+" instances");
+		}
+	}
+	
+	/**
+	 * Solves every instance with branch-and-price with a time budget of 10 seconds per instance,
+	 * for 1, 2 and 4 workers, and reports the total time, the number of instances solved to
+	 * optimality, the remaining gap and the number of nodes that were processed.
+	 * @throws IloException if something goes wrong with CPLEX
+	 * @throws InterruptedException if the thread is interrupted while waiting for the workers
+	 */
+	public static void benchmarkBranchAndPrice() throws IloException, InterruptedException
+	{
+		List<Instance> instances = Main.generateInstances();
+		for (int workers : new int [] {1, 2, 4})
+		{
+			long nanos = 0;
+			long stock = 0;
+			long gap = 0;
+			int optimal = 0;
+			long nodes = 0;
+			long steals = 0;
+			long dives = 0;
+			long dropped = 0;
+			for (Instance instance : instances)
+			{
+				BranchAndPrice bp = new BranchAndPrice(instance, workers, 64);
+				long start = System.nanoTime();
+				Solution solution = bp.solve(10_000);
+				nanos += System.nanoTime() - start;
+				stock += solution.getStockNeeded();
+				gap += solution.getStockNeeded() - (long) bp.getLowerBound();
+				optimal += bp.isOptimal() ? 1 : 0;
+				nodes += bp.getNodes();
+				steals += bp.getSteals();
+				dives += bp.getDives();
+				dropped += bp.getDropped();
+			}
+			System.out.println(workers+" workers:\ttime "+(nanos / 1_000_000)+"ms, stock needed "+stock
+					+", "+optimal+" of "+instances.size()+" optimal, total gap "+gap
+					+", "+nodes+" nodes, "+steals+" steals, "+dives+" dives, "+dropped+" dropped");
+		}
+	}
+	
+	/**
+	 * Compares the total time spent in solveInteger() by column generation with the time spent
+	 * by the arc-flow formulation, where the time of the arc-flow formulation is split into
+	 * building the graph and the model, and solving it. The total number of units of stock
+	 * needed, the sum of the lower bounds and the size of the reduced graphs are reported too.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkArcFlow() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		long nanos = 0;
+		long stock = 0;
+		long lowerBounds = 0;
+		for (Instance instance : instances)
+		{
+			MasterModel mm = Benchmark.dpModel(instance, 1, false);
+			long start = System.nanoTime();
+			mm.solveInteger();
+			nanos += System.nanoTime() - start;
+			stock += mm.getSolution().getStockNeeded();
+			lowerBounds += (long) mm.getLowerBound();
+			mm.cleanUp();
+		}
+		System.out.println("Column generation:\ttime "+(nanos / 1_000_000)+"ms, "
+				+"stock needed "+stock+", sum of lower bounds "+lowerBounds);
+		
+		long buildNanos = 0;
+		nanos = 0;
+		stock = 0;
+		lowerBounds = 0;
+		long nodes = 0;
+		long arcs = 0;
+		for (Instance instance : instances)
+		{
+			long start = System.nanoTime();
+			ArcFlowModel af = new ArcFlowModel(instance);
+			long built = System.nanoTime();
+			af.solveInteger();
+			buildNanos += built - start;
+			nanos += System.nanoTime() - built;
+			stock += af.getSolution().getStockNeeded();
+			lowerBounds += (long) af.getLowerBound();
+			nodes += af.getNumberOfNodes();
+			arcs += af.getNumberOfArcs();
+			af.cleanUp();
+		}
+		System.out.println("Arc-flow:\t\ttime "+((buildNanos + nanos) / 1_000_000)+"ms ("+(buildNanos / 1_000_000)+"ms building), "
+				+"stock needed "+stock+", sum of lower bounds "+lowerBounds);
+		System.out.println("\taverage graph size: "+(nodes / instances.size())+" nodes, "+(arcs / instances.size())+" arcs");
+	}
+}
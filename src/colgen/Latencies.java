@@ -0,0 +1,48 @@
+package colgen;
+import java.util.Arrays;
+
+/**
+ * Summarizes the latencies measured by the main classes that solve many instances concurrently,
+ * such as ParallelMain, and by the solver server. The percentiles are computed with the nearest
+ * rank method.
+ */
+public class Latencies
+{
+	private Latencies()
+	{
+	}
+	
+	/**
+	 * Computes a percentile using the nearest rank method
+	 * @param sorted the sorted values
+	 * @param p the percentile between 0 and 100
+	 * @return the value at the percentile, or 0 if there are no values
+	 */
+	public static long percentile(long [] sorted, int p)
+	{
+		if (sorted.length == 0)
+		{
+			return 0;
+		}
+		int rank = (int) Math.ceil(p / 100d * sorted.length);
+		return sorted[Math.max(0, rank-1)];
+	}
+	
+	/**
+	 * Sorts latencies in milliseconds, and prints their percentiles, the throughput and the runtime
+	 * @param latencies the latency of every solved instance or request in milliseconds, which is sorted
+	 * @param unit the name of the things that were solved, such as instances or requests
+	 * @param time the wall-clock time in milliseconds that it took to solve all of them
+	 * @return the throughput in solved things per second
+	 */
+	public static double print(long [] latencies, String unit, long time)
+	{
+		Arrays.sort(latencies);
+		double throughput = latencies.length * 1000d / time;
+		System.out.println("Latency p50: "+percentile(latencies, 50)+"ms, p90: "+percentile(latencies, 90)
+				+"ms, p99: "+percentile(latencies, 99)+"ms, max: "+percentile(latencies, 100)+"ms");
+		System.out.println("Throughput: "+String.format("%.2f", throughput)+" "+unit+"/s");
+		System.out.println("Runtime: "+time+"ms");
+		return throughput;
+	}
+}
@@ -0,0 +1,154 @@
+package colgen;
+
+/**
+ * Combinatorial lower bounds on the number of units of stock needed for an instance of
+ * the Cutting Stock problem, which are well known from the bin packing literature. They
+ * are computed in pure Java with integer arithmetic, and take microseconds to compute,
+ * so they can be used before column generation starts. If a heuristic solution needs
+ * exactly as many units of stock as one of these bounds, it is optimal and column
+ * generation is not needed at all.
+ *
+ * The LP-relaxation of the master problem, rounded up, is always at least as strong as
+ * these bounds, but it is much more expensive to compute.
+ */
+public class LowerBounds
+{
+	// The largest k of the dual feasible functions of Fekete and Schepers
+	private static final int MAX_K = 30;
+	
+	private LowerBounds()
+	{
+	}
+	
+	/**
+	 * The best of the bounds provided by this class
+	 * @param instance the instance for which to compute the bound
+	 * @return a lower bound on the number of units of stock needed
+	 */
+	public static int best(Instance instance)
+	{
+		return Math.max(continuous(instance), Math.max(martelloToth(instance), dualFeasible(instance)));
+	}
+	
+	/**
+	 * The continuous bound L1, which is the total size of all items that need to be
+	 * produced divided by the capacity of a unit of stock, rounded up
+	 * @param instance the instance for which to compute the bound
+	 * @return a lower bound on the number of units of stock needed
+	 */
+	public static int continuous(Instance instance)
+	{
+		long total = 0;
+		for (int i=0; i < instance.getNumberOfSizes(); i++)
+		{
+			total += (long) instance.getDemand(i) * instance.getSize(i);
+		}
+		return (int) ceilDiv(total, instance.getCapacity());
+	}
+	
+	/**
+	 * The bound L2 of Martello and Toth. For a parameter K, the items larger than C-K
+	 * can not be combined with any item of size at least K, and the items larger than C/2
+	 * can not be combined with each other. Each of these items needs its own unit of stock,
+	 * and the items with a size between K and C/2 need at least as many additional units of
+	 * stock as their total size that does not fit in the remaining capacity of those units.
+	 * The bound is the maximum over all values of K that are equal to a size of at most C/2.
+	 * @param instance the instance for which to compute the bound
+	 * @return a lower bound on the number of units of stock needed
+	 */
+	public static int martelloToth(Instance instance)
+	{
+		int capacity = instance.getCapacity();
+		int n = instance.getNumberOfSizes();
+		long result = continuous(instance);
+		for (int k=0; k < n && 2 * instance.getSize(k) <= capacity; k++)
+		{
+			int threshold = instance.getSize(k);
+			long large = 0;
+			long medium = 0;
+			long mediumSize = 0;
+			long smallSize = 0;
+			for (int i=0; i < n; i++)
+			{
+				int size = instance.getSize(i);
+				long demand = instance.getDemand(i);
+				if (size > capacity - threshold)
+				{
+					large += demand;
+				}
+				else if (2 * size > capacity)
+				{
+					medium += demand;
+					mediumSize += demand * size;
+				}
+				else if (size >= threshold)
+				{
+					smallSize += demand * size;
+				}
+			}
+			long free = medium * capacity - mediumSize;
+			long bound = large + medium + Math.max(0, ceilDiv(smallSize - free, capacity));
+			result = Math.max(result, bound);
+		}
+		return (int) result;
+	}
+	
+	/**
+	 * The bound given by the dual feasible functions of Fekete and Schepers. A dual feasible
+	 * function maps sizes to values such that the values of the items in any pattern add up
+	 * to at most one, so that the total value of all items is a lower bound. This bound uses
+	 * the functions u(k) for k between 1 and 30, composed with the function U(e) that rounds
+	 * sizes above C-e up to C and sizes below e down to 0, for every size e of at most C/2.
+	 * @param instance the instance for which to compute the bound
+	 * @return a lower bound on the number of units of stock needed
+	 */
+	public static int dualFeasible(Instance instance)
+	{
+		int capacity = instance.getCapacity();
+		int n = instance.getNumberOfSizes();
+		long result = 0;
+		// A threshold of 0 leaves the sizes unchanged
+		for (int e=-1; e < n; e++)
+		{
+			int threshold = e < 0 ? 0 : instance.getSize(e);
+			if (2 * threshold > capacity)
+			{
+				break;
+			}
+			for (int k=1; k <= MAX_K; k++)
+			{
+				// The values are scaled by k*C, so that they are all integers
+				long total = 0;
+				for (int i=0; i < n; i++)
+				{
+					long size = instance.getSize(i);
+					if (size > capacity - threshold)
+					{
+						size = capacity;
+					}
+					else if (size < threshold)
+					{
+						size = 0;
+					}
+					long value;
+					if ((k+1) * size % capacity == 0)
+					{
+						value = k * size;
+					}
+					else
+					{
+						value = (k+1) * size / capacity * capacity;
+					}
+					total += instance.getDemand(i) * value;
+				}
+				result = Math.max(result, ceilDiv(total, (long) k * capacity));
+			}
+		}
+		return (int) result;
+	}
+	
+	private static long ceilDiv(long a, long b)
+	{
+		return -Math.floorDiv(-a, b);
+	}
+}
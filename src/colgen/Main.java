@@ -1,10 +1,14 @@
 package colgen;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import ilog.concert.IloException;
 
 /**
- * Main class that generates random instances and solves them using the Column Generation model
+ * Main class that generates random instances and solves them using the Column Generation model.
+ * The only argument is the number of threads CPLEX may use (by default 1), which is the same
+ * default as that of ParallelMain, so that both print the same solutions.
  * @author Paul Bouman
  *
  */
@@ -12,28 +16,53 @@ public class Main
 {
 	public static void main(String [] args) throws IloException
 	{
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
 		long time = System.currentTimeMillis();
-		Random ran = new Random(54321);
-		for (int i=0; i < 100; i++)
+		for (Instance instance : generateInstances())
 		{
-			Instance instance = Instance.randomInstance(ran.nextLong(), 50, 13, 20);
-			
 			MasterModel mm = new MasterModel(instance);
+			mm.setThreads(threads);
+			mm.setCombinatorialBounds(true);
 			mm.solveInteger();
-			Solution sol = mm.getSolution();
-			double lb = mm.getLowerBound();
-			
-			System.out.println("Instance: "+instance);
-			System.out.println("Solution: "+sol);
-			System.out.println("Integer solution: "+sol.getStockNeeded());
-			System.out.println("Lowerbound: "+lb);
-			if (lb > sol.getStockNeeded()) {
-				System.out.println("This is very strange...");
-			}
-			System.out.println();
+			System.out.println(report(instance, mm.getSolution(), mm.getLowerBound()));
 			mm.cleanUp();
 		}
 		time = System.currentTimeMillis() - time;
 		System.out.println("Runtime: "+time+"ms");
 	}
+	
+	/**
+	 * Builds the text that is printed for every instance that is solved
+	 * @param instance the instance that was solved
+	 * @param sol the solution found for the instance
+	 * @param lb the lower bound found for the instance
+	 * @return the text to print, ending with an empty line
+	 */
+	public static String report(Instance instance, Solution sol, double lb)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("Instance: "+instance+"\n");
+		sb.append("Solution: "+sol+"\n");
+		sb.append("Integer solution: "+sol.getStockNeeded()+"\n");
+		sb.append("Lowerbound: "+lb+"\n");
+		if (lb > sol.getStockNeeded()) {
+			sb.append("This is very strange...\n");
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Generates the random instances that are solved by the main method
+	 * @return a list with the same 100 random instances every time it is called
+	 */
+	public static List<Instance> generateInstances()
+	{
+		List<Instance> result = new ArrayList<>();
+		Random ran = new Random(54321);
+		for (int i=0; i < 100; i++)
+		{
+			result.add(Instance.randomInstance(ran.nextLong(), 50, 13, 20));
+		}
+		return result;
+	}
 }
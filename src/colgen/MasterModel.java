@@ -1,20 +1,37 @@
 package colgen;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
-import ilog.concert.IloColumn;
+import ilog.concert.IloColumnArray;
 import ilog.concert.IloConversion;
 import ilog.concert.IloException;
+import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
 import ilog.concert.IloNumVarType;
 import ilog.concert.IloObjective;
 import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
+import ilog.cplex.IloCplex.BasisStatus;
 import ilog.cplex.IloCplex.DoubleParam;
+import ilog.cplex.IloCplex.IntParam;
+import ilog.cplex.IloCplex.MIPInfoCallback;
 
 /**
  * Class that implements the Master Problem of the Cutting Stock problem
@@ -26,7 +43,17 @@ import ilog.cplex.IloCplex.DoubleParam;
  * Note that this class will not necesarilly find the optimal solution to the problem,
  * as a full-blown branch-and-price approach is required to do so. However, the lower-bound
  * provided by the LP-relaxation can be used to determine the gap between the solution found
- * and the optimal solution.
+ * and the optimal solution. The BranchAndPrice class uses this class to solve the nodes of
+ * a branch-and-price search.
+ * 
+ * If the instance has several stock lengths, every column is cut from the cheapest stock
+ * length it fits in, and there is a pricing problem for every stock length. These pricing
+ * problems can be solved concurrently, after which the best columns of all stock lengths are
+ * added in a single batch.
+ * 
+ * The integer problem can be solved within a wall-clock time budget, which is split between
+ * column generation and the integer problem. A solve can also be cancelled from another thread.
+ * In both cases, the best solution found so far is returned together with its proven gap.
  * 
  * @author Paul Bouman
  *
@@ -39,33 +66,128 @@ public class MasterModel
 	private IloCplex model;
 	
 	private IloObjective obj;
-	private Map<Pattern,IloNumVar> vars;
-	private Map<Integer,IloRange> constraints;
+	// Every pattern that was a column at some point is kept in the store, and the variable of
+	// a column is stored by its handle. The variable is null if the column was removed.
+	private ColumnStore store;
+	private IloNumVar [] vars;
+	private int numberOfColumns;
+	// The handles of the initial patterns, which are never removed to keep the master problem feasible
+	private BitSet permanent;
+	// The constraint and the demand of each size, by the index of the size in the instance
+	private IloRange [] constraints;
+	private double [] demands;
+	// The bounds imposed on columns by branching, and the number of columns with an upper bound
+	private Map<Pattern,int []> branchingBounds = Collections.emptyMap();
+	private int excluded = 0;
+	private IloNumVar [] artificials;
 	
-	private PricingModel pricing;
+	// The engine of the pricing problem of every stock length
+	private PricingEngine [] pricing;
+	private ExecutorService pricingExecutor;
+	// The buffers of a pricing round, which are allocated once and reused in every iteration
+	private double [] pricedObjectives;
+	private double [] pricedBounds;
+	private boolean [] improving;
+	private List<List<Pattern>> found;
+	private final List<Pattern> candidates = new ArrayList<>();
+	private final List<Pattern> pricedPatterns = new ArrayList<>();
+	private double [] pricedDuals;
+	private int pricedK;
+	private final PricingTask solvePricing = this::solvePricing;
+	private final PricingTask collectPatterns = this::collectPatterns;
+	private final Comparator<Pattern> byReducedCost = Comparator.comparingDouble((Pattern p) -> reducedCost(p, pricedDuals)).reversed();
+	private int columnsPerIteration = 1;
+	private int maxColumnsPerIteration = 1;
+	private boolean adaptiveColumns = false;
+	private int iterations = 0;
+	private DualStabilization stabilization;
+	private ColumnPool pool;
+	private PrimalHeuristic heuristic;
+	private PricingHeuristic pricingHeuristic;
+	private boolean combinatorialBounds = false;
+	private boolean columnGenerationSkipped = false;
+	private int threads = 0;
+	
+	private boolean earlyTermination = false;
+	private boolean terminatedEarly = false;
+	private double masterValue;
+	private double bestBound;
+	private double [] objectiveHistory = new double[16];
+	private double [] boundHistory = new double[16];
+	private int [] columnHistory = new int[16];
+	private int historyLength = 0;
+	private double [] subgradient;
 	
 	private double lowerbound = 0;
 	private Solution solution;
 	
+	// The time budget of the current solve, its cancellation and the listener for its progress
+	private final IloCplex.Aborter aborter = new IloCplex.Aborter();
+	private volatile boolean cancelled = false;
+	private boolean timed = false;
+	private long deadline;
+	private long solveStart;
+	// Stops the solve of a model that is part of the solve of another model, such as a dive
+	private BooleanSupplier stopCondition;
+	private volatile Consumer<Progress> progressListener;
+	
 	/**
 	 * Constructor that builds the Master Problem of a Column Generation model
-	 * for the Cutting Stock problem
+	 * for the Cutting Stock problem. The pricing problems are solved using CPLEX.
 	 * @param instance the instance for which to build a column generation model
 	 * @throws IloException if something is wrong with CPLEX
 	 */
 	public MasterModel(Instance instance) throws IloException
 	{
+		this(instance, pricingModels(instance));
+	}
+	
+	/**
+	 * Constructor that builds the Master Problem of a Column Generation model
+	 * for the Cutting Stock problem, where the pricing problems are solved by the
+	 * given pricing engines. The engines are cleaned up together with this model.
+	 * @param instance the instance for which to build a column generation model
+	 * @param pricing for every stock length of the instance, the engine used to solve its pricing problem,
+	 *                which is built for the instance returned by instance.getStockInstance()
+	 * @throws IllegalArgumentException if the number of engines differs from the number of stock lengths
+	 * @throws IloException if something is wrong with CPLEX
+	 */
+	public MasterModel(Instance instance, PricingEngine... pricing) throws IloException
+	{
+		if (pricing.length != instance.getNumberOfStockLengths())
+		{
+			throw new IllegalArgumentException("There must be exactly one pricing engine for every stock length");
+		}
 		this.instance = instance;
 		this.model = new IloCplex();
 		
-		this.vars = new LinkedHashMap<>();
-		this.constraints = new LinkedHashMap<>();
-		this.pricing = new PricingModel(instance);
+		this.store = new ColumnStore();
+		this.vars = new IloNumVar[1024];
+		this.permanent = new BitSet();
+		this.pricing = pricing;
+		this.pricedObjectives = new double[pricing.length];
+		this.pricedBounds = new double[pricing.length];
+		this.improving = new boolean[pricing.length];
+		this.found = new ArrayList<>(Collections.nCopies(pricing.length, null));
 		
 		initPatternsAndVars();
 		initConstraints();
 		initObjective();
 		model.setOut(null);
+		model.use(aborter);
+	}
+	
+	/**
+	 * Creates a PricingModel for every stock length of an instance
+	 */
+	private static PricingEngine [] pricingModels(Instance instance) throws IloException
+	{
+		PricingEngine [] engines = new PricingEngine[instance.getNumberOfStockLengths()];
+		for (int k=0; k < engines.length; k++)
+		{
+			engines[k] = new PricingModel(instance.getStockInstance(k));
+		}
+		return engines;
 	}
 	
 	/**
@@ -75,12 +197,12 @@ public class MasterModel
 	 */
 	private void initPatternsAndVars() throws IloException
 	{
-		for (Integer size : instance.getSizes()) {
-			Map<Integer,Integer> cutMap = new LinkedHashMap<>();
-			cutMap.put(size, instance.getCapacity()/size);
-			Pattern pattern = new Pattern(cutMap);
-			IloNumVar var = model.numVar(0, Double.POSITIVE_INFINITY);
-			vars.put(pattern, var);
+		for (int i=0; i < instance.getNumberOfSizes(); i++) {
+			int size = instance.getSize(i);
+			Pattern pattern = new Pattern(new int[] {size}, new int[] {instance.getCapacity()/size});
+			int handle = store.add(pattern);
+			setVar(handle, model.numVar(0, Double.POSITIVE_INFINITY));
+			permanent.set(handle);
 		}
 	}
 	
@@ -91,207 +213,1647 @@ public class MasterModel
 	 */
 	private void initConstraints() throws IloException
 	{
-		for (Integer size : instance.getSizes())
+		int n = instance.getNumberOfSizes();
+		// Build the left hand side of every constraint by going over the cuts of each pattern
+		IloLinearNumExpr [] exprs = new IloLinearNumExpr[n];
+		for (int i=0; i < n; i++)
+		{
+			exprs[i] = model.linearNumExpr();
+		}
+		for (int handle=0; handle < vars.length; handle++)
 		{
-			IloNumExpr expr = model.constant(0);
-			for (Entry<Pattern,IloNumVar> e : vars.entrySet())
+			if (vars[handle] == null)
+			{
+				continue;
+			}
+			for (int j=0; j < store.getNumberOfSizes(handle); j++)
 			{
-				Pattern pattern = e.getKey();
-				if (pattern.containsSize(size))
+				int index = instance.indexOf(store.getSizeAt(handle, j));
+				if (index >= 0)
 				{
-					IloNumVar var = e.getValue();
-					IloNumExpr term = model.prod(var, pattern.getAmount(size));
-					expr = model.sum(expr, term);
+					exprs[index].addTerm(store.getAmountAt(handle, j), vars[handle]);
 				}
 			}
-			IloRange constraint = model.addGe(expr, instance.getAmount(size));
-			constraints.put(size, constraint);
+		}
+		
+		constraints = new IloRange[n];
+		demands = new double[n];
+		for (int i=0; i < n; i++)
+		{
+			demands[i] = instance.getDemand(i);
+			constraints[i] = model.addGe(exprs[i], demands[i]);
 		}
 	}
 	
 	/**
 	 * Initializes the minimization objective. Each time one of the patterns
 	 * is used, one unit of base stock is utilized, so the objective is to
-	 * minimize the sum of the decision variables.
+	 * minimize the sum of the decision variables, weighted by the cost of
+	 * the stock length each pattern is cut from.
 	 * @throws IloException
 	 */
 	private void initObjective() throws IloException
 	{
 		IloNumExpr expr = model.constant(0);
-		for (IloNumVar var : vars.values())
+		for (int handle=0; handle < vars.length; handle++)
 		{
-			expr = model.sum(expr,var);
+			if (vars[handle] != null)
+			{
+				expr = model.sum(expr,model.prod(instance.getCost(store.getSize(handle)), vars[handle]));
+			}
 		}
 		obj = model.addMinimize(expr);
 	}
 	
 	/**
-	 * This method can be used to add a new pattern to the current model.
-	 * The steps perform are to introduce a new decision variable,
-	 * add this decision variable to the relevant constraints and add
-	 * it to the objective
-	 * @param p the pattern to introduce as a new column in the model
+	 * Stores the variable of a column, or removes it if null is provided
+	 * @param handle the handle of the pattern of the column in the store
+	 * @param var the variable of the column
+	 */
+	private void setVar(int handle, IloNumVar var)
+	{
+		if (handle >= vars.length)
+		{
+			vars = Arrays.copyOf(vars, Math.max(2*vars.length, handle+1));
+		}
+		if (vars[handle] == null && var != null)
+		{
+			numberOfColumns++;
+		}
+		else if (vars[handle] != null && var == null)
+		{
+			numberOfColumns--;
+		}
+		vars[handle] = var;
+	}
+	
+	/**
+	 * Gives the variable of the column of a pattern
+	 * @param pattern the pattern
+	 * @return the variable, or null if the pattern is not a column of the master problem
+	 */
+	private IloNumVar getVar(Pattern pattern)
+	{
+		int handle = store.find(pattern);
+		return handle >= 0 && handle < vars.length ? vars[handle] : null;
+	}
+	
+	/**
+	 * Adds patterns as columns to the master problem, for example patterns of a known
+	 * solution. Patterns that are already part of the master problem are skipped.
+	 * @param patterns the patterns to add
+	 * @return the number of patterns that were added
+	 * @throws IllegalArgumentException if a pattern does not fit in the longest stock length
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public int addColumns(Collection<Pattern> patterns) throws IloException
+	{
+		List<Pattern> added = new ArrayList<>();
+		for (Pattern p : new LinkedHashSet<>(patterns))
+		{
+			if (p.getSize() > instance.getCapacity())
+			{
+				throw new IllegalArgumentException("Pattern "+p+" does not fit in the longest stock length");
+			}
+			if (getVar(p) == null)
+			{
+				added.add(p);
+			}
+		}
+		if (!added.isEmpty())
+		{
+			addPatterns(added);
+		}
+		return added.size();
+	}
+	
+	/**
+	 * Adds the patterns generated by an initial column generator to the master problem,
+	 * in addition to the patterns that cut a single size, which are always present.
+	 * This should be done before solveRelaxation() is called.
+	 * @param generator the generator of initial columns
+	 * @return the number of patterns that were added
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public int addInitialColumns(InitialColumnGenerator generator) throws IloException
+	{
+		return addColumns(generator.generate(instance));
+	}
+	
+	/**
+	 * This method can be used to add new patterns to the current model.
+	 * The steps perform are to introduce a new decision variable for each
+	 * pattern, add these decision variables to the relevant constraints and
+	 * add them to the objective. All patterns are added to CPLEX in a single
+	 * batch, with one partial column array per constraint, and to the column
+	 * store. If a column pool is used, the patterns are removed from the pool.
+	 * @param patterns the patterns to introduce as new columns in the model
 	 * @throws IloException if something goes wrong with CPLEX
 	 */
-	private void addPattern(Pattern p) throws IloException
+	private void addPatterns(List<Pattern> patterns) throws IloException
 	{
-		if (vars.containsKey(p)) {
-			// This should never happen in a correct column generation procedure
-			throw new IllegalArgumentException("This pattern was already added to the model");
+		int n = patterns.size();
+		int [] handles = new int[n];
+		for (int i=0; i < n; i++)
+		{
+			Pattern p = patterns.get(i);
+			if (getVar(p) != null) {
+				// This should never happen in a correct column generation procedure
+				throw new IllegalArgumentException("This pattern was already added to the model");
+			}
+			handles[i] = store.add(p);
+			if (pool != null)
+			{
+				pool.reactivate(handles[i]);
+			}
 		}
 		
-		// We build a column object by first defining the contribution to the objective as 1
-		IloColumn column = model.column(obj, 1);
-		for (Entry<Integer,IloRange> e : constraints.entrySet())
+		double [] costs = new double[n];
+		for (int i=0; i < n; i++)
+		{
+			costs[i] = cost(patterns.get(i));
+		}
+		// We build an array of columns by first defining the contribution to the objective as the cost
+		IloColumnArray columns = model.columnArray(obj, costs);
+		// Collect the coefficients of the constraints that are used by at least one pattern
+		double [][] amounts = new double[constraints.length][];
+		for (int i=0; i < n; i++)
 		{
-			int size = e.getKey();
-			if (p.containsSize(size))
+			Pattern p = patterns.get(i);
+			for (int j=0; j < p.getNumberOfSizes(); j++)
 			{
-				// Retrieve the constraint associated with this 
-				IloRange rng = e.getValue();
-				// We define a partial column based on the constraint and the contribution to the constraint
-				IloColumn coefficient = model.column(rng, p.getAmount(size));
-				// The column is expanded with the coefficient just created
-				column = column.and(coefficient);
+				int index = instance.indexOf(p.getSizeAt(j));
+				if (index >= 0)
+				{
+					if (amounts[index] == null)
+					{
+						amounts[index] = new double[n];
+					}
+					amounts[index][i] = p.getAmountAt(j);
+				}
+			}
+		}
+		for (int index=0; index < constraints.length; index++)
+		{
+			if (amounts[index] != null)
+			{
+				// We define partial columns based on the constraint and the contributions to the constraint
+				IloColumnArray coefficients = model.columnArray(constraints[index], amounts[index]);
+				// The columns are expanded with the coefficients just created
+				columns = columns.and(coefficients);
 			}
 		}
+		
+		// We introduce new decision variables for these columns
+		double [] lbs = new double[n];
+		double [] ubs = new double[n];
+		Arrays.fill(ubs, Double.POSITIVE_INFINITY);
+		IloNumVar [] newVars = model.numVarArray(columns, lbs, ubs);
+		// Finally, we store the variables by the handles of their patterns
+		for (int i=0; i < n; i++)
+		{
+			setVar(handles[i], newVars[i]);
+		}
+	}
+	
+	/**
+	 * Generates an array of duals, with a dual for each size of item that can be generated,
+	 * in the order of the constraints. All duals are retrieved from CPLEX in a single call.
+	 * @return an array with duals for the different items
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private double [] getDuals() throws IloException
+	{
+		return model.getDuals(constraints);
+	}
+	
+	/**
+	 * Computes the reduced costs of a pattern for an array of duals
+	 * @param p the pattern
+	 * @param duals the array of duals in the order of the constraints
+	 * @return the reduced costs of the pattern, which are positive if the pattern is attractive
+	 */
+	private double reducedCost(Pattern p, double [] duals)
+	{
+		return p.getValue(instance, duals) - cost(p);
+	}
+	
+	/**
+	 * The cost of a column, which is the cost of the cheapest stock length the pattern fits in
+	 * @param p the pattern
+	 * @return the cost of the pattern
+	 */
+	private double cost(Pattern p)
+	{
+		return instance.getCost(p.getSize());
+	}
 	
-		// We introduce a new decision variable for this column
-		IloNumVar var = model.numVar(column, 0, Double.POSITIVE_INFINITY);
-		// Finally, we store the variable in our map
-		vars.put(p, var);
+	/**
+	 * Computes the Lagrangian lower bound on the LP-relaxation given by Farley for
+	 * a vector of non-negative duals. If no pattern has a ratio of its total dual and
+	 * its cost greater than ratio, the duals scaled by 1/ratio are feasible for the dual
+	 * of the LP-relaxation, so that their objective value is a lower bound. For a single
+	 * stock length with a cost of 1, the ratio is equal to 1 plus the maximal reduced costs.
+	 * @param duals the array of duals in the order of the constraints
+	 * @param ratio the maximal ratio of the total dual and the cost of a pattern, as found by the pricing problems
+	 * @return a lower bound on the value of the LP-relaxation
+	 */
+	private double farleyBound(double [] duals, double ratio)
+	{
+		double value = 0;
+		for (int i=0; i < demands.length; i++)
+		{
+			value += demands[i] * duals[i];
+		}
+		return value / Math.max(1, ratio);
 	}
 	
 	/**
-	 * Generates a map of duals, with a dual for each size of item that can be generated
-	 * @return a map with duals for the different items
+	 * Checks whether the best lower bound found so far, rounded up, is equal to the
+	 * current value of the master problem, rounded up. As the objective value of
+	 * any integer solution is integer, generating more columns can not improve
+	 * the rounded lower bound in that case. This is never the case if some stock
+	 * costs are not integer.
+	 * @return whether column generation can stop without losing bound quality
 	 * @throws IloException if something goes wrong with CPLEX
 	 */
-	private Map<Integer,Double> getDuals() throws IloException
+	private boolean boundReached() throws IloException
 	{
-		Map<Integer,Double> map = new LinkedHashMap<>();
-		for (Entry<Integer,IloRange> e : constraints.entrySet())
+		if (!instance.hasIntegerCosts())
 		{
-			// This is the size of the items related to this particular constraint
-			int size = e.getKey();
-			// This is the objective referred to the constraint itself
-			IloRange constraint = e.getValue();
-			// Retrieve the dual and store it in the map of duals
-			double dual = model.getDual(constraint);
-			map.put(size, dual);
+			return false;
 		}
-		return map;
+		double epsilon = model.getParam(DoubleParam.EpOpt);
+		return Math.ceil(bestBound - epsilon) >= Math.ceil(masterValue - epsilon);
 	}
 	
 	/**
-	 * This method generates a single column and if it has positive reduced costs
-	 * adds it to the model
+	 * This method generates new columns and adds them to the model. Without dual stabilization,
+	 * the pricing problem is solved once for the duals of the master problem. With stabilization,
+	 * it is solved for a smoothed separation point and, in case of mispricing, again with
+	 * less smoothing until it is solved for the duals of the master problem themselves.
+	 * If a column pool is used and it contains columns with positive reduced costs, these
+	 * columns are added instead and the pricing problem is not solved in this iteration.
+	 * The same holds for the columns found by a pricing heuristic, which is tried next.
 	 * @return whether a column with positive reduced costs was found
 	 * @throws IloException when something goes wrong with CPLEX
 	 */
-	private boolean generateColumn() throws IloException
+	private boolean generateColumns() throws IloException
 	{
-		Map<Integer, Double> duals = getDuals();
-		pricing.setDuals(duals);
-		pricing.solve();
-		Pattern pattern = pricing.getPattern();
-		if (pricing.getObjective() > threshold && !vars.containsKey(pattern))
+		double [] duals = getDuals();
+		masterValue = model.getObjValue();
+		if (pool != null)
+		{
+			List<Pattern> reactivated = pool.price(store, instance, duals, threshold, columnsPerIteration);
+			if (!reactivated.isEmpty())
+			{
+				addPatterns(reactivated);
+				return true;
+			}
+		}
+		if (pricingHeuristic != null)
+		{
+			pricedPatterns.clear();
+			for (Pattern pattern : pricingHeuristic.price(instance, duals, threshold, columnsPerIteration + excluded))
+			{
+				if (pricedPatterns.size() < columnsPerIteration && getVar(pattern) == null)
+				{
+					pricedPatterns.add(pattern);
+				}
+			}
+			if (!pricedPatterns.isEmpty())
+			{
+				addPatterns(pricedPatterns);
+				pricingHeuristic.heuristicPriced();
+				return true;
+			}
+		}
+		long start = System.nanoTime();
+		boolean found = priceExactly(duals);
+		if (pricingHeuristic != null)
 		{
-			addPattern(pricing.getPattern());
-			return true;
+			pricingHeuristic.exactPriced(System.nanoTime() - start);
 		}
-		return false;
+		return found;
 	}
 	
 	/**
-	 * This method solves the Master Problem using Column Generation. This provides
-	 * the optimal LP-relaxation of the master model
+	 * Generates new columns by solving the pricing problems exactly, with or without dual stabilization
+	 * @param duals the duals of the master problem
+	 * @return whether a column with positive reduced costs was found
 	 * @throws IloException when something goes wrong with CPLEX
 	 */
-	public void solveRelaxation() throws IloException
+	private boolean priceExactly(double [] duals) throws IloException
 	{
-		do
+		if (stabilization == null)
 		{
-			// Solve the LP-relaxation
-			model.solve();
-		} while (generateColumn()); // As long as new columns with positive reduced costs are generated
+			return !priceAndAdd(duals, duals).isEmpty();
+		}
+		
+		stabilization.startIteration(duals);
+		while (true)
+		{
+			boolean exact = stabilization.isExact();
+			double [] separation = stabilization.getSeparationPoint(duals);
+			List<Pattern> added = priceAndAdd(separation, duals);
+			if (!added.isEmpty())
+			{
+				// The best pattern at the separation point gives a subgradient of the
+				// Lagrangian function, where we use the objective of the master problem as an
+				// estimate of the number of times the pattern would be used. CPLEX has no
+				// solution after the columns were added, so the value cached at the start of
+				// the iteration is used.
+				Pattern best = added.get(0);
+				double rolls = masterValue;
+				if (subgradient == null)
+				{
+					subgradient = new double[demands.length];
+				}
+				System.arraycopy(demands, 0, subgradient, 0, demands.length);
+				for (int j=0; j < best.getNumberOfSizes(); j++)
+				{
+					int index = instance.indexOf(best.getSizeAt(j));
+					if (index >= 0)
+					{
+						subgradient[index] -= rolls * best.getAmountAt(j);
+					}
+				}
+				stabilization.subgradient(subgradient, duals);
+				return true;
+			}
+			if (exact || terminatedEarly)
+			{
+				return false;
+			}
+			stabilization.mispriced();
+		}
 	}
 	
 	/**
-	 * This method solves the IP version of the Master Problem based on the current columns in the model.
-	 * This method first executed the column generation procedure on the relaxed version of the problem.
-	 * @throws IloException
+	 * This method generates up to k columns for a vector of duals, where k is the current
+	 * number of columns per iteration, and adds the columns with positive reduced costs for
+	 * the duals of the master problem to the model in a single batch. With several stock
+	 * lengths, the pricing problem of every stock length is solved, and the k columns with
+	 * the highest reduced costs over all stock lengths are added. The buffers of this method
+	 * are fields, so that a pricing round only allocates the patterns it finds.
+	 * @param separation the duals for which the pricing problem is solved
+	 * @param duals the duals of the master problem
+	 * @return the patterns that were added, best first, which are only valid until the next call
+	 * @throws IloException when something goes wrong with CPLEX
 	 */
-	public void solveInteger() throws IloException
+	private List<Pattern> priceAndAdd(double [] separation, double [] duals) throws IloException
 	{
-		// Store the relaxed solution as a lowerbound
-		// Note that we know the integer-objective must be integer,
-		// so we can take the ceil of the LP-relaxation for this
-		// particular problem. We subtract the current numeric precision to avoid
-		// situations where the lower bound is greater than the optimal solution.
-		solveRelaxation();
-		lowerbound = Math.ceil(model.getObjValue() - model.getParam(DoubleParam.EpOpt));
-		
-		// Convert the model to an integer model and solve
-		List<IloConversion> conversions = new ArrayList<>();
-		for (IloNumVar var : vars.values())
+		int n = pricing.length;
+		// The best patterns may be columns that are at an upper bound imposed by branching,
+		// so we request as many extra patterns as there are such columns and skip them below
+		int k = columnsPerIteration + excluded;
+		pricedDuals = separation;
+		pricedK = k;
+		forEachStockLength(solvePricing);
+		// The objective of an engine is the total dual of a pattern minus one,
+		// so we correct it for the cost of the stock length of the engine
+		boolean improvement = false;
+		double ratio = 0;
+		for (int l=0; l < n; l++)
 		{
-			IloConversion conv = model.conversion(var, IloNumVarType.Int);
-			model.add(conv);
-			conversions.add(conv);
+			double cost = instance.getStockCost(l);
+			improving[l] = pricedObjectives[l] - (cost - 1) > threshold;
+			improvement |= improving[l];
+			ratio = Math.max(ratio, (pricedBounds[l] + 1) / cost);
 		}
-		model.solve();
-		
-		// Construct a solution based on the IP-solution
-		Map<Pattern,Integer> result = new LinkedHashMap<>();
-		for (Entry<Pattern,IloNumVar> e : vars.entrySet())
+		double bound = farleyBound(separation, ratio);
+		if (branchingBounds.isEmpty())
+		{
+			// With branching bounds, the Lagrangian bound also depends on the duals of the
+			// bounds, so only the value of the LP-relaxation can be used as a bound
+			bestBound = Math.max(bestBound, bound);
+		}
+		if (stabilization != null)
+		{
+			stabilization.priced(bound);
+		}
+		if (!improvement)
+		{
+			return Collections.emptyList();
+		}
+		if (earlyTermination && boundReached())
 		{
-			Pattern pattern = e.getKey();
-			IloNumVar var = e.getValue();
-			int copies = (int)Math.round(model.getValue(var));
-			if (copies > 0)
+			// No need to add columns, the rounded LP-relaxation can not decrease any more
+			terminatedEarly = true;
+			return Collections.emptyList();
+		}
+		forEachStockLength(collectPatterns);
+		candidates.clear();
+		for (int l=0; l < n; l++)
+		{
+			if (found.get(l) != null)
 			{
-				result.put(pattern, copies);
+				candidates.addAll(found.get(l));
+				found.set(l, null);
 			}
 		}
-		solution = new Solution(instance, result);
-		
-		// Undo the integer conversion
-		for (IloConversion conv : conversions)
+		if (n > 1)
 		{
-			model.remove(conv);
+			// A pattern found for one stock length may fit in a cheaper stock length
+			candidates.sort(byReducedCost);
+		}
+		pricedPatterns.clear();
+		for (Pattern pattern : candidates)
+		{
+			if (pricedPatterns.size() < k && getVar(pattern) == null && !pricedPatterns.contains(pattern)
+					&& (separation == duals || reducedCost(pattern, duals) > threshold))
+			{
+				pricedPatterns.add(pattern);
+			}
+		}
+		candidates.clear();
+		if (!pricedPatterns.isEmpty())
+		{
+			addPatterns(pricedPatterns);
 		}
+		return pricedPatterns;
 	}
 	
 	/**
-	 * Clears the CPLEX model from memory. Recommended if you do not need the model any more,
-	 * as the JNI-based memory used by the model is not automatically collected by the garbage collector.
-	 * @throws IloException
+	 * Solves the pricing problem of a stock length for the duals of the current pricing round
 	 */
-	public void cleanUp() throws IloException
+	private void solvePricing(int l) throws IloException
 	{
-		model.clearModel();
-		model.end();
-		pricing.cleanUp();
+		pricing[l].setDuals(pricedDuals);
+		// Engines that find the k best patterns in one pass only solve the pricing problem once
+		pricing[l].solve(pricedK);
+		pricedObjectives[l] = pricing[l].getObjective();
+		pricedBounds[l] = pricing[l].getObjectiveBound();
 	}
 	
 	/**
-	 * Retrieve the last solution found when solveInteger() was called
-	 * @return the best solution found during the most recent call to solveInteger()
+	 * Collects the best patterns of a stock length of which the pricing problem has an improving solution
 	 */
-	public Solution getSolution()
+	private void collectPatterns(int l) throws IloException
 	{
-		return solution;
+		if (improving[l])
+		{
+			double cost = instance.getStockCost(l);
+			found.set(l, pricedK > 1 ? pricing[l].getPatterns(pricedK, threshold + (cost - 1))
+			                         : Collections.singletonList(pricing[l].getPattern()));
+		}
 	}
 	
 	/**
-	 * Gives the lower bound to the problem based on the LP-relaxation. This is a lower bound
-	 * on the best possible solution to the problem and can be used to compute how far the
-	 * computed integer solution is possibly away from optimality.
-	 * @return a lower bound on the best possible solution to the problem
+	 * Runs a task for the pricing engine of every stock length. If multiple pricing threads
+	 * are used, the tasks run concurrently, where every engine is used by a single task.
+	 * @param task the task to run for the index of every stock length
+	 * @throws IloException when something goes wrong with CPLEX
 	 */
-	public double getLowerBound()
+	private void forEachStockLength(PricingTask task) throws IloException
 	{
-		return lowerbound;
+		if (pricingExecutor == null || pricing.length == 1)
+		{
+			for (int l=0; l < pricing.length; l++)
+			{
+				task.run(l);
+			}
+			return;
+		}
+		List<Future<?>> futures = new ArrayList<>();
+		for (int l=0; l < pricing.length; l++)
+		{
+			int stock = l;
+			futures.add(pricingExecutor.submit(() -> {
+				task.run(stock);
+				return null;
+			}));
+		}
+		for (Future<?> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IloException)
+				{
+					throw (IloException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+	
+	/**
+	 * A task that uses the pricing engine of a single stock length
+	 */
+	private interface PricingTask
+	{
+		public void run(int stock) throws IloException;
+	}
+	
+	/**
+	 * This method solves the Master Problem using Column Generation. This provides
+	 * the optimal LP-relaxation of the master model, unless early termination is
+	 * enabled. In every iteration, the Farley bound is computed from the objective of
+	 * the pricing problem, and afterwards the best bound found, rounded up, is available
+	 * through getLowerBound().
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	public void solveRelaxation() throws IloException
+	{
+		solveStart = System.nanoTime();
+		try
+		{
+			columnGeneration();
+		}
+		finally
+		{
+			clearCancellation();
+		}
+	}
+	
+	/**
+	 * Performs column generation until the LP-relaxation is solved, column generation
+	 * is terminated early, the deadline is reached or the solve is cancelled
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	private void columnGeneration() throws IloException
+	{
+		bestBound = 0;
+		terminatedEarly = false;
+		boolean generated;
+		do
+		{
+			// Solve the LP-relaxation
+			long start = System.nanoTime();
+			model.solve();
+			long masterTime = System.nanoTime() - start;
+			iterations++;
+			if (stopRequested())
+			{
+				// The bound found so far is valid, but the master problem may not be solved
+				// if it was cancelled, so no columns are generated for its duals
+				break;
+			}
+			int columns = numberOfColumns;
+			// The solution of the master problem is only available until columns are added
+			int [] stale = pool != null ? findStaleColumns() : new int[0];
+			
+			// Generate new columns as long as they have positive reduced costs
+			start = System.nanoTime();
+			generated = generateColumns();
+			long pricingTime = System.nanoTime() - start;
+			
+			if (generated && stale.length > 0)
+			{
+				purgeColumns(stale);
+			}
+			
+			if (!generated && !terminatedEarly)
+			{
+				// The LP-relaxation is optimal, so its value is the best bound
+				bestBound = Math.max(bestBound, masterValue);
+			}
+			addHistory(masterValue, bestBound, columns);
+			
+			if (adaptiveColumns)
+			{
+				adaptColumnsPerIteration(masterTime, pricingTime);
+			}
+			reportProgress(Progress.Phase.COLUMN_GENERATION, Double.POSITIVE_INFINITY);
+		} while (generated);
+		
+		lowerbound = roundedBound();
+	}
+	
+	/**
+	 * The best bound found so far, rounded up if the cost of every solution is integer
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	private double roundedBound() throws IloException
+	{
+		// Note that we know the integer-objective must be integer if all stock costs
+		// are integer, so we can take the ceil of the bound in that case.
+		// We subtract the current numeric precision to avoid situations
+		// where the lower bound is greater than the optimal solution.
+		double epsilon = model.getParam(DoubleParam.EpOpt);
+		return instance.hasIntegerCosts() ? Math.ceil(bestBound - epsilon) : bestBound;
+	}
+	
+	/**
+	 * Changes the demands of the master problem to those of an instance with the same stock,
+	 * and solves the LP-relaxation again, as described at changeDemands().
+	 * @param instance the instance with the new demands
+	 * @throws IllegalArgumentException if the stock lengths or costs of the instance are different
+	 * @throws IllegalStateException if the model is used by branch-and-price
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void updateDemands(Instance instance) throws IloException
+	{
+		changeDemands(instance);
+		solveRelaxation();
+	}
+	
+	/**
+	 * Changes the demands of the master problem to those of an instance with the same stock,
+	 * without solving it again, so that the next call of solveRelaxation() or solveInteger() does
+	 * the only round of column generation, within its time budget if it has one. The constraints
+	 * of sizes in both instances are kept and only get a new right hand side, constraints are added
+	 * for new sizes and removed for sizes that are no longer demanded. The generated columns are kept, except those that only cut
+	 * sizes that are no longer demanded, so that CPLEX starts from the current basis and column
+	 * generation usually needs few iterations. For every new size, the pattern that only cuts
+	 * that size is added, to keep the master problem feasible.
+	 * @param instance the instance with the new demands
+	 * @throws IllegalArgumentException if the stock lengths or costs of the instance are different
+	 * @throws IllegalStateException if the model is used by branch-and-price
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void changeDemands(Instance instance) throws IloException
+	{
+		if (!instance.hasSameStock(this.instance))
+		{
+			throw new IllegalArgumentException("The stock of the instance can not be changed");
+		}
+		if (artificials != null || !branchingBounds.isEmpty())
+		{
+			throw new IllegalStateException("The demands can not be changed during branch-and-price");
+		}
+		
+		int n = instance.getNumberOfSizes();
+		IloRange [] newConstraints = new IloRange[n];
+		double [] newDemands = new double[n];
+		List<Integer> added = new ArrayList<>();
+		for (int i=0; i < n; i++)
+		{
+			newDemands[i] = instance.getDemand(i);
+			int old = this.instance.indexOf(instance.getSize(i));
+			if (old >= 0)
+			{
+				// Changing the right hand side keeps the current basis
+				newConstraints[i] = constraints[old];
+				newConstraints[i].setLB(newDemands[i]);
+			}
+			else
+			{
+				added.add(i);
+			}
+		}
+		for (int i : added)
+		{
+			// The row of a new size contains the existing columns that cut it
+			int size = instance.getSize(i);
+			IloLinearNumExpr expr = model.linearNumExpr();
+			for (int handle=0; handle < vars.length; handle++)
+			{
+				int amount = vars[handle] != null ? store.getAmount(handle, size) : 0;
+				if (amount > 0)
+				{
+					expr.addTerm(amount, vars[handle]);
+				}
+			}
+			newConstraints[i] = model.addGe(expr, newDemands[i]);
+		}
+		List<IloRange> dropped = new ArrayList<>();
+		for (int i=0; i < constraints.length; i++)
+		{
+			if (instance.indexOf(this.instance.getSize(i)) < 0)
+			{
+				dropped.add(constraints[i]);
+			}
+		}
+		if (!dropped.isEmpty())
+		{
+			model.delete(dropped.toArray(new IloRange[dropped.size()]));
+		}
+		
+		this.instance = instance;
+		this.constraints = newConstraints;
+		this.demands = newDemands;
+		if (!dropped.isEmpty())
+		{
+			removeEmptyColumns();
+		}
+		List<Pattern> patterns = new ArrayList<>();
+		for (int i : added)
+		{
+			int size = instance.getSize(i);
+			Pattern pattern = new Pattern(new int[] {size}, new int[] {instance.getCapacity()/size});
+			if (getVar(pattern) == null)
+			{
+				patterns.add(pattern);
+			}
+			permanent.set(store.add(pattern));
+		}
+		if (!patterns.isEmpty())
+		{
+			addPatterns(patterns);
+		}
+		
+		// Everything that depends on the sizes of the old instance is reset
+		subgradient = null;
+		if (stabilization != null)
+		{
+			stabilization.reset();
+		}
+		for (int l=0; l < pricing.length; l++)
+		{
+			pricing[l].setInstance(instance.getStockInstance(l));
+		}
+		lowerbound = 0;
+		solution = null;
+	}
+	
+	/**
+	 * Removes the columns that do not cut any size of the instance in a single batch.
+	 * Such columns can only increase the objective, so they are never used again.
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	private void removeEmptyColumns() throws IloException
+	{
+		List<IloNumVar> columns = new ArrayList<>();
+		for (int handle=0; handle < vars.length; handle++)
+		{
+			if (vars[handle] == null)
+			{
+				continue;
+			}
+			boolean cuts = false;
+			for (int j=0; j < store.getNumberOfSizes(handle) && !cuts; j++)
+			{
+				cuts = instance.indexOf(store.getSizeAt(handle, j)) >= 0;
+			}
+			if (!cuts)
+			{
+				columns.add(vars[handle]);
+				setVar(handle, null);
+				permanent.clear(handle);
+			}
+		}
+		if (!columns.isEmpty())
+		{
+			model.delete(columns.toArray(new IloNumVar[columns.size()]));
+		}
+	}
+	
+	/**
+	 * Updates the age of every column that was generated, based on the basis status and
+	 * reduced costs of the columns in the current solution of the master problem. The
+	 * statuses and reduced costs are retrieved from CPLEX in a single call each.
+	 * @return the handles of the columns that are too old and should be removed
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	private int [] findStaleColumns() throws IloException
+	{
+		int [] handles = new int[numberOfColumns - permanent.cardinality()];
+		IloNumVar [] columns = new IloNumVar[handles.length];
+		int n = 0;
+		for (int handle=0; handle < vars.length; handle++)
+		{
+			if (vars[handle] != null && !permanent.get(handle))
+			{
+				handles[n] = handle;
+				columns[n] = vars[handle];
+				n++;
+			}
+		}
+		if (columns.length == 0)
+		{
+			return handles;
+		}
+		BasisStatus [] statuses = model.getBasisStatuses(columns);
+		double [] reducedCosts = model.getReducedCosts(columns);
+		int stale = 0;
+		for (int i=0; i < columns.length; i++)
+		{
+			if (pool.age(handles[i], statuses[i] == BasisStatus.Basic, reducedCosts[i]))
+			{
+				handles[stale++] = handles[i];
+			}
+		}
+		return Arrays.copyOf(handles, stale);
+	}
+	
+	/**
+	 * Removes columns from the CPLEX model in a single batch and stores them in the column pool.
+	 * Only non-basic columns are removed, so the basis of the master problem remains valid.
+	 * @param stale the handles of the columns to remove
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	private void purgeColumns(int [] stale) throws IloException
+	{
+		IloNumVar [] columns = new IloNumVar[stale.length];
+		for (int i=0; i < columns.length; i++)
+		{
+			columns[i] = vars[stale[i]];
+			setVar(stale[i], null);
+			pool.deactivate(stale[i]);
+		}
+		model.delete(columns);
+	}
+	
+	/**
+	 * Adds an artificial column for every constraint, that covers a single item of one size
+	 * at the given costs. This keeps the master problem feasible when branching bounds the
+	 * columns, as long as column generation has not found columns that cover the demand.
+	 * An LP-relaxation that uses artificial columns does not correspond to a solution, but
+	 * its value is still a lower bound.
+	 * @param cost the costs of every artificial column
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	void addArtificialColumns(double cost) throws IloException
+	{
+		artificials = new IloNumVar[constraints.length];
+		for (int i=0; i < constraints.length; i++)
+		{
+			artificials[i] = model.numVar(model.column(obj, cost).and(model.column(constraints[i], 1)),
+			                              0, Double.POSITIVE_INFINITY);
+		}
+	}
+	
+	/**
+	 * Gives the total value of the artificial columns in the most recent solution of the master problem
+	 * @return the sum of the values of the artificial columns, or 0 if there are none
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	double getArtificialValue() throws IloException
+	{
+		double result = 0;
+		if (artificials != null)
+		{
+			for (double value : model.getValues(artificials))
+			{
+				result += value;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Imposes lower and upper bounds on the number of times patterns are used, as done
+	 * by branching. Patterns that are not part of the master problem yet are added, and
+	 * columns that were bounded before but are not in the new bounds get their original
+	 * bounds back. Columns with an upper bound are skipped by the pricing problem.
+	 * @param bounds for each bounded pattern an array with the lower bound and the upper bound,
+	 *               where an upper bound of Integer.MAX_VALUE means that there is no upper bound
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	void setBranchingBounds(Map<Pattern,int []> bounds) throws IloException
+	{
+		for (Pattern p : branchingBounds.keySet())
+		{
+			if (!bounds.containsKey(p))
+			{
+				IloNumVar var = getVar(p);
+				var.setLB(0);
+				var.setUB(Double.POSITIVE_INFINITY);
+			}
+		}
+		addColumns(bounds.keySet());
+		excluded = 0;
+		for (Entry<Pattern,int []> e : bounds.entrySet())
+		{
+			IloNumVar var = getVar(e.getKey());
+			int [] bound = e.getValue();
+			var.setLB(bound[0]);
+			if (bound[1] == Integer.MAX_VALUE)
+			{
+				var.setUB(Double.POSITIVE_INFINITY);
+			}
+			else
+			{
+				var.setUB(bound[1]);
+				excluded++;
+			}
+		}
+		branchingBounds = new LinkedHashMap<>(bounds);
+	}
+	
+	/**
+	 * Gives the patterns that are currently columns of the master problem. The patterns
+	 * are created from the column store, so this should not be called in every iteration.
+	 * @return a new set with the patterns
+	 */
+	Set<Pattern> getPatterns()
+	{
+		Set<Pattern> result = new LinkedHashSet<>();
+		for (int handle : getColumnHandles())
+		{
+			result.add(store.getPattern(handle));
+		}
+		return result;
+	}
+	
+	/**
+	 * Gives the handles of the patterns that are currently columns of the master problem
+	 * @return an array with the handles, in increasing order
+	 */
+	private int [] getColumnHandles()
+	{
+		int [] handles = new int[numberOfColumns];
+		int n = 0;
+		for (int handle=0; handle < vars.length; handle++)
+		{
+			if (vars[handle] != null)
+			{
+				handles[n++] = handle;
+			}
+		}
+		return handles;
+	}
+	
+	/**
+	 * Gives the variables of columns
+	 * @param handles the handles of the patterns of the columns
+	 * @return an array with the variable of the column of each handle
+	 */
+	private IloNumVar [] getVars(int [] handles)
+	{
+		IloNumVar [] columns = new IloNumVar[handles.length];
+		for (int i=0; i < handles.length; i++)
+		{
+			columns[i] = vars[handles[i]];
+		}
+		return columns;
+	}
+	
+	/**
+	 * Enables a column pool, or disables it if null is provided. With a column pool,
+	 * generated columns that have been non-basic and unattractive for too many iterations
+	 * are removed from the master problem, and are added back when they have positive
+	 * reduced costs again. The initial columns are never removed. Columns in the pool are
+	 * not used by solveInteger(). By default, no column pool is used.
+	 * @param pool the column pool to use, which keeps track of its own statistics
+	 */
+	public void setColumnPool(ColumnPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * Enables or disables early termination of column generation. If enabled, column
+	 * generation stops as soon as the Farley bound, rounded up, is equal to the value of
+	 * the master problem, rounded up. The lower bound is the same as without early
+	 * termination, but the master problem is not solved to optimality. By default,
+	 * early termination is disabled.
+	 * @param earlyTermination whether to stop column generation early
+	 */
+	public void setEarlyTermination(boolean earlyTermination)
+	{
+		this.earlyTermination = earlyTermination;
+	}
+	
+	/**
+	 * Whether the most recent call to solveRelaxation() stopped early because the
+	 * rounded lower bound reached the rounded value of the master problem
+	 * @return true if column generation was terminated early
+	 */
+	public boolean isTerminatedEarly()
+	{
+		return terminatedEarly;
+	}
+	
+	/**
+	 * Gives the value of the master problem in each iteration of column generation
+	 * @return an array with the objective value of the master problem per iteration
+	 */
+	public double [] getObjectiveHistory()
+	{
+		return Arrays.copyOf(objectiveHistory, historyLength);
+	}
+	
+	/**
+	 * Gives the best Farley bound found up to each iteration of column generation
+	 * @return an array with the best lower bound on the LP-relaxation per iteration
+	 */
+	public double [] getBoundHistory()
+	{
+		return Arrays.copyOf(boundHistory, historyLength);
+	}
+	
+	/**
+	 * Gives the number of columns in the master problem in each iteration of column
+	 * generation, at the time the master problem was solved
+	 * @return an array with the size of the LP per iteration
+	 */
+	public int [] getColumnHistory()
+	{
+		return Arrays.copyOf(columnHistory, historyLength);
+	}
+	
+	/**
+	 * Stores the value of the master problem, the best bound and the number of
+	 * columns of an iteration, using primitive arrays that grow when needed
+	 * @param objective the value of the master problem
+	 * @param bound the best bound found so far
+	 * @param columns the number of columns in the master problem
+	 */
+	private void addHistory(double objective, double bound, int columns)
+	{
+		if (historyLength == objectiveHistory.length)
+		{
+			objectiveHistory = Arrays.copyOf(objectiveHistory, 2*historyLength);
+			boundHistory = Arrays.copyOf(boundHistory, 2*historyLength);
+			columnHistory = Arrays.copyOf(columnHistory, 2*historyLength);
+		}
+		objectiveHistory[historyLength] = objective;
+		boundHistory[historyLength] = bound;
+		columnHistory[historyLength] = columns;
+		historyLength++;
+	}
+	
+	/**
+	 * Adapts the number of columns generated per iteration. Every column added
+	 * per iteration can save a solve of the master problem, but makes the pricing
+	 * problem more expensive. If solving the master problem takes more time than
+	 * pricing, more columns are generated per iteration, otherwise fewer.
+	 * @param masterTime the time it took to solve the master problem
+	 * @param pricingTime the time it took to generate columns
+	 */
+	private void adaptColumnsPerIteration(long masterTime, long pricingTime)
+	{
+		if (masterTime > pricingTime)
+		{
+			columnsPerIteration = Math.min(2*columnsPerIteration, maxColumnsPerIteration);
+		}
+		else
+		{
+			columnsPerIteration = Math.max(columnsPerIteration/2, 1);
+		}
+	}
+	
+	/**
+	 * Sets how many columns with positive reduced costs are added to the master problem
+	 * per iteration of the column generation procedure. By default a single column is added.
+	 * @param k the maximum number of columns added per iteration
+	 * @param adaptive if true, the number of columns is adapted between 1 and k during
+	 *                 column generation, based on the time spent solving the master problem
+	 *                 and the time spent pricing
+	 */
+	public void setColumnsPerIteration(int k, boolean adaptive)
+	{
+		if (k < 1)
+		{
+			throw new IllegalArgumentException("At least one column must be generated per iteration");
+		}
+		this.columnsPerIteration = k;
+		this.maxColumnsPerIteration = k;
+		this.adaptiveColumns = adaptive;
+	}
+	
+	/**
+	 * Sets the number of threads CPLEX may use to solve the master problem and the
+	 * pricing problem, which also holds for the models of the primal heuristic. By default
+	 * CPLEX uses all cores, which oversubscribes the machine if multiple models are solved
+	 * in parallel.
+	 * @param threads the maximum number of threads, where 0 lets CPLEX decide
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void setThreads(int threads) throws IloException
+	{
+		this.threads = threads;
+		model.setParam(IntParam.Threads, threads);
+		for (PricingEngine engine : pricing)
+		{
+			engine.setThreads(threads);
+		}
+	}
+	
+	/**
+	 * Sets the number of threads used to solve the pricing problems of different stock lengths
+	 * concurrently. Every engine is only used by one thread at a time, so this has no effect
+	 * on instances with a single stock length. By default, the pricing problems are solved
+	 * one after the other by the thread that solves the master problem.
+	 * @param threads the number of pricing threads, where 1 solves the pricing problems sequentially
+	 * @throws IllegalArgumentException if the number of threads is smaller than 1
+	 */
+	public void setPricingThreads(int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("At least one pricing thread is required");
+		}
+		if (pricingExecutor != null)
+		{
+			pricingExecutor.shutdown();
+			pricingExecutor = null;
+		}
+		if (threads > 1)
+		{
+			pricingExecutor = Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, "pricing");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+	
+	/**
+	 * Enables dual stabilization of the column generation procedure, or disables it
+	 * if null is provided. By default, no stabilization is applied.
+	 * @param stabilization the stabilization to apply, which keeps track of its own statistics
+	 */
+	public void setStabilization(DualStabilization stabilization)
+	{
+		this.stabilization = stabilization;
+	}
+	
+	/**
+	 * Gives the number of times the master problem was solved during column generation.
+	 * @return the number of iterations of the column generation procedure
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+	
+	/**
+	 * This method solves the IP version of the Master Problem based on the current columns in the model.
+	 * This method first executed the column generation procedure on the relaxed version of the problem.
+	 * If a primal heuristic is used, the integer problem is only solved if the heuristic solution does
+	 * not reach the lower bound, in which case it is solved with the time limit of the heuristic and
+	 * the heuristic solution as a MIP start. If combinatorial bounds are used, column generation
+	 * is skipped when a packing heuristic reaches these bounds, and the integer problem is stopped
+	 * as soon as its solution reaches the lower bound.
+	 * @throws IloException
+	 */
+	public void solveInteger() throws IloException
+	{
+		solveStart = System.nanoTime();
+		try
+		{
+			integerProblem(0);
+			reportProgress(Progress.Phase.INTEGER, solution);
+		}
+		finally
+		{
+			clearCancellation();
+		}
+	}
+	
+	/**
+	 * Solves the IP version of the Master Problem in the same way as solveInteger(), within a
+	 * wall-clock time budget. Column generation stops when its share of the budget is used, after
+	 * which the lower bound found so far is used. The integer problem is solved with the remaining
+	 * time, including the time column generation did not use. When the budget runs out or the solve
+	 * is cancelled, the best solution found so far is kept, which is a solution of the packing
+	 * heuristics if no better solution was found, and getGap() gives its proven gap. The dive of a
+	 * primal heuristic is stopped in the same way.
+	 * @param seconds the wall-clock time budget in seconds
+	 * @param columnGenerationShare the share of the budget that column generation may use, between 0 and 1
+	 * @throws IllegalArgumentException if the budget is not positive or the share is not between 0 and 1
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void solveInteger(double seconds, double columnGenerationShare) throws IloException
+	{
+		if (!(seconds > 0) || columnGenerationShare < 0 || columnGenerationShare > 1)
+		{
+			throw new IllegalArgumentException("The time budget must be positive and the share of column generation between 0 and 1");
+		}
+		solveStart = System.nanoTime();
+		timed = true;
+		deadline = solveStart + (long) (columnGenerationShare * seconds * 1e9);
+		try
+		{
+			integerProblem(solveStart + (long) (seconds * 1e9));
+			reportProgress(Progress.Phase.INTEGER, solution);
+		}
+		finally
+		{
+			timed = false;
+			clearCancellation();
+		}
+	}
+	
+	/**
+	 * Solves the IP version of the Master Problem
+	 * @param end the value of System.nanoTime() at which the time budget ends, if there is a budget
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private void integerProblem(long end) throws IloException
+	{
+		Solution start = null;
+		int bound = 0;
+		columnGenerationSkipped = false;
+		// The combinatorial bounds assume that every unit of stock has a cost of 1
+		boolean combinatorial = combinatorialBounds && instance.hasUnitStock();
+		if (combinatorial)
+		{
+			// The bounds and the packing heuristics take microseconds, so try them first
+			bound = LowerBounds.best(instance);
+			start = PackingHeuristics.best(instance);
+			if (start.getStockNeeded() <= bound)
+			{
+				columnGenerationSkipped = true;
+				lowerbound = bound;
+				solution = start;
+				return;
+			}
+		}
+		
+		// Solve the relaxation, which also stores the best bound found as a lowerbound
+		columnGeneration();
+		lowerbound = Math.max(lowerbound, bound);
+		// The rest of the budget is available for the integer problem
+		deadline = end;
+		
+		if (heuristic != null && !stopRequested())
+		{
+			Solution candidate = heuristic.solve(instance, getRelaxationValues(), lowerbound, threads, this::stopRequested);
+			if (start == null || candidate.getCost() < start.getCost())
+			{
+				start = candidate;
+			}
+		}
+		if (start != null)
+		{
+			if (start.getCost() <= lowerbound)
+			{
+				// The heuristic solution is optimal, so there is no need to solve the integer problem
+				if (heuristic != null)
+				{
+					heuristic.integerProblemSkipped();
+				}
+				solution = start;
+				return;
+			}
+		}
+		if (stopRequested())
+		{
+			// There is no time left for the integer problem, so the best solution found so far is used
+			solution = start != null ? start : PackingHeuristics.best(instance);
+			return;
+		}
+		if (start != null)
+		{
+			// The MIP start can only use patterns that are part of the model
+			addColumns(start.getPatterns());
+			reportProgress(Progress.Phase.INTEGER, start);
+		}
+		
+		// Convert the model to an integer model and solve
+		List<IloConversion> conversions = new ArrayList<>();
+		int [] handles = getColumnHandles();
+		IloNumVar [] columns = getVars(handles);
+		for (IloNumVar var : columns)
+		{
+			IloConversion conv = model.conversion(var, IloNumVarType.Int);
+			model.add(conv);
+			conversions.add(conv);
+		}
+		double timeLimit = model.getParam(DoubleParam.TiLim);
+		double limit = heuristic != null ? heuristic.getTimeLimit() : timeLimit;
+		if (timed)
+		{
+			limit = Math.min(limit, Math.max(0, (deadline - System.nanoTime()) / 1e9));
+		}
+		if (limit != timeLimit)
+		{
+			model.setParam(DoubleParam.TiLim, limit);
+		}
+		if (start != null)
+		{
+			addMIPStart(start, handles, columns);
+		}
+		boolean callback = combinatorial || progressListener != null;
+		if (callback)
+		{
+			double incumbent = start != null ? start.getCost() : Double.POSITIVE_INFINITY;
+			model.use(new IntegerCallback(combinatorial ? lowerbound : Double.NEGATIVE_INFINITY, incumbent));
+		}
+		boolean feasible = model.solve();
+		
+		// Construct a solution based on the IP-solution, where the patterns
+		// are only created from the column store when they are requested
+		if (feasible)
+		{
+			double [] values = model.getValues(columns);
+			int [] used = new int[handles.length];
+			int [] copies = new int[handles.length];
+			int n = 0;
+			for (int i=0; i < handles.length; i++)
+			{
+				int c = (int)Math.round(values[i]);
+				if (c > 0)
+				{
+					used[n] = handles[i];
+					copies[n] = c;
+					n++;
+				}
+			}
+			solution = new Solution(instance, store, Arrays.copyOf(used, n), Arrays.copyOf(copies, n));
+		}
+		if (start != null && (!feasible || start.getCost() < solution.getCost()))
+		{
+			solution = start;
+		}
+		else if (!feasible)
+		{
+			// The integer problem was stopped before a solution was found
+			solution = PackingHeuristics.best(instance);
+		}
+		
+		// Undo the integer conversion
+		for (IloConversion conv : conversions)
+		{
+			model.remove(conv);
+		}
+		if (limit != timeLimit)
+		{
+			model.setParam(DoubleParam.TiLim, timeLimit);
+		}
+		if (start != null)
+		{
+			model.deleteMIPStarts(0, model.getNMIPStarts());
+		}
+		if (callback)
+		{
+			model.clearCallbacks();
+		}
+	}
+	
+	/**
+	 * Provides a solution to CPLEX as a MIP start, which may only use patterns that are part of the model
+	 * @param start the solution to use as a MIP start
+	 * @param handles the handles of the columns of the model, in increasing order
+	 * @param columns the variables of these columns
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private void addMIPStart(Solution start, int [] handles, IloNumVar [] columns) throws IloException
+	{
+		double [] values = new double[columns.length];
+		for (Pattern pattern : start.getPatterns())
+		{
+			int i = Arrays.binarySearch(handles, store.find(pattern));
+			values[i] = start.getCopies(pattern);
+		}
+		model.addMIPStart(columns, values);
+	}
+	
+	/**
+	 * Gives the value of every pattern in the most recent solution of the master problem.
+	 * After solveRelaxation() this is the solution of the LP-relaxation.
+	 * @return a map with the patterns that have a positive value and their values
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	Map<Pattern,Double> getRelaxationValues() throws IloException
+	{
+		int [] handles = getColumnHandles();
+		double [] values = model.getValues(getVars(handles));
+		Map<Pattern,Double> result = new LinkedHashMap<>();
+		for (int i=0; i < handles.length; i++)
+		{
+			if (values[i] > 0)
+			{
+				result.put(store.getPattern(handles[i]), values[i]);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Enables a primal heuristic that is used by solveInteger(), or disables it if null
+	 * is provided. By default, no heuristic is used and the integer problem with all
+	 * generated columns is always solved without a time limit.
+	 * @param heuristic the heuristic to use, which keeps track of its own statistics
+	 */
+	public void setPrimalHeuristic(PrimalHeuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+	
+	/**
+	 * Enables a pricing heuristic that is tried before the exact pricing problems in every
+	 * iteration of column generation, or disables it if null is provided. The exact pricing
+	 * problems are only solved if the heuristic finds no new column with positive reduced
+	 * costs. By default, no pricing heuristic is used.
+	 * @param pricingHeuristic the heuristic to use, which keeps track of its own statistics
+	 */
+	public void setPricingHeuristic(PricingHeuristic pricingHeuristic)
+	{
+		this.pricingHeuristic = pricingHeuristic;
+	}
+	
+	/**
+	 * Enables or disables the use of combinatorial lower bounds by solveInteger(). If enabled,
+	 * the bounds of LowerBounds and the solutions of PackingHeuristics are computed before
+	 * column generation, which is skipped if such a solution reaches the bounds. The lower bound
+	 * is the best of the combinatorial bounds and the bound found by column generation, and the
+	 * integer problem is stopped as soon as its solution reaches it. The combinatorial bounds
+	 * and the packing heuristics are only computed for instances with a single stock length
+	 * with a cost of 1. By default, combinatorial bounds are not used.
+	 * @param combinatorialBounds whether to use combinatorial bounds
+	 */
+	public void setCombinatorialBounds(boolean combinatorialBounds)
+	{
+		this.combinatorialBounds = combinatorialBounds;
+	}
+	
+	/**
+	 * Whether the most recent call to solveInteger() found an optimal solution before
+	 * column generation, because a packing heuristic reached the combinatorial bounds
+	 * @return true if column generation was skipped
+	 */
+	public boolean isColumnGenerationSkipped()
+	{
+		return columnGenerationSkipped;
+	}
+	
+	/**
+	 * Clears the CPLEX model from memory. Recommended if you do not need the model any more,
+	 * as the JNI-based memory used by the model is not automatically collected by the garbage collector.
+	 * @throws IloException
+	 */
+	public void cleanUp() throws IloException
+	{
+		model.clearModel();
+		model.end();
+		for (PricingEngine engine : pricing)
+		{
+			engine.cleanUp();
+		}
+		if (pricingExecutor != null)
+		{
+			pricingExecutor.shutdown();
+		}
+	}
+	
+	/**
+	 * The instance for which this master problem was built
+	 * @return the instance
+	 */
+	public Instance getInstance()
+	{
+		return instance;
+	}
+	
+	/**
+	 * Retrieve the last solution found when solveInteger() was called
+	 * @return the best solution found during the most recent call to solveInteger()
+	 */
+	public Solution getSolution()
+	{
+		return solution;
+	}
+	
+	/**
+	 * Gives the objective value of the most recent solve of the master problem.
+	 * After solveRelaxation() this is the optimal value of the LP-relaxation,
+	 * unless column generation was terminated early.
+	 * @return the objective value of the master problem
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public double getObjective() throws IloException
+	{
+		return model.getObjValue();
+	}
+	
+	/**
+	 * Gives the lower bound to the problem based on the LP-relaxation. This is the best
+	 * Farley bound found during column generation, rounded up, which is equal to the
+	 * LP-relaxation rounded up if column generation is not terminated early. This is a
+	 * lower bound on the best possible solution to the problem and can be used to compute
+	 * how far the computed integer solution is possibly away from optimality.
+	 * @return a lower bound on the best possible solution to the problem
+	 */
+	public double getLowerBound()
+	{
+		return lowerbound;
+	}
+	
+	/**
+	 * Gives the relative gap between the cost of the solution found by the most recent call to
+	 * solveInteger() and the lower bound. If that solve was stopped by its time budget or cancelled,
+	 * this is the gap that is proven for the best solution found so far.
+	 * @return the gap relative to the cost of the solution, where 0 means the solution is optimal
+	 */
+	public double getGap()
+	{
+		return Progress.gap(solution.getCost(), lowerbound);
+	}
+	
+	/**
+	 * Sets a listener that receives the progress of solveRelaxation() and solveInteger(), or
+	 * removes the listener if null is provided. The listener is called by the thread that solves
+	 * the model, or by a thread of CPLEX while the integer problem is solved, so it should return
+	 * quickly. By default, there is no listener.
+	 * @param progressListener the listener for progress events
+	 */
+	public void setProgressListener(Consumer<Progress> progressListener)
+	{
+		this.progressListener = progressListener;
+	}
+	
+	/**
+	 * Cancels the solve of this model that is running in another thread. Column generation stops
+	 * after the current iteration, CPLEX stops as soon as possible, and solveInteger() keeps the best
+	 * solution found so far. If no solve is running, the next solve is cancelled. This method can be
+	 * called by any thread.
+	 */
+	public synchronized void cancel()
+	{
+		cancelled = true;
+		aborter.abort();
+	}
+	
+	/**
+	 * Resets a cancellation at the end of a solve, so that the next solve is not cancelled
+	 */
+	private synchronized void clearCancellation()
+	{
+		if (cancelled)
+		{
+			cancelled = false;
+			aborter.clear();
+		}
+	}
+	
+	/**
+	 * Makes column generation stop after the current iteration when a condition holds, in the
+	 * same way as when the solve is cancelled. This is used to stop the models of the primal
+	 * heuristic when the solve of the model that uses it is cancelled or out of time.
+	 * @param stopCondition the condition, or null to remove it
+	 */
+	void setStopCondition(BooleanSupplier stopCondition)
+	{
+		this.stopCondition = stopCondition;
+	}
+	
+	/**
+	 * Whether the current solve was cancelled or has reached the deadline of its current phase
+	 */
+	private boolean stopRequested()
+	{
+		return cancelled || (timed && System.nanoTime() - deadline >= 0) || (stopCondition != null && stopCondition.getAsBoolean());
+	}
+	
+	/**
+	 * Reports a progress event to the listener, if there is one
+	 * @param phase the current phase of the solve
+	 * @param incumbent the cost of the best solution found so far, or infinity if there is none
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private void reportProgress(Progress.Phase phase, double incumbent) throws IloException
+	{
+		Consumer<Progress> listener = progressListener;
+		if (listener != null)
+		{
+			double bound = phase == Progress.Phase.COLUMN_GENERATION ? roundedBound() : lowerbound;
+			listener.accept(new Progress(phase, (System.nanoTime() - solveStart) / 1e9, bound, incumbent));
+		}
+	}
+	
+	/**
+	 * Reports a progress event with the cost of a solution, which is only computed if there is a listener
+	 */
+	private void reportProgress(Progress.Phase phase, Solution incumbent) throws IloException
+	{
+		if (progressListener != null)
+		{
+			reportProgress(phase, incumbent.getCost());
+		}
+	}
+	
+	/**
+	 * Callback that follows the solutions CPLEX finds for the integer problem. It stops CPLEX
+	 * as soon as a solution reaches a bound, and reports a progress event for every better solution.
+	 */
+	private class IntegerCallback extends MIPInfoCallback
+	{
+		private final double bound;
+		private double incumbent;
+		
+		/**
+		 * Creates the callback
+		 * @param bound the bound at which CPLEX is stopped, or minus infinity to never stop CPLEX
+		 * @param incumbent the cost of the MIP start, or infinity if there is none
+		 */
+		public IntegerCallback(double bound, double incumbent)
+		{
+			this.bound = bound;
+			this.incumbent = incumbent;
+		}
+		
+		@Override
+		protected synchronized void main() throws IloException
+		{
+			if (!hasIncumbent())
+			{
+				return;
+			}
+			double value = getIncumbentObjValue();
+			// The objective is integer, so we only need to compare up to rounding errors
+			if (value < bound + 0.5)
+			{
+				abort();
+			}
+			if (value < incumbent - 1e-9)
+			{
+				incumbent = value;
+				reportProgress(Progress.Phase.INTEGER, value);
+			}
+		}
 	}
 }
@@ -0,0 +1,310 @@
+package colgen;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import ilog.concert.IloException;
+
+/**
+ * Main class that measures the memory used by the data structures of the column generation
+ * model and by reading orders, mostly without using CPLEX.
+ * The first argument selects the benchmark that is run, by default <code>datamodel</code>:
+ * <ul>
+ *   <li><code>datamodel</code> compares map based patterns with the array based patterns, without using CPLEX</li>
+ *   <li><code>store</code> compares the heap used by pattern objects with a column store, without using CPLEX</li>
+ *   <li><code>allocation</code> measures the memory allocated per iteration of column generation</li>
+ *   <li><code>ingest</code> measures the throughput and peak memory of reading order files, with and without spilling to disk</li>
+ * </ul>
+ */
+public class MemoryBenchmark
+{
+	private static long sink;
+	
+	public static void main(String [] args) throws IloException, IOException
+	{
+		String benchmark = args.length > 0 ? args[0] : "datamodel";
+		switch (benchmark)
+		{
+			case "datamodel":
+				benchmarkDataModel();
+				break;
+			case "store":
+				benchmarkColumnStore();
+				break;
+			case "allocation":
+				benchmarkAllocation();
+				break;
+			case "ingest":
+				benchmarkIngestion();
+				break;
+			default:
+				System.out.println("Unknown benchmark: "+benchmark);
+		}
+	}
+	
+	/**
+	 * Compares the time and memory allocated to create, deduplicate and insert patterns
+	 * when patterns are stored as maps from sizes to amounts, as they used to be, with
+	 * the same numbers for the array based patterns. For each of the instances random
+	 * patterns are generated, and for each pattern the steps performed by the master
+	 * problem are mimicked: check whether the pattern is new, store it, and determine
+	 * the coefficient of every constraint.
+	 */
+	public static void benchmarkDataModel()
+	{
+		List<Instance> instances = Main.generateInstances();
+		int patternsPerInstance = 2000;
+		for (int round=0; round < 5; round++)
+		{
+			long [] maps = Benchmark.measure(() -> insertMaps(instances, patternsPerInstance));
+			long [] arrays = Benchmark.measure(() -> insertArrays(instances, patternsPerInstance));
+			System.out.println("Round "+round+": maps "+(maps[0] / 1_000_000)+"ms, "+(maps[1] >> 20)+"MB allocated; "
+					+"arrays "+(arrays[0] / 1_000_000)+"ms, "+(arrays[1] >> 20)+"MB allocated");
+		}
+	}
+	
+	/**
+	 * Compares keeping many columns alive as Pattern objects in hash maps with keeping them in
+	 * column stores, one per instance. For both, the heap that is still used after a garbage
+	 * collection, the time of that collection and the memory used outside of the heap are reported.
+	 */
+	public static void benchmarkColumnStore()
+	{
+		List<Instance> instances = Main.generateInstances();
+		int patternsPerInstance = 20000;
+		for (int round=0; round < 3; round++)
+		{
+			long [] baseline = collectGarbage();
+			long start = System.nanoTime();
+			List<Map<Pattern,Integer>> maps = new ArrayList<>();
+			for (Instance instance : instances)
+			{
+				Random ran = new Random(instance.getCapacity());
+				Map<Pattern,Integer> columns = new HashMap<>();
+				for (int p=0; p < patternsPerInstance; p++)
+				{
+					Pattern pattern = new Pattern(instance, randomCounts(instance, ran));
+					columns.putIfAbsent(pattern, columns.size());
+				}
+				maps.add(columns);
+			}
+			long mapTime = System.nanoTime() - start;
+			long [] mapHeap = collectGarbage();
+			long patterns = maps.stream().mapToInt(Map::size).sum();
+			maps = null;
+			
+			collectGarbage();
+			start = System.nanoTime();
+			List<ColumnStore> stores = new ArrayList<>();
+			for (Instance instance : instances)
+			{
+				Random ran = new Random(instance.getCapacity());
+				ColumnStore store = new ColumnStore();
+				for (int p=0; p < patternsPerInstance; p++)
+				{
+					store.add(new Pattern(instance, randomCounts(instance, ran)));
+				}
+				stores.add(store);
+			}
+			long storeTime = System.nanoTime() - start;
+			long [] storeHeap = collectGarbage();
+			long offHeap = stores.stream().mapToLong(ColumnStore::getBytes).sum();
+			sink += stores.stream().mapToInt(ColumnStore::size).sum();
+			stores = null;
+			
+			System.out.println("Round "+round+": "+patterns+" patterns; maps "+(mapTime / 1_000_000)+"ms, "
+					+((mapHeap[0] - baseline[0]) >> 20)+"MB heap, "+(mapHeap[1] / 1_000_000)+"ms full GC; "
+					+"stores "+(storeTime / 1_000_000)+"ms, "+((storeHeap[0] - baseline[0]) >> 20)+"MB heap, "
+					+(offHeap >> 20)+"MB off-heap, "+(storeHeap[1] / 1_000_000)+"ms full GC");
+		}
+	}
+	
+	/**
+	 * Measures how many bytes are allocated by the current thread per iteration of column
+	 * generation, for both pricing engines. Most of the remaining allocations are the
+	 * patterns that are added to the master problem, and the arrays returned by CPLEX.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkAllocation() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Benchmark.run(instances.subList(0, 10), i -> new MasterModel(i));
+		Benchmark.run(instances.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+		for (int round=0; round < 2; round++)
+		{
+			Benchmark.ModelFactory factory = round == 0 ? i -> new MasterModel(i) : i -> Benchmark.dpModel(i, 1, false);
+			long bytes = 0;
+			long iterations = 0;
+			for (Instance instance : instances)
+			{
+				MasterModel mm = factory.create(instance);
+				long [] measured = Benchmark.measure(() -> {
+					try
+					{
+						mm.solveRelaxation();
+					}
+					catch (IloException e)
+					{
+						throw new IllegalStateException(e);
+					}
+					return mm.getIterations();
+				});
+				bytes += measured[1];
+				iterations += mm.getIterations();
+				mm.cleanUp();
+			}
+			System.out.println((round == 0 ? "CPLEX pricing" : "Dynamic programming pricing")+": "
+					+(bytes / iterations)+" bytes allocated per iteration");
+		}
+	}
+	
+	/**
+	 * Writes ten million random order lines to a CSV file and a binary file, and reads both
+	 * files into an instance, once with all sizes aggregated in memory and once with at most
+	 * half of the sizes in memory, so that the demand is spilled to disk. The throughput and
+	 * peak heap usage of every read are reported.
+	 * @throws IOException if the files can not be written or read
+	 */
+	public static void benchmarkIngestion() throws IOException
+	{
+		int orders = 10_000_000;
+		int maxSize = 20_000;
+		Path csv = Files.createTempFile("orders", ".csv");
+		Path binary = Files.createTempFile("orders", ".bin");
+		try
+		{
+			Random ran = new Random(54321);
+			try (Writer csvOut = Files.newBufferedWriter(csv);
+			     DataOutputStream binaryOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binary))))
+			{
+				csvOut.write("size,quantity\n");
+				for (int i=0; i < orders; i++)
+				{
+					int size = 1 + ran.nextInt(maxSize);
+					int quantity = 1 + ran.nextInt(5);
+					csvOut.write(size+","+quantity+"\n");
+					binaryOut.writeInt(size);
+					binaryOut.writeInt(quantity);
+				}
+			}
+			for (int maxSizesInMemory : new int [] {1 << 20, maxSize / 2})
+			{
+				for (OrderReader.Format format : OrderReader.Format.values())
+				{
+					OrderReader reader = new OrderReader(format, maxSizesInMemory, null);
+					Instance instance = reader.read(format == OrderReader.Format.CSV ? csv : binary, 2 * maxSize);
+					System.out.println(format+" with at most "+maxSizesInMemory+" sizes in memory: "
+							+instance.getNumberOfSizes()+" sizes, "+reader);
+				}
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(csv);
+			Files.deleteIfExists(binary);
+		}
+	}
+	
+	/**
+	 * Requests a full garbage collection
+	 * @return an array with the heap that is used afterwards in bytes and the time it took in nanoseconds
+	 */
+	private static long [] collectGarbage()
+	{
+		long start = System.nanoTime();
+		System.gc();
+		long time = System.nanoTime() - start;
+		return new long [] {ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), time};
+	}
+	
+	private static long insertMaps(List<Instance> instances, int patternsPerInstance)
+	{
+		long checksum = 0;
+		for (Instance instance : instances)
+		{
+			Random ran = new Random(instance.getCapacity());
+			Map<Map<Integer,Integer>,Integer> columns = new HashMap<>();
+			for (int p=0; p < patternsPerInstance; p++)
+			{
+				int [] counts = randomCounts(instance, ran);
+				Map<Integer,Integer> cuts = new LinkedHashMap<>();
+				for (int i=0; i < counts.length; i++)
+				{
+					cuts.put(instance.getSize(i), counts[i]);
+				}
+				if (!columns.containsKey(cuts))
+				{
+					columns.put(cuts, columns.size());
+					// Determine the coefficient of every constraint
+					for (Integer size : instance.getSizes())
+					{
+						if (cuts.containsKey(size))
+						{
+							checksum += cuts.get(size);
+						}
+					}
+				}
+			}
+			checksum += columns.size();
+		}
+		return checksum;
+	}
+	
+	private static long insertArrays(List<Instance> instances, int patternsPerInstance)
+	{
+		long checksum = 0;
+		for (Instance instance : instances)
+		{
+			Random ran = new Random(instance.getCapacity());
+			Map<Pattern,Integer> columns = new HashMap<>();
+			for (int p=0; p < patternsPerInstance; p++)
+			{
+				Pattern pattern = new Pattern(instance, randomCounts(instance, ran));
+				if (!columns.containsKey(pattern))
+				{
+					columns.put(pattern, columns.size());
+					// Determine the coefficient of every constraint
+					for (int j=0; j < pattern.getNumberOfSizes(); j++)
+					{
+						if (instance.indexOf(pattern.getSizeAt(j)) >= 0)
+						{
+							checksum += pattern.getAmountAt(j);
+						}
+					}
+				}
+			}
+			checksum += columns.size();
+		}
+		return checksum;
+	}
+	
+	/**
+	 * Generates a random maximal pattern for an instance as a dense vector of counts,
+	 * similar to the patterns found by the pricing problem
+	 */
+	private static int [] randomCounts(Instance instance, Random ran)
+	{
+		int [] counts = new int[instance.getNumberOfSizes()];
+		int remaining = instance.getCapacity();
+		while (remaining >= instance.getSize(0))
+		{
+			int i = ran.nextInt(counts.length);
+			if (instance.getSize(i) <= remaining)
+			{
+				counts[i]++;
+				remaining -= instance.getSize(i);
+			}
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,625 @@
+package colgen;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads order files with individual order lines, and aggregates the demand per size into an
+ * Instance. The files are streamed, so they can be much larger than the heap. Two formats
+ * are supported:
+ * <ul>
+ *   <li>CSV: one order per line with the size and the quantity separated by a comma, where
+ *       the quantity may be omitted if it is one. A header on the first line, empty lines
+ *       and lines starting with # are skipped.</li>
+ *   <li>BINARY: a sequence of orders, each consisting of the size and the quantity as 32-bit
+ *       big-endian integers, as written by a DataOutputStream.</li>
+ * </ul>
+ * The demand is aggregated in a primitive open-addressing hash map, without creating objects
+ * per order. If the number of distinct sizes in the map reaches a limit, the map is sorted
+ * and spilled to a run file on disk, and the runs are merged when the input is exhausted.
+ *
+ * An OrderReader keeps track of statistics of the most recent read, so it should not be
+ * shared between threads.
+ */
+public class OrderReader
+{
+	/**
+	 * The supported formats of order files
+	 */
+	public enum Format
+	{
+		CSV,
+		BINARY
+	}
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	// The maximum number of run files, after which they are merged into one
+	private static final int MAX_RUNS = 64;
+	// A run file contains pairs of an int size and a long demand
+	private static final int RUN_ENTRY_BYTES = 12;
+	
+	private final Format format;
+	private final int maxSizesInMemory;
+	private final Path spillDirectory;
+	
+	private long orders;
+	private long bytes;
+	private int runs;
+	private long nanos;
+	private long peakHeap;
+	
+	/**
+	 * Creates a reader for order files
+	 * @param format the format of the files
+	 * @param maxSizesInMemory the number of distinct sizes that are aggregated in memory
+	 *                         before they are spilled to disk
+	 * @param spillDirectory the directory in which the run files are created, or null to
+	 *                       use the default directory for temporary files
+	 */
+	public OrderReader(Format format, int maxSizesInMemory, Path spillDirectory)
+	{
+		if (maxSizesInMemory < 1)
+		{
+			throw new IllegalArgumentException("At least one size must fit in memory");
+		}
+		this.format = format;
+		this.maxSizesInMemory = maxSizesInMemory;
+		this.spillDirectory = spillDirectory;
+	}
+	
+	/**
+	 * Creates a reader for order files that keeps up to a million distinct
+	 * sizes in memory, and spills to the default directory for temporary files
+	 * @param format the format of the files
+	 */
+	public OrderReader(Format format)
+	{
+		this(format, 1 << 20, null);
+	}
+	
+	/**
+	 * Reads an order file and aggregates the demand per size
+	 * @param file the file to read
+	 * @param capacity the capacity of the base stock of the instance
+	 * @return an instance with the total demand of every size in the file
+	 * @throws IOException if the file can not be read or is malformed
+	 */
+	public Instance read(Path file, int capacity) throws IOException
+	{
+		try (InputStream in = Files.newInputStream(file))
+		{
+			return read(in, capacity);
+		}
+	}
+	
+	/**
+	 * Reads orders from a stream and aggregates the demand per size. The stream is not closed.
+	 * @param in the stream to read
+	 * @param capacity the capacity of the base stock of the instance
+	 * @return an instance with the total demand of every size in the stream
+	 * @throws IOException if the stream can not be read or is malformed
+	 */
+	public Instance read(InputStream in, int capacity) throws IOException
+	{
+		List<MemoryPoolMXBean> pools = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() == MemoryType.HEAP)
+			{
+				pool.resetPeakUsage();
+				pools.add(pool);
+			}
+		}
+		long start = System.nanoTime();
+		orders = 0;
+		bytes = 0;
+		runs = 0;
+		
+		DemandMap map = new DemandMap(Math.min(maxSizesInMemory, 1024));
+		List<Path> runFiles = new ArrayList<>();
+		try
+		{
+			if (format == Format.CSV)
+			{
+				readCsv(in, map, runFiles);
+			}
+			else
+			{
+				readBinary(in, map, runFiles);
+			}
+			Instance result = toInstance(map, runFiles, capacity);
+			nanos = System.nanoTime() - start;
+			peakHeap = 0;
+			for (MemoryPoolMXBean pool : pools)
+			{
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+			return result;
+		}
+		finally
+		{
+			for (Path run : runFiles)
+			{
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+	
+	/**
+	 * Parses CSV orders directly from the bytes of the stream, without creating strings
+	 */
+	private void readCsv(InputStream in, DemandMap map, List<Path> runFiles) throws IOException
+	{
+		byte [] buffer = new byte[BUFFER_SIZE];
+		long line = 1;
+		// The fields of the current line, where -1 means that no digit was read yet
+		long size = -1;
+		long quantity = -1;
+		boolean comma = false;
+		boolean skip = false;
+		// Whether whitespace followed the digits of the current field, so that it has ended
+		boolean ended = false;
+		int read;
+		while ((read = in.read(buffer)) > 0)
+		{
+			bytes += read;
+			for (int i=0; i < read; i++)
+			{
+				byte b = buffer[i];
+				if (b == '\n')
+				{
+					if (!skip && size >= 0)
+					{
+						add(map, runFiles, size, comma ? quantity : 1, line);
+					}
+					else if (!skip && comma)
+					{
+						throw new IOException("Missing size on line "+line);
+					}
+					line++;
+					size = -1;
+					quantity = -1;
+					comma = false;
+					skip = false;
+					ended = false;
+				}
+				else if (skip)
+				{
+					continue;
+				}
+				else if (b == ' ' || b == '\t' || b == '\r')
+				{
+					// Whitespace is allowed before and after a field, but not inside a number
+					ended |= comma ? quantity >= 0 : size >= 0;
+				}
+				else if (b >= '0' && b <= '9' && !ended)
+				{
+					if (comma)
+					{
+						quantity = Math.max(quantity, 0) * 10 + (b - '0');
+					}
+					else
+					{
+						size = Math.max(size, 0) * 10 + (b - '0');
+					}
+					if (size > Integer.MAX_VALUE || quantity > Integer.MAX_VALUE)
+					{
+						throw new IOException("Number too large on line "+line);
+					}
+				}
+				else if (b == ',' && !comma && size >= 0)
+				{
+					comma = true;
+					ended = false;
+				}
+				else if (size < 0 && !comma && (b == '#' || line == 1))
+				{
+					// A comment, or the header on the first line
+					skip = true;
+				}
+				else
+				{
+					throw new IOException("Unexpected character '"+(char) b+"' on line "+line);
+				}
+			}
+		}
+		if (!skip && size >= 0)
+		{
+			add(map, runFiles, size, comma ? quantity : 1, line);
+		}
+	}
+	
+	/**
+	 * Reads pairs of 32-bit big-endian integers from the stream
+	 */
+	private void readBinary(InputStream in, DemandMap map, List<Path> runFiles) throws IOException
+	{
+		byte [] buffer = new byte[BUFFER_SIZE];
+		int filled = 0;
+		int read;
+		while ((read = in.read(buffer, filled, buffer.length - filled)) > 0)
+		{
+			bytes += read;
+			filled += read;
+			int i = 0;
+			for (; i + 8 <= filled; i += 8)
+			{
+				add(map, runFiles, readInt(buffer, i), readInt(buffer, i+4), orders+1);
+			}
+			// Keep the bytes of an incomplete order for the next read
+			System.arraycopy(buffer, i, buffer, 0, filled - i);
+			filled -= i;
+		}
+		if (filled > 0)
+		{
+			throw new IOException("The input ends with an incomplete order of "+filled+" bytes");
+		}
+	}
+	
+	private static int readInt(byte [] buffer, int offset)
+	{
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset+1] & 0xFF) << 16)
+		     | ((buffer[offset+2] & 0xFF) << 8) | (buffer[offset+3] & 0xFF);
+	}
+	
+	/**
+	 * Adds a single order to the map, and spills the map if it is full
+	 */
+	private void add(DemandMap map, List<Path> runFiles, long size, long quantity, long order) throws IOException
+	{
+		if (size <= 0 || quantity < 0)
+		{
+			throw new IOException("Order "+order+" has size "+size+" and quantity "+quantity+", but the size must be positive and the quantity may not be negative");
+		}
+		orders++;
+		if (!map.contains((int) size) && map.size() == maxSizesInMemory)
+		{
+			spill(map, runFiles);
+		}
+		map.add((int) size, quantity);
+	}
+	
+	/**
+	 * Writes the contents of the map to a run file, sorted by size, and clears the map.
+	 * If the maximum number of runs is reached, all runs are merged into a single run.
+	 */
+	private void spill(DemandMap map, List<Path> runFiles) throws IOException
+	{
+		runFiles.add(merge(map, Collections.emptyList()));
+		map.clear();
+		runs++;
+		if (runFiles.size() == MAX_RUNS)
+		{
+			Path merged = merge(null, runFiles);
+			for (Path run : runFiles)
+			{
+				Files.delete(run);
+			}
+			runFiles.clear();
+			runFiles.add(merged);
+		}
+	}
+	
+	/**
+	 * Merges run files and the contents of a map into a new run file. Every run is sorted
+	 * by size, so the demand of a size is found by reading the next pair of every run.
+	 * @param map the map to merge, or null if only the runs are merged
+	 * @param runFiles the runs to merge
+	 * @return the new run file
+	 */
+	private Path merge(DemandMap map, List<Path> runFiles) throws IOException
+	{
+		Path result = spillDirectory == null ? Files.createTempFile("orders", ".run")
+		                                     : Files.createTempFile(spillDirectory, "orders", ".run");
+		int k = runFiles.size();
+		DataInputStream [] inputs = new DataInputStream[k];
+		int [] heads = new int[k];
+		long [] headDemands = new long[k];
+		int [] inMemory = map == null ? new int[0] : map.sortedKeys();
+		int next = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(result), BUFFER_SIZE)))
+		{
+			for (int r=0; r < k; r++)
+			{
+				inputs[r] = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFiles.get(r)), BUFFER_SIZE));
+				heads[r] = readRun(inputs[r], headDemands, r);
+			}
+			while (true)
+			{
+				// The smallest size among the heads of the runs and the map
+				int size = next < inMemory.length ? inMemory[next] : Integer.MAX_VALUE;
+				for (int r=0; r < k; r++)
+				{
+					size = Math.min(size, heads[r]);
+				}
+				if (size == Integer.MAX_VALUE)
+				{
+					break;
+				}
+				long demand = 0;
+				if (next < inMemory.length && inMemory[next] == size)
+				{
+					demand += map.get(size);
+					next++;
+				}
+				for (int r=0; r < k; r++)
+				{
+					if (heads[r] == size)
+					{
+						demand += headDemands[r];
+						heads[r] = readRun(inputs[r], headDemands, r);
+					}
+				}
+				out.writeInt(size);
+				out.writeLong(demand);
+			}
+		}
+		catch (IOException e)
+		{
+			Files.deleteIfExists(result);
+			throw e;
+		}
+		finally
+		{
+			for (DataInputStream input : inputs)
+			{
+				if (input != null)
+				{
+					input.close();
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Builds an instance with the sizes that have a positive demand. If runs were spilled,
+	 * the map is merged with them and the sizes and demands are read from the merged run.
+	 */
+	private Instance toInstance(DemandMap map, List<Path> runFiles, int capacity) throws IOException
+	{
+		int [] sizes;
+		long [] demands;
+		if (runFiles.isEmpty())
+		{
+			sizes = map.sortedKeys();
+			demands = new long[sizes.length];
+			for (int i=0; i < sizes.length; i++)
+			{
+				demands[i] = map.get(sizes[i]);
+			}
+		}
+		else
+		{
+			Path merged = merge(map, runFiles);
+			runFiles.add(merged);
+			int count = (int) (Files.size(merged) / RUN_ENTRY_BYTES);
+			sizes = new int[count];
+			demands = new long[count];
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(merged), BUFFER_SIZE)))
+			{
+				for (int i=0; i < count; i++)
+				{
+					sizes[i] = in.readInt();
+					demands[i] = in.readLong();
+				}
+			}
+		}
+		int n = 0;
+		int [] demandArray = new int[sizes.length];
+		for (int i=0; i < sizes.length; i++)
+		{
+			if (demands[i] > Integer.MAX_VALUE)
+			{
+				throw new IOException("The total demand of size "+sizes[i]+" is too large");
+			}
+			if (demands[i] > 0)
+			{
+				sizes[n] = sizes[i];
+				demandArray[n] = (int) demands[i];
+				n++;
+			}
+		}
+		return new Instance(Arrays.copyOf(sizes, n), Arrays.copyOf(demandArray, n), capacity);
+	}
+	
+	/**
+	 * Reads the next pair of a run file
+	 * @return the size of the pair, or Integer.MAX_VALUE if the run is exhausted
+	 */
+	private static int readRun(DataInputStream in, long [] demands, int run) throws IOException
+	{
+		try
+		{
+			int size = in.readInt();
+			demands[run] = in.readLong();
+			return size;
+		}
+		catch (EOFException e)
+		{
+			return Integer.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * The number of orders read by the most recent read
+	 * @return the number of orders
+	 */
+	public long getOrders()
+	{
+		return orders;
+	}
+	
+	/**
+	 * The number of bytes read by the most recent read
+	 * @return the number of bytes
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+	
+	/**
+	 * The number of run files that were spilled to disk by the most recent read
+	 * @return the number of runs
+	 */
+	public int getRuns()
+	{
+		return runs;
+	}
+	
+	/**
+	 * The time taken by the most recent read, including merging the runs
+	 * @return the time in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+	
+	/**
+	 * The number of orders read per second by the most recent read
+	 * @return the throughput in orders per second
+	 */
+	public double getThroughput()
+	{
+		return nanos == 0 ? 0 : orders * 1e9 / nanos;
+	}
+	
+	/**
+	 * The peak heap usage during the most recent read. This is the sum of the peak usage of the
+	 * heap memory pools, so it includes objects that were allocated by other threads as well.
+	 * @return the peak heap usage in bytes
+	 */
+	public long getPeakHeap()
+	{
+		return peakHeap;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "OrderReader [orders=" + orders + ", bytes=" + bytes + ", runs=" + runs + ", time=" + (nanos / 1_000_000) + "ms"
+				+ ", throughput=" + String.format("%.0f", getThroughput()) + " orders/s, peakHeap=" + (peakHeap >> 20) + "MB]";
+	}
+	
+	/**
+	 * A hash map from positive int keys to long values with open addressing and linear
+	 * probing, which stores its entries in two primitive arrays. A key of 0 marks an empty slot.
+	 */
+	private static class DemandMap
+	{
+		private int [] keys;
+		private long [] values;
+		private int size;
+		
+		public DemandMap(int expected)
+		{
+			int capacity = Integer.highestOneBit(Math.max(2, expected) * 2 - 1) * 2;
+			keys = new int[capacity];
+			values = new long[capacity];
+		}
+		
+		private int slot(int key)
+		{
+			int mask = keys.length - 1;
+			// Spread the bits, as sizes are often consecutive numbers. The high bits of the product
+			// are used, since its low bits are zero for sizes that are multiples of a power of two.
+			int i = (key * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+			while (keys[i] != 0 && keys[i] != key)
+			{
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+		
+		public boolean contains(int key)
+		{
+			return keys[slot(key)] == key;
+		}
+		
+		public long get(int key)
+		{
+			int i = slot(key);
+			return keys[i] == key ? values[i] : 0;
+		}
+		
+		public void add(int key, long value)
+		{
+			int i = slot(key);
+			if (keys[i] == 0)
+			{
+				keys[i] = key;
+				size++;
+				if (2 * size > keys.length)
+				{
+					// Keep the load factor at most one half
+					values[i] = value;
+					rehash(keys.length * 2);
+					return;
+				}
+			}
+			values[i] += value;
+		}
+		
+		private void rehash(int capacity)
+		{
+			int [] oldKeys = keys;
+			long [] oldValues = values;
+			keys = new int[capacity];
+			values = new long[capacity];
+			for (int j=0; j < oldKeys.length; j++)
+			{
+				if (oldKeys[j] != 0)
+				{
+					int i = slot(oldKeys[j]);
+					keys[i] = oldKeys[j];
+					values[i] = oldValues[j];
+				}
+			}
+		}
+		
+		public int size()
+		{
+			return size;
+		}
+		
+		/**
+		 * The keys of the map in increasing order
+		 */
+		public int [] sortedKeys()
+		{
+			int [] result = new int[size];
+			int n = 0;
+			for (int key : keys)
+			{
+				if (key != 0)
+				{
+					result[n++] = key;
+				}
+			}
+			Arrays.sort(result);
+			return result;
+		}
+		
+		public void clear()
+		{
+			Arrays.fill(keys, 0);
+			Arrays.fill(values, 0);
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates initial columns for the master problem using classic packing heuristics
+ * for the Cutting Stock problem, implemented in pure Java. Each heuristic finds a
+ * feasible solution, and the distinct patterns used by these solutions are returned
+ * as initial columns. The following heuristics are supported:
+ * <ul>
+ *   <li>FIRST_FIT_DECREASING: the items are cut from the first unit of stock in which they fit, largest items first</li>
+ *   <li>BEST_FIT_DECREASING: the items are cut from the unit of stock with the least remaining capacity in which they fit, largest items first</li>
+ *   <li>GREEDY_RESIDUAL: a pattern is filled greedily with the largest remaining items and applied as often as possible, until no demand remains</li>
+ * </ul>
+ * The heuristics are independent, so they can be run in parallel.
+ */
+public class PackingHeuristics implements InitialColumnGenerator
+{
+	/**
+	 * The packing heuristics that can be used to generate patterns
+	 */
+	public enum Heuristic
+	{
+		FIRST_FIT_DECREASING,
+		BEST_FIT_DECREASING,
+		GREEDY_RESIDUAL
+	}
+	
+	private final Heuristic [] heuristics;
+	private final boolean parallel;
+	
+	/**
+	 * Creates a generator that runs the given heuristics
+	 * @param parallel whether to run the heuristics in parallel, using the common fork-join pool
+	 * @param heuristics the heuristics to run
+	 */
+	public PackingHeuristics(boolean parallel, Heuristic... heuristics)
+	{
+		if (heuristics.length == 0)
+		{
+			throw new IllegalArgumentException("At least one heuristic must be used");
+		}
+		this.heuristics = heuristics.clone();
+		this.parallel = parallel;
+	}
+	
+	/**
+	 * Creates a generator that runs all heuristics in parallel
+	 */
+	public PackingHeuristics()
+	{
+		this(true, Heuristic.values());
+	}
+	
+	@Override
+	public List<Pattern> generate(Instance instance)
+	{
+		Stream<Heuristic> stream = Arrays.stream(heuristics);
+		if (parallel)
+		{
+			stream = stream.parallel();
+		}
+		// The solutions are collected in the order of the heuristics, so the
+		// result is the same whether the heuristics run in parallel or not
+		List<Solution> solutions = stream.map(h -> solve(h, instance))
+		                                 .collect(Collectors.toList());
+		Set<Pattern> patterns = new LinkedHashSet<>();
+		for (Solution solution : solutions)
+		{
+			patterns.addAll(solution.getPatterns());
+		}
+		return new ArrayList<>(patterns);
+	}
+	
+	/**
+	 * Finds a solution for an instance with every heuristic
+	 * @param instance the instance to solve
+	 * @return the solution that needs the fewest units of stock
+	 * @throws IllegalArgumentException if an item does not fit in a unit of base stock
+	 */
+	public static Solution best(Instance instance) throws IllegalArgumentException
+	{
+		Solution best = null;
+		for (Heuristic heuristic : Heuristic.values())
+		{
+			Solution candidate = solve(heuristic, instance);
+			if (best == null || candidate.getStockNeeded() < best.getStockNeeded())
+			{
+				best = candidate;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Finds a solution for an instance using a single heuristic
+	 * @param heuristic the heuristic to use
+	 * @param instance the instance to solve
+	 * @return the solution found by the heuristic
+	 * @throws IllegalArgumentException if an item does not fit in a unit of base stock
+	 */
+	public static Solution solve(Heuristic heuristic, Instance instance) throws IllegalArgumentException
+	{
+		int n = instance.getNumberOfSizes();
+		if (n > 0 && instance.getSize(n-1) > instance.getCapacity())
+		{
+			throw new IllegalArgumentException("Size "+instance.getSize(n-1)+" does not fit in the base stock");
+		}
+		switch (heuristic)
+		{
+			case FIRST_FIT_DECREASING:
+				return fitDecreasing(instance, false);
+			case BEST_FIT_DECREASING:
+				return fitDecreasing(instance, true);
+			case GREEDY_RESIDUAL:
+				return greedyResidual(instance);
+			default:
+				throw new IllegalArgumentException("Unknown heuristic: "+heuristic);
+		}
+	}
+	
+	/**
+	 * Cuts the items one by one, from the largest size to the smallest size, from
+	 * the units of stock that are already used, or from a new unit of stock if the
+	 * item does not fit in any of them.
+	 * @param instance the instance to solve
+	 * @param bestFit if true, the unit of stock with the least remaining capacity in which
+	 *                the item fits is used, otherwise the first unit of stock in which it fits
+	 * @return the solution found
+	 */
+	private static Solution fitDecreasing(Instance instance, boolean bestFit)
+	{
+		int n = instance.getNumberOfSizes();
+		// The remaining capacity and the number of items of each size cut from every unit of stock
+		int [] remaining = new int[16];
+		List<int []> counts = new ArrayList<>();
+		for (int i=n-1; i >= 0; i--)
+		{
+			int size = instance.getSize(i);
+			for (int copy=0; copy < instance.getDemand(i); copy++)
+			{
+				int selected = -1;
+				for (int b=0; b < counts.size(); b++)
+				{
+					if (remaining[b] >= size && (selected < 0 || remaining[b] < remaining[selected]))
+					{
+						selected = b;
+						if (!bestFit)
+						{
+							break;
+						}
+					}
+				}
+				if (selected < 0)
+				{
+					selected = counts.size();
+					if (selected == remaining.length)
+					{
+						remaining = Arrays.copyOf(remaining, 2*selected);
+					}
+					remaining[selected] = instance.getCapacity();
+					counts.add(new int[n]);
+				}
+				remaining[selected] -= size;
+				counts.get(selected)[i]++;
+			}
+		}
+		Map<Pattern,Integer> result = new LinkedHashMap<>();
+		for (int [] count : counts)
+		{
+			result.merge(new Pattern(instance, count), 1, Integer::sum);
+		}
+		return new Solution(instance, result);
+	}
+	
+	/**
+	 * Repeatedly builds a pattern by cutting as many of the largest remaining items as
+	 * possible, and applies this pattern as often as the remaining demand allows.
+	 * @param instance the instance to solve
+	 * @return the solution found
+	 */
+	private static Solution greedyResidual(Instance instance)
+	{
+		int n = instance.getNumberOfSizes();
+		int [] residual = instance.getDemandArray();
+		int [] counts = new int[n];
+		Map<Pattern,Integer> result = new LinkedHashMap<>();
+		boolean demandLeft = true;
+		while (demandLeft)
+		{
+			int capacity = instance.getCapacity();
+			int copies = Integer.MAX_VALUE;
+			for (int i=n-1; i >= 0; i--)
+			{
+				counts[i] = Math.min(residual[i], capacity / instance.getSize(i));
+				if (counts[i] > 0)
+				{
+					capacity -= counts[i] * instance.getSize(i);
+					copies = Math.min(copies, residual[i] / counts[i]);
+				}
+			}
+			if (copies == Integer.MAX_VALUE)
+			{
+				// No items were cut, so all demand is covered
+				break;
+			}
+			demandLeft = false;
+			for (int i=0; i < n; i++)
+			{
+				residual[i] -= copies * counts[i];
+				demandLeft |= residual[i] > 0;
+			}
+			result.merge(new Pattern(instance, counts), copies, Integer::sum);
+		}
+		return new Solution(instance, result);
+	}
+}
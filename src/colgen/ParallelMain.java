@@ -0,0 +1,103 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ilog.concert.IloException;
+
+/**
+ * Main class that solves the same random instances as the Main class, but solves
+ * multiple instances in parallel. Each instance is solved by a worker thread that
+ * creates its own master and pricing models, so no CPLEX environment is shared
+ * between threads. The output of the instances is printed in the same order as
+ * by the Main class, followed by latency percentiles and the total throughput.
+ *
+ * The first argument is the number of workers (by default the number of cores),
+ * and the second argument is the number of threads CPLEX may use per worker
+ * (by default 1). CPLEX is deterministic for a fixed number of threads, so the
+ * solutions are the same as those of the Main class when it is given the same
+ * number of threads, which also defaults to 1.
+ */
+public class ParallelMain
+{
+	public static void main(String [] args) throws IloException, InterruptedException
+	{
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+		long time = System.currentTimeMillis();
+		List<Instance> instances = Main.generateInstances();
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		List<Future<Result>> futures = new ArrayList<>();
+		for (Instance instance : instances)
+		{
+			futures.add(executor.submit(() -> solve(instance, threads)));
+		}
+		executor.shutdown();
+
+		// Print the results in the order of the instances, as soon as they are available
+		long [] latencies = new long[instances.size()];
+		for (int i=0; i < futures.size(); i++)
+		{
+			Result result;
+			try
+			{
+				result = futures.get(i).get();
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IloException)
+				{
+					throw (IloException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			System.out.println(result.report);
+			latencies[i] = result.latency;
+		}
+		time = System.currentTimeMillis() - time;
+
+		System.out.println("Workers: "+workers+", CPLEX threads per worker: "+threads);
+		Latencies.print(latencies, "instances", time);
+	}
+
+	/**
+	 * Solves a single instance with its own master and pricing models
+	 * @param instance the instance to solve
+	 * @param threads the number of threads CPLEX may use
+	 * @return the report of the instance and the time it took to solve it
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	private static Result solve(Instance instance, int threads) throws IloException
+	{
+		long start = System.currentTimeMillis();
+		MasterModel mm = new MasterModel(instance);
+		try
+		{
+			mm.setThreads(threads);
+			mm.setCombinatorialBounds(true);
+			mm.solveInteger();
+			String report = Main.report(instance, mm.getSolution(), mm.getLowerBound());
+			return new Result(report, System.currentTimeMillis() - start);
+		}
+		finally
+		{
+			mm.cleanUp();
+		}
+	}
+
+	private static class Result
+	{
+		private final String report;
+		private final long latency;
+
+		public Result(String report, long latency)
+		{
+			this.report = report;
+			this.latency = latency;
+		}
+	}
+}
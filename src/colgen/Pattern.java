@@ -1,29 +1,37 @@
 package colgen;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Models a cutting pattern for a base unit of stock.
  * It indicates how many pieces of a particular size
  * are to be cut from a piece of base stock.
+ * 
+ * A pattern is stored as two arrays: the sizes of the items that are cut
+ * in increasing order, and how many copies of each size are cut. Sizes
+ * that are cut zero times are not stored, so two patterns that cut the
+ * same items are always equal. The hash code is computed once, which makes
+ * patterns cheap to use as keys in hash maps.
  * @author Paul Bouman
  *
  */
 public class Pattern
 {
 	
-	// In this map, the keys represent the sizes of items to be cut,
-	// and the values represent how many copies of such an items are
-	// to be cut according to this pattern.
-	private Map<Integer,Integer> cuts;
+	// The sizes of items to be cut, in increasing order
+	private final int [] sizes;
+	// How many copies of the item with the size at the same index are
+	// to be cut according to this pattern. Always positive.
+	private final int [] amounts;
 	// The total length of this cutting pattern. Should not exceed the
 	// capacity of a base unit of stock
-	private int size;
+	private final int size;
+	private final int hash;
 	
 	
 	/**
@@ -36,11 +44,7 @@ public class Pattern
 	 */
 	public Pattern(List<Integer> cuts)
 	{
-		this.cuts = new LinkedHashMap<>();
-		cuts.forEach(i -> this.cuts.merge(i, 1, Integer::sum));
-		this.size = cuts.stream()
-				        .mapToInt(i -> i)
-				        .sum();
+		this(cuts.stream().mapToInt(i -> i).toArray(), ones(cuts.size()));
 	}
 	
 	/**
@@ -53,11 +57,120 @@ public class Pattern
 	 */
 	public Pattern(Map<Integer,Integer> cuts)
 	{
-		this.cuts = new LinkedHashMap<>(cuts);
-		this.size = cuts.entrySet()
-						.stream()
-						.mapToInt(e -> e.getKey()*e.getValue())
-						.sum();
+		this(cuts.keySet().stream().mapToInt(i -> i).toArray(),
+		     cuts.values().stream().mapToInt(i -> i).toArray());
+	}
+	
+	/**
+	 * Constructor for a cutting pattern based on two arrays, with the sizes
+	 * of items that must be cut from the base stock and the number of copies
+	 * of each of these items. Sizes may occur more than once, in which case
+	 * their numbers of copies are added up, and sizes with zero copies are ignored.
+	 * @param sizes the sizes of items to be cut
+	 * @param amounts the number of copies of the item with the size at the same index
+	 */
+	public Pattern(int [] sizes, int [] amounts)
+	{
+		if (sizes.length != amounts.length)
+		{
+			throw new IllegalArgumentException("There must be exactly one amount for every size");
+		}
+		// Sort by size and merge equal sizes
+		long [] pairs = new long[sizes.length];
+		for (int i=0; i < sizes.length; i++)
+		{
+			if (amounts[i] < 0)
+			{
+				throw new IllegalArgumentException("A pattern can not cut a negative number of items");
+			}
+			pairs[i] = ((long) sizes[i] << 32) | amounts[i];
+		}
+		Arrays.sort(pairs);
+		int [] s = new int[pairs.length];
+		int [] a = new int[pairs.length];
+		int n = 0;
+		for (long pair : pairs)
+		{
+			int itemSize = (int) (pair >> 32);
+			int amount = (int) pair;
+			if (amount == 0)
+			{
+				continue;
+			}
+			if (n > 0 && s[n-1] == itemSize)
+			{
+				a[n-1] += amount;
+			}
+			else
+			{
+				s[n] = itemSize;
+				a[n] = amount;
+				n++;
+			}
+		}
+		this.sizes = n == s.length ? s : Arrays.copyOf(s, n);
+		this.amounts = n == a.length ? a : Arrays.copyOf(a, n);
+		this.size = totalSize(this.sizes, this.amounts);
+		this.hash = computeHash(this.sizes, this.amounts);
+	}
+	
+	/**
+	 * Constructor for a cutting pattern based on a dense vector with the number
+	 * of copies of each size of an instance. Since the sizes of an instance are
+	 * sorted, this does not need to sort or merge anything.
+	 * @param instance the instance that defines the index of each size
+	 * @param counts the number of copies cut of the size with the same index in the instance
+	 */
+	public Pattern(Instance instance, int [] counts)
+	{
+		int n = 0;
+		for (int count : counts)
+		{
+			if (count > 0)
+			{
+				n++;
+			}
+		}
+		this.sizes = new int[n];
+		this.amounts = new int[n];
+		int j = 0;
+		for (int i=0; i < counts.length; i++)
+		{
+			if (counts[i] > 0)
+			{
+				sizes[j] = instance.getSize(i);
+				amounts[j] = counts[i];
+				j++;
+			}
+		}
+		this.size = totalSize(sizes, amounts);
+		this.hash = computeHash(sizes, amounts);
+	}
+	
+	private static int [] ones(int n)
+	{
+		int [] result = new int[n];
+		Arrays.fill(result, 1);
+		return result;
+	}
+	
+	private static int totalSize(int [] sizes, int [] amounts)
+	{
+		int result = 0;
+		for (int i=0; i < sizes.length; i++)
+		{
+			result += sizes[i] * amounts[i];
+		}
+		return result;
+	}
+	
+	private static int computeHash(int [] sizes, int [] amounts)
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(sizes);
+		result = prime * result + Arrays.hashCode(amounts);
+		return result;
 	}
 	
 	/**
@@ -69,7 +182,7 @@ public class Pattern
 	 */
 	public boolean containsSize(int size)
 	{
-		return cuts.containsKey(size);
+		return Arrays.binarySearch(sizes, size) >= 0;
 	}
 	
 	/**
@@ -81,7 +194,12 @@ public class Pattern
 	 */
 	public Set<Integer> getSizes()
 	{
-		return Collections.unmodifiableSet(cuts.keySet());
+		Set<Integer> result = new LinkedHashSet<>();
+		for (int s : sizes)
+		{
+			result.add(s);
+		}
+		return Collections.unmodifiableSet(result);
 	}
 	
 	/**
@@ -92,7 +210,38 @@ public class Pattern
 	 */
 	public int getAmount(int size)
 	{
-		return cuts.getOrDefault(size, 0);
+		int index = Arrays.binarySearch(sizes, size);
+		return index >= 0 ? amounts[index] : 0;
+	}
+	
+	/**
+	 * The number of different sizes that are cut in this pattern
+	 * @return the number of different sizes
+	 */
+	public int getNumberOfSizes()
+	{
+		return sizes.length;
+	}
+	
+	/**
+	 * The size at a position in this pattern, where the sizes are sorted in increasing order.
+	 * Together with getAmountAt() this allows iterating over the cuts without allocating anything.
+	 * @param position the position, between 0 and getNumberOfSizes()
+	 * @return the size of the item at that position
+	 */
+	public int getSizeAt(int position)
+	{
+		return sizes[position];
+	}
+	
+	/**
+	 * The number of copies of the size at a position in this pattern.
+	 * @param position the position, between 0 and getNumberOfSizes()
+	 * @return the number of copies of the item at that position
+	 */
+	public int getAmountAt(int position)
+	{
+		return amounts[position];
 	}
 	
 	/**
@@ -106,6 +255,28 @@ public class Pattern
 		return size;
 	}
 
+	/**
+	 * Computes the total value of the items cut by this pattern, where the value
+	 * of a single item is given per size index of an instance, such as the duals
+	 * of the master problem. Sizes that do not occur in the instance have no value.
+	 * @param instance the instance that defines the index of each size
+	 * @param values the value of a single item of the size with the same index in the instance
+	 * @return the sum of the values of all items cut by this pattern
+	 */
+	public double getValue(Instance instance, double [] values)
+	{
+		double result = 0;
+		for (int j=0; j < sizes.length; j++)
+		{
+			int index = instance.indexOf(sizes[j]);
+			if (index >= 0)
+			{
+				result += amounts[j] * values[index];
+			}
+		}
+		return result;
+	}
+	
 	/**
 	 * Represents this cutting pattern as a list of item sizes,
 	 * where item sizes that are cut multiple times are repeated
@@ -114,19 +285,20 @@ public class Pattern
 	 */
 	public List<Integer> asList()
 	{
-		return cuts.entrySet()
-				   .stream()
-				   .flatMap(e -> Stream.generate(e::getKey).limit(e.getValue()))
-				   .collect(Collectors.toList());
+		List<Integer> result = new ArrayList<>();
+		for (int i=0; i < sizes.length; i++)
+		{
+			for (int j=0; j < amounts[i]; j++)
+			{
+				result.add(sizes[i]);
+			}
+		}
+		return result;
 	}
 	
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((cuts == null) ? 0 : cuts.hashCode());
-		result = prime * result + size;
-		return result;
+		return hash;
 	}
 
 	@Override
@@ -138,14 +310,11 @@ public class Pattern
 		if (getClass() != obj.getClass())
 			return false;
 		Pattern other = (Pattern) obj;
-		if (cuts == null) {
-			if (other.cuts != null)
-				return false;
-		} else if (!cuts.equals(other.cuts))
+		if (hash != other.hash)
 			return false;
 		if (size != other.size)
 			return false;
-		return true;
+		return Arrays.equals(sizes, other.sizes) && Arrays.equals(amounts, other.amounts);
 	}
 	
 	@Override
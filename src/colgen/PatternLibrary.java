@@ -0,0 +1,504 @@
+package colgen;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent library of patterns on disk, which is used to start column generation with
+ * the columns generated in earlier runs on instances with mostly the same sizes. It can be
+ * passed to MasterModel.addInitialColumns(), which adds every stored pattern that is valid
+ * for the instance: the pattern must have been stored for the same capacity, and every size
+ * it cuts must occur in the instance.
+ *
+ * The library consists of an index file and a data file in a directory. The data file contains
+ * the patterns in a compact binary encoding: the number of sizes followed by a size and an
+ * amount for every size. The index file contains a header and an entry of fixed length for
+ * every pattern, with the capacity, the generation in which it was last stored, a 64-bit Bloom
+ * filter of the sizes, a fingerprint of the pattern and its offset in the data file. Both files
+ * are memory-mapped, so that looking up the patterns for an instance only reads the index
+ * entries and the patterns that pass the Bloom filter. The files are mapped in segments: when
+ * patterns are stored, only the region that was appended to the files is mapped. Since a file
+ * is mapped as a single segment when the library is opened, both files are limited to 2 GB.
+ *
+ * Patterns are only appended. The data is written before the index entries, and the number of
+ * entries in the header is updated last, so a crash never leaves entries that point to missing
+ * data. Every time a library is opened, the generation is incremented. Patterns that have not
+ * been stored again for a number of generations can be removed by compact(), which writes
+ * a new data file and a new index.
+ *
+ * A PatternLibrary should only be used by one thread, and a directory should only be opened by
+ * one library at the same time.
+ */
+public class PatternLibrary implements InitialColumnGenerator, Closeable
+{
+	private static final String INDEX_FILE = "patterns.idx";
+	private static final int MAGIC = 0x50415454;
+	private static final int VERSION = 1;
+	
+	// The header contains the magic number, the version, the generation, the number of
+	// entries and the number of the data file, which is incremented by every compaction
+	private static final int HEADER_BYTES = 20;
+	private static final int GENERATION_OFFSET = 8;
+	private static final int COUNT_OFFSET = 12;
+	private static final int DATA_FILE_OFFSET = 16;
+	// An entry contains the capacity, the generation, the Bloom filter, the fingerprint and the offset
+	private static final int ENTRY_BYTES = 32;
+	// The largest size of a file that can be mapped as a single segment
+	private static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+	
+	private final Path directory;
+	private FileChannel index;
+	private FileChannel data;
+	private MappedFile indexMap;
+	private MappedFile dataMap;
+	private int generation;
+	private int count;
+	private int dataFile;
+	// The position of every stored pattern in the index, by capacity and fingerprint
+	private Map<Long,Integer> positions;
+	
+	/**
+	 * Opens the library in a directory, and creates it if the directory does not contain one yet
+	 * @param directory the directory that contains the files of the library
+	 * @throws IOException if the files can not be read or are not a pattern library
+	 */
+	public PatternLibrary(Path directory) throws IOException
+	{
+		this.directory = directory;
+		Files.createDirectories(directory);
+		open();
+		generation++;
+		indexMap.putInt(GENERATION_OFFSET, generation);
+	}
+	
+	/**
+	 * Opens the files of the library and maps them into memory
+	 */
+	private void open() throws IOException
+	{
+		index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+		                         StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (index.size() == 0)
+		{
+			index.write(header(0, 0, 0), 0);
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		index.read(header, 0);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+		{
+			index.close();
+			throw new IOException(directory+" does not contain a pattern library of version "+VERSION);
+		}
+		generation = header.getInt(GENERATION_OFFSET);
+		count = header.getInt(COUNT_OFFSET);
+		dataFile = header.getInt(DATA_FILE_OFFSET);
+		data = FileChannel.open(dataPath(dataFile), StandardOpenOption.CREATE,
+		                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			indexMap = new MappedFile(index, MapMode.READ_WRITE);
+			dataMap = new MappedFile(data, MapMode.READ_ONLY);
+		}
+		catch (IOException e)
+		{
+			index.close();
+			data.close();
+			throw e;
+		}
+		positions = new HashMap<>();
+		for (int i=0; i < count; i++)
+		{
+			positions.put(key(indexMap.getInt(entry(i)), indexMap.getLong(entry(i) + 16)), i);
+		}
+	}
+	
+	private Path dataPath(int number)
+	{
+		return directory.resolve("patterns."+number+".dat");
+	}
+	
+	private static ByteBuffer header(int generation, int count, int dataFile)
+	{
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putInt(VERSION).putInt(generation).putInt(count).putInt(dataFile).flip();
+		return header;
+	}
+	
+	@Override
+	public List<Pattern> generate(Instance instance)
+	{
+		int capacity = instance.getCapacity();
+		long sizes = 0;
+		for (int i=0; i < instance.getNumberOfSizes(); i++)
+		{
+			sizes |= bloom(instance.getSize(i));
+		}
+		List<Pattern> result = new ArrayList<>();
+		for (int i=0; i < count; i++)
+		{
+			int e = entry(i);
+			if (indexMap.getInt(e) != capacity || (indexMap.getLong(e + 8) & ~sizes) != 0)
+			{
+				continue;
+			}
+			Pattern pattern = readPattern(indexMap.getLong(e + 24), instance);
+			if (pattern != null)
+			{
+				result.add(pattern);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads a pattern from the data file
+	 * @param offset the offset of the pattern in the data file
+	 * @param instance the instance of which every size must occur in the pattern
+	 * @return the pattern, or null if it cuts a size that does not occur in the instance
+	 */
+	private Pattern readPattern(long offset, Instance instance)
+	{
+		int n = dataMap.getInt(offset);
+		int [] sizes = new int[n];
+		int [] amounts = new int[n];
+		for (int j=0; j < n; j++)
+		{
+			sizes[j] = dataMap.getInt(offset + 4 + 8*j);
+			amounts[j] = dataMap.getInt(offset + 8 + 8*j);
+			if (instance.indexOf(sizes[j]) < 0)
+			{
+				// A false positive of the Bloom filter
+				return null;
+			}
+		}
+		return new Pattern(sizes, amounts);
+	}
+	
+	/**
+	 * Stores patterns for a capacity. Patterns that are already stored for this capacity are
+	 * not written again, but they are marked as stored in the current generation.
+	 * @param capacity the capacity of the base stock for which the patterns were generated
+	 * @param patterns the patterns to store
+	 * @return the number of patterns that were added to the library
+	 * @throws IOException if the files can not be written, or would grow beyond 2 GB
+	 */
+	public int store(int capacity, Collection<Pattern> patterns) throws IOException
+	{
+		ByteBuffer records = ByteBuffer.allocate(1024);
+		ByteBuffer entries = ByteBuffer.allocate(ENTRY_BYTES * 16);
+		long offset = data.size();
+		int added = 0;
+		for (Pattern pattern : patterns)
+		{
+			long fingerprint = fingerprint(pattern);
+			long key = key(capacity, fingerprint);
+			Integer position = positions.get(key);
+			if (position != null)
+			{
+				// Patterns that occur twice in the collection are not in the index yet
+				if (position < count)
+				{
+					indexMap.putInt(entry(position) + 4, generation);
+				}
+				continue;
+			}
+			positions.put(key, count + added);
+			added++;
+			
+			int n = pattern.getNumberOfSizes();
+			records = ensure(records, 4 + 8*n);
+			entries = ensure(entries, ENTRY_BYTES);
+			long sizes = 0;
+			entries.putInt(capacity).putInt(generation);
+			for (int j=0; j < n; j++)
+			{
+				sizes |= bloom(pattern.getSizeAt(j));
+			}
+			entries.putLong(sizes).putLong(fingerprint).putLong(offset + records.position());
+			records.putInt(n);
+			for (int j=0; j < n; j++)
+			{
+				records.putInt(pattern.getSizeAt(j)).putInt(pattern.getAmountAt(j));
+			}
+		}
+		if (added == 0)
+		{
+			return 0;
+		}
+		if (offset + records.position() > MAX_FILE_BYTES || HEADER_BYTES + (long) (count + added) * ENTRY_BYTES > MAX_FILE_BYTES)
+		{
+			positions.values().removeIf(position -> position >= count);
+			throw new IOException("The pattern library in "+directory+" can not grow beyond 2 GB, it should be compacted");
+		}
+		// The data and the entries are written before the count, so they are never incomplete
+		records.flip();
+		data.write(records, offset);
+		entries.flip();
+		index.write(entries, HEADER_BYTES + (long) count * ENTRY_BYTES);
+		count += added;
+		indexMap.grow();
+		dataMap.grow();
+		indexMap.putInt(COUNT_OFFSET, count);
+		return added;
+	}
+	
+	/**
+	 * Stores the patterns that are currently columns of a master problem
+	 * @param mm the master problem
+	 * @return the number of patterns that were added to the library
+	 * @throws IOException if the files can not be written
+	 */
+	public int store(MasterModel mm) throws IOException
+	{
+		return store(mm.getInstance().getCapacity(), mm.getPatterns());
+	}
+	
+	/**
+	 * Grows a buffer if it does not have room for a number of bytes
+	 */
+	private static ByteBuffer ensure(ByteBuffer buffer, int bytes)
+	{
+		if (buffer.remaining() >= bytes)
+		{
+			return buffer;
+		}
+		ByteBuffer result = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+		buffer.flip();
+		result.put(buffer);
+		return result;
+	}
+	
+	/**
+	 * Removes the patterns that were not stored in the most recent generations, by writing
+	 * the remaining patterns to a new data file and a new index. The new index refers to the
+	 * new data file, and replaces the current index with an atomic move, so the library is
+	 * consistent even if the compaction is interrupted.
+	 * @param maxAge the number of generations a pattern is kept after it was last stored,
+	 *               where 0 only keeps the patterns stored since the library was opened
+	 * @return the number of patterns that were removed
+	 * @throws IOException if the files can not be written
+	 */
+	public int compact(int maxAge) throws IOException
+	{
+		Path newIndex = directory.resolve(INDEX_FILE + ".tmp");
+		Path newData = dataPath(dataFile + 1);
+		int kept = 0;
+		try (FileChannel indexOut = FileChannel.open(newIndex, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		     FileChannel dataOut = FileChannel.open(newData, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+			long offset = 0;
+			for (int i=0; i < count; i++)
+			{
+				int e = entry(i);
+				if (generation - indexMap.getInt(e + 4) > maxAge)
+				{
+					continue;
+				}
+				long start = indexMap.getLong(e + 24);
+				int length = 4 + 8 * dataMap.getInt(start);
+				dataOut.write(dataMap.slice(start, length), offset);
+				entry.clear();
+				entry.putInt(indexMap.getInt(e)).putInt(indexMap.getInt(e + 4))
+				     .putLong(indexMap.getLong(e + 8)).putLong(indexMap.getLong(e + 16)).putLong(offset).flip();
+				indexOut.write(entry, HEADER_BYTES + (long) kept * ENTRY_BYTES);
+				offset += length;
+				kept++;
+			}
+			indexOut.write(header(generation, kept, dataFile + 1), 0);
+			dataOut.force(true);
+			indexOut.force(true);
+		}
+		int removed = count - kept;
+		Path oldData = dataPath(dataFile);
+		close();
+		Files.move(newIndex, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.delete(oldData);
+		open();
+		return removed;
+	}
+	
+	/**
+	 * The number of patterns in the library
+	 * @return the number of patterns
+	 */
+	public int size()
+	{
+		return count;
+	}
+	
+	/**
+	 * The generation of the library, which is incremented every time it is opened
+	 * @return the generation
+	 */
+	public int getGeneration()
+	{
+		return generation;
+	}
+	
+	/**
+	 * Writes all changes to disk and closes the files of the library
+	 * @throws IOException if the files can not be written
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		indexMap.force();
+		indexMap = null;
+		dataMap = null;
+		index.close();
+		data.close();
+	}
+	
+	private int entry(int i)
+	{
+		return HEADER_BYTES + i * ENTRY_BYTES;
+	}
+	
+	private static long key(int capacity, long fingerprint)
+	{
+		return fingerprint * 31 + capacity;
+	}
+	
+	/**
+	 * The bit of a size in a 64-bit Bloom filter
+	 */
+	private static long bloom(int size)
+	{
+		return 1L << ((size * 0x9E3779B9) >>> 26);
+	}
+	
+	/**
+	 * A 64-bit hash of the sizes and amounts of a pattern
+	 */
+	private static long fingerprint(Pattern pattern)
+	{
+		long result = 1125899906842597L;
+		for (int j=0; j < pattern.getNumberOfSizes(); j++)
+		{
+			result = 31 * result + pattern.getSizeAt(j);
+			result = 31 * result + pattern.getAmountAt(j);
+			result ^= result >>> 29;
+		}
+		return result;
+	}
+	
+	/**
+	 * A file that is memory-mapped in segments, so that only the region that was appended to the
+	 * file has to be mapped after it has grown. A value never spans two segments, since the library
+	 * only appends complete entries and patterns.
+	 */
+	private static class MappedFile
+	{
+		private final FileChannel channel;
+		private final MapMode mode;
+		private final List<MappedByteBuffer> segments = new ArrayList<>();
+		// The position in the file of the first byte of every segment
+		private long [] starts = new long[8];
+		private long size;
+		
+		private MappedFile(FileChannel channel, MapMode mode) throws IOException
+		{
+			this.channel = channel;
+			this.mode = mode;
+			grow();
+		}
+		
+		/**
+		 * Maps the region that was appended to the file since the last call
+		 * @throws IOException if the region can not be mapped or is larger than 2 GB
+		 */
+		private void grow() throws IOException
+		{
+			long end = channel.size();
+			if (end == size)
+			{
+				return;
+			}
+			if (end - size > MAX_FILE_BYTES)
+			{
+				throw new IOException("A file of a pattern library can not be larger than 2 GB, but it has "+end+" bytes");
+			}
+			if (segments.size() == starts.length)
+			{
+				starts = Arrays.copyOf(starts, 2 * starts.length);
+			}
+			starts[segments.size()] = size;
+			segments.add(channel.map(mode, size, end - size));
+			size = end;
+		}
+		
+		/**
+		 * The index of the segment that contains a position, by binary search on the starts
+		 */
+		private int segment(long position)
+		{
+			int low = 0;
+			int high = segments.size() - 1;
+			while (low < high)
+			{
+				int mid = (low + high + 1) >>> 1;
+				if (starts[mid] <= position)
+				{
+					low = mid;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+			return low;
+		}
+		
+		private int getInt(long position)
+		{
+			int s = segment(position);
+			return segments.get(s).getInt((int) (position - starts[s]));
+		}
+		
+		private long getLong(long position)
+		{
+			int s = segment(position);
+			return segments.get(s).getLong((int) (position - starts[s]));
+		}
+		
+		private void putInt(long position, int value)
+		{
+			int s = segment(position);
+			segments.get(s).putInt((int) (position - starts[s]), value);
+		}
+		
+		/**
+		 * A buffer with a region of the file
+		 */
+		private ByteBuffer slice(long position, int length)
+		{
+			int s = segment(position);
+			ByteBuffer result = segments.get(s).duplicate();
+			int start = (int) (position - starts[s]);
+			result.position(start).limit(start + length);
+			return result;
+		}
+		
+		private void force()
+		{
+			for (MappedByteBuffer segment : segments)
+			{
+				segment.force();
+			}
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.List;
+
+import ilog.concert.IloException;
+
+/**
+ * Main class that compares the ways to solve the pricing problem of the column generation model,
+ * on the random instances that are solved by the Main class.
+ * The first argument selects the benchmark that is run, by default <code>pricing</code>:
+ * <ul>
+ *   <li><code>pricing</code> compares the CPLEX and dynamic programming pricing engines</li>
+ *   <li><code>columns</code> compares adding one column per iteration with adding multiple columns</li>
+ *   <li><code>stock</code> measures the time per iteration for several stock lengths, with sequential pricing and concurrent pricing on up to all cores</li>
+ *   <li><code>tiered</code> compares exact pricing in every iteration with a pricing heuristic that falls back to exact pricing</li>
+ * </ul>
+ */
+public class PricingBenchmark
+{
+	public static void main(String [] args) throws IloException
+	{
+		String benchmark = args.length > 0 ? args[0] : "pricing";
+		switch (benchmark)
+		{
+			case "pricing":
+				benchmarkPricing();
+				break;
+			case "columns":
+				benchmarkColumns();
+				break;
+			case "stock":
+				benchmarkStockLengths();
+				break;
+			case "tiered":
+				benchmarkPricingHeuristic();
+				break;
+			default:
+				System.out.println("Unknown benchmark: "+benchmark);
+		}
+	}
+	
+	/**
+	 * Compares the total time spent in solveRelaxation() when the pricing problem
+	 * is solved using CPLEX with the time spent when it is solved using dynamic programming.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkPricing() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		
+		// Warm up the JIT compiler before anything is measured
+		Benchmark.run(instances.subList(0, 10), i -> new MasterModel(i));
+		Benchmark.run(instances.subList(0, 10), i -> new MasterModel(i, new DynamicProgrammingPricing(i)));
+		
+		Benchmark.Result cplex = Benchmark.run(instances, i -> new MasterModel(i));
+		Benchmark.Result dp = Benchmark.run(instances, i -> new MasterModel(i, new DynamicProgrammingPricing(i)));
+		
+		System.out.println("CPLEX pricing:               "+cplex);
+		System.out.println("Dynamic programming pricing: "+dp);
+		System.out.println("Speedup: "+String.format("%.2f", cplex.nanos / (double) dp.nanos)+"x");
+	}
+	
+	/**
+	 * Compares the number of iterations and the total time spent in solveRelaxation()
+	 * when a single column is added per iteration with the same numbers when the
+	 * k best columns are added per iteration, for fixed and adaptive k.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkColumns() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		int [] ks = {1, 2, 5, 10, 20};
+		
+		for (int k : ks)
+		{
+			Benchmark.run(instances.subList(0, 10), i -> Benchmark.dpModel(i, k, false));
+		}
+		
+		Benchmark.Result single = null;
+		for (int k : ks)
+		{
+			Benchmark.Result result = Benchmark.run(instances, i -> Benchmark.dpModel(i, k, false));
+			if (k == 1)
+			{
+				single = result;
+			}
+			System.out.println("k = "+k+":\t\t"+result+Benchmark.relative(result, single));
+		}
+		Benchmark.Result adaptive = Benchmark.run(instances, i -> Benchmark.dpModel(i, 20, true));
+		System.out.println("adaptive k <= 20:\t"+adaptive+Benchmark.relative(adaptive, single));
+	}
+	
+	/**
+	 * Measures how the time per iteration of column generation scales with the number of stock
+	 * lengths and the number of cores, when the pricing problems of the stock lengths are solved
+	 * one after the other and when they are solved concurrently by 2, 4, 8 and so on threads, up
+	 * to the number of cores of the machine. The random instances get 1, 2, 4
+	 * or 8 stock lengths between three quarters of their capacity and their capacity, with a cost
+	 * proportional to the length. The pricing problems are solved using dynamic programming.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkStockLengths() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		int cores = Runtime.getRuntime().availableProcessors();
+		Benchmark.run(instances.subList(0, 10), i -> stockModel(i, 1));
+		for (int lengths : new int [] {1, 2, 4, 8})
+		{
+			List<Instance> variable = new ArrayList<>();
+			for (Instance instance : instances)
+			{
+				variable.add(withStockLengths(instance, lengths));
+			}
+			Benchmark.Result sequential = Benchmark.run(variable, i -> stockModel(i, 1));
+			System.out.println(lengths+" stock lengths, sequential:\t"+sequential+", "+perIteration(sequential));
+			for (int threads=2; threads < 2*cores; threads *= 2)
+			{
+				// The last step uses all cores, also if that is not a power of two
+				int used = Math.min(threads, cores);
+				Benchmark.Result concurrent = Benchmark.run(variable, i -> stockModel(i, used));
+				System.out.println(lengths+" stock lengths, "+used+" threads:\t"+concurrent+", "+perIteration(concurrent)
+				                   +Benchmark.relative(concurrent, sequential));
+			}
+		}
+	}
+	
+	/**
+	 * Compares column generation where the pricing problem is solved exactly in every iteration,
+	 * with column generation where a pricing heuristic is tried first and the pricing problem is
+	 * only solved exactly if the heuristic finds no column, for both pricing engines. Reports the
+	 * share of the iterations handled by each tier and the estimated pricing time saved.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkPricingHeuristic() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Benchmark.run(instances.subList(0, 10), i -> new MasterModel(i, new DynamicProgrammingPricing(i)));
+		Benchmark.run(instances.subList(0, 10), i -> tieredModel(new MasterModel(i, new DynamicProgrammingPricing(i)), new PricingHeuristic()));
+		for (int round=0; round < 2; round++)
+		{
+			String engine = round == 0 ? "Dynamic programming" : "CPLEX";
+			Benchmark.ModelFactory factory = round == 0 ? i -> new MasterModel(i, new DynamicProgrammingPricing(i)) : i -> new MasterModel(i);
+			Benchmark.Result exact = Benchmark.run(instances, factory);
+			PricingHeuristic heuristic = new PricingHeuristic();
+			Benchmark.Result tiered = Benchmark.run(instances, i -> tieredModel(factory.create(i), heuristic));
+			System.out.println(engine+", exact pricing:\t"+exact);
+			System.out.println(engine+", heuristic first:\t"+tiered+Benchmark.relative(tiered, exact));
+			System.out.println(String.format("\theuristic %.1f%%, exact %.1f%% of %d pricing iterations, "
+					+"heuristic %dms, exact %dms, estimated %dms saved", 100 * heuristic.getHeuristicShare(),
+					100 * (1 - heuristic.getHeuristicShare()), heuristic.getHeuristicIterations() + heuristic.getExactIterations(),
+					heuristic.getHeuristicTime() / 1_000_000, heuristic.getExactTime() / 1_000_000, heuristic.getTimeSaved() / 1_000_000));
+		}
+	}
+	
+	private static MasterModel tieredModel(MasterModel mm, PricingHeuristic heuristic)
+	{
+		mm.setPricingHeuristic(heuristic);
+		return mm;
+	}
+	
+	private static Instance withStockLengths(Instance instance, int lengths)
+	{
+		int [] sizes = new int[instance.getNumberOfSizes()];
+		int [] demands = new int[sizes.length];
+		for (int i=0; i < sizes.length; i++)
+		{
+			sizes[i] = instance.getSize(i);
+			demands[i] = instance.getDemand(i);
+		}
+		int capacity = instance.getCapacity();
+		int [] stockLengths = new int[lengths];
+		double [] stockCosts = new double[lengths];
+		for (int l=0; l < lengths; l++)
+		{
+			stockLengths[l] = capacity - l * capacity / (4 * lengths);
+			stockCosts[l] = stockLengths[l] / (double) capacity;
+		}
+		return new Instance(sizes, demands, stockLengths, stockCosts);
+	}
+	
+	private static MasterModel stockModel(Instance instance, int threads) throws IloException
+	{
+		MasterModel mm = new MasterModel(instance, DynamicProgrammingPricing.forStockLengths(instance));
+		mm.setPricingThreads(threads);
+		return mm;
+	}
+	
+	private static String perIteration(Benchmark.Result result)
+	{
+		return String.format("%.3fms per iteration", result.nanos / 1e6 / result.iterations);
+	}
+}
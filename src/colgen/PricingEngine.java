@@ -0,0 +1,108 @@
+package colgen;
+import java.util.List;
+
+import ilog.concert.IloException;
+
+/**
+ * Interface for the different ways in which the Pricing Problem of the Cutting
+ * Stock problem can be solved. Given the duals of the master problem, a pricing
+ * engine finds a cutting pattern with maximal reduced costs. The reduced costs of
+ * a pattern are the sum of the duals of the items cut in the pattern, minus one
+ * for the unit of base stock that is used.
+ *
+ * The engine that solves the problem using CPLEX is the PricingModel, the engine
+ * that solves it in pure Java is the DynamicProgrammingPricing.
+ */
+public interface PricingEngine
+{
+	/**
+	 * Update the objective based on an array of duals, where the current
+	 * shadow costs of each item size is provided. The array is not stored,
+	 * so the caller may reuse it.
+	 * @param duals a dual or shadow cost for each item size, by the index of the size in the instance
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void setDuals(double [] duals) throws IloException;
+	
+	/**
+	 * Solve the pricing problem with the most recently configured duals
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	public void solve() throws IloException;
+	
+	/**
+	 * Solve the pricing problem with the most recently configured duals, when up to k
+	 * patterns will be requested with getPatterns() afterwards. Engines that can find
+	 * the k best patterns in the same pass as the best pattern override this, so that
+	 * the pricing problem is not solved twice.
+	 * @param k the number of patterns that will be requested
+	 * @throws IloException when something goes wrong with CPLEX
+	 */
+	public default void solve(int k) throws IloException
+	{
+		solve();
+	}
+	
+	/**
+	 * Provides the objective value (the reduced costs) of the last time
+	 * the pricing problem was solved
+	 * @return the objective value / reduced costs of the last solution
+	 * @throws IloException in case something goes wrong with CPLEX
+	 */
+	public double getObjective() throws IloException;
+	
+	/**
+	 * Provides an upper bound on the objective value of the last time the pricing
+	 * problem was solved. If the pricing problem is solved to optimality, this is
+	 * equal to the objective value. Only this bound is guaranteed to be at least the
+	 * maximal reduced costs of any pattern, which is required to compute lower bounds.
+	 * @return an upper bound on the maximal reduced costs of a pattern
+	 * @throws IloException in case something goes wrong with CPLEX
+	 */
+	public double getObjectiveBound() throws IloException;
+	
+	/**
+	 * Obtain a cutting pattern based on the most recent solution found
+	 * for this pricing problem.
+	 * @return a cutting pattern that maximizes the reduced costs
+	 * @throws IloException in case something goes wrong with CPLEX
+	 */
+	public Pattern getPattern() throws IloException;
+	
+	/**
+	 * Obtain up to k distinct cutting patterns with reduced costs greater than the threshold,
+	 * for the most recently configured duals, ordered from high to low reduced costs.
+	 * This method should be called after solve().
+	 * @param k the maximum number of patterns
+	 * @param threshold the reduced costs a pattern must exceed to be returned
+	 * @return a list of at most k distinct patterns
+	 * @throws IloException in case something goes wrong with CPLEX
+	 */
+	public List<Pattern> getPatterns(int k, double threshold) throws IloException;
+	
+	/**
+	 * Replaces the instance of the pricing problem by an instance with the same capacity,
+	 * for example when the demand of the master problem changes. Afterwards, the duals
+	 * are indexed by the sizes of the new instance and have to be set again.
+	 * @param instance the new instance, with the same capacity as the current instance
+	 * @throws IllegalArgumentException if the capacity of the instance is different
+	 * @throws IloException in case something goes wrong with CPLEX
+	 */
+	public void setInstance(Instance instance) throws IloException;
+	
+	/**
+	 * Sets the number of threads the engine may use to solve the pricing problem.
+	 * Engines that do not use CPLEX are single threaded and ignore this.
+	 * @param threads the maximum number of threads, where 0 lets CPLEX decide
+	 * @throws IloException in case something goes wrong with CPLEX
+	 */
+	public default void setThreads(int threads) throws IloException
+	{
+	}
+	
+	/**
+	 * Releases the resources held by this engine, such as the memory used by CPLEX.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public void cleanUp() throws IloException;
+}
@@ -0,0 +1,324 @@
+package colgen;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fast heuristic for the Pricing Problem of the Cutting Stock problem, which is used by
+ * the MasterModel as a first tier before the exact pricing engines. In most iterations of
+ * column generation, many patterns have positive reduced costs and one of them is easy to
+ * find, so the exact pricing problem only needs to be solved when the heuristic fails.
+ *
+ * For every stock length, the heuristic fills the stock greedily with the items with the
+ * highest ratio of dual and size, taking as many copies of every item as fit. If multiple
+ * columns are requested, the items with the next highest ratios are also tried as the first
+ * item, to obtain different patterns. Every greedy pattern is
+ * improved by a local search that removes one copy of an item and refills the free space
+ * greedily with the other items, as long as this increases the total dual of the pattern.
+ *
+ * The columns found by the heuristic are only added if they have positive reduced costs.
+ * Otherwise, the MasterModel solves the exact pricing problems, so that column generation
+ * still only stops when the exact pricing problems prove that no column has positive reduced
+ * costs. Since the heuristic does not give an upper bound on the reduced costs, the Lagrangian
+ * bound is only computed in iterations that solve the exact pricing problems.
+ *
+ * A PricingHeuristic keeps track of statistics, so it should not be shared between models
+ * that are solved in parallel.
+ */
+public class PricingHeuristic
+{
+	private final int maxMoves;
+	
+	// Scratch arrays over the sizes and over the returned patterns, which are reused in every
+	// iteration and only allocated again when the number of sizes changes or more patterns are requested
+	private int [] order = new int[0];
+	private double [] ratios = new double[0];
+	private int [] counts = new int[0];
+	private int [] candidate = new int[0];
+	private Pattern [] best = new Pattern[0];
+	private double [] bestCosts = new double[0];
+	private final List<Pattern> result = new ArrayList<>();
+	
+	private int heuristicIterations;
+	private int exactIterations;
+	private long heuristicNanos;
+	private long exactNanos;
+	
+	/**
+	 * Creates a pricing heuristic
+	 * @param maxMoves the maximum number of improving moves of the local search for every
+	 *                 greedy pattern, where 0 disables the local search
+	 */
+	public PricingHeuristic(int maxMoves)
+	{
+		if (maxMoves < 0)
+		{
+			throw new IllegalArgumentException("The number of moves may not be negative");
+		}
+		this.maxMoves = maxMoves;
+	}
+	
+	/**
+	 * Creates a pricing heuristic that makes at most 100 improving moves for every greedy pattern
+	 */
+	public PricingHeuristic()
+	{
+		this(100);
+	}
+	
+	/**
+	 * Finds patterns with high reduced costs for the duals of the master problem. The reduced
+	 * costs of a pattern are its total dual minus the cost of the cheapest stock length it fits in.
+	 * @param instance the instance of the master problem
+	 * @param duals the duals of the master problem
+	 * @param threshold the reduced costs a pattern must exceed
+	 * @param max the maximum number of patterns to return
+	 * @return distinct patterns with reduced costs above the threshold, best first, in a list
+	 *         that is reused by the next call
+	 */
+	List<Pattern> price(Instance instance, double [] duals, double threshold, int max)
+	{
+		long start = System.nanoTime();
+		int n = instance.getNumberOfSizes();
+		if (order.length != n)
+		{
+			order = new int[n];
+			ratios = new double[n];
+			counts = new int[n];
+			candidate = new int[n];
+		}
+		if (best.length < max)
+		{
+			best = new Pattern[max];
+			bestCosts = new double[max];
+		}
+		// The items with a positive dual, sorted by decreasing ratio of dual and size with an
+		// insertion sort, which keeps items with the same ratio in the order of the instance
+		int active = 0;
+		for (int i=0; i < n; i++)
+		{
+			if (duals[i] > 0)
+			{
+				ratios[i] = duals[i] / instance.getSize(i);
+				int pos = active++;
+				while (pos > 0 && ratios[order[pos-1]] < ratios[i])
+				{
+					order[pos] = order[pos-1];
+					pos--;
+				}
+				order[pos] = i;
+			}
+		}
+		
+		int found = 0;
+		int starts = Math.min(active, 2 * max - 1);
+		for (int l=0; l < instance.getNumberOfStockLengths(); l++)
+		{
+			int length = instance.getStockLength(l);
+			for (int first=0; first < starts; first++)
+			{
+				Arrays.fill(counts, 0);
+				int free = length;
+				int i = order[first];
+				counts[i] = free / instance.getSize(i);
+				free -= counts[i] * instance.getSize(i);
+				free = fill(instance, active, counts, free, -1);
+				free = improve(instance, duals, active, n, free);
+				
+				double rc = -instance.getCost(length - free);
+				for (int k=0; k < active; k++)
+				{
+					rc += counts[order[k]] * duals[order[k]];
+				}
+				// Insert the pattern such that the patterns remain sorted by reduced costs
+				int pos = found;
+				while (pos > 0 && bestCosts[pos-1] < rc)
+				{
+					pos--;
+				}
+				// Only the patterns that are good enough are created
+				if (rc > threshold && pos < max)
+				{
+					Pattern pattern = new Pattern(instance, counts);
+					if (!contains(found, pattern))
+					{
+						int moved = Math.min(found, max-1) - pos;
+						System.arraycopy(best, pos, best, pos+1, moved);
+						System.arraycopy(bestCosts, pos, bestCosts, pos+1, moved);
+						best[pos] = pattern;
+						bestCosts[pos] = rc;
+						found = Math.min(found+1, max);
+					}
+				}
+			}
+		}
+		result.clear();
+		for (int k=0; k < found; k++)
+		{
+			result.add(best[k]);
+			best[k] = null;
+		}
+		heuristicNanos += System.nanoTime() - start;
+		return result;
+	}
+	
+	private boolean contains(int found, Pattern pattern)
+	{
+		for (int k=0; k < found; k++)
+		{
+			if (best[k].equals(pattern))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Adds as many copies as fit of every item in the given order to a pattern
+	 * @param skip the index of an item that is not added, or -1 to consider all items
+	 * @return the free space that remains
+	 */
+	private int fill(Instance instance, int active, int [] counts, int free, int skip)
+	{
+		for (int k=0; k < active; k++)
+		{
+			int i = order[k];
+			int size = instance.getSize(i);
+			if (i != skip && size <= free)
+			{
+				counts[i] += free / size;
+				free -= (free / size) * size;
+			}
+		}
+		return free;
+	}
+	
+	/**
+	 * Improves a pattern by removing one copy of an item and filling the free space greedily
+	 * with the other items, until no such move increases the total dual of the pattern
+	 * @return the free space that remains
+	 */
+	private int improve(Instance instance, double [] duals, int active, int n, int free)
+	{
+		int moves = 0;
+		boolean improved = true;
+		while (improved && moves < maxMoves)
+		{
+			improved = false;
+			for (int k=0; k < active; k++)
+			{
+				int i = order[k];
+				if (counts[i] == 0)
+				{
+					continue;
+				}
+				System.arraycopy(counts, 0, candidate, 0, n);
+				candidate[i]--;
+				int left = fill(instance, active, candidate, free + instance.getSize(i), i);
+				double gain = 0;
+				for (int m=0; m < active; m++)
+				{
+					int j = order[m];
+					gain += (candidate[j] - counts[j]) * duals[j];
+				}
+				if (gain > 1e-12)
+				{
+					System.arraycopy(candidate, 0, counts, 0, n);
+					free = left;
+					moves++;
+					improved = true;
+					break;
+				}
+			}
+		}
+		return free;
+	}
+	
+	/**
+	 * Reports that the heuristic found columns, so that the exact pricing problems are
+	 * not solved in this iteration
+	 */
+	void heuristicPriced()
+	{
+		heuristicIterations++;
+	}
+	
+	/**
+	 * Reports that the exact pricing problems were solved because the heuristic did not find columns
+	 * @param nanos the time spent solving the exact pricing problems
+	 */
+	void exactPriced(long nanos)
+	{
+		exactIterations++;
+		exactNanos += nanos;
+	}
+	
+	/**
+	 * The number of iterations in which the heuristic found the columns
+	 * @return the number of iterations handled by the heuristic
+	 */
+	public int getHeuristicIterations()
+	{
+		return heuristicIterations;
+	}
+	
+	/**
+	 * The number of iterations in which the exact pricing problems were solved
+	 * @return the number of iterations handled by the exact pricing engines
+	 */
+	public int getExactIterations()
+	{
+		return exactIterations;
+	}
+	
+	/**
+	 * The share of the pricing iterations that was handled by the heuristic
+	 * @return a fraction between 0 and 1
+	 */
+	public double getHeuristicShare()
+	{
+		int total = heuristicIterations + exactIterations;
+		return total == 0 ? 0 : heuristicIterations / (double) total;
+	}
+	
+	/**
+	 * The total time spent in the heuristic, including the iterations in which it failed
+	 * @return the time in nanoseconds
+	 */
+	public long getHeuristicTime()
+	{
+		return heuristicNanos;
+	}
+	
+	/**
+	 * The total time spent solving the exact pricing problems
+	 * @return the time in nanoseconds
+	 */
+	public long getExactTime()
+	{
+		return exactNanos;
+	}
+	
+	/**
+	 * Estimates the pricing time saved by the heuristic, assuming that solving the exact pricing
+	 * problems in the iterations handled by the heuristic would have taken as long on average as
+	 * in the other iterations. The time spent in the heuristic is subtracted.
+	 * @return the estimated time saved in nanoseconds, which is negative if the heuristic costs time
+	 */
+	public long getTimeSaved()
+	{
+		if (exactIterations == 0)
+		{
+			return -heuristicNanos;
+		}
+		return heuristicIterations * exactNanos / exactIterations - heuristicNanos;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "PricingHeuristic [heuristicIterations=" + heuristicIterations + ", exactIterations=" + exactIterations
+				+ ", timeSaved=" + (getTimeSaved() / 1_000_000) + "ms]";
+	}
+}
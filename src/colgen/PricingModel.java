@@ -1,13 +1,18 @@
 package colgen;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.stream.Collectors;
 
 import ilog.concert.IloException;
+import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
 import ilog.concert.IloObjective;
 import ilog.cplex.IloCplex;
+import ilog.cplex.IloCplex.IntParam;
 
 /**
  * A model for the Pricing Problem of the Cutting Stock problem.
@@ -17,13 +22,16 @@ import ilog.cplex.IloCplex;
  * @author Paul Bouman
  *
  */
-public class PricingModel
+public class PricingModel implements PricingEngine
 {
 	private Instance instance;
 	private IloCplex model;
 	
 	private IloObjective obj;
-	private Map<Integer,IloNumVar> vars;
+	// The variable of each size, by the index of the size in the instance
+	private IloNumVar [] vars;
+	// Reused to convert the values of the variables to a pattern
+	private int [] counts;
 	
 	
 	/**
@@ -35,7 +43,8 @@ public class PricingModel
 	{
 		this.instance = instance;
 		this.model = new IloCplex();
-		this.vars = new LinkedHashMap<>();
+		this.vars = new IloNumVar[instance.getNumberOfSizes()];
+		this.counts = new int[vars.length];
 		
 		initVars();
 		initCapacityConstraint();
@@ -45,25 +54,28 @@ public class PricingModel
 	
 	private void initVars() throws IloException
 	{
-		for (Integer size : instance.getSizes())
+		for (int i=0; i < vars.length; i++)
 		{
-			IloNumVar var = model.intVar(0, Integer.MAX_VALUE);
-			vars.put(size, var);
+			vars[i] = model.intVar(0, Integer.MAX_VALUE);
 		}
 	}
 	
 	private void initObjective() throws IloException
 	{
-		obj = model.addMaximize();
+		// The objective is updated in place by setDuals(), so we create
+		// the terms of all variables with a coefficient of 0 here
+		IloLinearNumExpr expr = model.linearNumExpr(-1);
+		expr.addTerms(new double[vars.length], vars);
+		obj = model.addMaximize(expr);
 	}
 	
 	private void initCapacityConstraint() throws IloException
 	{
 		IloNumExpr expr = model.constant(0);
-		for (Entry<Integer,IloNumVar> e : vars.entrySet())
+		for (int i=0; i < vars.length; i++)
 		{
-			int size = e.getKey();
-			IloNumVar var = e.getValue();
+			int size = instance.getSize(i);
+			IloNumVar var = vars[i];
 			IloNumExpr term = model.prod(size, var);
 			expr = model.sum(expr, term);
 		}
@@ -71,25 +83,17 @@ public class PricingModel
 	}
 	
 	/**
-	 * Update the objective based on a map of duals, where the current
-	 * shadow costs of each item size is provided
-	 * @param duals a dual or shadow cost for each item size in the instance
+	 * Update the objective based on an array of duals, where the current
+	 * shadow costs of each item size is provided. Rather than building a new
+	 * objective, the coefficients of the existing objective are changed in
+	 * a single call.
+	 * @param duals a dual or shadow cost for each item size, by the index of the size in the instance
 	 * @throws IloException if something goes wrong with CPLEX
 	 */
-	public void setDuals(Map<Integer,Double> duals) throws IloException
+	@Override
+	public void setDuals(double [] duals) throws IloException
 	{
-		// Create a new expression for the objective
-		IloNumExpr expr = model.constant(-1);
-		for (Entry<Integer,Double> e : duals.entrySet())
-		{
-			int size = e.getKey();
-			double dual = e.getValue();
-			IloNumVar var = vars.get(size);
-			IloNumExpr term = model.prod(var, dual);
-			expr = model.sum(expr, term);
-		}
-		// Replace the objective with the new expression
-		obj.setExpr(expr);
+		model.setLinearCoefs(obj, duals, vars);
 	}
 	
 	
@@ -98,16 +102,48 @@ public class PricingModel
 	 * JNI-allocated memory that is not automatically garbage collected.
 	 * @throws IloException if something goes wrong with CPLEX
 	 */
+	@Override
 	public void cleanUp() throws IloException
 	{
 		model.clearModel();
 		model.end();
 	}
 	
+	/**
+	 * Replaces the instance of the pricing problem. The variables, the capacity
+	 * constraint and the objective are built again in the same CPLEX object,
+	 * so that the parameters of the model are kept.
+	 * @param instance the new instance, with the same capacity as the current instance
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	@Override
+	public void setInstance(Instance instance) throws IloException
+	{
+		if (instance.getCapacity() != this.instance.getCapacity())
+		{
+			throw new IllegalArgumentException("The capacity of the instance can not be changed");
+		}
+		model.clearModel();
+		this.instance = instance;
+		this.vars = new IloNumVar[instance.getNumberOfSizes()];
+		this.counts = new int[vars.length];
+		
+		initVars();
+		initCapacityConstraint();
+		initObjective();
+	}
+	
+	@Override
+	public void setThreads(int threads) throws IloException
+	{
+		model.setParam(IntParam.Threads, threads);
+	}
+	
 	/**
 	 * Solve the model with the most recentely configured objective
 	 * @throws IloException when something goes wrong with CPLEX
 	 */
+	@Override
 	public void solve() throws IloException
 	{
 		model.solve();
@@ -119,27 +155,76 @@ public class PricingModel
 	 * @return the objective value / reduced costs of the last solution
 	 * @throws IloException in case something goes wrong with CPLEX
 	 */
+	@Override
 	public double getObjective() throws IloException
 	{
 		return model.getObjValue();
 	}
 	
+	/**
+	 * Provides the best bound CPLEX proved on the objective value. As the pricing
+	 * problem is solved up to the relative MIP gap, this can be slightly higher than
+	 * the objective value of the last solution.
+	 */
+	@Override
+	public double getObjectiveBound() throws IloException
+	{
+		return model.getBestObjValue();
+	}
+	
 	/**
 	 * Obtain a cutting pattern based on the most recent solution found
 	 * for this pricing problem. 
 	 * @return a cutting pattern that minimizes the reduced costs
 	 * @throws IloException in case something goes wrong with CPLEX
 	 */
+	@Override
 	public Pattern getPattern() throws IloException
 	{
-		Map<Integer,Integer> resultMap = new LinkedHashMap<>();
-		for (Entry<Integer,IloNumVar> e : vars.entrySet())
+		// Retrieve all values in a single call
+		double [] values = model.getValues(vars);
+		for (int i=0; i < vars.length; i++)
 		{
-			int size = e.getKey();
-			IloNumVar var = e.getValue();
-			int cuts = (int)Math.round(model.getValue(var));
-			resultMap.put(size, cuts);
+			counts[i] = (int)Math.round(values[i]);
 		}
-		return new Pattern(resultMap);
+		return new Pattern(instance, counts);
+	}
+	
+	/**
+	 * Obtain multiple cutting patterns by letting CPLEX populate its solution pool
+	 * with the best solutions it can find for the current objective. Note that,
+	 * unlike the best pattern, the solution pool is not guaranteed to contain the
+	 * k best patterns.
+	 */
+	@Override
+	public List<Pattern> getPatterns(int k, double threshold) throws IloException
+	{
+		// Keep the k solutions with the best objective in the pool
+		model.setParam(IntParam.SolnPoolCapacity, k);
+		model.setParam(IntParam.SolnPoolReplace, 1);
+		model.setParam(IntParam.PopulateLim, 2*k);
+		model.populate();
+		
+		Map<Pattern,Double> found = new LinkedHashMap<>();
+		for (int soln=0; soln < model.getSolnPoolNsolns(); soln++)
+		{
+			double objective = model.getObjValue(soln);
+			if (objective > threshold)
+			{
+				double [] values = model.getValues(vars, soln);
+				for (int i=0; i < vars.length; i++)
+				{
+					counts[i] = (int)Math.round(values[i]);
+				}
+				found.merge(new Pattern(instance, counts), objective, Math::max);
+			}
+		}
+		
+		return found.entrySet()
+		            .stream()
+		            .sorted(Collections.reverseOrder(Entry.comparingByValue()))
+		            .limit(k)
+		            .map(Entry::getKey)
+		            .collect(Collectors.toList());
 	}
 }
@@ -0,0 +1,277 @@
+package colgen;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BooleanSupplier;
+
+import ilog.concert.IloException;
+
+/**
+ * A primal heuristic that turns the LP-relaxation of the master problem into an integer
+ * solution, which is used by the MasterModel instead of solving the integer problem with
+ * all generated columns. The heuristic consists of three steps:
+ * <ol>
+ *   <li>Every pattern is fixed as often as its value in the LP-relaxation, rounded down.</li>
+ *   <li>The demand that is not covered by the fixed patterns forms a residual instance,
+ *       which is solved with the packing heuristics. The best of these solutions completes
+ *       the solution.</li>
+ *   <li>If this solution does not reach the lower bound, the residual instance is solved by
+ *       diving: the LP-relaxation of the residual instance is solved with column generation,
+ *       its values are rounded down and the pattern with the largest fractional value is
+ *       rounded up. These patterns are fixed and the next residual instance is solved, until
+ *       no demand remains, the lower bound is reached or the maximum number of steps is done.
+ *       After every step, the residual instance is completed with the packing heuristics.
+ *       A single master problem is used for the whole dive, of which only the demands are
+ *       changed, so that every step starts from the columns and basis of the previous one.
+ *       The dive also ends when the solve that uses the heuristic is cancelled or runs out of
+ *       time, which stops the column generation of the current step as well.</li>
+ * </ol>
+ * If the best solution found does not reach the lower bound, the MasterModel solves the
+ * integer problem with a time limit, using the heuristic solution as a MIP start.
+ *
+ * A PrimalHeuristic keeps track of statistics, so it should not be shared between models
+ * that are solved in parallel.
+ */
+public class PrimalHeuristic
+{
+	private static final double EPSILON = 1e-6;
+	
+	private final int maxDiveSteps;
+	private final double timeLimit;
+	
+	private int runs;
+	private int diveSteps;
+	private int skipped;
+	
+	/**
+	 * Creates a primal heuristic
+	 * @param maxDiveSteps the maximum number of LP-relaxations solved while diving,
+	 *                     where 0 disables diving
+	 * @param timeLimit the time limit in seconds for solving the integer problem
+	 *                  when the heuristic solution does not reach the lower bound
+	 */
+	public PrimalHeuristic(int maxDiveSteps, double timeLimit)
+	{
+		if (maxDiveSteps < 0 || timeLimit <= 0)
+		{
+			throw new IllegalArgumentException("The number of dive steps may not be negative and the time limit must be positive");
+		}
+		this.maxDiveSteps = maxDiveSteps;
+		this.timeLimit = timeLimit;
+	}
+	
+	/**
+	 * Creates a primal heuristic that dives at most 20 steps, and solves
+	 * the integer problem with a time limit of 10 seconds
+	 */
+	public PrimalHeuristic()
+	{
+		this(20, 10);
+	}
+	
+	/**
+	 * Finds an integer solution based on the LP-relaxation of the master problem
+	 * @param instance the instance to solve
+	 * @param relaxation the value of every pattern in the LP-relaxation
+	 * @param lowerBound a lower bound on the cost of the stock needed
+	 * @param threads the number of threads CPLEX may use while diving, where 0 lets CPLEX decide
+	 * @param stop whether the solve that uses the heuristic was cancelled or has run out of time
+	 * @return the best solution found
+	 * @throws IloException if something goes wrong with CPLEX while diving
+	 */
+	Solution solve(Instance instance, Map<Pattern,Double> relaxation, double lowerBound, int threads, BooleanSupplier stop) throws IloException
+	{
+		runs++;
+		int [] residual = instance.getDemandArray();
+		Map<Pattern,Integer> fixed = new LinkedHashMap<>();
+		for (Entry<Pattern,Double> e : relaxation.entrySet())
+		{
+			fix(instance, fixed, residual, e.getKey(), (int) Math.floor(e.getValue() + EPSILON));
+		}
+		Solution best = complete(instance, fixed, residual);
+		
+		MasterModel mm = null;
+		try
+		{
+			int step = 0;
+			while (best.getCost() > lowerBound && step < maxDiveSteps && !stop.getAsBoolean())
+			{
+				Instance remaining = residualInstance(instance, residual);
+				if (remaining == null)
+				{
+					break;
+				}
+				step++;
+				diveSteps++;
+				if (mm == null)
+				{
+					mm = new MasterModel(remaining, DynamicProgrammingPricing.forStockLengths(remaining));
+					if (threads > 0)
+					{
+						mm.setThreads(threads);
+					}
+					mm.setStopCondition(stop);
+					mm.solveRelaxation();
+				}
+				else
+				{
+					mm.updateDemands(remaining);
+				}
+				Pattern up = null;
+				double fraction = -1;
+				for (Entry<Pattern,Double> e : mm.getRelaxationValues().entrySet())
+				{
+					double value = e.getValue();
+					int copies = (int) Math.floor(value + EPSILON);
+					fix(instance, fixed, residual, e.getKey(), copies);
+					if (value - copies > fraction)
+					{
+						up = e.getKey();
+						fraction = value - copies;
+					}
+				}
+				if (up != null && fraction > EPSILON)
+				{
+					fix(instance, fixed, residual, up, 1);
+				}
+				Solution candidate = complete(instance, fixed, residual);
+				if (candidate.getCost() < best.getCost())
+				{
+					best = candidate;
+				}
+			}
+		}
+		finally
+		{
+			if (mm != null)
+			{
+				mm.cleanUp();
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Adds copies of a pattern to a partial solution and updates the residual demand
+	 */
+	private static void fix(Instance instance, Map<Pattern,Integer> fixed, int [] residual, Pattern pattern, int copies)
+	{
+		if (copies <= 0)
+		{
+			return;
+		}
+		fixed.merge(pattern, copies, Integer::sum);
+		for (int j=0; j < pattern.getNumberOfSizes(); j++)
+		{
+			int index = instance.indexOf(pattern.getSizeAt(j));
+			if (index >= 0)
+			{
+				residual[index] = Math.max(0, residual[index] - copies * pattern.getAmountAt(j));
+			}
+		}
+	}
+	
+	/**
+	 * Builds an instance with the demand that is not covered yet
+	 * @return the residual instance, or null if all demand is covered
+	 */
+	private static Instance residualInstance(Instance instance, int [] residual)
+	{
+		int n = 0;
+		for (int demand : residual)
+		{
+			if (demand > 0)
+			{
+				n++;
+			}
+		}
+		if (n == 0)
+		{
+			return null;
+		}
+		int [] sizes = new int[n];
+		int [] demands = new int[n];
+		int j = 0;
+		for (int i=0; i < residual.length; i++)
+		{
+			if (residual[i] > 0)
+			{
+				sizes[j] = instance.getSize(i);
+				demands[j] = residual[i];
+				j++;
+			}
+		}
+		return instance.withOrders(sizes, demands);
+	}
+	
+	/**
+	 * Completes a partial solution with the best solution of the packing heuristics
+	 * for the residual demand
+	 */
+	private static Solution complete(Instance instance, Map<Pattern,Integer> fixed, int [] residual)
+	{
+		Map<Pattern,Integer> result = new LinkedHashMap<>(fixed);
+		Instance remaining = residualInstance(instance, residual);
+		if (remaining != null)
+		{
+			Solution best = PackingHeuristics.best(remaining);
+			for (Pattern pattern : best.getPatterns())
+			{
+				result.merge(pattern, best.getCopies(pattern), Integer::sum);
+			}
+		}
+		return new Solution(instance, result);
+	}
+	
+	/**
+	 * Reports that the heuristic solution reached the lower bound, so that
+	 * the integer problem did not have to be solved
+	 */
+	void integerProblemSkipped()
+	{
+		skipped++;
+	}
+	
+	/**
+	 * The time limit for solving the integer problem
+	 * @return the time limit in seconds
+	 */
+	public double getTimeLimit()
+	{
+		return timeLimit;
+	}
+	
+	/**
+	 * The number of times the heuristic was run
+	 * @return the number of runs
+	 */
+	public int getRuns()
+	{
+		return runs;
+	}
+	
+	/**
+	 * The total number of LP-relaxations solved while diving
+	 * @return the number of dive steps
+	 */
+	public int getDiveSteps()
+	{
+		return diveSteps;
+	}
+	
+	/**
+	 * The number of times the heuristic solution reached the lower bound,
+	 * so that the integer problem was not solved
+	 * @return the number of runs in which the integer problem was skipped
+	 */
+	public int getSkipped()
+	{
+		return skipped;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "PrimalHeuristic [runs=" + runs + ", skipped=" + skipped + ", diveSteps=" + diveSteps + "]";
+	}
+}
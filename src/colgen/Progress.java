@@ -0,0 +1,116 @@
+package colgen;
+
+/**
+ * An event that reports the progress of MasterModel.solveInteger() with a time budget.
+ * During column generation, an event is reported after every iteration, and while the
+ * integer problem is solved, an event is reported every time a better solution is found.
+ * The bound is always the lower bound proven by column generation, since the bound of the
+ * integer problem only holds for the generated columns.
+ */
+public class Progress
+{
+	/**
+	 * The phase of the solve in which an event was reported
+	 */
+	public enum Phase
+	{
+		/** The LP-relaxation is solved with column generation */
+		COLUMN_GENERATION,
+		/** An integer solution is searched for with the generated columns */
+		INTEGER
+	}
+	
+	private final Phase phase;
+	private final double seconds;
+	private final double bound;
+	private final double incumbent;
+	
+	/**
+	 * Creates a progress event
+	 * @param phase the phase of the solve
+	 * @param seconds the wall-clock time since the solve started
+	 * @param bound the lower bound proven so far
+	 * @param incumbent the cost of the best solution found so far, or infinity if there is none
+	 */
+	Progress(Phase phase, double seconds, double bound, double incumbent)
+	{
+		this.phase = phase;
+		this.seconds = seconds;
+		this.bound = bound;
+		this.incumbent = incumbent;
+	}
+	
+	/**
+	 * The phase of the solve in which this event was reported
+	 * @return the phase
+	 */
+	public Phase getPhase()
+	{
+		return phase;
+	}
+	
+	/**
+	 * The wall-clock time since the solve started
+	 * @return the time in seconds
+	 */
+	public double getSeconds()
+	{
+		return seconds;
+	}
+	
+	/**
+	 * The lower bound on the cost of any solution proven so far
+	 * @return the lower bound
+	 */
+	public double getBound()
+	{
+		return bound;
+	}
+	
+	/**
+	 * Whether a solution was found so far
+	 * @return true if there is an incumbent
+	 */
+	public boolean hasIncumbent()
+	{
+		return incumbent < Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * The cost of the best solution found so far
+	 * @return the cost of the incumbent, or infinity if no solution was found
+	 */
+	public double getIncumbent()
+	{
+		return incumbent;
+	}
+	
+	/**
+	 * The relative gap between the incumbent and the bound, which is at most the
+	 * fraction by which the cost of the incumbent exceeds that of an optimal solution
+	 * @return the gap relative to the incumbent, or infinity if there is no incumbent
+	 */
+	public double getGap()
+	{
+		return gap(incumbent, bound);
+	}
+	
+	/**
+	 * Computes the relative gap between the cost of a solution and a lower bound
+	 */
+	static double gap(double incumbent, double bound)
+	{
+		if (incumbent == Double.POSITIVE_INFINITY)
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		return incumbent <= 0 ? 0 : Math.max(0, incumbent - bound) / incumbent;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "Progress [phase=" + phase + ", seconds=" + String.format("%.3f", seconds) + ", bound=" + bound
+				+ ", incumbent=" + incumbent + ", gap=" + String.format("%.4f", getGap()) + "]";
+	}
+}
@@ -2,6 +2,7 @@ package colgen;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 /**
@@ -17,6 +18,10 @@ public class Solution
 	private Instance instance;
 	private Map<Pattern,Integer> patterns;
 	private int stockNeeded;
+	// The columns of a solution of a master problem, until the patterns are built from them
+	private ColumnStore store;
+	private int [] handles;
+	private int [] copies;
 	
 	/**
 	 * Construct a solution based on a instance, and a map that specifies
@@ -35,13 +40,53 @@ public class Solution
 		                           .sum();
 	}
 	
+	/**
+	 * Construct a solution based on columns in a column store. The patterns are only
+	 * built from the store when they are requested for the first time.
+	 * @param instance the instance for which this is a solution
+	 * @param store the store that contains the patterns
+	 * @param handles the handles of the patterns in the store
+	 * @param copies the number of times the pattern with the same index is applied
+	 */
+	Solution(Instance instance, ColumnStore store, int [] handles, int [] copies)
+	{
+		this.instance = instance;
+		this.store = store;
+		this.handles = handles;
+		this.copies = copies;
+		for (int c : copies)
+		{
+			stockNeeded += c;
+		}
+	}
+	
+	/**
+	 * Gives the map with patterns, which is built from the column store if needed
+	 * @return the map with patterns and times each pattern must be applied
+	 */
+	private synchronized Map<Pattern,Integer> patterns()
+	{
+		if (patterns == null)
+		{
+			patterns = new LinkedHashMap<>();
+			for (int i=0; i < handles.length; i++)
+			{
+				patterns.merge(store.getPattern(handles[i]), copies[i], Integer::sum);
+			}
+			store = null;
+			handles = null;
+			copies = null;
+		}
+		return patterns;
+	}
+	
 	/**
 	 * Provides a set of unique patterns that are utilized within this solution
 	 * @return the set of utilized patterns
 	 */
 	public Set<Pattern> getPatterns()
 	{
-		return Collections.unmodifiableSet(patterns.keySet());
+		return Collections.unmodifiableSet(patterns().keySet());
 	}
 	
 	/**
@@ -51,7 +96,7 @@ public class Solution
 	 */
 	public int getCopies(Pattern p)
 	{
-		return patterns.getOrDefault(p, 0);
+		return patterns().getOrDefault(p, 0);
 	}
 	
 	/**
@@ -64,6 +109,31 @@ public class Solution
 		return stockNeeded;
 	}
 	
+	/**
+	 * Gives the total cost of the stock needed to cover all the demand, where every pattern
+	 * is cut from the cheapest stock length it fits in. For an instance with a single stock
+	 * length with a cost of 1, this is equal to the number of units of stock needed. If the
+	 * patterns were not built from the column store yet, the cost is computed from the store.
+	 * @return the cost of the stock required to cover the demand
+	 */
+	public synchronized double getCost()
+	{
+		double cost = 0;
+		if (patterns == null)
+		{
+			for (int i=0; i < handles.length; i++)
+			{
+				cost += copies[i] * instance.getCost(store.getSize(handles[i]));
+			}
+			return cost;
+		}
+		for (Entry<Pattern,Integer> e : patterns.entrySet())
+		{
+			cost += e.getValue() * instance.getCost(e.getKey().getSize());
+		}
+		return cost;
+	}
+	
 	/**
 	 * Gives the instance for which this solution was computed
 	 * @return the instance for which this is a solution
@@ -76,7 +146,7 @@ public class Solution
 	@Override
 	public String toString()
 	{
-		return patterns.toString();
+		return patterns().toString();
 	}
 	
 }
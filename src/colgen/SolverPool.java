@@ -0,0 +1,247 @@
+package colgen;
+import java.util.concurrent.CompletableFuture;
+
+import concurrent.BoundedSolverPool;
+import concurrent.CoreScheduler;
+import ilog.concert.IloException;
+
+/**
+ * A bounded pool of solver threads that solves Cutting Stock instances asynchronously, so that
+ * callers do not block while MasterModel.solveInteger() runs. The threads, the admission of solves
+ * and their cancellation are handled by a BoundedSolverPool, so a CPLEX environment is never used
+ * by more than one thread. Every solver thread keeps its last master problem, and reuses it with
+ * changeDemands() when the next instance it solves has the same stock, so that the columns of the
+ * earlier instance are available from the start.
+ *
+ * The pool has a fixed number of solver slots and a bounded queue. When all slots are busy and the
+ * queue is full, a solve is rejected: the returned future fails immediately with a
+ * RejectedExecutionException, so callers get backpressure instead of an unbounded number of threads
+ * or waiting solves. Cancelling a returned future cancels the solve: a waiting solve is not started,
+ * and a running solve is stopped as soon as possible.
+ *
+ * The future is completed with the Solution object of the master model, which refers to the columns
+ * in the column store of the model, so no patterns are copied. The store only grows, so the solution
+ * stays valid when the master problem is reused. The future is completed by the solver thread;
+ * dependent actions that take some time should use the asynchronous methods of CompletableFuture,
+ * so that they do not occupy a solver slot.
+ */
+public class SolverPool
+{
+	private final BoundedSolverPool<Problem,MasterModel,Solution> pool;
+	
+	/**
+	 * Creates a pool of solver threads
+	 * @param slots the number of instances that are solved at the same time
+	 * @param queueCapacity the number of instances that may wait for a free slot, where 0
+	 *                      means that a solve is rejected whenever all slots are busy
+	 * @param cplexThreads the number of threads CPLEX may use for every instance
+	 * @throws IllegalArgumentException if the number of slots or CPLEX threads is not positive,
+	 *                                  or the queue capacity is negative
+	 */
+	public SolverPool(int slots, int queueCapacity, int cplexThreads)
+	{
+		this.pool = new BoundedSolverPool<>(new CuttingStockSolver(), slots, queueCapacity, cplexThreads);
+	}
+	
+	/**
+	 * Creates a pool of solver threads of which the solves ask a scheduler for the number of threads
+	 * CPLEX may use, under the kind "cuttingstock"
+	 * @param slots the number of instances that are solved or wait for a grant at the same time
+	 * @param queueCapacity the number of instances that may wait for a free slot, where 0
+	 *                      means that a solve is rejected whenever all slots are busy
+	 * @param scheduler the scheduler that divides the cores between this pool and other solves
+	 * @throws IllegalArgumentException if the number of slots is not positive or the queue capacity is negative
+	 */
+	public SolverPool(int slots, int queueCapacity, CoreScheduler scheduler)
+	{
+		this.pool = new BoundedSolverPool<>(new CuttingStockSolver(), slots, queueCapacity, scheduler, "cuttingstock");
+	}
+	
+	/**
+	 * Solves an instance to optimality on a solver thread, in the same way as
+	 * solveInteger() of a MasterModel with combinatorial bounds
+	 * @param instance the instance to solve
+	 * @return a future that is completed with the solution, or that has already failed
+	 *         with a RejectedExecutionException if the pool is full or shut down
+	 */
+	public CompletableFuture<Solution> solveAsync(Instance instance)
+	{
+		return pool.solveAsync(new Problem(instance, 0, 0));
+	}
+	
+	/**
+	 * Solves an instance on a solver thread within a wall-clock time budget, in the same way as
+	 * solveInteger(seconds, columnGenerationShare) of a MasterModel with combinatorial bounds.
+	 * The budget starts when a slot picks up the solve, not when it is submitted.
+	 * @param instance the instance to solve
+	 * @param seconds the time budget in seconds
+	 * @param columnGenerationShare the share of the budget that column generation may use
+	 * @return a future that is completed with the best solution found within the budget, or
+	 *         that has already failed with a RejectedExecutionException if the pool is full or shut down
+	 * @throws IllegalArgumentException if the budget is not positive or the share is not between 0 and 1
+	 */
+	public CompletableFuture<Solution> solveAsync(Instance instance, double seconds, double columnGenerationShare)
+	{
+		if (!(seconds > 0) || columnGenerationShare < 0 || columnGenerationShare > 1)
+		{
+			throw new IllegalArgumentException("The time budget must be positive and the share of column generation between 0 and 1");
+		}
+		return pool.solveAsync(new Problem(instance, seconds, columnGenerationShare));
+	}
+	
+	/**
+	 * Stops accepting new solves, waits until the solves that are running or waiting are finished,
+	 * and cleans up the master problems kept by the solver threads
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all solves were finished before the timeout
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws IloException if a kept master problem could not be cleaned up
+	 */
+	public boolean shutdown(long timeoutMillis) throws InterruptedException, IloException
+	{
+		return pool.shutdown(timeoutMillis);
+	}
+	
+	/**
+	 * The number of instances that are currently being solved
+	 * @return the number of busy slots
+	 */
+	public int getActive()
+	{
+		return pool.getActive();
+	}
+	
+	/**
+	 * The number of instances that are waiting for a free slot
+	 * @return the number of queued solves
+	 */
+	public int getQueued()
+	{
+		return pool.getQueued();
+	}
+	
+	/**
+	 * The number of solves that completed with a solution
+	 * @return the number of completed solves
+	 */
+	public long getCompleted()
+	{
+		return pool.getCompleted();
+	}
+	
+	/**
+	 * The number of solves that failed with an exception
+	 * @return the number of failed solves
+	 */
+	public long getFailed()
+	{
+		return pool.getFailed();
+	}
+	
+	/**
+	 * The number of solves that were cancelled by the caller, either while waiting or while running
+	 * @return the number of cancelled solves
+	 */
+	public long getCancelled()
+	{
+		return pool.getCancelled();
+	}
+	
+	/**
+	 * The number of solves that were rejected because all slots were busy and the queue was full
+	 * @return the number of rejected solves
+	 */
+	public long getRejected()
+	{
+		return pool.getRejected();
+	}
+	
+	/**
+	 * The number of solves that changed the demands of the master problem kept by their solver thread
+	 * @return the number of solves with a reused master problem
+	 */
+	public long getReused()
+	{
+		return pool.getReused();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return pool.toString();
+	}
+	
+	/**
+	 * An instance with an optional time budget, where 0 means no budget
+	 */
+	private static class Problem
+	{
+		private final Instance instance;
+		private final double seconds;
+		private final double columnGenerationShare;
+		
+		public Problem(Instance instance, double seconds, double columnGenerationShare)
+		{
+			this.instance = instance;
+			this.seconds = seconds;
+			this.columnGenerationShare = columnGenerationShare;
+		}
+	}
+	
+	/**
+	 * Builds and solves the master problems, which can be reused for instances with the same stock
+	 */
+	private static class CuttingStockSolver implements BoundedSolverPool.Solver<Problem,MasterModel,Solution>
+	{
+		@Override
+		public MasterModel build(Problem problem) throws IloException
+		{
+			MasterModel mm = new MasterModel(problem.instance);
+			mm.setCombinatorialBounds(true);
+			return mm;
+		}
+		
+		@Override
+		public boolean reuse(MasterModel mm, Problem problem) throws IloException
+		{
+			if (!problem.instance.hasSameStock(mm.getInstance()))
+			{
+				return false;
+			}
+			mm.changeDemands(problem.instance);
+			return true;
+		}
+		
+		@Override
+		public void setThreads(MasterModel mm, int threads) throws IloException
+		{
+			mm.setThreads(threads);
+		}
+		
+		@Override
+		public Solution solve(MasterModel mm, Problem problem) throws IloException
+		{
+			if (problem.seconds > 0)
+			{
+				mm.solveInteger(problem.seconds, problem.columnGenerationShare);
+			}
+			else
+			{
+				mm.solveInteger();
+			}
+			return mm.getSolution();
+		}
+		
+		@Override
+		public void cancel(MasterModel mm)
+		{
+			mm.cancel();
+		}
+		
+		@Override
+		public void cleanUp(MasterModel mm) throws IloException
+		{
+			mm.cleanUp();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package colgen;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import ilog.concert.IloException;
+
+/**
+ * Main class that compares starting column generation from scratch with starting it from
+ * columns that are already known, on the random instances that are solved by the Main class.
+ * The first argument selects the benchmark that is run, by default <code>initial</code>:
+ * <ul>
+ *   <li><code>initial</code> compares the homogeneous initial columns with initial columns found by packing heuristics</li>
+ *   <li><code>library</code> compares a cold start with a warm start from a pattern library filled by the previous day</li>
+ *   <li><code>update</code> compares solving again from scratch with updating the demands of a solved master problem</li>
+ * </ul>
+ */
+public class WarmStartBenchmark
+{
+	public static void main(String [] args) throws IloException, IOException
+	{
+		String benchmark = args.length > 0 ? args[0] : "initial";
+		switch (benchmark)
+		{
+			case "initial":
+				benchmarkInitialColumns();
+				break;
+			case "library":
+				benchmarkPatternLibrary();
+				break;
+			case "update":
+				benchmarkDemandUpdates();
+				break;
+			default:
+				System.out.println("Unknown benchmark: "+benchmark);
+		}
+	}
+	
+	/**
+	 * Compares the number of iterations and the time needed to reach the optimal LP-relaxation
+	 * when only homogeneous initial columns are used with the same numbers when the columns
+	 * of packing heuristics are added, where the time includes running the heuristics.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkInitialColumns() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		PackingHeuristics sequential = new PackingHeuristics(false, PackingHeuristics.Heuristic.values());
+		PackingHeuristics parallel = new PackingHeuristics();
+		Benchmark.run(instances.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+		Benchmark.run(instances.subList(0, 10), i -> seededModel(i, parallel, new long[1]));
+		
+		Benchmark.Result homogeneous = Benchmark.run(instances, i -> Benchmark.dpModel(i, 1, false));
+		System.out.println("Homogeneous columns:\t"+homogeneous);
+		benchmarkInitialColumns(instances, homogeneous, "Heuristics, sequential", sequential);
+		benchmarkInitialColumns(instances, homogeneous, "Heuristics, parallel", parallel);
+		for (PackingHeuristics.Heuristic heuristic : PackingHeuristics.Heuristic.values())
+		{
+			benchmarkInitialColumns(instances, homogeneous, heuristic.toString(), new PackingHeuristics(false, heuristic));
+		}
+	}
+	
+	/**
+	 * Solves the LP-relaxation of every instance and stores the generated columns in a pattern
+	 * library. The instances of the next day have the same capacity, 90% of the sizes and new
+	 * demands. Their LP-relaxation is solved from scratch and with the columns of the library
+	 * as initial columns, and the number of iterations and the time are compared.
+	 * @throws IloException if something goes wrong with CPLEX
+	 * @throws IOException if the library can not be written
+	 */
+	public static void benchmarkPatternLibrary() throws IloException, IOException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Path directory = Files.createTempDirectory("library");
+		try (PatternLibrary library = new PatternLibrary(directory))
+		{
+			for (Instance instance : instances)
+			{
+				MasterModel mm = Benchmark.dpModel(instance, 1, false);
+				mm.solveRelaxation();
+				library.store(mm);
+				mm.cleanUp();
+			}
+			System.out.println("Library: "+library.size()+" patterns");
+			
+			Random ran = new Random(12345);
+			List<Instance> nextDay = new ArrayList<>();
+			for (Instance instance : instances)
+			{
+				Map<Integer,Integer> orders = new LinkedHashMap<>();
+				for (int size : instance.getSizes())
+				{
+					if (ran.nextDouble() < 0.9)
+					{
+						orders.put(size, 1 + ran.nextInt(20));
+					}
+				}
+				nextDay.add(new Instance(orders, instance.getCapacity()));
+			}
+			Benchmark.run(nextDay.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+			Benchmark.Result cold = Benchmark.run(nextDay, i -> Benchmark.dpModel(i, 1, false));
+			System.out.println("Cold start:\t"+cold);
+			benchmarkInitialColumns(nextDay, cold, "Pattern library", library);
+		}
+		finally
+		{
+			try (Stream<Path> files = Files.list(directory))
+			{
+				for (Path file : (Iterable<Path>) files::iterator)
+				{
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+	
+	/**
+	 * Solves the LP-relaxation of every instance and then changes the demands slightly: 10% of
+	 * the demands change, one size is dropped and one size is added. The LP-relaxation of the
+	 * changed instances is solved from scratch, and by updating the demands of the solved master
+	 * problems, and the number of iterations and the time are compared.
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public static void benchmarkDemandUpdates() throws IloException
+	{
+		List<Instance> instances = Main.generateInstances();
+		Random ran = new Random(12345);
+		List<Instance> changed = new ArrayList<>();
+		for (Instance instance : instances)
+		{
+			Map<Integer,Integer> orders = new LinkedHashMap<>();
+			int dropped = instance.getSize(ran.nextInt(instance.getNumberOfSizes()));
+			for (int i=0; i < instance.getNumberOfSizes(); i++)
+			{
+				int size = instance.getSize(i);
+				int demand = instance.getDemand(i);
+				if (size != dropped)
+				{
+					orders.put(size, ran.nextDouble() < 0.1 ? 1 + ran.nextInt(2*demand) : demand);
+				}
+			}
+			int added;
+			do
+			{
+				added = 1 + ran.nextInt(instance.getCapacity());
+			} while (instance.indexOf(added) >= 0);
+			orders.put(added, 1 + ran.nextInt(20));
+			changed.add(new Instance(orders, instance.getCapacity()));
+		}
+		
+		Benchmark.run(changed.subList(0, 10), i -> Benchmark.dpModel(i, 1, false));
+		Benchmark.Result cold = Benchmark.run(changed, i -> Benchmark.dpModel(i, 1, false));
+		System.out.println("Cold start:\t"+cold);
+		Benchmark.Result warm = new Benchmark.Result();
+		for (int i=0; i < instances.size(); i++)
+		{
+			MasterModel mm = Benchmark.dpModel(instances.get(i), 1, false);
+			mm.solveRelaxation();
+			int iterations = mm.getIterations();
+			long start = System.nanoTime();
+			mm.updateDemands(changed.get(i));
+			warm.nanos += System.nanoTime() - start;
+			warm.objective += mm.getObjective();
+			warm.iterations += mm.getIterations() - iterations;
+			warm.lowerBounds += mm.getLowerBound();
+			mm.cleanUp();
+		}
+		System.out.println("Updated demands:\t"+warm+Benchmark.relative(warm, cold));
+	}
+	
+	private static void benchmarkInitialColumns(List<Instance> instances, Benchmark.Result homogeneous, String label,
+			InitialColumnGenerator generator) throws IloException
+	{
+		long [] heuristicTime = new long[1];
+		Benchmark.Result result = Benchmark.run(instances, i -> seededModel(i, generator, heuristicTime));
+		result.nanos += heuristicTime[0];
+		System.out.println(label+":\t"+result+Benchmark.relative(result, homogeneous));
+		System.out.println("\titerations saved: "+(homogeneous.iterations - result.iterations)
+				+", time spent generating initial columns: "+(heuristicTime[0] / 1_000_000)+"ms");
+	}
+	
+	private static MasterModel seededModel(Instance instance, InitialColumnGenerator generator, long [] time) throws IloException
+	{
+		MasterModel mm = Benchmark.dpModel(instance, 1, false);
+		long start = System.nanoTime();
+		mm.addInitialColumns(generator);
+		time[0] += System.nanoTime() - start;
+		return mm;
+	}
+}
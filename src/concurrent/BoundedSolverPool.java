@@ -0,0 +1,471 @@
+package concurrent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ilog.concert.IloException;
+
+/**
+ * A bounded pool of solver threads that solves problems asynchronously, so that callers do not
+ * block while CPLEX runs. What a problem is and how its model is built and solved is defined by a
+ * Solver, so that the same pool is used for the knapsack models of the basic package and the
+ * master problems of the colgen package.
+ *
+ * Every solve is handled entirely by one solver thread, and every solver thread keeps the model
+ * of its last solve. When the next problem of the thread can be solved with that model, for
+ * example because only the capacity or the demands are different, the model is reused instead of
+ * building a new one with a new CPLEX environment. A model is only used by the thread that built
+ * it, until the pool is shut down and the kept models are cleaned up.
+ *
+ * The pool has a fixed number of solver slots and a bounded queue. When all slots are busy and the
+ * queue is full, a solve is rejected: the returned future fails immediately with a
+ * RejectedExecutionException, so callers get backpressure instead of an unbounded number of threads
+ * or waiting solves. Cancelling a returned future cancels the solve: a waiting solve is not started,
+ * and a running solve is stopped as soon as possible.
+ *
+ * The number of threads CPLEX uses for a solve is either fixed, or granted by a CoreScheduler
+ * that is shared with the other solves of the application. In that case a slot may wait for a
+ * grant, so the scheduler decides how many of the slots solve at the same time.
+ *
+ * @param <P> the type of the problems
+ * @param <M> the type of the models
+ * @param <R> the type of the results
+ */
+public class BoundedSolverPool<P,M,R>
+{
+	private final Solver<P,M,R> solver;
+	private final int cplexThreads;
+	private final CoreScheduler scheduler;
+	private final String kind;
+	private final ThreadPoolExecutor executor;
+	private final List<SolverThread> solverThreads = new ArrayList<>();
+	
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong cancelled = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong reused = new AtomicLong();
+	
+	/**
+	 * Creates a pool of solver threads
+	 * @param solver builds and solves the models of the problems
+	 * @param slots the number of problems that are solved at the same time
+	 * @param queueCapacity the number of problems that may wait for a free slot, where 0
+	 *                      means that a solve is rejected whenever all slots are busy
+	 * @param cplexThreads the number of threads CPLEX may use for every problem
+	 * @throws IllegalArgumentException if the number of slots or CPLEX threads is not positive,
+	 *                                  or the queue capacity is negative
+	 */
+	public BoundedSolverPool(Solver<P,M,R> solver, int slots, int queueCapacity, int cplexThreads)
+	{
+		this(solver, slots, queueCapacity, cplexThreads, null, null);
+		if (cplexThreads < 1)
+		{
+			throw new IllegalArgumentException("The number of CPLEX threads must be positive");
+		}
+	}
+	
+	/**
+	 * Creates a pool of solver threads of which the solves ask a scheduler for their number of threads
+	 * @param solver builds and solves the models of the problems
+	 * @param slots the number of problems that are solved at the same time
+	 * @param queueCapacity the number of problems that may wait for a free slot, where 0
+	 *                      means that a solve is rejected whenever all slots are busy
+	 * @param scheduler the scheduler that grants the threads of every solve
+	 * @param kind the kind of the problems, for which the scheduler observes the solve times
+	 * @throws IllegalArgumentException if the number of slots is not positive, or the queue capacity is negative
+	 */
+	public BoundedSolverPool(Solver<P,M,R> solver, int slots, int queueCapacity, CoreScheduler scheduler, String kind)
+	{
+		this(solver, slots, queueCapacity, 0, scheduler, kind);
+	}
+	
+	private BoundedSolverPool(Solver<P,M,R> solver, int slots, int queueCapacity, int cplexThreads, CoreScheduler scheduler, String kind)
+	{
+		if (slots < 1 || queueCapacity < 0)
+		{
+			throw new IllegalArgumentException("The number of slots must be positive and the queue capacity may not be negative");
+		}
+		this.solver = solver;
+		this.cplexThreads = cplexThreads;
+		this.scheduler = scheduler;
+		this.kind = kind;
+		BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+		this.executor = new ThreadPoolExecutor(slots, slots, 0, TimeUnit.MILLISECONDS, queue, SolverThread::new);
+	}
+	
+	/**
+	 * Solves a problem on a solver thread
+	 * @param problem the problem to solve
+	 * @return a future that is completed with the result, or that has already failed
+	 *         with a RejectedExecutionException if the pool is full or shut down
+	 */
+	public CompletableFuture<R> solveAsync(P problem)
+	{
+		Job job = new Job(problem);
+		try
+		{
+			executor.execute(job);
+		}
+		catch (RejectedExecutionException e)
+		{
+			rejected.incrementAndGet();
+			return CompletableFuture.failedFuture(e);
+		}
+		// Stop the solve if the caller cancels the future
+		job.future.whenComplete((r, e) -> {
+			if (job.future.isCancelled())
+			{
+				job.cancel();
+			}
+		});
+		return job.future;
+	}
+	
+	/**
+	 * Stops accepting new solves, waits until the solves that are running or waiting are finished,
+	 * and then cleans up the models kept by the solver threads
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all solves were finished before the timeout, false if they were not, in
+	 *         which case the kept models are not cleaned up
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws IloException if a kept model could not be cleaned up
+	 */
+	public boolean shutdown(long timeoutMillis) throws InterruptedException, IloException
+	{
+		executor.shutdown();
+		if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS))
+		{
+			return false;
+		}
+		IloException error = null;
+		synchronized (solverThreads)
+		{
+			for (SolverThread t : solverThreads)
+			{
+				if (t.model != null)
+				{
+					try
+					{
+						solver.cleanUp(t.model);
+					}
+					catch (IloException e)
+					{
+						if (error == null)
+						{
+							error = e;
+						}
+					}
+					t.model = null;
+				}
+			}
+		}
+		if (error != null)
+		{
+			throw error;
+		}
+		return true;
+	}
+	
+	/**
+	 * The number of problems that are currently being solved
+	 * @return the number of busy slots
+	 */
+	public int getActive()
+	{
+		return executor.getActiveCount();
+	}
+	
+	/**
+	 * The number of problems that are waiting for a free slot
+	 * @return the number of queued solves
+	 */
+	public int getQueued()
+	{
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * The number of solves that completed with a result
+	 * @return the number of completed solves
+	 */
+	public long getCompleted()
+	{
+		return completed.get();
+	}
+	
+	/**
+	 * The number of solves that failed with an exception
+	 * @return the number of failed solves
+	 */
+	public long getFailed()
+	{
+		return failed.get();
+	}
+	
+	/**
+	 * The number of solves that were cancelled by the caller, either while waiting or while running
+	 * @return the number of cancelled solves
+	 */
+	public long getCancelled()
+	{
+		return cancelled.get();
+	}
+	
+	/**
+	 * The number of solves that were rejected because all slots were busy and the queue was full
+	 * @return the number of rejected solves
+	 */
+	public long getRejected()
+	{
+		return rejected.get();
+	}
+	
+	/**
+	 * The number of solves that reused the model kept by their solver thread
+	 * @return the number of solves with a reused model
+	 */
+	public long getReused()
+	{
+		return reused.get();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "BoundedSolverPool [active=" + getActive() + ", queued=" + getQueued() + ", completed=" + completed
+				+ ", failed=" + failed + ", cancelled=" + cancelled + ", rejected=" + rejected + ", reused=" + reused + "]";
+	}
+	
+	/**
+	 * Builds, solves and cleans up the models of the problems of a pool. The methods are called by
+	 * the solver thread that owns the model, except cancel(), and cleanUp() for the models that are
+	 * kept when the pool is shut down.
+	 * @param <P> the type of the problems
+	 * @param <M> the type of the models
+	 * @param <R> the type of the results
+	 */
+	public interface Solver<P,M,R>
+	{
+		/**
+		 * Builds a new model for a problem
+		 * @param problem the problem
+		 * @return the model
+		 * @throws IloException if something goes wrong with CPLEX
+		 */
+		public M build(P problem) throws IloException;
+		
+		/**
+		 * Changes the model of an earlier problem so that it can be used for a new problem
+		 * @param model the model kept by the solver thread
+		 * @param problem the new problem
+		 * @return false if the model can not be used for the problem, in which case it is cleaned up
+		 * @throws IloException if something goes wrong with CPLEX
+		 */
+		public boolean reuse(M model, P problem) throws IloException;
+		
+		/**
+		 * Sets the number of threads that CPLEX may use for a model
+		 * @param model the model
+		 * @param threads the number of threads
+		 * @throws IloException if something goes wrong with CPLEX
+		 */
+		public void setThreads(M model, int threads) throws IloException;
+		
+		/**
+		 * Solves the model of a problem
+		 * @param model the model, which was built or reused for the problem
+		 * @param problem the problem
+		 * @return the result that completes the future of the solve
+		 * @throws IloException if something goes wrong with CPLEX
+		 */
+		public R solve(M model, P problem) throws IloException;
+		
+		/**
+		 * Stops a solve of a model that runs on another thread as soon as possible
+		 * @param model the model
+		 */
+		public void cancel(M model);
+		
+		/**
+		 * Releases the CPLEX objects of a model that is no longer used
+		 * @param model the model
+		 * @throws IloException if something goes wrong with CPLEX
+		 */
+		public void cleanUp(M model) throws IloException;
+	}
+	
+	/**
+	 * A solver thread, which keeps the model of its last solve
+	 */
+	private class SolverThread extends Thread
+	{
+		private M model;
+		
+		public SolverThread(Runnable r)
+		{
+			super(r);
+			setDaemon(true);
+			synchronized (solverThreads)
+			{
+				solverThreads.add(this);
+				setName("solver-" + solverThreads.size());
+			}
+		}
+	}
+	
+	/**
+	 * A single solve, which keeps a reference to its model while it runs so that it can be cancelled
+	 */
+	private class Job implements Runnable
+	{
+		private final P problem;
+		private final CompletableFuture<R> future = new CompletableFuture<>();
+		private M model;
+		
+		public Job(P problem)
+		{
+			this.problem = problem;
+		}
+		
+		@Override
+		public void run()
+		{
+			// The caller may have cancelled the solve while it was waiting
+			if (future.isCancelled())
+			{
+				cancelled.incrementAndGet();
+				return;
+			}
+			@SuppressWarnings("unchecked")
+			SolverThread thread = (SolverThread) Thread.currentThread();
+			R result = null;
+			Throwable error = null;
+			M m = thread.model;
+			thread.model = null;
+			try
+			{
+				if (m != null && !solver.reuse(m, problem))
+				{
+					M old = m;
+					m = null;
+					solver.cleanUp(old);
+				}
+				if (m == null)
+				{
+					m = solver.build(problem);
+				}
+				else
+				{
+					reused.incrementAndGet();
+				}
+				if (!start(m))
+				{
+					solver.cancel(m);
+				}
+				if (scheduler == null)
+				{
+					solver.setThreads(m, cplexThreads);
+					result = solver.solve(m, problem);
+				}
+				else
+				{
+					M solved = m;
+					result = scheduler.run(kind, threads -> {
+						solver.setThreads(solved, threads);
+						return solver.solve(solved, problem);
+					});
+				}
+			}
+			catch (IloException | RuntimeException e)
+			{
+				error = e;
+			}
+			catch (InterruptedException e)
+			{
+				// The thread was interrupted while it waited for the scheduler
+				Thread.currentThread().interrupt();
+				error = e;
+			}
+			finally
+			{
+				if (m != null)
+				{
+					// Only a model that solved its problem without a cancellation is kept, since a
+					// cancellation that arrives after the solve would stop the next solve
+					if (stop() && error == null)
+					{
+						thread.model = m;
+					}
+					else
+					{
+						try
+						{
+							solver.cleanUp(m);
+						}
+						catch (IloException e)
+						{
+							if (error == null)
+							{
+								error = e;
+							}
+						}
+					}
+				}
+			}
+			// Complete the future only after the model is kept or cleaned up
+			if (future.isCancelled())
+			{
+				cancelled.incrementAndGet();
+			}
+			else if (error != null)
+			{
+				failed.incrementAndGet();
+				future.completeExceptionally(error);
+			}
+			else
+			{
+				completed.incrementAndGet();
+				future.complete(result);
+			}
+		}
+		
+		/**
+		 * Registers the model of the solve, so that it can be cancelled
+		 * @return false if the solve was already cancelled
+		 */
+		private synchronized boolean start(M m)
+		{
+			model = m;
+			return !future.isCancelled();
+		}
+		
+		/**
+		 * Unregisters the model, after which it can no longer be cancelled
+		 * @return false if the solve was cancelled
+		 */
+		private synchronized boolean stop()
+		{
+			model = null;
+			return !future.isCancelled();
+		}
+		
+		/**
+		 * Cancels the model if the solve is running
+		 */
+		public synchronized void cancel()
+		{
+			if (model != null)
+			{
+				solver.cancel(model);
+			}
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package concurrent;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ilog.concert.IloException;
+
+/**
+ * Divides a fixed budget of cores between concurrent solves and the threads that CPLEX uses
+ * inside every solve. By default, every IloCplex object uses all cores of the machine, so a few
+ * parallel solves already oversubscribe it. A solve first asks the scheduler for a grant, which
+ * tells it how many threads CPLEX may use, and returns the grant when it is done. A solve is only
+ * admitted when at least one core of the budget is free, and solves are admitted in the order in
+ * which they arrived.
+ *
+ * The number of threads of a solve is chosen when it is admitted. When many solves are running or
+ * waiting, every solve gets a single thread, since independent solves use the cores better than the
+ * parallel search of CPLEX. When only a few solves are waiting, the free cores are divided between
+ * them. The demand that is used for this decision is smoothed, so that a short gap between arrivals
+ * does not give a single solve all cores. Since the demand is still low when a burst of solves
+ * arrives after an idle period, a solve gets at most half of the cores until the solves of its kind
+ * were observed to use more threads efficiently.
+ *
+ * The solve times are observed per kind of solve and number of threads. When the solves of a kind
+ * do not become fast enough with more threads, the number of threads of that kind is capped at the
+ * largest number that still has a parallel efficiency of at least the given minimum. Every so often
+ * a solve may use one thread more than its cap, so that the cap can grow again.
+ *
+ * The cores are only divided between the solves of one JVM, such as the jobs of the solver server
+ * and the solver pools. The worker processes of the worker package each solve one job at a time
+ * with a fixed number of threads, so they are not scheduled by it.
+ */
+public class CoreScheduler
+{
+	// The weight of a new observation in the smoothed demand and solve times
+	private static final double SMOOTHING = 0.2;
+	// Every this many admissions of a kind, a solve may use one thread more than the cap
+	private static final int PROBE_INTERVAL = 16;
+	
+	private final int cores;
+	private final double minEfficiency;
+	
+	// The solves that wait for admission, in the order in which they arrived
+	private final LinkedList<Object> waiting = new LinkedList<>();
+	private final Map<String,Statistics> statistics = new LinkedHashMap<>();
+	private int free;
+	private int running;
+	private double demand = 1;
+	
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong grantedThreads = new AtomicLong();
+	
+	/**
+	 * Creates a scheduler that caps the threads of a kind at a parallel efficiency of 0.5
+	 * @param cores the number of cores that the solves may use together
+	 */
+	public CoreScheduler(int cores)
+	{
+		this(cores, 0.5);
+	}
+	
+	/**
+	 * Creates a scheduler
+	 * @param cores the number of cores that the solves may use together
+	 * @param minEfficiency the minimum speedup per thread, between 0 and 1, that a number of
+	 *                      threads must reach compared to a single thread to be used for a kind
+	 */
+	public CoreScheduler(int cores, double minEfficiency)
+	{
+		if (cores < 1 || minEfficiency < 0 || minEfficiency > 1)
+		{
+			throw new IllegalArgumentException("The number of cores must be positive and the efficiency must be between 0 and 1");
+		}
+		this.cores = cores;
+		this.minEfficiency = minEfficiency;
+		this.free = cores;
+	}
+	
+	/**
+	 * Solves a problem with the number of threads granted by the scheduler
+	 * @param kind the kind of the problem, for which the solve times are observed together
+	 * @param task the solve, which must set the number of threads of its model to the given number
+	 * @return the result of the task
+	 * @throws IloException if something goes wrong with CPLEX
+	 * @throws InterruptedException if the thread is interrupted while it waits for admission
+	 */
+	public <T> T run(String kind, Task<T> task) throws IloException, InterruptedException
+	{
+		Grant grant = acquire(kind);
+		boolean completed = false;
+		try
+		{
+			T result = task.solve(grant.getThreads());
+			completed = true;
+			return result;
+		}
+		finally
+		{
+			release(grant, completed);
+		}
+	}
+	
+	/**
+	 * Waits until a solve can be admitted, and decides how many threads it may use
+	 * @param kind the kind of the solve, for which the solve times are observed together
+	 * @return a grant with the number of threads, which must be returned with release()
+	 * @throws InterruptedException if the thread is interrupted while it waits
+	 */
+	public synchronized Grant acquire(String kind) throws InterruptedException
+	{
+		Object ticket = new Object();
+		waiting.addLast(ticket);
+		try
+		{
+			while (waiting.getFirst() != ticket || free == 0)
+			{
+				wait();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			waiting.remove(ticket);
+			notifyAll();
+			throw e;
+		}
+		waiting.removeFirst();
+		
+		// Divide the cores by the number of solves that are running, waiting or just admitted
+		demand += SMOOTHING * (running + waiting.size() + 1 - demand);
+		int share = Math.max(1, (int) (cores / Math.max(1, demand)));
+		Statistics s = statistics.computeIfAbsent(kind, k -> new Statistics());
+		s.admitted++;
+		int cap = Math.min(maxThreads(s), Math.max(Math.max(1, cores / 2), provenThreads(s)));
+		if (s.admitted % PROBE_INTERVAL == 0)
+		{
+			cap++;
+		}
+		int threads = Math.min(free, Math.min(share, cap));
+		free -= threads;
+		running++;
+		admitted.incrementAndGet();
+		grantedThreads.addAndGet(threads);
+		// The next solve in line may be admitted as well if cores are left
+		notifyAll();
+		return new Grant(kind, threads);
+	}
+	
+	/**
+	 * Returns the cores of a solve to the budget
+	 * @param grant the grant of the solve
+	 * @param completed whether the solve completed, so that its time can be used to choose the
+	 *                  number of threads of later solves of the same kind
+	 */
+	public synchronized void release(Grant grant, boolean completed)
+	{
+		if (grant.released)
+		{
+			throw new IllegalArgumentException("The grant was already released");
+		}
+		grant.released = true;
+		free += grant.threads;
+		running--;
+		if (completed)
+		{
+			statistics.get(grant.kind).observe(grant.threads, (System.nanoTime() - grant.start) / 1e9);
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * The largest number of threads for which the solves of a kind had a parallel efficiency of at
+	 * least the minimum, where numbers of threads that were not observed yet are assumed efficient
+	 */
+	private int maxThreads(Statistics s)
+	{
+		double single = s.seconds[1];
+		if (single <= 0)
+		{
+			return cores;
+		}
+		for (int t=2; t <= cores; t++)
+		{
+			if (s.seconds[t] > 0 && single / (t * s.seconds[t]) < minEfficiency)
+			{
+				return t - 1;
+			}
+		}
+		return cores;
+	}
+	
+	/**
+	 * The largest number of threads for which the solves of a kind were observed to have a parallel
+	 * efficiency of at least the minimum, or 0 if no solve of the kind completed with a single thread
+	 */
+	private int provenThreads(Statistics s)
+	{
+		double single = s.seconds[1];
+		if (single <= 0)
+		{
+			return 0;
+		}
+		int proven = 1;
+		for (int t=2; t <= cores; t++)
+		{
+			if (s.seconds[t] > 0 && single / (t * s.seconds[t]) >= minEfficiency)
+			{
+				proven = t;
+			}
+		}
+		return proven;
+	}
+	
+	/**
+	 * The number of solves that wait for admission
+	 * @return the number of waiting solves
+	 */
+	public synchronized int getWaiting()
+	{
+		return waiting.size();
+	}
+	
+	/**
+	 * The number of solves that were admitted and not released yet
+	 * @return the number of running solves
+	 */
+	public synchronized int getRunning()
+	{
+		return running;
+	}
+	
+	/**
+	 * The number of solves that were admitted
+	 * @return the number of admitted solves
+	 */
+	public long getAdmitted()
+	{
+		return admitted.get();
+	}
+	
+	/**
+	 * The average number of threads that the admitted solves were allowed to use
+	 * @return the average number of threads
+	 */
+	public double getAverageThreads()
+	{
+		long n = admitted.get();
+		return n == 0 ? 0 : grantedThreads.get() / (double) n;
+	}
+	
+	@Override
+	public synchronized String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("CoreScheduler [cores=").append(cores).append(", admitted=").append(admitted)
+		  .append(", averageThreads=").append(String.format("%.2f", getAverageThreads()));
+		for (Map.Entry<String,Statistics> e : statistics.entrySet())
+		{
+			sb.append(", ").append(e.getKey()).append("={cap=").append(maxThreads(e.getValue()));
+			for (int t=1; t <= cores; t++)
+			{
+				if (e.getValue().seconds[t] > 0)
+				{
+					sb.append(", ").append(t).append(" threads=").append(String.format("%.3f", e.getValue().seconds[t])).append("s");
+				}
+			}
+			sb.append("}");
+		}
+		return sb.append("]").toString();
+	}
+	
+	/**
+	 * The permission of a solve to use a number of threads
+	 */
+	public static class Grant
+	{
+		private final String kind;
+		private final int threads;
+		private final long start = System.nanoTime();
+		private boolean released;
+		
+		private Grant(String kind, int threads)
+		{
+			this.kind = kind;
+			this.threads = threads;
+		}
+		
+		/**
+		 * The number of threads that CPLEX may use for the solve, which should be
+		 * passed to Model.setThreads() or MasterModel.setThreads()
+		 * @return the number of threads
+		 */
+		public int getThreads()
+		{
+			return threads;
+		}
+	}
+	
+	/**
+	 * A solve that uses the number of threads it is given
+	 * @param <T> the type of the result of the solve
+	 */
+	public interface Task<T>
+	{
+		public T solve(int threads) throws IloException;
+	}
+	
+	/**
+	 * The smoothed solve times of a kind of solve, per number of threads
+	 */
+	private class Statistics
+	{
+		private final double [] seconds = new double[cores + 2];
+		private long admitted;
+		
+		private void observe(int threads, double time)
+		{
+			seconds[threads] = seconds[threads] == 0 ? time : seconds[threads] + SMOOTHING * (time - seconds[threads]);
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package server;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import concurrent.CoreScheduler;
+import ilog.concert.IloException;
+
+/**
+ * Collects the jobs received by a SolverServer into batches and hands them to a fixed number of
+ * solver threads. A batch is closed when it holds the maximum number of jobs, or when no further
+ * job arrives within the maximum delay after its first job. Jobs of a batch with the same request
+ * are only solved once. The other jobs are grouped by their key, and the requests of a group are
+ * divided over the free solver threads, where every solver thread solves its share of a group
+ * one after the other with one warm model. Every solve asks a CoreScheduler how many threads CPLEX
+ * may use, so the solver threads together never use more than the cores given to the scheduler.
+ *
+ * A new batch is only formed when a solver thread is free, so jobs that arrive while all solver
+ * threads are busy end up in the same batch. The queue of jobs is bounded, and a job is rejected
+ * when it is full.
+ */
+class Batcher
+{
+	private final BlockingQueue<Job<?>> queue;
+	private final int maxBatch;
+	private final long maxDelayNanos;
+	private final Metrics metrics;
+	private final CoreScheduler scheduler;
+	
+	private final ExecutorService solvers;
+	private final Semaphore freeSolvers;
+	private final Thread thread;
+	private volatile boolean running = true;
+	
+	/**
+	 * Creates a batcher and starts its thread
+	 * @param solverThreads the number of groups of jobs that are solved at the same time
+	 * @param queueCapacity the maximum number of jobs that wait to be batched
+	 * @param maxBatch the maximum number of jobs in a batch
+	 * @param maxDelayMillis the maximum time to wait for more jobs after the first job of a batch
+	 * @param metrics the metrics of the server
+	 * @param scheduler the scheduler that grants the threads of every solve
+	 */
+	public Batcher(int solverThreads, int queueCapacity, int maxBatch, long maxDelayMillis, Metrics metrics, CoreScheduler scheduler)
+	{
+		if (solverThreads < 1 || queueCapacity < 1 || maxBatch < 1 || maxDelayMillis < 0)
+		{
+			throw new IllegalArgumentException("The number of solver threads, the queue capacity and the batch size must be positive");
+		}
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.maxBatch = maxBatch;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.metrics = metrics;
+		this.scheduler = scheduler;
+		AtomicInteger count = new AtomicInteger();
+		this.solvers = Executors.newFixedThreadPool(solverThreads, r -> {
+			Thread t = new Thread(r, "solver-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		this.freeSolvers = new Semaphore(solverThreads);
+		this.thread = new Thread(this::run, "batcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Adds a job to the queue. This method never blocks.
+	 * @param job the job
+	 * @return false if the job was rejected because the queue is full or the batcher is stopped
+	 */
+	public boolean submit(Job<?> job)
+	{
+		if (!running || !queue.offer(job))
+		{
+			metrics.rejected();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Stops accepting jobs, and waits until the jobs in the queue are solved
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all jobs were solved before the timeout
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean shutdown(long timeoutMillis) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + timeoutMillis;
+		running = false;
+		thread.join(timeoutMillis);
+		solvers.shutdown();
+		return solvers.awaitTermination(Math.max(0, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+	}
+	
+	private void run()
+	{
+		try
+		{
+			while (running || !queue.isEmpty())
+			{
+				// Only form a batch when it can be solved right away
+				freeSolvers.acquire();
+				Job<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+				{
+					freeSolvers.release();
+					continue;
+				}
+				List<Job<?>> batch = new ArrayList<>();
+				batch.add(first);
+				long end = System.nanoTime() + maxDelayNanos;
+				while (batch.size() < maxBatch)
+				{
+					if (queue.drainTo(batch, maxBatch - batch.size()) > 0)
+					{
+						continue;
+					}
+					long left = end - System.nanoTime();
+					Job<?> next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : null;
+					if (next == null)
+					{
+						break;
+					}
+					batch.add(next);
+				}
+				dispatch(batch);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Merges the jobs of a batch with the same request, groups them by their key, and hands the
+	 * groups to the solver threads. A group is split into chunks when solver threads are free, so
+	 * that the jobs of a single key do not wait for each other while other solver threads are idle.
+	 * The first chunk uses the solver thread that was acquired before the batch was formed.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void dispatch(List<Job<?>> batch) throws InterruptedException
+	{
+		metrics.batch(batch.size());
+		Map<List<Object>,List<Job<?>>> requests = new LinkedHashMap<>();
+		for (Job<?> job : batch)
+		{
+			requests.computeIfAbsent(Arrays.asList(job.getPool(), job.getKey(), job.getRequest()), k -> new ArrayList<>()).add(job);
+		}
+		Map<List<Object>,List<List<Job<?>>>> groups = new LinkedHashMap<>();
+		for (List<Job<?>> same : requests.values())
+		{
+			Job<?> job = same.get(0);
+			groups.computeIfAbsent(Arrays.asList(job.getPool(), job.getKey()), k -> new ArrayList<>()).add(same);
+		}
+		
+		// Divide the free solver threads over the groups in proportion to their number of requests
+		int free = freeSolvers.availablePermits() + 1;
+		boolean acquired = true;
+		for (List<List<Job<?>>> group : groups.values())
+		{
+			int chunks = Math.min(group.size(), Math.max(1, free * group.size() / requests.size()));
+			for (int c=0; c < chunks; c++)
+			{
+				if (!acquired)
+				{
+					freeSolvers.acquire();
+				}
+				acquired = false;
+				// All jobs of a group use the same type of model
+				List<List<Job<Object>>> chunk = (List) group.subList(c * group.size() / chunks, (c+1) * group.size() / chunks);
+				solvers.execute(() -> {
+					try
+					{
+						solve(chunk);
+					}
+					finally
+					{
+						freeSolvers.release();
+					}
+				});
+			}
+		}
+	}
+	
+	/**
+	 * Solves a chunk of requests with the same key one after the other with one warm model,
+	 * where every request is solved once for all jobs that sent it
+	 */
+	private <M> void solve(List<List<Job<M>>> chunk)
+	{
+		WarmPool<M> pool = chunk.get(0).get(0).getPool();
+		WarmPool.Lease<M> lease = null;
+		for (List<Job<M>> same : chunk)
+		{
+			Job<M> job = same.get(0);
+			metrics.coalesced(same.size() - 1);
+			try
+			{
+				if (lease == null)
+				{
+					lease = pool.borrow(job.getKey(), job::createModel);
+				}
+				M model = lease.getModel();
+				boolean warm = lease.isWarm();
+				String answer = scheduler.run(job.getKind(), threads -> job.solve(model, warm, threads));
+				lease.used();
+				for (Job<M> j : same)
+				{
+					metrics.answered(j, true);
+					j.getAnswer().complete(answer);
+				}
+			}
+			catch (IloException | RuntimeException | InterruptedException e)
+			{
+				if (e instanceof InterruptedException)
+				{
+					Thread.currentThread().interrupt();
+				}
+				// The state of the model is unknown, so it is not used again
+				if (lease != null)
+				{
+					pool.release(lease, false);
+					lease = null;
+				}
+				for (Job<M> j : same)
+				{
+					metrics.answered(j, false);
+					j.getAnswer().completeExceptionally(e);
+				}
+			}
+		}
+		if (lease != null)
+		{
+			pool.release(lease, true);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package server;
+import java.util.Arrays;
+import java.util.Scanner;
+
+import colgen.DynamicProgrammingPricing;
+import colgen.Instance;
+import colgen.MasterModel;
+import colgen.Pattern;
+import colgen.Solution;
+import ilog.concert.IloException;
+
+/**
+ * A job that solves a cutting stock problem. The request consists of the number of stock lengths,
+ * followed by the length and the cost of every stock length, the number of sizes, and the size and
+ * demand of every order. Jobs with the same stock can be solved with the same warm master problem,
+ * of which the demands are changed with changeDemands(), so that column generation starts with
+ * the columns generated for the earlier jobs.
+ *
+ * The answer contains the cost and the number of units of stock of the solution, the lower bound,
+ * the relative gap, and a line for every pattern with the number of times it is applied followed
+ * by the sizes it cuts with their amounts.
+ */
+class CuttingStockJob extends Job<MasterModel>
+{
+	private final Instance instance;
+	private final double seconds;
+	private final String key;
+	
+	/**
+	 * Parses a cutting stock request
+	 * @param pool the pool with warm master problems
+	 * @param request the text of the request
+	 * @param seconds the time budget of the solve, or 0 to solve it without a budget
+	 * @throws java.util.NoSuchElementException if the request ends early or contains something else than a number
+	 * @throws IllegalArgumentException if the request does not describe a valid instance
+	 */
+	public CuttingStockJob(WarmPool<MasterModel> pool, String request, double seconds)
+	{
+		super(pool);
+		Scanner scan = new Scanner(request);
+		int [] stockLengths = new int[count(scan)];
+		double [] stockCosts = new double[stockLengths.length];
+		for (int l=0; l < stockLengths.length; l++)
+		{
+			stockLengths[l] = scan.nextInt();
+			stockCosts[l] = scan.nextDouble();
+		}
+		int [] sizes = new int[count(scan)];
+		int [] demands = new int[sizes.length];
+		for (int i=0; i < sizes.length; i++)
+		{
+			sizes[i] = scan.nextInt();
+			demands[i] = scan.nextInt();
+		}
+		if (sizes.length == 0)
+		{
+			throw new IllegalArgumentException("There must be at least one order");
+		}
+		this.instance = new Instance(sizes, demands, stockLengths, stockCosts);
+		for (int i=0; i < sizes.length; i++)
+		{
+			if (instance.getSize(i) <= 0 || instance.getSize(i) > instance.getCapacity() || instance.getDemand(i) <= 0)
+			{
+				throw new IllegalArgumentException("Sizes must be positive and fit in the stock, and demands must be positive");
+			}
+		}
+		this.seconds = seconds;
+		
+		// The key describes the stock, which is the same for jobs that can use the same master problem
+		StringBuilder sb = new StringBuilder("stock");
+		for (int l=0; l < instance.getNumberOfStockLengths(); l++)
+		{
+			sb.append(' ').append(instance.getStockLength(l)).append(',').append(instance.getStockCost(l));
+		}
+		this.key = sb.toString();
+	}
+	
+	private static int count(Scanner scan)
+	{
+		int count = scan.nextInt();
+		if (count < 0)
+		{
+			throw new IllegalArgumentException("The number of stock lengths and orders may not be negative");
+		}
+		return count;
+	}
+	
+	@Override
+	public Object getKey()
+	{
+		return key;
+	}
+	
+	@Override
+	public String getRequest()
+	{
+		return key + " " + Arrays.toString(instance.getSizeArray()) + " " + Arrays.toString(instance.getDemandArray()) + " " + seconds;
+	}
+	
+	@Override
+	public String getKind()
+	{
+		return "cuttingstock";
+	}
+	
+	@Override
+	public MasterModel createModel() throws IloException
+	{
+		MasterModel model = new MasterModel(instance, DynamicProgrammingPricing.forStockLengths(instance));
+		model.setCombinatorialBounds(true);
+		return model;
+	}
+	
+	@Override
+	public String solve(MasterModel model, boolean warm, int threads) throws IloException
+	{
+		if (warm)
+		{
+			// Only change the demands, so that the solve below does the only round of column generation
+			model.changeDemands(instance);
+		}
+		model.setThreads(threads);
+		if (seconds > 0)
+		{
+			model.solveInteger(seconds, 0.5);
+		}
+		else
+		{
+			model.solveInteger();
+		}
+		// The solution refers to the columns of the model, so the answer is built before the model is reused
+		Solution solution = model.getSolution();
+		StringBuilder sb = new StringBuilder();
+		sb.append("cost ").append(solution.getCost()).append('\n');
+		sb.append("stock ").append(solution.getStockNeeded()).append('\n');
+		sb.append("bound ").append(model.getLowerBound()).append('\n');
+		sb.append("gap ").append(model.getGap()).append('\n');
+		for (Pattern p : solution.getPatterns())
+		{
+			sb.append("pattern ").append(solution.getCopies(p));
+			for (int j=0; j < p.getNumberOfSizes(); j++)
+			{
+				sb.append(' ').append(p.getSizeAt(j)).append('x').append(p.getAmountAt(j));
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
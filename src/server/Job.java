@@ -0,0 +1,91 @@
+package server;
+import java.util.concurrent.CompletableFuture;
+
+import ilog.concert.IloException;
+
+/**
+ * A request to solve a problem, which is answered with a text that is sent back to the client.
+ * Jobs with the same key can be solved one after the other with the same warm model, and jobs
+ * in a batch with the same request are only solved once. The answer is built by the thread that
+ * solves the job, so that the model can be used for the next job as soon as the answer is complete.
+ * @param <M> the type of the model used to solve the job
+ */
+abstract class Job<M>
+{
+	private final WarmPool<M> pool;
+	private final long created = System.nanoTime();
+	private final CompletableFuture<String> answer = new CompletableFuture<>();
+	
+	/**
+	 * Creates a job
+	 * @param pool the pool that keeps the models for jobs of this type
+	 */
+	protected Job(WarmPool<M> pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * The pool that keeps the models for jobs of this type
+	 * @return the pool of warm models
+	 */
+	public WarmPool<M> getPool()
+	{
+		return pool;
+	}
+	
+	/**
+	 * The value of System.nanoTime() when the job was created
+	 * @return the creation time of the job
+	 */
+	public long getCreated()
+	{
+		return created;
+	}
+	
+	/**
+	 * The answer to the job, which is completed when the job is solved
+	 * @return a future with the answer
+	 */
+	public CompletableFuture<String> getAnswer()
+	{
+		return answer;
+	}
+	
+	/**
+	 * The key of the models that can be used for this job, which is equal for jobs that
+	 * can be solved with the same model
+	 * @return the key
+	 */
+	public abstract Object getKey();
+	
+	/**
+	 * A description of the complete request, which is equal for jobs that have the same answer
+	 * @return the request
+	 */
+	public abstract String getRequest();
+	
+	/**
+	 * The kind of this job, for which the CoreScheduler of the server observes the solve times
+	 * @return the kind
+	 */
+	public abstract String getKind();
+	
+	/**
+	 * Builds a new model for this job
+	 * @return the model
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public abstract M createModel() throws IloException;
+	
+	/**
+	 * Solves this job with a model
+	 * @param model a model for the key of this job
+	 * @param warm whether the model was used for another job before, in which case it must be
+	 *             adapted to this job
+	 * @param threads the number of threads CPLEX may use, as granted by the CoreScheduler
+	 * @return the answer to the job
+	 * @throws IloException if something goes wrong with CPLEX
+	 */
+	public abstract String solve(M model, boolean warm, int threads) throws IloException;
+}
@@ -0,0 +1,139 @@
+package server;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import basic.DirectedGraph;
+import basic.DirectedGraphArc;
+import basic.Item;
+import basic.Main;
+import basic.Model;
+import ilog.concert.IloException;
+
+/**
+ * A job that solves a precedence constrained knapsack problem. The request consists of the capacity,
+ * followed by the items and the precedence constraints in the format of the files read by the Main
+ * class of the basic package. Jobs with the same items and precedence constraints can be solved with
+ * the same warm model, of which only the capacity is changed.
+ *
+ * The answer contains the total profit and weight of the selected items, the indices of the selected
+ * items in the order of the request, and the relative gap proven by CPLEX.
+ */
+class KnapsackJob extends Job<Model>
+{
+	private final DirectedGraph<Item,String> instance;
+	private final int capacity;
+	private final double seconds;
+	private final String key;
+	
+	/**
+	 * Parses a knapsack request
+	 * @param pool the pool with warm knapsack models
+	 * @param request the text of the request
+	 * @param seconds the time budget of the solve, or 0 to solve it to optimality
+	 * @throws java.util.NoSuchElementException if the request ends early or contains something else than a number
+	 * @throws IllegalArgumentException if the request refers to items that do not exist or the capacity is negative
+	 */
+	public KnapsackJob(WarmPool<Model> pool, String request, double seconds)
+	{
+		super(pool);
+		Scanner scan = new Scanner(request);
+		this.capacity = scan.nextInt();
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException("The capacity may not be negative");
+		}
+		try
+		{
+			this.instance = Main.read(scan);
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("A precedence constraint refers to an item that does not exist");
+		}
+		this.seconds = seconds;
+		
+		// The key describes the items and the precedence constraints by their indices
+		Map<Item,Integer> index = indices(instance);
+		StringBuilder sb = new StringBuilder("knapsack");
+		for (Item i : instance.getNodes())
+		{
+			sb.append(' ').append(i.getProfit()).append(',').append(i.getWeight());
+		}
+		sb.append(" |");
+		for (DirectedGraphArc<Item,String> arc : instance.getArcs())
+		{
+			sb.append(' ').append(index.get(arc.getFrom())).append(',').append(index.get(arc.getTo()));
+		}
+		this.key = sb.toString();
+	}
+	
+	@Override
+	public Object getKey()
+	{
+		return key;
+	}
+	
+	@Override
+	public String getRequest()
+	{
+		return key + " | " + capacity + " " + seconds;
+	}
+	
+	@Override
+	public String getKind()
+	{
+		return "knapsack";
+	}
+	
+	@Override
+	public Model createModel() throws IloException
+	{
+		return new Model(instance, capacity);
+	}
+	
+	@Override
+	public String solve(Model model, boolean warm, int threads) throws IloException
+	{
+		if (warm)
+		{
+			model.setCapacity(capacity);
+		}
+		model.setThreads(threads);
+		if (seconds > 0)
+		{
+			model.solve(seconds);
+		}
+		else
+		{
+			model.solve();
+		}
+		// Selecting no items is always feasible, so that is the answer if CPLEX found nothing in time
+		boolean feasible = model.isFeasible();
+		List<Item> selected = feasible ? model.getSolution() : new ArrayList<>();
+		// The items of a warm model belong to the request it was built for, so they are identified by their index
+		Map<Item,Integer> index = indices(model.getInstance());
+		int profit = 0;
+		int weight = 0;
+		StringBuilder items = new StringBuilder("items");
+		for (Item i : selected)
+		{
+			profit += i.getProfit();
+			weight += i.getWeight();
+			items.append(' ').append(index.get(i));
+		}
+		return "profit " + profit + "\nweight " + weight + "\n" + items + "\ngap " + (feasible ? model.getGap() : 1) + "\n";
+	}
+	
+	private static Map<Item,Integer> indices(DirectedGraph<Item,String> instance)
+	{
+		Map<Item,Integer> result = new IdentityHashMap<>();
+		for (Item i : instance.getNodes())
+		{
+			result.put(i, result.size());
+		}
+		return result;
+	}
+}
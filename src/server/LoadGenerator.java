@@ -0,0 +1,176 @@
+package server;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import colgen.Instance;
+import colgen.Latencies;
+
+/**
+ * Main class that tests a SolverServer end to end on a single machine. A number of clients send
+ * requests one after the other to the server, with a mix of knapsack and cutting stock problems.
+ * The problems are drawn from a few catalogues of items and stock, with a random capacity or
+ * random demands, so that the server can use warm models and coalesce some of the requests.
+ * Afterwards, the latency percentiles and throughput measured by the clients are printed,
+ * followed by the metrics reported by the server.
+ *
+ * The first argument is the number of clients (by default 16), the second the total number
+ * of requests (by default 400), and the third the share of cutting stock problems (by default
+ * 0.5). If a fourth argument is given, it is the port of a running server. Otherwise, a server
+ * is started in the same JVM on a free port, and stopped at the end.
+ */
+public class LoadGenerator
+{
+	public static void main(String [] args) throws IOException, InterruptedException
+	{
+		int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+		double cuttingStockShare = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+		
+		SolverServer server = null;
+		int port;
+		if (args.length > 3)
+		{
+			port = Integer.parseInt(args[3]);
+		}
+		else
+		{
+			int solvers = Runtime.getRuntime().availableProcessors();
+			server = new SolverServer(0, solvers, solvers, 1024, 32, 2, 4 * solvers);
+			server.start();
+			port = server.getPort();
+		}
+		String base = "http://localhost:" + port;
+		
+		// Build all requests up front, so that the clients only send them
+		Random ran = new Random(54321);
+		List<String> knapsacks = new ArrayList<>();
+		List<Instance> stocks = new ArrayList<>();
+		for (int c=0; c < 4; c++)
+		{
+			knapsacks.add(knapsackCatalogue(ran, 30));
+			stocks.add(Instance.randomInstance(ran.nextLong(), 20, 13, 20));
+		}
+		String [] paths = new String[requests];
+		String [] bodies = new String[requests];
+		for (int r=0; r < requests; r++)
+		{
+			if (ran.nextDouble() < cuttingStockShare)
+			{
+				paths[r] = "/cuttingstock";
+				bodies[r] = cuttingStockRequest(ran, stocks.get(ran.nextInt(stocks.size())));
+			}
+			else
+			{
+				paths[r] = "/knapsack";
+				bodies[r] = (40 + ran.nextInt(80)) + "\n" + knapsacks.get(ran.nextInt(knapsacks.size()));
+			}
+		}
+		
+		HttpClient client = HttpClient.newHttpClient();
+		AtomicInteger next = new AtomicInteger();
+		AtomicLong ok = new AtomicLong();
+		AtomicLong busy = new AtomicLong();
+		AtomicLong errors = new AtomicLong();
+		long [] latencies = new long[requests];
+		long time = System.currentTimeMillis();
+		List<Thread> threads = new ArrayList<>();
+		for (int c=0; c < clients; c++)
+		{
+			Thread t = new Thread(() -> {
+				int r;
+				while ((r = next.getAndIncrement()) < requests)
+				{
+					HttpRequest request = HttpRequest.newBuilder(URI.create(base + paths[r]))
+					                                 .POST(HttpRequest.BodyPublishers.ofString(bodies[r]))
+					                                 .build();
+					long start = System.nanoTime();
+					try
+					{
+						int status = client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+						(status == 200 ? ok : status == 503 ? busy : errors).incrementAndGet();
+					}
+					catch (IOException e)
+					{
+						errors.incrementAndGet();
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						return;
+					}
+					latencies[r] = (System.nanoTime() - start) / 1_000_000;
+				}
+			}, "client-" + c);
+			t.start();
+			threads.add(t);
+		}
+		for (Thread t : threads)
+		{
+			t.join();
+		}
+		time = System.currentTimeMillis() - time;
+		
+		System.out.println("Clients: "+clients+", requests: "+requests+", ok: "+ok+", busy: "+busy+", errors: "+errors);
+		Latencies.print(latencies, "requests", time);
+		HttpRequest metrics = HttpRequest.newBuilder(URI.create(base + "/metrics")).build();
+		System.out.println("Server metrics:");
+		System.out.print(client.send(metrics, HttpResponse.BodyHandlers.ofString()).body());
+		
+		if (server != null)
+		{
+			server.stop(10000);
+		}
+	}
+	
+	/**
+	 * Generates random items and precedence constraints in the format of KnapsackJob, without the capacity
+	 */
+	static String knapsackCatalogue(Random ran, int items)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(items).append('\n');
+		for (int i=0; i < items; i++)
+		{
+			sb.append(1 + ran.nextInt(50)).append(' ').append(1 + ran.nextInt(30)).append('\n');
+		}
+		// Every item except the first may require an earlier item
+		List<String> arcs = new ArrayList<>();
+		for (int i=1; i < items; i++)
+		{
+			if (ran.nextDouble() < 0.3)
+			{
+				arcs.add(i + " " + ran.nextInt(i) + " requires");
+			}
+		}
+		sb.append(arcs.size()).append('\n');
+		for (String arc : arcs)
+		{
+			sb.append(arc).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Generates a cutting stock request in the format of CuttingStockJob, with the
+	 * sizes and stock of an instance and random demands
+	 */
+	private static String cuttingStockRequest(Random ran, Instance instance)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("1\n").append(instance.getCapacity()).append(" 1\n");
+		sb.append(instance.getNumberOfSizes()).append('\n');
+		for (int i=0; i < instance.getNumberOfSizes(); i++)
+		{
+			sb.append(instance.getSize(i)).append(' ').append(1 + ran.nextInt(20)).append('\n');
+		}
+		return sb.toString();
+	}
+	}
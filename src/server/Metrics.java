@@ -0,0 +1,171 @@
+package server;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import colgen.Latencies;
+import concurrent.CoreScheduler;
+
+/**
+ * Counters and latencies of the jobs handled by a SolverServer. The latency of a job is the time
+ * between the moment it was received and the moment it was answered, so it includes the time
+ * it waited in the queue. The percentiles are computed over the most recent jobs.
+ */
+class Metrics
+{
+	private static final int WINDOW = 4096;
+	
+	private final long start = System.nanoTime();
+	
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong invalid = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong batchedJobs = new AtomicLong();
+	
+	// A ring buffer with the latencies of the most recent jobs
+	private final long [] latencies = new long[WINDOW];
+	private long recorded;
+	
+	private final Map<String,WarmPool<?>> pools = new LinkedHashMap<>();
+	private CoreScheduler scheduler;
+	
+	/**
+	 * Adds a pool of warm models of which the statistics are reported
+	 * @param name the name used in the report
+	 * @param pool the pool
+	 */
+	public synchronized void addPool(String name, WarmPool<?> pool)
+	{
+		pools.put(name, pool);
+	}
+	
+	/**
+	 * Sets the scheduler of which the admitted solves and their threads are reported
+	 * @param scheduler the scheduler
+	 */
+	public synchronized void setScheduler(CoreScheduler scheduler)
+	{
+		this.scheduler = scheduler;
+	}
+	
+	/**
+	 * Reports that a request was received
+	 */
+	public void request()
+	{
+		requests.incrementAndGet();
+	}
+	
+	/**
+	 * Reports that a job was rejected because the queue was full
+	 */
+	public void rejected()
+	{
+		rejected.incrementAndGet();
+	}
+	
+	/**
+	 * Reports that a request could not be parsed
+	 */
+	public void invalid()
+	{
+		invalid.incrementAndGet();
+	}
+	
+	/**
+	 * Reports that a batch of jobs was formed
+	 * @param size the number of jobs in the batch
+	 */
+	public void batch(int size)
+	{
+		batches.incrementAndGet();
+		batchedJobs.addAndGet(size);
+	}
+	
+	/**
+	 * Reports jobs that were answered by the solve of another job with the same request
+	 * @param jobs the number of jobs that were not solved themselves
+	 */
+	public void coalesced(int jobs)
+	{
+		coalesced.addAndGet(jobs);
+	}
+	
+	/**
+	 * Reports that a job was answered
+	 * @param job the job
+	 * @param success whether the job was solved, or failed with an exception
+	 */
+	public void answered(Job<?> job, boolean success)
+	{
+		(success ? completed : failed).incrementAndGet();
+		long latency = System.nanoTime() - job.getCreated();
+		synchronized (latencies)
+		{
+			latencies[(int) (recorded % WINDOW)] = latency;
+			recorded++;
+		}
+	}
+	
+	/**
+	 * Builds a report with one metric per line, consisting of its name and its value
+	 * @return the report
+	 */
+	public String report()
+	{
+		long [] sorted;
+		synchronized (latencies)
+		{
+			sorted = Arrays.copyOf(latencies, (int) Math.min(recorded, WINDOW));
+		}
+		Arrays.sort(sorted);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long answered = completed.get() + failed.get();
+		long b = batches.get();
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append("uptime_seconds ").append(String.format("%.3f", seconds)).append('\n');
+		sb.append("requests ").append(requests).append('\n');
+		sb.append("rejected ").append(rejected).append('\n');
+		sb.append("invalid ").append(invalid).append('\n');
+		sb.append("completed ").append(completed).append('\n');
+		sb.append("failed ").append(failed).append('\n');
+		sb.append("coalesced ").append(coalesced).append('\n');
+		sb.append("batches ").append(b).append('\n');
+		sb.append("mean_batch_size ").append(String.format("%.2f", b == 0 ? 0 : batchedJobs.get() / (double) b)).append('\n');
+		sb.append("throughput_per_second ").append(String.format("%.2f", answered / seconds)).append('\n');
+		sb.append("latency_p50_ms ").append(millis(Latencies.percentile(sorted, 50))).append('\n');
+		sb.append("latency_p90_ms ").append(millis(Latencies.percentile(sorted, 90))).append('\n');
+		sb.append("latency_p99_ms ").append(millis(Latencies.percentile(sorted, 99))).append('\n');
+		sb.append("latency_max_ms ").append(millis(Latencies.percentile(sorted, 100))).append('\n');
+		synchronized (this)
+		{
+			for (Entry<String,WarmPool<?>> e : pools.entrySet())
+			{
+				WarmPool<?> pool = e.getValue();
+				sb.append(e.getKey()).append("_warm_hits ").append(pool.getHits()).append('\n');
+				sb.append(e.getKey()).append("_warm_misses ").append(pool.getMisses()).append('\n');
+				sb.append(e.getKey()).append("_retired ").append(pool.getRetired()).append('\n');
+				sb.append(e.getKey()).append("_idle ").append(pool.getIdle()).append('\n');
+			}
+			if (scheduler != null)
+			{
+				sb.append("scheduler_admitted ").append(scheduler.getAdmitted()).append('\n');
+				sb.append("scheduler_waiting ").append(scheduler.getWaiting()).append('\n');
+				sb.append("scheduler_average_threads ").append(String.format("%.2f", scheduler.getAverageThreads())).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String millis(long nanos)
+	{
+		return String.format("%.3f", nanos / 1e6);
+	}
+}
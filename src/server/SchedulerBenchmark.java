@@ -0,0 +1,203 @@
+package server;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import basic.DirectedGraph;
+import basic.Item;
+import basic.Model;
+import colgen.DynamicProgrammingPricing;
+import colgen.Instance;
+import colgen.Latencies;
+import colgen.MasterModel;
+import concurrent.CoreScheduler;
+import ilog.concert.IloException;
+
+/**
+ * Main class that compares a CoreScheduler with the naive configuration on a mixed workload of
+ * knapsack and cutting stock problems. In the naive configuration, as many solves run in parallel
+ * as there are cores, and every solve uses the default number of threads of CPLEX, which is all
+ * cores. With the scheduler, the solves wait for a grant, and CPLEX uses the number of threads
+ * of the grant. Both configurations solve the same problems, which arrive at the same moments.
+ * For both, the latency percentiles and throughput are printed, and for the scheduler also the
+ * number of threads it chose and the solve times it observed.
+ *
+ * The first argument is the number of cores (by default the number of cores of the machine), the
+ * second the number of problems (by default 200), the third the share of cutting stock problems
+ * (by default 0.5), and the fourth the mean time between the arrivals of two problems in
+ * milliseconds (by default 0, so that all problems arrive at the start). A few problems are solved
+ * before the measurements start, to warm up the JVM.
+ */
+public class SchedulerBenchmark
+{
+	public static void main(String [] args) throws IloException, InterruptedException
+	{
+		int cores = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int jobs = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		double cuttingStockShare = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+		double meanGap = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+		
+		// Build all problems and arrival times up front, so that both configurations get the same workload
+		Random ran = new Random(12345);
+		List<Problem> problems = new ArrayList<>();
+		long [] arrivals = new long[jobs];
+		long arrival = 0;
+		for (int j=0; j < jobs; j++)
+		{
+			if (ran.nextDouble() < cuttingStockShare)
+			{
+				problems.add(new Problem(Instance.randomInstance(ran.nextLong(), 20, 13, 20)));
+			}
+			else
+			{
+				DirectedGraph<Item,String> graph = basic.Main.read(new Scanner(LoadGenerator.knapsackCatalogue(ran, 30)));
+				problems.add(new Problem(graph, 40 + ran.nextInt(80)));
+			}
+			arrivals[j] = arrival;
+			arrival += (long) (-meanGap * Math.log(1 - ran.nextDouble()));
+		}
+		
+		// Warm up the JVM first, so that the configuration that runs second has no advantage
+		for (int j=0; j < Math.min(jobs, 20); j++)
+		{
+			problems.get(j).solve(1);
+		}
+		
+		System.out.println("Cores: "+cores+", problems: "+jobs+", cutting stock share: "+cuttingStockShare+", mean time between arrivals: "+meanGap+"ms");
+		System.out.println("Naive: "+cores+" parallel solves with the default number of CPLEX threads");
+		ExecutorService naive = Executors.newFixedThreadPool(cores);
+		double naiveThroughput = run(problems, arrivals, naive, p -> p.solve(0));
+		
+		CoreScheduler scheduler = new CoreScheduler(cores);
+		System.out.println("Scheduled: a budget of "+cores+" cores");
+		ExecutorService scheduled = Executors.newCachedThreadPool();
+		double scheduledThroughput = run(problems, arrivals, scheduled, p -> scheduler.run(p.getKind(), p::solve));
+		System.out.println(scheduler);
+		System.out.println("Speedup of the scheduler: "+String.format("%.2f", scheduledThroughput / naiveThroughput));
+	}
+	
+	/**
+	 * Solves the problems in an executor, and prints the latency percentiles and throughput
+	 * @return the throughput in problems per second
+	 */
+	private static double run(List<Problem> problems, long [] arrivals, ExecutorService executor, Solver solver) throws IloException, InterruptedException
+	{
+		long [] latencies = new long[problems.size()];
+		List<Future<?>> futures = new ArrayList<>();
+		long time = System.currentTimeMillis();
+		for (int j=0; j < problems.size(); j++)
+		{
+			long wait = time + arrivals[j] - System.currentTimeMillis();
+			if (wait > 0)
+			{
+				Thread.sleep(wait);
+			}
+			int index = j;
+			long start = System.currentTimeMillis();
+			futures.add(executor.submit(() -> {
+				solver.solve(problems.get(index));
+				latencies[index] = System.currentTimeMillis() - start;
+				return null;
+			}));
+		}
+		executor.shutdown();
+		for (Future<?> f : futures)
+		{
+			try
+			{
+				f.get();
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IloException)
+				{
+					throw (IloException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		time = System.currentTimeMillis() - time;
+		
+		return Latencies.print(latencies, "problems", time);
+	}
+		
+	private interface Solver
+	{
+		public void solve(Problem problem) throws IloException, InterruptedException;
+	}
+	
+	/**
+	 * A knapsack or cutting stock problem of the workload
+	 */
+	private static class Problem
+	{
+		private final Instance instance;
+		private final DirectedGraph<Item,String> graph;
+		private final int capacity;
+		
+		public Problem(Instance instance)
+		{
+			this.instance = instance;
+			this.graph = null;
+			this.capacity = 0;
+		}
+		
+		public Problem(DirectedGraph<Item,String> graph, int capacity)
+		{
+			this.instance = null;
+			this.graph = graph;
+			this.capacity = capacity;
+		}
+		
+		public String getKind()
+		{
+			return instance != null ? "cuttingstock" : "knapsack";
+		}
+		
+		/**
+		 * Solves the problem with a new model, in the same way as the jobs of the server
+		 * @param threads the number of threads CPLEX may use, or 0 for the default of CPLEX
+		 * @return the objective value
+		 */
+		public double solve(int threads) throws IloException
+		{
+			if (instance != null)
+			{
+				MasterModel mm = new MasterModel(instance, DynamicProgrammingPricing.forStockLengths(instance));
+				try
+				{
+					if (threads > 0)
+					{
+						mm.setThreads(threads);
+					}
+					mm.setCombinatorialBounds(true);
+					mm.solveInteger();
+					return mm.getSolution().getCost();
+				}
+				finally
+				{
+					mm.cleanUp();
+				}
+			}
+			Model model = new Model(graph, capacity);
+			try
+			{
+				if (threads > 0)
+				{
+					model.setThreads(threads);
+				}
+				model.solve();
+				return model.getSolution().stream().mapToInt(Item::getProfit).sum();
+			}
+			finally
+			{
+				model.cleanup();
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package server;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import basic.Model;
+import colgen.MasterModel;
+import concurrent.CoreScheduler;
+
+/**
+ * A server on localhost that solves precedence constrained knapsack problems and cutting stock
+ * problems for other processes, so that they do not need to embed CPLEX themselves. It uses the
+ * HTTP server of the JDK and has the following endpoints:
+ * <ul>
+ *   <li><code>POST /knapsack</code> solves the knapsack problem in the body, as described by KnapsackJob</li>
+ *   <li><code>POST /cuttingstock</code> solves the cutting stock problem in the body, as described by CuttingStockJob</li>
+ *   <li><code>GET /metrics</code> reports the throughput, latencies, batches, warm pools and scheduled threads of the server</li>
+ * </ul>
+ * The solve endpoints accept an optional query parameter <code>seconds</code> with a time budget for the
+ * solve. Invalid requests are answered with status 400, and requests that arrive while the queue is full
+ * with status 503, so that clients can back off.
+ *
+ * Requests are handled on virtual threads if the JVM supports them, which is the case from Java 21,
+ * and on a pool of platform threads otherwise. They only parse the request and wait for the answer,
+ * while the problems are solved by a fixed number of solver threads. Jobs are coalesced into batches
+ * by a Batcher, and the models of solved jobs are kept in warm pools, so that later jobs with the
+ * same items or the same stock do not have to build a new model. A CoreScheduler divides a budget
+ * of cores between the solves, and decides how many threads CPLEX may use for every solve.
+ *
+ * The first argument of the main method is the port (by default 8080), the second the number of
+ * solver threads (by default the number of cores), and the third the number of cores that the
+ * solves may use together (by default the number of cores).
+ */
+public class SolverServer
+{
+	private final HttpServer http;
+	private final ExecutorService requestExecutor;
+	private final Batcher batcher;
+	private final Metrics metrics = new Metrics();
+	private final WarmPool<Model> knapsackModels;
+	private final WarmPool<MasterModel> masterModels;
+	
+	public static void main(String [] args) throws IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int solvers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int cores = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		SolverServer server = new SolverServer(port, solvers, cores, 1024, 32, 2, 4 * solvers);
+		server.start();
+		System.out.println("Listening on http://localhost:"+server.getPort()+"/ with "+solvers+" solver threads");
+	}
+	
+	/**
+	 * Creates a server that listens on the loopback address. The server only accepts
+	 * requests after start() is called.
+	 * @param port the port to listen on, or 0 to use any free port
+	 * @param solverThreads the number of jobs that are solved at the same time
+	 * @param cores the number of cores that the jobs may use together, which a CoreScheduler
+	 *              divides between the jobs that are solved at the same time
+	 * @param queueCapacity the maximum number of jobs that wait to be solved
+	 * @param maxBatch the maximum number of jobs in a batch
+	 * @param maxDelayMillis the maximum time a batch waits for more jobs after its first job
+	 * @param warmModels the maximum number of idle models that are kept of each type
+	 * @throws IOException if the server can not listen on the port
+	 */
+	public SolverServer(int port, int solverThreads, int cores, int queueCapacity, int maxBatch, long maxDelayMillis, int warmModels) throws IOException
+	{
+		CoreScheduler scheduler = new CoreScheduler(cores);
+		// Models are rebuilt from time to time, since a warm master problem keeps all its columns
+		this.knapsackModels = new WarmPool<>(warmModels, 1000, Model::cleanup);
+		this.masterModels = new WarmPool<>(warmModels, 100, MasterModel::cleanUp);
+		metrics.addPool("knapsack", knapsackModels);
+		metrics.addPool("cuttingstock", masterModels);
+		metrics.setScheduler(scheduler);
+		this.batcher = new Batcher(solverThreads, queueCapacity, maxBatch, maxDelayMillis, metrics, scheduler);
+		
+		this.requestExecutor = requestExecutor();
+		this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		http.setExecutor(requestExecutor);
+		http.createContext("/knapsack", exchange -> solve(exchange, true));
+		http.createContext("/cuttingstock", exchange -> solve(exchange, false));
+		http.createContext("/metrics", exchange -> respond(exchange, 200, metrics.report()));
+	}
+	
+	/**
+	 * Creates an executor that runs every request on a new virtual thread. Virtual threads
+	 * are only available from Java 21, so they are looked up by reflection, and a pool of
+	 * platform threads is used if they are not available.
+	 */
+	private static ExecutorService requestExecutor()
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "request");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+	
+	/**
+	 * Starts accepting requests
+	 */
+	public void start()
+	{
+		http.start();
+	}
+	
+	/**
+	 * Stops accepting requests, waits until the jobs that were accepted are answered,
+	 * and cleans up the warm models
+	 * @param timeoutMillis the maximum time to wait for the jobs
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void stop(long timeoutMillis) throws InterruptedException
+	{
+		batcher.shutdown(timeoutMillis);
+		http.stop(0);
+		requestExecutor.shutdown();
+		knapsackModels.clear();
+		masterModels.clear();
+	}
+	
+	/**
+	 * The port the server listens on, which is useful if it was created with port 0
+	 * @return the port
+	 */
+	public int getPort()
+	{
+		return http.getAddress().getPort();
+	}
+	
+	/**
+	 * Reports the metrics of the server in the same format as the metrics endpoint
+	 * @return a text with one metric per line
+	 */
+	public String getMetrics()
+	{
+		return metrics.report();
+	}
+	
+	private void solve(HttpExchange exchange, boolean knapsack) throws IOException
+	{
+		if (!"POST".equals(exchange.getRequestMethod()))
+		{
+			respond(exchange, 405, "Use POST to submit a problem\n");
+			return;
+		}
+		metrics.request();
+		String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+		Job<?> job;
+		try
+		{
+			double seconds = seconds(exchange.getRequestURI().getQuery());
+			job = knapsack ? new KnapsackJob(knapsackModels, body, seconds)
+			               : new CuttingStockJob(masterModels, body, seconds);
+		}
+		catch (IllegalArgumentException e)
+		{
+			metrics.invalid();
+			respond(exchange, 400, "Invalid request: " + e.getMessage() + "\n");
+			return;
+		}
+		catch (NoSuchElementException e)
+		{
+			metrics.invalid();
+			respond(exchange, 400, "Invalid request: it ends early or contains something else than a number\n");
+			return;
+		}
+		if (!batcher.submit(job))
+		{
+			respond(exchange, 503, "The server is busy\n");
+			return;
+		}
+		try
+		{
+			respond(exchange, 200, job.getAnswer().get());
+		}
+		catch (ExecutionException e)
+		{
+			respond(exchange, 500, "The solve failed: " + e.getCause() + "\n");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "The server is stopping\n");
+		}
+	}
+	
+	/**
+	 * Reads the time budget from the query of a request
+	 * @return the time budget in seconds, or 0 if there is none
+	 */
+	private static double seconds(String query)
+	{
+		if (query != null)
+		{
+			for (String parameter : query.split("&"))
+			{
+				if (parameter.startsWith("seconds="))
+				{
+					double seconds = Double.parseDouble(parameter.substring("seconds=".length()));
+					if (!(seconds > 0))
+					{
+						throw new IllegalArgumentException("The time budget must be positive");
+					}
+					return seconds;
+				}
+			}
+		}
+		return 0;
+	}
+	
+	private static void respond(HttpExchange exchange, int status, String text) throws IOException
+	{
+		byte [] bytes = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(bytes);
+		}
+	}
+}
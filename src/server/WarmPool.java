@@ -0,0 +1,220 @@
+package server;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ilog.concert.IloException;
+
+/**
+ * A pool of CPLEX models that are kept after a job is solved, so that a later job with the same
+ * key can be solved with a warm model instead of building a new one. A model is only used by one
+ * thread at a time. When the pool is full, the model that was idle for the longest time is cleaned
+ * up, and a model is retired after a maximum number of jobs, so that it does not grow without bound.
+ * @param <M> the type of the models in the pool
+ */
+class WarmPool<M>
+{
+	private final int capacity;
+	private final int maxUses;
+	private final Cleaner<M> cleaner;
+	
+	// The idle models, from the least to the most recently used
+	private final LinkedList<Lease<M>> idle = new LinkedList<>();
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong retired = new AtomicLong();
+	
+	/**
+	 * Creates an empty pool
+	 * @param capacity the maximum number of idle models that are kept
+	 * @param maxUses the number of jobs after which a model is cleaned up
+	 * @param cleaner frees the memory used by CPLEX for a model that is no longer kept
+	 */
+	public WarmPool(int capacity, int maxUses, Cleaner<M> cleaner)
+	{
+		if (capacity < 0 || maxUses < 1)
+		{
+			throw new IllegalArgumentException("The capacity may not be negative and the number of uses must be positive");
+		}
+		this.capacity = capacity;
+		this.maxUses = maxUses;
+		this.cleaner = cleaner;
+	}
+	
+	/**
+	 * Takes an idle model with the given key out of the pool, or builds a new model if there is none
+	 * @param key the key of the model
+	 * @param factory builds a new model for the key
+	 * @return a lease of the model, which must be returned with release()
+	 * @throws IloException if something goes wrong with CPLEX while the model is built
+	 */
+	public Lease<M> borrow(Object key, Factory<M> factory) throws IloException
+	{
+		synchronized (this)
+		{
+			Iterator<Lease<M>> it = idle.descendingIterator();
+			while (it.hasNext())
+			{
+				Lease<M> lease = it.next();
+				if (lease.key.equals(key))
+				{
+					it.remove();
+					hits.incrementAndGet();
+					return lease;
+				}
+			}
+		}
+		misses.incrementAndGet();
+		return new Lease<>(key, factory.create());
+	}
+	
+	/**
+	 * Returns a model to the pool. A model of which the state is unknown, because a job
+	 * failed while it was solved, or that was used too often is cleaned up instead.
+	 * @param lease the lease of the model
+	 * @param reusable whether the model can be used for another job
+	 */
+	public void release(Lease<M> lease, boolean reusable)
+	{
+		Lease<M> evicted = lease;
+		if (reusable && lease.uses < maxUses)
+		{
+			synchronized (this)
+			{
+				idle.addLast(lease);
+				evicted = idle.size() > capacity ? idle.removeFirst() : null;
+			}
+		}
+		if (evicted != null)
+		{
+			retired.incrementAndGet();
+			cleanUp(evicted);
+		}
+	}
+	
+	/**
+	 * Cleans up all idle models
+	 */
+	public void clear()
+	{
+		List<Lease<M>> leases;
+		synchronized (this)
+		{
+			leases = new LinkedList<>(idle);
+			idle.clear();
+		}
+		for (Lease<M> lease : leases)
+		{
+			cleanUp(lease);
+		}
+	}
+	
+	private void cleanUp(Lease<M> lease)
+	{
+		try
+		{
+			cleaner.cleanUp(lease.model);
+		}
+		catch (IloException e)
+		{
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * The number of jobs that were solved with a warm model from the pool
+	 * @return the number of hits
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	/**
+	 * The number of jobs for which a new model had to be built
+	 * @return the number of misses
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+	
+	/**
+	 * The number of models that were cleaned up because the pool was full,
+	 * they were used too often, or a job failed
+	 * @return the number of retired models
+	 */
+	public long getRetired()
+	{
+		return retired.get();
+	}
+	
+	/**
+	 * The number of models that are currently kept in the pool
+	 * @return the number of idle models
+	 */
+	public synchronized int getIdle()
+	{
+		return idle.size();
+	}
+	
+	/**
+	 * A model that is taken out of the pool to solve jobs
+	 */
+	static class Lease<M>
+	{
+		private final Object key;
+		private final M model;
+		private int uses;
+		
+		private Lease(Object key, M model)
+		{
+			this.key = key;
+			this.model = model;
+		}
+		
+		/**
+		 * The model that is leased
+		 * @return the model
+		 */
+		public M getModel()
+		{
+			return model;
+		}
+		
+		/**
+		 * Whether the model was used to solve a job before
+		 * @return true if the model is warm
+		 */
+		public boolean isWarm()
+		{
+			return uses > 0;
+		}
+		
+		/**
+		 * Reports that the model was used to solve a job
+		 */
+		public void used()
+		{
+			uses++;
+		}
+	}
+	
+	/**
+	 * Builds a new model for a key that has no idle model
+	 */
+	interface Factory<M>
+	{
+		public M create() throws IloException;
+	}
+	
+	/**
+	 * Frees the memory used by CPLEX for a model
+	 */
+	interface Cleaner<M>
+	{
+		public void cleanUp(M model) throws IloException;
+	}
+}
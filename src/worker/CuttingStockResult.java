@@ -0,0 +1,40 @@
+package worker;
+import colgen.Solution;
+
+/**
+ * The answer of a worker process to a cutting stock job
+ */
+public class CuttingStockResult
+{
+	private final Solution solution;
+	private final double lowerBound;
+	
+	/**
+	 * Creates a result
+	 * @param solution the solution found by the worker
+	 * @param lowerBound the lower bound found by the worker
+	 */
+	public CuttingStockResult(Solution solution, double lowerBound)
+	{
+		this.solution = solution;
+		this.lowerBound = lowerBound;
+	}
+	
+	/**
+	 * The solution found by the worker
+	 * @return the solution
+	 */
+	public Solution getSolution()
+	{
+		return solution;
+	}
+	
+	/**
+	 * The lower bound found by the worker, as given by MasterModel.getLowerBound()
+	 * @return the lower bound
+	 */
+	public double getLowerBound()
+	{
+		return lowerBound;
+	}
+}
@@ -0,0 +1,66 @@
+package worker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import colgen.Instance;
+import colgen.Latencies;
+import colgen.Main;
+
+/**
+ * Main class that solves the same random instances as colgen.Main in a pool of worker processes,
+ * instead of in the JVM that runs this class. The output is the same as that of colgen.ParallelMain:
+ * the report of every instance in the order of the instances, followed by latency percentiles and
+ * the throughput, so that both can be compared directly for the same number of workers. The latency
+ * of an instance is the time from the moment it is submitted until its answer is received.
+ *
+ * The arguments are the number of worker processes (by default the number of cores), the number of
+ * threads CPLEX may use per worker (by default 1), the number of jobs after which a worker is replaced
+ * (by default 50), the growth of the resident memory of a worker in megabytes after which it is
+ * replaced (by default 512), and the time in seconds a worker may take for a single instance before
+ * it is killed and the instance is retried (by default 300).
+ */
+public class ProcessMain
+{
+	public static void main(String [] args) throws InterruptedException
+	{
+		int workers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		int maxJobs = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+		long maxGrowth = (args.length > 3 ? Long.parseLong(args[3]) : 512) * 1024 * 1024;
+		long timeout = (args.length > 4 ? Long.parseLong(args[4]) : 300) * 1000;
+		
+		long time = System.currentTimeMillis();
+		List<Instance> instances = Main.generateInstances();
+		WorkerPool pool = new WorkerPool(workers, threads, maxJobs, maxGrowth, 3, timeout);
+		List<CompletableFuture<CuttingStockResult>> futures = new ArrayList<>();
+		long [] latencies = new long[instances.size()];
+		for (int i=0; i < instances.size(); i++)
+		{
+			int index = i;
+			long start = System.currentTimeMillis();
+			futures.add(pool.solve(instances.get(i)).whenComplete((r, e) -> latencies[index] = System.currentTimeMillis() - start));
+		}
+		
+		// Print the results in the order of the instances, as soon as they are available
+		for (int i=0; i < futures.size(); i++)
+		{
+			try
+			{
+				CuttingStockResult result = futures.get(i).get();
+				System.out.println(Main.report(instances.get(i), result.getSolution(), result.getLowerBound()));
+			}
+			catch (ExecutionException e)
+			{
+				System.out.println("Instance: "+instances.get(i)+"\nFailed: "+e.getCause().getMessage()+"\n");
+			}
+		}
+		time = System.currentTimeMillis() - time;
+		pool.shutdown(10000);
+		
+		System.out.println("Worker processes: "+workers+", CPLEX threads per worker: "+threads);
+		Latencies.print(latencies, "instances", time);
+		System.out.println(pool);
+	}
+	}
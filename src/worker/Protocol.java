@@ -0,0 +1,194 @@
+package worker;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import basic.DirectedGraph;
+import basic.DirectedGraphArc;
+import basic.Item;
+import colgen.Instance;
+import colgen.Pattern;
+import colgen.Solution;
+
+/**
+ * The binary encoding of the jobs and answers that are sent between a WorkerPool and its Worker
+ * processes. Every message starts with a single byte with its type, followed by the numbers of the
+ * job or answer in the order in which they are written below. Items and sizes are identified by
+ * their index, so the coordinator can map an answer back to its own objects.
+ */
+class Protocol
+{
+	/** Asks a worker to stop after the jobs it received */
+	static final byte EXIT = 0;
+	/** A cutting stock job */
+	static final byte CUTTING_STOCK = 1;
+	/** A precedence constrained knapsack job */
+	static final byte KNAPSACK = 2;
+	
+	/** An answer with the solution of a job */
+	static final byte OK = 0;
+	/** An answer with the message of the exception that stopped a job */
+	static final byte ERROR = 1;
+	
+	/**
+	 * Writes a cutting stock instance: the number of stock lengths, the length and cost of every
+	 * stock length, the number of sizes, and the size and demand of every order
+	 */
+	static void writeInstance(DataOutputStream out, Instance instance) throws IOException
+	{
+		out.writeInt(instance.getNumberOfStockLengths());
+		for (int l=0; l < instance.getNumberOfStockLengths(); l++)
+		{
+			out.writeInt(instance.getStockLength(l));
+			out.writeDouble(instance.getStockCost(l));
+		}
+		out.writeInt(instance.getNumberOfSizes());
+		for (int i=0; i < instance.getNumberOfSizes(); i++)
+		{
+			out.writeInt(instance.getSize(i));
+			out.writeInt(instance.getDemand(i));
+		}
+	}
+	
+	static Instance readInstance(DataInputStream in) throws IOException
+	{
+		int [] stockLengths = new int[in.readInt()];
+		double [] stockCosts = new double[stockLengths.length];
+		for (int l=0; l < stockLengths.length; l++)
+		{
+			stockLengths[l] = in.readInt();
+			stockCosts[l] = in.readDouble();
+		}
+		int [] sizes = new int[in.readInt()];
+		int [] demands = new int[sizes.length];
+		for (int i=0; i < sizes.length; i++)
+		{
+			sizes[i] = in.readInt();
+			demands[i] = in.readInt();
+		}
+		return new Instance(sizes, demands, stockLengths, stockCosts);
+	}
+	
+	/**
+	 * Writes a solution of a cutting stock instance: the lower bound, the number of patterns,
+	 * and for every pattern the number of copies, the number of sizes, and every size and its amount
+	 */
+	static void writeSolution(DataOutputStream out, Solution solution, double lowerBound) throws IOException
+	{
+		out.writeDouble(lowerBound);
+		out.writeInt(solution.getPatterns().size());
+		for (Pattern p : solution.getPatterns())
+		{
+			out.writeInt(solution.getCopies(p));
+			out.writeInt(p.getNumberOfSizes());
+			for (int j=0; j < p.getNumberOfSizes(); j++)
+			{
+				out.writeInt(p.getSizeAt(j));
+				out.writeInt(p.getAmountAt(j));
+			}
+		}
+	}
+	
+	static CuttingStockResult readSolution(DataInputStream in, Instance instance) throws IOException
+	{
+		double lowerBound = in.readDouble();
+		int n = in.readInt();
+		Map<Pattern,Integer> patterns = new LinkedHashMap<>();
+		for (int k=0; k < n; k++)
+		{
+			int copies = in.readInt();
+			int [] sizes = new int[in.readInt()];
+			int [] amounts = new int[sizes.length];
+			for (int j=0; j < sizes.length; j++)
+			{
+				sizes[j] = in.readInt();
+				amounts[j] = in.readInt();
+			}
+			patterns.put(new Pattern(sizes, amounts), copies);
+		}
+		return new CuttingStockResult(new Solution(instance, patterns), lowerBound);
+	}
+	
+	/**
+	 * Writes a knapsack problem: the capacity, the number of items, the profit and weight of every
+	 * item, the number of precedence constraints, and the indices of the items of every constraint.
+	 * The data of the arcs is not written, since it is not used by the model.
+	 */
+	static void writeKnapsack(DataOutputStream out, DirectedGraph<Item,String> instance, int capacity) throws IOException
+	{
+		out.writeInt(capacity);
+		Map<Item,Integer> index = new IdentityHashMap<>();
+		out.writeInt(instance.getNumberOfNodes());
+		for (Item i : instance.getNodes())
+		{
+			index.put(i, index.size());
+			out.writeInt(i.getProfit());
+			out.writeInt(i.getWeight());
+		}
+		out.writeInt(instance.getNumberOfArcs());
+		for (DirectedGraphArc<Item,String> arc : instance.getArcs())
+		{
+			out.writeInt(index.get(arc.getFrom()));
+			out.writeInt(index.get(arc.getTo()));
+		}
+	}
+	
+	/**
+	 * Reads the items and precedence constraints of a knapsack problem, after its capacity was read
+	 */
+	static DirectedGraph<Item,String> readKnapsack(DataInputStream in) throws IOException
+	{
+		DirectedGraph<Item,String> result = new DirectedGraph<>();
+		List<Item> items = new ArrayList<>();
+		int n = in.readInt();
+		for (int i=0; i < n; i++)
+		{
+			Item item = new Item(in.readInt(), in.readInt());
+			items.add(item);
+			result.addNode(item);
+		}
+		int m = in.readInt();
+		for (int a=0; a < m; a++)
+		{
+			result.addArc(items.get(in.readInt()), items.get(in.readInt()), "");
+		}
+		return result;
+	}
+	
+	/**
+	 * Writes the selected items of a knapsack problem: their number and their indices
+	 */
+	static void writeSelection(DataOutputStream out, DirectedGraph<Item,String> instance, List<Item> selected) throws IOException
+	{
+		Map<Item,Integer> index = new IdentityHashMap<>();
+		for (Item i : instance.getNodes())
+		{
+			index.put(i, index.size());
+		}
+		out.writeInt(selected.size());
+		for (Item i : selected)
+		{
+			out.writeInt(index.get(i));
+		}
+	}
+	
+	/**
+	 * Reads the selected items of a knapsack problem as items of the instance of the coordinator
+	 */
+	static List<Item> readSelection(DataInputStream in, DirectedGraph<Item,String> instance) throws IOException
+	{
+		List<Item> nodes = instance.getNodes();
+		int n = in.readInt();
+		List<Item> result = new ArrayList<>(n);
+		for (int k=0; k < n; k++)
+		{
+			result.add(nodes.get(in.readInt()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,141 @@
+package worker;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import basic.DirectedGraph;
+import basic.Item;
+import basic.Model;
+import colgen.Instance;
+import colgen.MasterModel;
+import ilog.concert.IloException;
+
+/**
+ * Main class of a worker process that is started by a WorkerPool. The worker reads jobs from its
+ * standard input, solves them one at a time, and writes the answers to its standard output, in the
+ * encoding of the Protocol class. Everything else that is printed goes to the standard error, so that
+ * it can not corrupt the answers. The worker stops when it receives an exit message or its standard
+ * input is closed, which also happens when the coordinator dies.
+ *
+ * The only argument is the number of threads CPLEX may use.
+ */
+public class Worker
+{
+	public static void main(String [] args) throws IOException
+	{
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+		System.setOut(System.err);
+		
+		while (true)
+		{
+			byte type;
+			try
+			{
+				type = in.readByte();
+			}
+			catch (EOFException e)
+			{
+				break;
+			}
+			if (type == Protocol.EXIT)
+			{
+				break;
+			}
+			if (type == Protocol.CUTTING_STOCK)
+			{
+				solveCuttingStock(Protocol.readInstance(in), threads, out);
+			}
+			else if (type == Protocol.KNAPSACK)
+			{
+				int capacity = in.readInt();
+				solveKnapsack(Protocol.readKnapsack(in), capacity, threads, out);
+			}
+			else
+			{
+				throw new IOException("Unknown job type "+type);
+			}
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Solves a cutting stock instance in the same way as the ParallelMain class
+	 */
+	private static void solveCuttingStock(Instance instance, int threads, DataOutputStream out) throws IOException
+	{
+		MasterModel mm = null;
+		try
+		{
+			mm = new MasterModel(instance);
+			mm.setThreads(threads);
+			mm.setCombinatorialBounds(true);
+			mm.solveInteger();
+			out.writeByte(Protocol.OK);
+			Protocol.writeSolution(out, mm.getSolution(), mm.getLowerBound());
+		}
+		catch (IloException | RuntimeException e)
+		{
+			out.writeByte(Protocol.ERROR);
+			out.writeUTF(String.valueOf(e));
+		}
+		finally
+		{
+			if (mm != null)
+			{
+				try
+				{
+					mm.cleanUp();
+				}
+				catch (IloException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Solves a knapsack problem to optimality
+	 */
+	private static void solveKnapsack(DirectedGraph<Item,String> instance, int capacity, int threads, DataOutputStream out) throws IOException
+	{
+		Model model = null;
+		try
+		{
+			model = new Model(instance, capacity);
+			model.setThreads(threads);
+			model.solve();
+			List<Item> selected = model.isFeasible() ? model.getSolution() : new ArrayList<>();
+			out.writeByte(Protocol.OK);
+			Protocol.writeSelection(out, instance, selected);
+		}
+		catch (IloException | RuntimeException e)
+		{
+			out.writeByte(Protocol.ERROR);
+			out.writeUTF(String.valueOf(e));
+		}
+		finally
+		{
+			if (model != null)
+			{
+				try
+				{
+					model.cleanup();
+				}
+				catch (IloException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,505 @@
+package worker;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import basic.DirectedGraph;
+import basic.Item;
+import colgen.Instance;
+
+/**
+ * A pool of worker processes that solve cutting stock and knapsack problems, so that a native crash
+ * or a memory leak of CPLEX only affects a worker process instead of the JVM of the coordinator.
+ * Every worker is a separate JVM with the same class path and library path, that runs the Worker
+ * class and receives its jobs through a pipe, in the binary encoding of the Protocol class.
+ *
+ * Every worker has a thread in the coordinator that takes the next job from a shared queue, sends it
+ * to the worker and waits for its answer, so a worker solves one job at a time. A worker is replaced
+ * by a new process after a maximum number of jobs, or when its resident memory has grown by more than
+ * a maximum since its first job. The resident memory is read from the proc file system, so the second
+ * limit only applies on Linux.
+ *
+ * When a worker crashes or a job fails with an exception, the worker is replaced and the job is put
+ * back at the front of the queue, so that it is retried by another worker process. A worker that does
+ * not answer within the time limit of a job, for example because CPLEX hangs in native code, is killed
+ * and handled in the same way. A job is only failed after a maximum number of attempts.
+ */
+public class WorkerPool
+{
+	private final int cplexThreads;
+	private final int maxJobs;
+	private final long maxMemoryGrowth;
+	private final int maxAttempts;
+	private final long timeoutMillis;
+	
+	private final BlockingDeque<Task<?>> queue = new LinkedBlockingDeque<>();
+	private final List<Thread> threads = new ArrayList<>();
+	// Kills the workers that do not answer in time
+	private final ScheduledExecutorService watchdog;
+	private volatile boolean running = true;
+	
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong crashes = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong started = new AtomicLong();
+	private final AtomicLong recycled = new AtomicLong();
+	
+	/**
+	 * Creates a pool and starts a thread for every worker. The worker processes are started
+	 * when the first job arrives.
+	 * @param workers the number of worker processes
+	 * @param cplexThreads the number of threads CPLEX may use in every worker
+	 * @param maxJobs the number of jobs after which a worker is replaced
+	 * @param maxMemoryGrowth the growth of the resident memory of a worker in bytes since its first
+	 *                        job after which it is replaced, or 0 to not limit the growth
+	 * @param maxAttempts the number of times a job is attempted before it fails
+	 * @param timeoutMillis the time in milliseconds a worker may take to answer a job before it is
+	 *                      killed and the job is retried, or 0 to wait without a limit
+	 */
+	public WorkerPool(int workers, int cplexThreads, int maxJobs, long maxMemoryGrowth, int maxAttempts, long timeoutMillis)
+	{
+		if (workers < 1 || cplexThreads < 1 || maxJobs < 1 || maxMemoryGrowth < 0 || maxAttempts < 1 || timeoutMillis < 0)
+		{
+			throw new IllegalArgumentException("The number of workers, threads, jobs and attempts must be positive, and the memory growth and time limit may not be negative");
+		}
+		this.cplexThreads = cplexThreads;
+		this.maxJobs = maxJobs;
+		this.maxMemoryGrowth = maxMemoryGrowth;
+		this.maxAttempts = maxAttempts;
+		this.timeoutMillis = timeoutMillis;
+		this.watchdog = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, "worker-watchdog");
+			t.setDaemon(true);
+			return t;
+		});
+		for (int w=0; w < workers; w++)
+		{
+			Thread t = new Thread(this::run, "worker-" + w);
+			t.setDaemon(true);
+			t.start();
+			threads.add(t);
+		}
+	}
+	
+	/**
+	 * Solves a cutting stock instance in a worker process
+	 * @param instance the instance to solve
+	 * @return a future that is completed with the solution and lower bound found by the worker
+	 */
+	public CompletableFuture<CuttingStockResult> solve(Instance instance)
+	{
+		return submit(new Task<>(out -> {
+			out.writeByte(Protocol.CUTTING_STOCK);
+			Protocol.writeInstance(out, instance);
+		}, in -> Protocol.readSolution(in, instance)));
+	}
+	
+	/**
+	 * Solves a knapsack problem in a worker process
+	 * @param instance a directed graph with items
+	 * @param capacity the capacity of the knapsack
+	 * @return a future that is completed with the selected items of the instance
+	 */
+	public CompletableFuture<List<Item>> solve(DirectedGraph<Item,String> instance, int capacity)
+	{
+		return submit(new Task<>(out -> {
+			out.writeByte(Protocol.KNAPSACK);
+			Protocol.writeKnapsack(out, instance, capacity);
+		}, in -> Protocol.readSelection(in, instance)));
+	}
+	
+	private <T> CompletableFuture<T> submit(Task<T> task)
+	{
+		if (!running)
+		{
+			throw new IllegalStateException("The pool is shut down");
+		}
+		queue.addLast(task);
+		return task.result;
+	}
+	
+	/**
+	 * Stops the worker processes after the jobs in the queue are solved
+	 * @param timeoutMillis the maximum time to wait
+	 * @return true if all workers stopped before the timeout
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public boolean shutdown(long timeoutMillis) throws InterruptedException
+	{
+		running = false;
+		long end = System.currentTimeMillis() + timeoutMillis;
+		for (Thread t : threads)
+		{
+			t.join(Math.max(1, end - System.currentTimeMillis()));
+		}
+		watchdog.shutdown();
+		for (Thread t : threads)
+		{
+			if (t.isAlive())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Sends the jobs from the queue to a worker process, and replaces the process when needed
+	 */
+	private void run()
+	{
+		WorkerProcess worker = null;
+		try
+		{
+			while (running || !queue.isEmpty())
+			{
+				Task<?> task = queue.pollFirst(100, TimeUnit.MILLISECONDS);
+				if (task == null)
+				{
+					continue;
+				}
+				try
+				{
+					if (worker == null)
+					{
+						worker = new WorkerProcess();
+					}
+					if (worker.solve(task))
+					{
+						completed.incrementAndGet();
+					}
+					else
+					{
+						// The state of CPLEX in the worker is unknown after an exception
+						worker.destroy();
+						worker = null;
+						retry(task);
+					}
+				}
+				catch (IOException e)
+				{
+					// The worker crashed, was killed because it took too long, or could not be started
+					if (worker != null && worker.timedOut)
+					{
+						timeouts.incrementAndGet();
+					}
+					else
+					{
+						crashes.incrementAndGet();
+					}
+					if (worker != null)
+					{
+						worker.destroy();
+						worker = null;
+					}
+					task.error = e.toString();
+					retry(task);
+				}
+				if (worker != null && worker.isWornOut())
+				{
+					recycled.incrementAndGet();
+					worker.stop();
+					worker = null;
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			if (worker != null)
+			{
+				worker.stop();
+			}
+		}
+	}
+	
+	private void retry(Task<?> task)
+	{
+		task.attempts++;
+		if (task.attempts < maxAttempts)
+		{
+			retries.incrementAndGet();
+			queue.addFirst(task);
+		}
+		else
+		{
+			failed.incrementAndGet();
+			task.result.completeExceptionally(new IllegalStateException("The job failed " + task.attempts + " times, the last time with: " + task.error));
+		}
+	}
+	
+	/**
+	 * Reads the resident memory of a process from the proc file system
+	 * @param pid the id of the process
+	 * @return the resident memory in bytes, or -1 if it is not available
+	 */
+	private static long residentMemory(long pid)
+	{
+		try
+		{
+			for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status")))
+			{
+				if (line.startsWith("VmRSS:"))
+				{
+					String [] parts = line.trim().split("\\s+");
+					return Long.parseLong(parts[1]) * 1024;
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// The proc file system is not available on this platform
+		}
+		return -1;
+	}
+	
+	/**
+	 * The number of jobs that were solved
+	 * @return the number of completed jobs
+	 */
+	public long getCompleted()
+	{
+		return completed.get();
+	}
+	
+	/**
+	 * The number of jobs that failed in every attempt
+	 * @return the number of failed jobs
+	 */
+	public long getFailed()
+	{
+		return failed.get();
+	}
+	
+	/**
+	 * The number of times a job was put back in the queue after a crash or an exception
+	 * @return the number of retries
+	 */
+	public long getRetries()
+	{
+		return retries.get();
+	}
+	
+	/**
+	 * The number of times a worker process died while it solved a job, or could not be started
+	 * @return the number of crashes
+	 */
+	public long getCrashes()
+	{
+		return crashes.get();
+	}
+	
+	/**
+	 * The number of times a worker process was killed because it did not answer a job in time
+	 * @return the number of timeouts
+	 */
+	public long getTimeouts()
+	{
+		return timeouts.get();
+	}
+	
+	/**
+	 * The number of worker processes that were started
+	 * @return the number of started workers
+	 */
+	public long getStarted()
+	{
+		return started.get();
+	}
+	
+	/**
+	 * The number of worker processes that were replaced because of their number of jobs or their memory
+	 * @return the number of recycled workers
+	 */
+	public long getRecycled()
+	{
+		return recycled.get();
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "WorkerPool [completed=" + completed + ", failed=" + failed + ", retries=" + retries + ", crashes=" + crashes
+				+ ", timeouts=" + timeouts + ", started=" + started + ", recycled=" + recycled + "]";
+	}
+	
+	/**
+	 * A job in the queue, with the way it is encoded and the way its answer is decoded
+	 */
+	private static class Task<T>
+	{
+		private final Encoder encoder;
+		private final Decoder<T> decoder;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private int attempts;
+		private String error;
+		
+		public Task(Encoder encoder, Decoder<T> decoder)
+		{
+			this.encoder = encoder;
+			this.decoder = decoder;
+		}
+	}
+	
+	private interface Encoder
+	{
+		public void write(DataOutputStream out) throws IOException;
+	}
+	
+	private interface Decoder<T>
+	{
+		public T read(DataInputStream in) throws IOException;
+	}
+	
+	/**
+	 * A worker process and the pipes to communicate with it
+	 */
+	private class WorkerProcess
+	{
+		private final Process process;
+		private final DataOutputStream out;
+		private final DataInputStream in;
+		private int jobs;
+		private long baseMemory = -1;
+		private volatile boolean timedOut;
+		
+		public WorkerProcess() throws IOException
+		{
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			ProcessBuilder builder = new ProcessBuilder(java,
+					"-cp", System.getProperty("java.class.path"),
+					"-Djava.library.path=" + System.getProperty("java.library.path"),
+					Worker.class.getName(), Integer.toString(cplexThreads));
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			this.process = builder.start();
+			this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+			this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+			started.incrementAndGet();
+		}
+		
+		/**
+		 * Sends a job to the worker and waits for its answer
+		 * @return true if the job was solved, or false if it failed with an exception
+		 * @throws IOException if the worker crashed, or was killed because it did not answer in time
+		 */
+		public <T> boolean solve(Task<T> task) throws IOException
+		{
+			// Killing the process closes its pipes, so a blocked read below fails with an IOException
+			ScheduledFuture<?> deadline = timeoutMillis > 0 ? watchdog.schedule(() -> {
+				timedOut = true;
+				process.destroyForcibly();
+			}, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+			byte status;
+			T result = null;
+			try
+			{
+				task.encoder.write(out);
+				out.flush();
+				status = in.readByte();
+				if (status != Protocol.OK)
+				{
+					task.error = in.readUTF();
+				}
+				else
+				{
+					result = task.decoder.read(in);
+				}
+			}
+			catch (IOException e)
+			{
+				if (timedOut)
+				{
+					throw new IOException("The worker did not answer within " + timeoutMillis + "ms", e);
+				}
+				throw e;
+			}
+			finally
+			{
+				if (deadline != null)
+				{
+					deadline.cancel(false);
+				}
+			}
+			jobs++;
+			if (status != Protocol.OK)
+			{
+				return false;
+			}
+			if (baseMemory < 0)
+			{
+				// The memory after the first job includes the JVM and the CPLEX libraries
+				baseMemory = residentMemory(process.pid());
+			}
+			task.result.complete(result);
+			return true;
+		}
+		
+		/**
+		 * Whether the worker should be replaced because of its number of jobs or its memory
+		 */
+		public boolean isWornOut()
+		{
+			// The watchdog may have killed the worker just after it answered
+			if (timedOut || jobs >= maxJobs)
+			{
+				return true;
+			}
+			if (maxMemoryGrowth > 0 && baseMemory >= 0)
+			{
+				long memory = residentMemory(process.pid());
+				return memory >= 0 && memory - baseMemory > maxMemoryGrowth;
+			}
+			return false;
+		}
+		
+		/**
+		 * Asks the worker to stop, and kills it if it does not stop in time
+		 */
+		public void stop()
+		{
+			try
+			{
+				out.writeByte(Protocol.EXIT);
+				out.flush();
+				if (process.waitFor(5, TimeUnit.SECONDS))
+				{
+					return;
+				}
+			}
+			catch (IOException e)
+			{
+				// The worker is already gone
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			destroy();
+		}
+		
+		public void destroy()
+		{
+			process.destroyForcibly();
+		}
+	}
+}